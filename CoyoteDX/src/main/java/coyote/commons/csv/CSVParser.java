@@ -286,6 +286,33 @@ public class CSVParser {
 
 
 
+  /**
+   * @return true if the parser considers itself within a field, which 
+   *         changes how a quote or escape at the start of the next line is 
+   *         treated
+   */
+  boolean isInField() {
+    return _isinfield;
+  }
+
+
+
+
+  /**
+   * Discard anything left over from previous calls and set whether the 
+   * parser is within a field, so a record can be parsed again from its 
+   * start.
+   *
+   * @param inField the value {@link #isInField()} returned before the record
+   */
+  void reset( final boolean inField ) {
+    _pending = null;
+    _isinfield = inField;
+  }
+
+
+
+
   /**
    * precondition: sb.length() &gt; 0
    *
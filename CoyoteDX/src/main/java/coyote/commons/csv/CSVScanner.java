@@ -0,0 +1,413 @@
+package coyote.commons.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+import java.util.Arrays;
+
+
+/**
+ * A CSV reader which scans records directly out of a reusable character
+ * buffer.
+ *
+ * <p>Unlike the {@link CSVReader}, records are not read into lines and split
+ * into lists. Each call to {@link #next()} scans the next record in the
+ * buffer and notes where each field starts and ends; the text of a field is
+ * only copied out when it is requested with {@link #get(int)}. Callers
+ * interested in only some of the columns pay for the scan of the others but
+ * not for their strings.</p>
+ *
+ * <p>Records containing neither the quote nor the escape character are 
+ * split on the separator in place. Any other record is passed, line by line,
+ * to a {@link CSVParser} exactly as {@link CSVReader} does, so the values 
+ * (including the handling of escapes, quotes within fields and quoted line 
+ * breaks, which are returned as LF) are always the same as those read by 
+ * {@link CSVReader}. Records end with LF, CR or CRLF and empty lines are 
+ * skipped.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public class CSVScanner implements Closeable {
+
+  /** The default size of the character buffer. */
+  public static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final int INITIAL_FIELDS = 16;
+
+  private final Reader reader;
+  private final char separator;
+  private final char quotechar;
+  private final char escape;
+
+  /** Parses the records containing quote or escape characters */
+  private final CSVParser parser;
+
+  /** Whether the parser was within a field at the end of the last record */
+  private boolean inField = false;
+
+  private char[] buffer;
+  private int position = 0;
+  private int limit = 0;
+  private boolean exhausted = false;
+
+  // the current record
+  private int recordStart = 0;
+  private int count = 0;
+  private int[] starts = new int[INITIAL_FIELDS];
+  private int[] ends = new int[INITIAL_FIELDS];
+  /** the values of the current record if it was parsed, null if it was split in place */
+  private String[] parsed = null;
+  private long records = 0;
+
+
+
+
+  /**
+   * Constructs CSVScanner using the default separator, quote and escape
+   * characters.
+   *
+   * @param reader the reader to an underlying CSV source.
+   */
+  public CSVScanner( final Reader reader ) {
+    this( reader, CSVParser.SEPARATOR );
+  }
+
+
+
+
+  /**
+   * Constructs CSVScanner.
+   *
+   * @param reader the reader to an underlying CSV source.
+   * @param separator the delimiter to use for separating entries.
+   */
+  public CSVScanner( final Reader reader, final char separator ) {
+    this( reader, separator, CSVParser.QUOTE_CHARACTER, CSVParser.ESCAPE_CHARACTER, BUFFER_SIZE );
+  }
+
+
+
+
+  /**
+   * Constructs CSVScanner.
+   *
+   * @param reader the reader to an underlying CSV source.
+   * @param separator the delimiter to use for separating entries
+   * @param quotechar the character to use for quoted elements
+   * @param escape the character to use for escaping a separator or quote
+   * @param size the initial size of the character buffer, it grows as needed
+   *        to hold the longest record
+   */
+  public CSVScanner( final Reader reader, final char separator, final char quotechar, final char escape, final int size ) {
+    if ( separator == CSVParser.NULL_CHARACTER ) {
+      throw new UnsupportedOperationException( "The separator character must be defined!" );
+    }
+    if ( separator == quotechar || separator == escape || ( quotechar != CSVParser.NULL_CHARACTER && quotechar == escape ) ) {
+      throw new UnsupportedOperationException( "The separator, quote, and escape characters must be different!" );
+    }
+    this.reader = reader;
+    this.separator = separator;
+    this.quotechar = quotechar;
+    this.escape = escape;
+    parser = new CSVParser( separator, quotechar, escape );
+    buffer = new char[Math.max( 16, size )];
+  }
+
+
+
+
+  /**
+   * Scan the next record.
+   *
+   * @return true if a record was scanned, false if there are no more records
+   *
+   * @throws IOException if the source could not be read
+   * @throws ParseException if the source ends within a quoted field
+   */
+  public boolean next() throws IOException, ParseException {
+    count = 0;
+    parsed = null;
+    if ( !skipEmptyLines() ) {
+      return false;
+    }
+
+    while ( !scan() ) {
+      // the record runs past the end of the buffer; make room and rescan it
+      if ( exhausted ) {
+        throw new ParseException( "Un-terminated quoted field at end of CSV data", position );
+      }
+      fill();
+    }
+    records++;
+    return true;
+  }
+
+
+
+
+  /**
+   * Scan one record starting at the current position.
+   *
+   * @return true if the record was complete, false if more data is needed
+   */
+  private boolean scan() throws ParseException {
+    final char[] buf = buffer;
+    final int end = limit;
+    int p = position;
+    recordStart = p;
+    count = 0;
+
+    int fieldStart = p;
+    while ( true ) {
+      if ( p >= end ) {
+        if ( !exhausted ) {
+          return false;
+        }
+        // the last record has no line terminator
+        break;
+      }
+
+      char c = buf[p];
+      if ( c == separator ) {
+        addField( fieldStart, p );
+        p++;
+        fieldStart = p;
+      } else if ( c == '\n' || c == '\r' ) {
+        break;
+      } else if ( ( c == quotechar || c == escape ) && c != CSVParser.NULL_CHARACTER ) {
+        return parse();
+      } else {
+        p++;
+      }
+    }
+
+    addField( fieldStart, p );
+    position = p;
+    // as the parser would be after the last character of the line
+    inField = p > fieldStart;
+    return true;
+  }
+
+
+
+
+  /**
+   * Parse the record starting at the current record start with the parser, 
+   * one line at a time, in the same way as {@link CSVReader#readNext()}.
+   *
+   * @return true if the record was complete, false if more data is needed
+   */
+  private boolean parse() throws ParseException {
+    final char[] buf = buffer;
+    parser.reset( inField );
+
+    String[] result = null;
+    int p = recordStart;
+    int eol;
+    do {
+      if ( p >= limit && exhausted ) {
+        // the source ended within a quoted field
+        return false;
+      }
+      eol = p;
+      while ( eol < limit && buf[eol] != '\n' && buf[eol] != '\r' ) {
+        eol++;
+      }
+      if ( eol >= limit && !exhausted ) {
+        return false;
+      }
+
+      final String[] r = parser.parseLineMulti( new String( buf, p, eol - p ) );
+      if ( r.length > 0 ) {
+        if ( result == null ) {
+          result = r;
+        } else {
+          final String[] t = new String[result.length + r.length];
+          System.arraycopy( result, 0, t, 0, result.length );
+          System.arraycopy( r, 0, t, result.length, r.length );
+          result = t;
+        }
+      }
+
+      if ( parser.isPending() ) {
+        // the next line starts after the terminator; CRLF is one terminator
+        p = eol + 1;
+        if ( eol < limit && buf[eol] == '\r' ) {
+          if ( p >= limit && !exhausted ) {
+            return false;
+          }
+          if ( p < limit && buf[p] == '\n' ) {
+            p++;
+          }
+        }
+      }
+    }
+    while ( parser.isPending() );
+
+    parsed = ( result != null ) ? result : new String[0];
+    count = parsed.length;
+    inField = parser.isInField();
+    position = eol;
+    return true;
+  }
+
+
+
+
+  private void addField( int start, int end ) {
+    if ( count == starts.length ) {
+      int size = count * 2;
+      starts = Arrays.copyOf( starts, size );
+      ends = Arrays.copyOf( ends, size );
+    }
+    starts[count] = start;
+    ends[count] = end;
+    count++;
+  }
+
+
+
+
+  /**
+   * Skip past line terminators and empty lines.
+   *
+   * @return true if there is data to scan, false at the end of the source
+   */
+  private boolean skipEmptyLines() throws IOException {
+    while ( true ) {
+      while ( position < limit ) {
+        char c = buffer[position];
+        if ( c == '\n' || c == '\r' ) {
+          position++;
+        } else {
+          return true;
+        }
+      }
+      if ( exhausted ) {
+        return false;
+      }
+      fill();
+    }
+  }
+
+
+
+
+  /**
+   * Read more characters into the buffer, first moving the partially scanned
+   * record to the start of the buffer and growing the buffer if the record
+   * fills it.
+   */
+  private void fill() throws IOException {
+    int keep = Math.min( recordStart, position );
+    if ( keep > 0 ) {
+      System.arraycopy( buffer, keep, buffer, 0, limit - keep );
+      limit -= keep;
+      position -= keep;
+      recordStart -= keep;
+      // the current record may still be read after an eof() check
+      if ( parsed == null ) {
+        for ( int x = 0; x < count; x++ ) {
+          starts[x] -= keep;
+          ends[x] -= keep;
+        }
+      }
+    } else if ( limit == buffer.length ) {
+      buffer = Arrays.copyOf( buffer, buffer.length * 2 );
+    }
+
+    int read = reader.read( buffer, limit, buffer.length - limit );
+    if ( read < 0 ) {
+      exhausted = true;
+    } else {
+      limit += read;
+    }
+  }
+
+
+
+
+  /**
+   * @return the number of fields in the current record
+   */
+  public int getFieldCount() {
+    return count;
+  }
+
+
+
+
+  /**
+   * Return the value of a field in the current record.
+   *
+   * @param index the position of the field in the record, starting at 0
+   *
+   * @return the value of the field or null if the record does not have a
+   *         field at that position
+   */
+  public String get( final int index ) {
+    if ( index < 0 || index >= count ) {
+      return null;
+    }
+    if ( parsed != null ) {
+      return parsed[index];
+    }
+    return new String( buffer, starts[index], ends[index] - starts[index] );
+  }
+
+
+
+
+  /**
+   * @return all the fields of the current record
+   */
+  public String[] getFields() {
+    final String[] retval = new String[count];
+    for ( int x = 0; x < count; x++ ) {
+      retval[x] = get( x );
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * @return the number of records scanned so far
+   */
+  public long getRecordNumber() {
+    return records;
+  }
+
+
+
+
+  /**
+   * End Of File check.
+   *
+   * <p>This may read ahead in the source to determine if another record
+   * follows.</p>
+   *
+   * @return true if the are no more records to read, false otherwise
+   *
+   * @throws IOException if the source could not be read
+   */
+  public boolean eof() throws IOException {
+    return !skipEmptyLines();
+  }
+
+
+
+
+  /**
+   * Closes the underlying reader.
+   *
+   * @throws IOException if the close fails
+   */
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+}
@@ -9,6 +9,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /** 
@@ -17,9 +18,11 @@ import java.util.Map;
  * <p>Some standard evaluators are included in the library, you can define your 
  * own by subclassing this class.</p>
  * 
- * <p>Please note that this class is not thread safe. Under multi-threaded 
- * context you may have to instantiate one instance per thread (for instance 
- * using java.lang.ThreadLocal).</p>
+ * <p>Expressions are compiled once into a {@link CompiledExpression} and 
+ * cached by their text, so evaluating the same expression repeatedly does not
+ * tokenize or parse it again. Compiling and evaluating keep no state in the 
+ * evaluator, but subclasses may (e.g. a context set on the instance) so 
+ * unless the subclass states otherwise, use one instance per thread.</p>
  * 
  * @param <T> The type of values handled by the evaluator 
  */
@@ -33,6 +36,12 @@ public abstract class AbstractEvaluator<T> {
   private final Map<String, BracketPair> functionBrackets;
   private final Map<String, BracketPair> expressionBrackets;
 
+  /** The most compiled expressions kept before the cache is cleared */
+  private static final int MAX_COMPILED = 1024;
+
+  /** Expressions already compiled by this evaluator keyed by their text */
+  private final Map<String, CompiledExpression<T>> compiled = new ConcurrentHashMap<String, CompiledExpression<T>>();
+
 
 
 
@@ -111,16 +120,6 @@ public abstract class AbstractEvaluator<T> {
 
 
 
-  private void doFunction( final Deque<T> values, final Function function, final int argCount, final Object evaluationContext ) {
-    if ( ( function.getMinimumArgumentCount() > argCount ) || ( function.getMaximumArgumentCount() < argCount ) ) {
-      throw new IllegalArgumentException( "Invalid argument count for " + function.getName() + " function" );
-    }
-    values.push( evaluate( function, getArguments( values, argCount ), evaluationContext ) );
-  }
-
-
-
-
   /** 
    * Evaluates a constant.
    * 
@@ -241,6 +240,9 @@ public abstract class AbstractEvaluator<T> {
    * <p>The context is not limited to variable values but can be used for any 
    * dynamic information.</p>
    * 
+   * <p>The expression is compiled the first time it is seen and the compiled 
+   * form is reused on later calls with the same expression text.</p>
+   * 
    * @param expression The expression to evaluate.
    * @param evaluationContext The context of the evaluation.
    * 
@@ -251,7 +253,100 @@ public abstract class AbstractEvaluator<T> {
    * @see VariableSet
    */
   public T evaluate( final String expression, final Object evaluationContext ) {
-    final Deque<T> valueStack = new ArrayDeque<T>(); // values stack
+    CompiledExpression<T> plan = compiled.get( expression );
+    if ( plan == null ) {
+      plan = compile( expression );
+      if ( compiled.size() >= MAX_COMPILED ) {
+        // expressions are probably being generated, don't hoard them
+        compiled.clear();
+      }
+      compiled.put( expression, plan );
+    }
+    return evaluate( plan, evaluationContext );
+  }
+
+
+
+
+  /**
+   * Evaluates an expression compiled by this evaluator.
+   * 
+   * <p>Constants, variables and methods are resolved against the context on 
+   * each call; nothing is tokenized or parsed. This method keeps no state 
+   * between calls and may be called from several threads at once if the 
+   * evaluate methods of the subclass allow it.</p>
+   * 
+   * @param plan The compiled expression to evaluate.
+   * @param evaluationContext The context of the evaluation.
+   * 
+   * @return the result of the evaluation.
+   * 
+   * @throws IllegalArgumentException if a value in the expression is not 
+   *         correct.
+   */
+  @SuppressWarnings("unchecked")
+  public T evaluate( final CompiledExpression<T> plan, final Object evaluationContext ) {
+    // the value stack and argument slice are reused from the thread's workspace
+    final CompiledExpression.Workspace workspace = CompiledExpression.Workspace.get();
+    final int base = workspace.claim( plan.depth );
+    final Object[] values = workspace.values();
+    final CompiledExpression.Slice<T> operands = workspace.slice();
+    int top = base;
+
+    try {
+      for ( final CompiledExpression.Step<T> step : plan.steps ) {
+        switch ( step.kind ) {
+          case CompiledExpression.LITERAL:
+            T value = ( step.constant == null ) ? null : evaluate( step.constant, evaluationContext );
+            if ( ( value == null ) && ( evaluationContext instanceof VariableSet ) ) {
+              value = ( (VariableSet<T>)evaluationContext ).get( step.literal );
+            }
+            if ( value == null ) {
+              value = ( step.value != null ) ? step.value : toValue( step.literal, evaluationContext );
+            }
+            values[top++] = value;
+            break;
+          case CompiledExpression.OPERATOR:
+            top -= step.count;
+            values[top] = evaluate( step.operator, operands.reset( values, top, step.count ), evaluationContext );
+            top++;
+            break;
+          case CompiledExpression.FUNCTION:
+            top -= step.count;
+            values[top] = evaluate( step.function, operands.reset( values, top, step.count ), evaluationContext );
+            top++;
+            break;
+          default:
+            final CompiledExpression.Slice<String> arguments = (CompiledExpression.Slice<String>)(CompiledExpression.Slice<?>)operands;
+            values[top++] = evaluate( step.method, arguments.reset( step.arguments, 0, step.arguments.length ), evaluationContext );
+            break;
+        }
+      }
+      return (T)values[base];
+    }
+    finally {
+      workspace.release( values, base, plan.depth );
+    }
+  }
+
+
+
+
+  /**
+   * Compiles an expression so it can be evaluated repeatedly without being 
+   * parsed each time.
+   * 
+   * @param expression The expression to compile.
+   * 
+   * @return the compiled expression, which can only be evaluated by this 
+   *         evaluator.
+   * 
+   * @throws IllegalArgumentException if the expression is not correct.
+   * 
+   * @see #evaluate(CompiledExpression, Object)
+   */
+  public CompiledExpression<T> compile( final String expression ) {
+    final Compilation compilation = new Compilation();
     final Deque<Token> operatorStack = new ArrayDeque<Token>(); // operator stack
     final Deque<Integer> previousValuesSize = functions.isEmpty() ? null : new ArrayDeque<Integer>();
 
@@ -302,7 +397,7 @@ public abstract class AbstractEvaluator<T> {
               throw new IllegalArgumentException( "Invalid parenthesis match " + sc.getBrackets().getOpen() + brackets.getClose() );
             }
           } else {
-            output( valueStack, sc, evaluationContext );
+            output( compilation, sc );
           }
         }
         if ( !openBracketFound ) {
@@ -313,8 +408,12 @@ public abstract class AbstractEvaluator<T> {
         if ( !operatorStack.isEmpty() && operatorStack.peek().isFunction() ) {
           // If the token at the top of the stack is a function token, pop it
           // onto the output queue.
-          final int argCount = valueStack.size() - previousValuesSize.pop();
-          doFunction( valueStack, operatorStack.pop().getFunction(), argCount, evaluationContext );
+          final int argCount = compilation.size - previousValuesSize.pop();
+          final Function function = operatorStack.pop().getFunction();
+          if ( ( function.getMinimumArgumentCount() > argCount ) || ( function.getMaximumArgumentCount() < argCount ) ) {
+            throw new IllegalArgumentException( "Invalid argument count for " + function.getName() + " function" );
+          }
+          compilation.add( CompiledExpression.Step.<T> function( function, argCount ), argCount );
         }
 
       } else if ( token.isFunctionArgumentSeparator() ) {
@@ -335,7 +434,7 @@ public abstract class AbstractEvaluator<T> {
           } else {
             // Until the token at the top of the stack is a left parenthesis,
             // pop operators off the stack onto the output queue.
-            output( valueStack, operatorStack.pop(), evaluationContext );
+            output( compilation, operatorStack.pop() );
           }
         }
         if ( !pe ) {
@@ -347,15 +446,15 @@ public abstract class AbstractEvaluator<T> {
       } else if ( token.isFunction() ) {
         // If the token is a function token, then push it onto the stack.
         operatorStack.push( token );
-        previousValuesSize.push( valueStack.size() );
+        previousValuesSize.push( compilation.size );
 
       } else if ( token.isMethod() ) {
         // here is where we break with convention; we need to consume the next 
         // tokens to determine the String arguments to the method as opposed to 
         // argument of type <T> which make them suitable for recursive handling
         // on the stack. This section consumes the next tokens to determine the 
-        // arguments to and to make the method call the return value of which 
-        // will be placed on the stack
+        // arguments to the method, the return value of which will be placed 
+        // on the stack when the expression is evaluated
 
         // create our list of method arguments        
         final LinkedList<String> arguments = new LinkedList<String>();
@@ -376,9 +475,8 @@ public abstract class AbstractEvaluator<T> {
             // If the token is a closed bracket, the arguments are complete
             if ( tkn.isCloseBracket() ) {
 
-              // call the method with the arguments and place the return value 
-              // on the valueStack
-              valueStack.push( evaluate( token.getMethod(), arguments.iterator(), evaluationContext ) );
+              // the method call places its return value on the value stack
+              compilation.add( CompiledExpression.Step.<T> method( token.getMethod(), arguments.toArray( new String[arguments.size()] ) ), 0 );
 
               called = true;
               // return control to the regular mathematics processing
@@ -410,7 +508,7 @@ public abstract class AbstractEvaluator<T> {
           // If 2 operators have equal priority then associativity decides.
           if ( sc.isOperator() && ( ( token.getAssociativity().equals( Operator.Associativity.LEFT ) && ( token.getPrecedence() <= sc.getPrecedence() ) ) || ( token.getPrecedence() < sc.getPrecedence() ) ) ) {
             // Pop o2 off the stack, onto the output queue;
-            output( valueStack, operatorStack.pop(), evaluationContext );
+            output( compilation, operatorStack.pop() );
           } else {
             break;
           }
@@ -422,7 +520,7 @@ public abstract class AbstractEvaluator<T> {
         if ( ( previous != null ) && previous.isLiteral() ) {
           throw new IllegalArgumentException( "A literal can't follow another literal" );
         }
-        output( valueStack, token, evaluationContext );
+        output( compilation, token );
       }
       previous = token;
     }
@@ -433,29 +531,12 @@ public abstract class AbstractEvaluator<T> {
       if ( sc.isOpenBracket() || sc.isCloseBracket() ) {
         throw new IllegalArgumentException( "Parentheses mismatched" );
       }
-      output( valueStack, sc, evaluationContext );
+      output( compilation, sc );
     }
-    if ( valueStack.size() != 1 ) {
+    if ( compilation.size != 1 ) {
       throw new IllegalArgumentException();
     }
-    return valueStack.pop();
-  }
-
-
-
-
-  private Iterator<T> getArguments( final Deque<T> values, final int operandCount ) {
-    // Be aware that arguments are in reverse order on the values stack.
-    // Don't forget to reorder them in the original order (the one they appear 
-    // in the evaluated formula)
-    if ( values.size() < operandCount ) {
-      throw new IllegalArgumentException();
-    }
-    final LinkedList<T> result = new LinkedList<T>();
-    for ( int i = 0; i < operandCount; i++ ) {
-      result.addFirst( values.pop() );
-    }
-    return result.iterator();
+    return compilation.toExpression( expression );
   }
 
 
@@ -554,25 +635,18 @@ public abstract class AbstractEvaluator<T> {
 
 
   /**
-   * Output a value to the given value stack.
+   * Add the step for the given literal or operator token to the compilation.
    * 
-   * @param values the stack of values to populate
-   * @param token the token to process/evaluate
-   * @param evaluationContext the context in which the token is to be evaluated
+   * @param compilation the steps compiled so far
+   * @param token the token to output
    */
-  @SuppressWarnings("unchecked")
-  private void output( final Deque<T> values, final Token token, final Object evaluationContext ) {
+  private void output( final Compilation compilation, final Token token ) {
     if ( token.isLiteral() ) { // If the token is a literal, a constant, or a variable name
       final String literal = token.getLiteral();
-      final Constant ct = this.constants.get( literal );
-      T value = ct == null ? null : evaluate( ct, evaluationContext );
-      if ( ( value == null ) && ( evaluationContext != null ) && ( evaluationContext instanceof VariableSet ) ) {
-        value = ( (VariableSet<T>)evaluationContext ).get( literal );
-      }
-      values.push( value != null ? value : toValue( literal, evaluationContext ) );
+      compilation.add( CompiledExpression.Step.<T> literal( literal, constants.get( literal ), toStaticValue( literal ) ), 0 );
     } else if ( token.isOperator() ) {
       final Operator operator = token.getOperator();
-      values.push( evaluate( operator, getArguments( values, operator.getOperandCount() ), evaluationContext ) );
+      compilation.add( CompiledExpression.Step.<T> operator( operator ), operator.getOperandCount() );
     } else {
       throw new IllegalArgumentException();
     }
@@ -652,6 +726,28 @@ public abstract class AbstractEvaluator<T> {
 
 
 
+  /**
+   * Converts a literal whose value does not depend on the evaluation context
+   * when the expression is compiled rather than each time it is evaluated.
+   * 
+   * <p>Variables and constants with the same name still take precedence over
+   * the value returned here. This default implementation returns null, 
+   * meaning the literal is converted by {@link #toValue(String, Object)} on 
+   * each evaluation. Subclasses whose literals are context-free should 
+   * override this.</p>
+   * 
+   * @param literal The literal to convert.
+   * 
+   * @return the value of the literal or null if it must be converted when 
+   *         the expression is evaluated.
+   */
+  protected T toStaticValue( final String literal ) {
+    return null;
+  }
+
+
+
+
   /**
    * Validates that homonym operators are valid.
    * 
@@ -675,4 +771,43 @@ public abstract class AbstractEvaluator<T> {
       throw new IllegalArgumentException();
     }
   }
+
+
+
+
+  /**
+   * The steps of an expression being compiled and the depth of the value 
+   * stack they will need.
+   */
+  private class Compilation {
+    private final List<CompiledExpression.Step<T>> steps = new ArrayList<CompiledExpression.Step<T>>();
+    int size = 0;
+    int depth = 0;
+
+
+
+
+    /**
+     * @param step the step to add
+     * @param operands the number of values the step takes from the stack
+     */
+    void add( final CompiledExpression.Step<T> step, final int operands ) {
+      if ( size < operands ) {
+        throw new IllegalArgumentException();
+      }
+      steps.add( step );
+      size = size - operands + 1;
+      if ( size > depth ) {
+        depth = size;
+      }
+    }
+
+
+
+
+    CompiledExpression<T> toExpression( final String expression ) {
+      return new CompiledExpression<T>( expression, steps.toArray( CompiledExpression.<T> newSteps( steps.size() ) ), depth );
+    }
+  }
+
 }
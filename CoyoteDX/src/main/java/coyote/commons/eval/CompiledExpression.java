@@ -0,0 +1,297 @@
+package coyote.commons.eval;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/**
+ * An expression parsed once into the order its parts are evaluated (Reverse 
+ * Polish Notation) so it can be evaluated any number of times without being 
+ * tokenized or parsed again.
+ * 
+ * <p>Instances are created by {@link AbstractEvaluator#compile(String)} and 
+ * evaluated with {@link AbstractEvaluator#evaluate(CompiledExpression, Object)}
+ * of the same evaluator. They are immutable and may be shared between 
+ * threads.</p>
+ * 
+ * @param <T> The type of values handled by the evaluator which compiled it
+ */
+public final class CompiledExpression<T> {
+
+  static final int LITERAL = 0;
+  static final int OPERATOR = 1;
+  static final int FUNCTION = 2;
+  static final int METHOD = 3;
+
+  private final String expression;
+  final Step<T>[] steps;
+  final int depth;
+
+
+
+
+  CompiledExpression( final String expression, final Step<T>[] steps, final int depth ) {
+    this.expression = expression;
+    this.steps = steps;
+    this.depth = depth;
+  }
+
+
+
+
+  /**
+   * Create an array for the steps of a plan.
+   * 
+   * @param size the number of steps
+   * 
+   * @return an empty array of the given size
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  static <T> Step<T>[] newSteps( final int size ) {
+    return new Step[size];
+  }
+
+
+
+
+  /**
+   * @return the text of the expression which was compiled
+   */
+  public String getExpression() {
+    return expression;
+  }
+
+
+
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return expression;
+  }
+
+
+
+
+  /**
+   * One part of the expression: a literal to push onto the value stack or an
+   * operator, function or method to apply to the values on it.
+   */
+  static final class Step<T> {
+    final int kind;
+    final String literal;
+    final Constant constant;
+    final T value;
+    final Operator operator;
+    final Function function;
+    final Method method;
+    final String[] arguments;
+    final int count;
+
+
+
+
+    private Step( final int kind, final String literal, final Constant constant, final T value, final Operator operator, final Function function, final Method method, final String[] arguments, final int count ) {
+      this.kind = kind;
+      this.literal = literal;
+      this.constant = constant;
+      this.value = value;
+      this.operator = operator;
+      this.function = function;
+      this.method = method;
+      this.arguments = arguments;
+      this.count = count;
+    }
+
+
+
+
+    static <T> Step<T> literal( final String literal, final Constant constant, final T value ) {
+      return new Step<T>( LITERAL, literal, constant, value, null, null, null, null, 0 );
+    }
+
+
+
+
+    static <T> Step<T> operator( final Operator operator ) {
+      return new Step<T>( OPERATOR, null, null, null, operator, null, null, null, operator.getOperandCount() );
+    }
+
+
+
+
+    static <T> Step<T> function( final Function function, final int count ) {
+      return new Step<T>( FUNCTION, null, null, null, null, function, null, null, count );
+    }
+
+
+
+
+    static <T> Step<T> method( final Method method, final String[] arguments ) {
+      return new Step<T>( METHOD, null, null, null, null, null, method, arguments, 0 );
+    }
+  }
+
+
+
+
+  /**
+   * Iterates over part of an array without copying it.
+   * 
+   * <p>Slices are reused, so the iterator passed to an operator, function or
+   * method is only valid until it returns.</p>
+   */
+  static final class Slice<E> implements Iterator<E> {
+    private Object[] array;
+    private int index;
+    private int end;
+
+
+
+
+    /**
+     * Point this slice at part of an array.
+     * 
+     * @return this slice, positioned at the first element
+     */
+    Slice<E> reset( final Object[] array, final int start, final int count ) {
+      this.array = array;
+      index = start;
+      end = start + count;
+      return this;
+    }
+
+
+
+
+    @Override
+    public boolean hasNext() {
+      return index < end;
+    }
+
+
+
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E next() {
+      if ( index >= end ) {
+        throw new NoSuchElementException();
+      }
+      return (E)array[index++];
+    }
+
+
+
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+
+
+
+  /**
+   * The value stacks and argument slices of the evaluations running on one 
+   * thread, reused so evaluating a plan does not allocate them.
+   * 
+   * <p>Evaluations nest when a function or method evaluates another 
+   * expression, so each one claims the part of the value stack above the 
+   * evaluation which called it and a slice of its own.</p>
+   */
+  static final class Workspace {
+    private static final ThreadLocal<Workspace> CURRENT = new ThreadLocal<Workspace>() {
+      @Override
+      protected Workspace initialValue() {
+        return new Workspace();
+      }
+    };
+
+    private Object[] values = new Object[32];
+    private int used = 0;
+    private Slice<?>[] slices = new Slice<?>[4];
+    private int level = 0;
+
+
+
+
+    /**
+     * @return the workspace of the current thread
+     */
+    static Workspace get() {
+      return CURRENT.get();
+    }
+
+
+
+
+    /**
+     * Claim room on the value stack for an evaluation.
+     * 
+     * <p>The stack may be replaced when it grows, so callers keep using the 
+     * array returned by {@link #values()} right after claiming.</p>
+     * 
+     * @param count the number of values the evaluation needs
+     * 
+     * @return the index of the first value claimed
+     */
+    int claim( final int count ) {
+      final int base = used;
+      if ( base + count > values.length ) {
+        values = Arrays.copyOf( values, Math.max( values.length * 2, base + count ) );
+      }
+      used = base + count;
+      if ( level == slices.length ) {
+        slices = Arrays.copyOf( slices, level * 2 );
+      }
+      if ( slices[level] == null ) {
+        slices[level] = new Slice<Object>();
+      }
+      level++;
+      return base;
+    }
+
+
+
+
+    /**
+     * @return the value stack
+     */
+    Object[] values() {
+      return values;
+    }
+
+
+
+
+    /**
+     * @return the slice of the most recent claim
+     */
+    @SuppressWarnings("unchecked")
+    <E> Slice<E> slice() {
+      return (Slice<E>)slices[level - 1];
+    }
+
+
+
+
+    /**
+     * Release the most recent claim, dropping the references it held.
+     * 
+     * @param array the value stack the evaluation used
+     * @param base the index returned by the claim
+     * @param count the number of values claimed
+     */
+    void release( final Object[] array, final int base, final int count ) {
+      Arrays.fill( array, base, base + count, null );
+      slices[--level].reset( null, 0, 0 );
+      used = base;
+    }
+  }
+
+}
@@ -369,4 +369,25 @@ public class DoubleEvaluator extends AbstractEvaluator<Double> {
     return result.doubleValue();
   }
 
+
+
+
+  /**
+   * Numeric literals are converted once when the expression is compiled, 
+   * anything which is not a number is left to be resolved on evaluation.
+   * 
+   * <p>Subclasses which override {@link #toValue(String, Object)} to use the
+   * evaluation context should override this method to return null.</p>
+   * 
+   * @see coyote.commons.eval.AbstractEvaluator#toStaticValue(java.lang.String)
+   */
+  @Override
+  protected Double toStaticValue( final String literal ) {
+    try {
+      return toValue( literal, null );
+    } catch ( final IllegalArgumentException e ) {
+      return null;
+    }
+  }
+
 }
@@ -91,6 +91,9 @@ public abstract class AbstractTransformEngine extends AbstractConfigurableCompon
   /** Globally unique identifier for this instance. */
   private final String instanceId = GUID.randomGUID().toString();
 
+  /** Gives templates access to the current transaction of this engine */
+  private TemplateAccess templateAccess = null;
+
 
 
 
@@ -170,7 +173,7 @@ public abstract class AbstractTransformEngine extends AbstractConfigurableCompon
   @Override
   public void run() {
     Log.info( "Engine '" + getName() + "' (" + getInstanceId() + ") running..." );
-    int transactionErrors = 0;
+    long transactionErrors = 0;
 
     symbols.put( Symbols.JOB_ID, getInstanceId() );
 
@@ -336,146 +339,7 @@ public abstract class AbstractTransformEngine extends AbstractConfigurableCompon
         // loop through all data read in by the reader until EOF or an error in 
         // the transform context occurs.
         getContext().setState( "Process" );
-        while ( getContext().isNotInError() && reader != null && !reader.eof() ) {
-
-          // Create a new Transaction context with the list of listeners to react 
-          // to events in the transaction.
-          TransactionContext txnContext = new TransactionContext( getContext() );
-          // place a reference to the transaction in the transform context
-          getContext().setTransaction( txnContext );
-
-          // Create a component to place in the Templates to give them access to
-          // all the data in the contexts and advanced functions
-          TemplateAccess access = new TemplateAccess( getContext() );
-          Template.put( "Context", access );
-
-          // Start the clock and fire event listeners for the beginning of the
-          // transaction
-          txnContext.start();
-          txnContext.setState( "Read" );
-
-          // Read a frame into the given context (source frame)
-          DataFrame retval = reader.read( txnContext );
-
-          // Sometimes readers read empty lines and the like, skip null dataframes
-          if ( retval != null ) {
-
-            // Set the returned dataframe into the transaction context
-            txnContext.setSourceFrame( retval );
-            getContext().setRow( ++currentFrameNumber );
-            getContext().getSymbols().put( Symbols.CURRENT_FRAME, currentFrameNumber );
-            getContext().getSymbols().put( Symbols.LAST_FRAME, txnContext.isLastFrame() );
-
-            // fire the read event in all the listeners
-            txnContext.fireRead( txnContext, reader );
-
-            // ...pass it through the filters...
-            txnContext.setState( "Filter" );
-            for ( FrameFilter filter : filters ) {
-              if ( filter.isEnabled() ) {
-                if ( !filter.process( txnContext ) ) {
-                  // filter signaled to discontinue filter checks (early exit)
-                  break;
-                }
-                if ( txnContext.getWorkingFrame() == null ) {
-                  // no need to continue, the working record was removed from 
-                  // the transaction context
-                  break;
-                }
-              }
-            }
-
-            // If the working frame did not get filtered out...
-            if ( txnContext.getWorkingFrame() != null ) {
-
-              // pass it through the validation rules - errors are logged
-              txnContext.setState( "Validate" );
-              boolean passed = true;
-              for ( FrameValidator validator : validators ) {
-                try {
-                  if ( !validator.process( txnContext ) ) {
-                    passed = false;
-                  }
-                } catch ( ValidationException e ) {
-                  txnContext.setError( e.getMessage() );
-                }
-              }
-
-              // if there were validation errors
-              if ( !passed ) {
-                getContext().fireFrameValidationFailed( txnContext );
-              }
-
-              if ( txnContext.isNotInError() ) {
-
-                txnContext.setState( "Transform" );
-                // Pass the working frame through the transformers
-                for ( FrameTransform transformer : transformers ) {
-                  try {
-                    // Have the transformer process the frame
-                    DataFrame resultFrame = transformer.process( txnContext.getWorkingFrame() );
-
-                    // place the results of the transformation in the context
-                    txnContext.setWorkingFrame( resultFrame );
-
-                  } catch ( Exception e ) {
-                    // catch any manner of transformation exception
-                    txnContext.setError( e.getMessage() );
-                  }
-                }
-
-                // Pass it through the mapper - only the required fields should 
-                // exist in the target frame after the mapper is done.
-                if ( txnContext.isNotInError() ) {
-
-                  // We need to create a target frame into which the mapper will 
-                  // place fields...
-                  if ( txnContext.getTargetFrame() == null ) {
-                    txnContext.setTargetFrame( new DataFrame() );
-                  }
-
-                  txnContext.setState( "Map" );
-
-                  // Map / Move fields from the working to the target frame
-                  try {
-                    mapper.process( txnContext );
-                  } catch ( MappingException e ) {
-                    txnContext.setError( e.getMessage() );
-                  }
-                }
-
-                // It is possible that a transform has been configured to simply
-                // read and validate data so the writer may be null
-                if ( txnContext.isNotInError() && writers.size() > 0 ) {
-                  txnContext.setState( "Write" );
-                  // Pass the frame to all the writers
-                  for ( FrameWriter writer : writers ) {
-                    try {
-                      // Write the target (new) frame
-                      writer.write( txnContext.getTargetFrame() );
-                      txnContext.fireWrite( txnContext, writer );
-                    } catch ( Exception e ) {
-                      Log.error( LogMsg.createMsg( CDX.MSG, "Engine.write_error", e.getClass().getSimpleName(), e.getMessage(), ExceptionUtil.stackTrace( e ) ) );
-                      txnContext.setError( e.getMessage() );
-                    }
-                  }
-                }
-
-              } // passed validators
-
-            } // passed filters
-
-            // Now end the transaction which should fire any listeners in the 
-            // context to record the transaction if so configured
-            txnContext.end();
-
-            if ( txnContext.isInError() ) {
-              transactionErrors++;
-            }
-
-          } // if something was read in
-
-        } // Reader !eof and context is without error
+        transactionErrors = processFrames();
 
       } // transformContext ! err after pre-processing
 
@@ -546,6 +410,240 @@ public abstract class AbstractTransformEngine extends AbstractConfigurableCompon
 
 
 
+  /**
+   * Loop through all data read in by the reader until EOF or an error in the 
+   * transform context occurs, passing each frame through the filter, 
+   * validate, transform, map and write stages on the current thread.
+   * 
+   * <p>Subclasses may override this to schedule the stages differently (e.g. 
+   * across threads) but should use the stage methods of this class so each 
+   * transaction sees the same events in the same order.</p>
+   * 
+   * @return the number of transactions which ended in error
+   */
+  protected long processFrames() {
+    long transactionErrors = 0;
+    while ( getContext().isNotInError() && reader != null && !reader.eof() ) {
+
+      // Read a frame into a new transaction context
+      TransactionContext txnContext = readTransaction();
+
+      // Sometimes readers read empty lines and the like, skip null dataframes
+      if ( txnContext != null ) {
+        processTransaction( txnContext );
+        writeTransaction( txnContext );
+
+        // Now end the transaction which should fire any listeners in the 
+        // context to record the transaction if so configured
+        txnContext.end();
+
+        if ( txnContext.isInError() ) {
+          transactionErrors++;
+        }
+      }
+    }
+    return transactionErrors;
+  }
+
+
+
+
+  /**
+   * Read the next frame from the reader into a new transaction context.
+   * 
+   * <p>The transaction is started, placed in the transform context as the 
+   * current transaction and the read event is fired.</p>
+   * 
+   * @return the transaction containing the source frame or null if the 
+   *         reader returned no frame, in which case the transaction is not 
+   *         ended.
+   */
+  protected TransactionContext readTransaction() {
+
+    // Create a new Transaction context with the list of listeners to react 
+    // to events in the transaction.
+    TransactionContext txnContext = new TransactionContext( getContext() );
+    // place a reference to the transaction in the transform context
+    getContext().setTransaction( txnContext );
+
+    // Place a component in the Templates to give them access to all the data
+    // in the contexts and advanced functions. It always reads the current 
+    // transaction so it only needs replacing when the context changes.
+    if ( templateAccess == null || templateAccess.context != getContext() ) {
+      templateAccess = new TemplateAccess( getContext() );
+    }
+    if ( Template.get( "Context" ) != templateAccess ) {
+      Template.put( "Context", templateAccess );
+    }
+
+    // Start the clock and fire event listeners for the beginning of the
+    // transaction
+    txnContext.start();
+    txnContext.setState( "Read" );
+
+    // Read a frame into the given context (source frame)
+    DataFrame retval = reader.read( txnContext );
+
+    if ( retval == null ) {
+      return null;
+    }
+
+    // Set the returned dataframe into the transaction context
+    txnContext.setSourceFrame( retval );
+    txnContext.setRow( ++currentFrameNumber );
+    getContext().setRow( currentFrameNumber );
+    publishFrame( txnContext );
+
+    // fire the read event in all the listeners
+    txnContext.fireRead( txnContext, reader );
+
+    return txnContext;
+  }
+
+
+
+
+  /**
+   * Make the number and last frame flag of a frame just read available to 
+   * templates.
+   * 
+   * <p>This places them in the symbol table of the transform context. 
+   * Engines processing several frames at once must not do this; they bind 
+   * the transaction to the thread instead so its symbols are read from the 
+   * transaction.</p>
+   * 
+   * @param txnContext the transaction holding the frame just read
+   */
+  protected void publishFrame( TransactionContext txnContext ) {
+    getContext().getSymbols().put( Symbols.CURRENT_FRAME, txnContext.getRow() );
+    getContext().getSymbols().put( Symbols.LAST_FRAME, txnContext.isLastFrame() );
+  }
+
+
+
+
+  /**
+   * Pass the working frame of the given transaction through the filters, 
+   * validators, transformers and the mapper.
+   * 
+   * <p>When this returns, the transaction either has no working frame 
+   * (filtered out), is in error or contains the target frame to write.</p>
+   * 
+   * @param txnContext the transaction to process
+   */
+  protected void processTransaction( TransactionContext txnContext ) {
+
+    // ...pass it through the filters...
+    txnContext.setState( "Filter" );
+    for ( FrameFilter filter : filters ) {
+      if ( filter.isEnabled() ) {
+        if ( !filter.process( txnContext ) ) {
+          // filter signaled to discontinue filter checks (early exit)
+          break;
+        }
+        if ( txnContext.getWorkingFrame() == null ) {
+          // no need to continue, the working record was removed from 
+          // the transaction context
+          break;
+        }
+      }
+    }
+
+    // If the working frame got filtered out there is nothing else to do
+    if ( txnContext.getWorkingFrame() == null ) {
+      return;
+    }
+
+    // pass it through the validation rules - errors are logged
+    txnContext.setState( "Validate" );
+    boolean passed = true;
+    for ( FrameValidator validator : validators ) {
+      try {
+        if ( !validator.process( txnContext ) ) {
+          passed = false;
+        }
+      } catch ( ValidationException e ) {
+        txnContext.setError( e.getMessage() );
+      }
+    }
+
+    // if there were validation errors
+    if ( !passed ) {
+      getContext().fireFrameValidationFailed( txnContext );
+    }
+
+    if ( txnContext.isNotInError() ) {
+
+      txnContext.setState( "Transform" );
+      // Pass the working frame through the transformers
+      for ( FrameTransform transformer : transformers ) {
+        try {
+          // Have the transformer process the frame
+          DataFrame resultFrame = transformer.process( txnContext.getWorkingFrame() );
+
+          // place the results of the transformation in the context
+          txnContext.setWorkingFrame( resultFrame );
+
+        } catch ( Exception e ) {
+          // catch any manner of transformation exception
+          txnContext.setError( e.getMessage() );
+        }
+      }
+
+      // Pass it through the mapper - only the required fields should 
+      // exist in the target frame after the mapper is done.
+      if ( txnContext.isNotInError() ) {
+
+        // We need to create a target frame into which the mapper will 
+        // place fields...
+        if ( txnContext.getTargetFrame() == null ) {
+          txnContext.setTargetFrame( new DataFrame() );
+        }
+
+        txnContext.setState( "Map" );
+
+        // Map / Move fields from the working to the target frame
+        try {
+          mapper.process( txnContext );
+        } catch ( MappingException e ) {
+          txnContext.setError( e.getMessage() );
+        }
+      }
+    } // passed validators
+  }
+
+
+
+
+  /**
+   * Pass the target frame of the given transaction to all the writers.
+   * 
+   * <p>Nothing is written if the frame was filtered out (i.e. never mapped 
+   * to a target frame) or the transaction is in error. It is possible that a transform has been configured to 
+   * simply read and validate data so there may be no writers.</p>
+   * 
+   * @param txnContext the transaction to write
+   */
+  protected void writeTransaction( TransactionContext txnContext ) {
+    if ( txnContext.getTargetFrame() != null && txnContext.isNotInError() && writers.size() > 0 ) {
+      txnContext.setState( "Write" );
+      // Pass the frame to all the writers
+      for ( FrameWriter writer : writers ) {
+        try {
+          // Write the target (new) frame
+          writer.write( txnContext.getTargetFrame() );
+          txnContext.fireWrite( txnContext, writer );
+        } catch ( Exception e ) {
+          Log.error( LogMsg.createMsg( CDX.MSG, "Engine.write_error", e.getClass().getSimpleName(), e.getMessage(), ExceptionUtil.stackTrace( e ) ) );
+          txnContext.setError( e.getMessage() );
+        }
+      }
+    }
+  }
+
+
+
+
   /**
    * Retrieves a list of command line arguments as set in the symbol table and 
    * places them in the context.
@@ -25,10 +25,16 @@ public class ConfigTag {
 
   public static final String AUTO_ADJUST = "autoadjust";
   public static final String AUTO_CREATE = "autocreate";
+  public static final String AUTO_COMMIT = "autocommit";
   /** Batch size ({@value}) configuration attribute. */
   public static final String BATCH = "batch";
+  public static final String BULK = "bulk";
   public static final String CLASS = "class";
+  public static final String COLUMNS = "columns";
+  public static final String COMMIT_INTERVAL = "commitinterval";
+  public static final String COMPACT = "compact";
   public static final String DRIVER = "driver";
+  public static final String FETCH_SIZE = "fetchsize";
   public static final String FIELDS = "fields";
   public static final String FORMAT = "format";
   public static final String INDENT = "indent";
@@ -79,6 +85,11 @@ public class ConfigTag {
   public static final String MESSAGE = "Message";
   public static final String DELIMITER = "Delimiter";
   public static final String SELECTOR = "Selector";
+  public static final String PREFETCH = "Prefetch";
+  public static final String CONSUME = "Consume";
+  public static final String CONFIRM = "Confirm";
+  public static final String INTERVAL = "interval";
+  public static final String TIMEOUT = "timeout";
 
 
   // Networking proxy tags used by several components
@@ -114,6 +125,14 @@ public class ConfigTag {
   public static final String CATEGORIES = "categories";
   public static final String CATEGORY = "category";
   public static final String ENABLED = "enabled";
+  public static final String PIPELINE = "pipeline";
+  public static final String THREADS = "threads";
+  public static final String CAPACITY = "capacity";
+  public static final String ORDERED = "ordered";
+  public static final String PARTITIONS = "partitions";
+  public static final String SPLIT_COLUMN = "splitcolumn";
+  public static final String SPLIT_MODE = "splitmode";
+  public static final String CHUNK_SIZE = "chunksize";
 
   // Tasks
 
@@ -126,6 +145,8 @@ public class ConfigTag {
   public static final String FILE = "filename";
   public static final String DIRECTORY = "directory";
   public static final String APPEND = "append";
+  public static final String CHANNELS = "channels";
+  public static final String RESUME = "resume";
 
   // Validations
 
@@ -134,6 +155,8 @@ public class ConfigTag {
   public static final String AVOID = "avoid";
   public static final String HALT_ON_FAIL = "halt";
   public static final String DESCRIPTION = "desc";
+  public static final String BUDGET = "budget";
+  public static final String EXPECTED = "expected";
 
   // Scheduler
 
@@ -146,9 +169,23 @@ public class ConfigTag {
   public static final String MILLIS = "millis";
   public static final String SECONDS = "seconds";
 
+  // Profiling
+
+  public static final String EXACT_LIMIT = "exactlimit";
+  public static final String PRECISION = "precision";
+  public static final String TOP = "top";
+
+  // File output
+
+  public static final String BUFFER = "buffer";
+  public static final String COMPRESSION = "compression";
+  public static final String ROTATE_SIZE = "rotatesize";
+  public static final String ROTATE_ROWS = "rotaterows";
+
   // Manager
 
   public static final String IPACL = "IpACL";
   public static final String FREQUENCY = "Frequency";
+  public static final String EXECUTOR = "Executor";
   
 }
@@ -0,0 +1,407 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under the 
+ * terms of the MIT License which accompanies this distribution, and is 
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote 
+ *      - Initial concept and implementation
+ */
+package coyote.dx;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import coyote.dx.context.TransactionContext;
+import coyote.loader.log.Log;
+
+
+/**
+ * A transform engine which processes frames in a pipeline of threads.
+ *
+ * <p>The thread running the engine reads frames and places each transaction
+ * in a bounded queue. A configurable number of worker threads take
+ * transactions from that queue and pass them through the filters,
+ * validators, transformers and mapper in parallel. A single writer thread
+ * then passes the results to the writers and ends each transaction, either
+ * in the order the frames were read (the default) or in the order they
+ * complete.</p>
+ *
+ * <p>Each transaction still sees its events in the same order as in the
+ * {@link DefaultTransformEngine}: start, read, validation, write and end.
+ * The transaction is bound to the thread processing it so components
+ * resolving values and templates through the transform context see their own
+ * frame, frame number and last frame flag; the shared symbol table is not
+ * updated for each frame.
+ * Filters, validators, transformers, the mapper and listeners will be called
+ * from several threads at once and therefore must be thread-safe; readers
+ * and writers are only ever called from a single thread.</p>
+ *
+ * <p>This engine is selected by adding a "Pipeline" section to the job:<pre>
+ * "Pipeline" : {
+ *     "threads" : 8,
+ *     "capacity" : 1024,
+ *     "ordered" : true
+ * }</pre>
+ * "threads" is the number of worker threads (defaults to the number of
+ * processors), "capacity" is the maximum number of frames in flight between
+ * the reader and the writer and "ordered" controls whether frames are
+ * written in the order they were read.</p>
+ */
+public class PipelinedTransformEngine extends AbstractTransformEngine implements TransformEngine {
+
+  /** The default number of frames which may be in flight at once */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  /** Marks the end of the work in the queues */
+  private static final Slot END = new Slot( -1, null );
+
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private int capacity = DEFAULT_CAPACITY;
+  private boolean ordered = true;
+
+
+
+
+  public PipelinedTransformEngine() {}
+
+
+
+
+  /**
+   * @return the number of threads processing frames between the reader and
+   *         the writers
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+
+
+
+  /**
+   * @param count the number of threads to process frames between the reader
+   *        and the writers, must be greater than zero
+   */
+  public void setThreads( int count ) {
+    if ( count < 1 ) {
+      throw new IllegalArgumentException( "Pipeline thread count must be greater than zero" );
+    }
+    threads = count;
+  }
+
+
+
+
+  /**
+   * @return the maximum number of frames in flight between the reader and
+   *         the writers
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+
+
+
+  /**
+   * @param size the maximum number of frames in flight between the reader
+   *        and the writers, must be greater than zero
+   */
+  public void setCapacity( int size ) {
+    if ( size < 1 ) {
+      throw new IllegalArgumentException( "Pipeline capacity must be greater than zero" );
+    }
+    capacity = size;
+  }
+
+
+
+
+  /**
+   * @return true if frames are written in the order they were read, false if
+   *         they are written as soon as they are processed
+   */
+  public boolean isOrdered() {
+    return ordered;
+  }
+
+
+
+
+  /**
+   * @param flag true to write frames in the order they were read, false to
+   *        write them as soon as they are processed
+   */
+  public void setOrdered( boolean flag ) {
+    ordered = flag;
+  }
+
+
+
+
+  /**
+   * Read frames on this thread, process them on the worker threads and write
+   * them on the writer thread.
+   *
+   * <p>Reading stops when the reader reaches EOF or the transform context
+   * enters an error state; frames already in flight are still completed.</p>
+   *
+   * @see coyote.dx.AbstractTransformEngine#processFrames()
+   */
+  @Override
+  protected long processFrames() {
+    // the in-flight limit keeps both queues from ever filling, even when the
+    // end of the work is added for each worker
+    final BlockingQueue<Slot> workQueue = new ArrayBlockingQueue<Slot>( capacity + threads );
+    final BlockingQueue<Slot> doneQueue = new ArrayBlockingQueue<Slot>( capacity + threads );
+    final Semaphore inflight = new Semaphore( capacity );
+
+    Log.debug( "Engine '" + getName() + "' pipelining frames; threads=" + threads + " capacity=" + capacity + " ordered=" + ordered );
+
+    Thread[] workers = new Thread[threads];
+    for ( int x = 0; x < workers.length; x++ ) {
+      workers[x] = new Thread( new Worker( workQueue, doneQueue ), getName() + "-Worker-" + x );
+      workers[x].setDaemon( true );
+      workers[x].start();
+    }
+
+    StageWriter stageWriter = new StageWriter( doneQueue, inflight );
+    Thread writerThread = new Thread( stageWriter, getName() + "-Writer" );
+    writerThread.setDaemon( true );
+    writerThread.start();
+
+    long sequence = 0;
+    try {
+      while ( getContext().isNotInError() && reader != null && !reader.eof() ) {
+        // frames stop completing if the workers fail, so keep checking for 
+        // the error rather than waiting forever
+        if ( !inflight.tryAcquire( 100, TimeUnit.MILLISECONDS ) ) {
+          continue;
+        }
+        TransactionContext txnContext = readTransaction();
+        if ( txnContext != null ) {
+          workQueue.put( new Slot( sequence++, txnContext ) );
+        } else {
+          inflight.release();
+        }
+      }
+    } catch ( InterruptedException e ) {
+      getContext().setError( "Pipeline interrupted while reading" );
+      Thread.currentThread().interrupt();
+    }
+    finally {
+      getContext().bindTransaction( null );
+      // always let the stages drain so their threads terminate
+      for ( int x = 0; x < workers.length; x++ ) {
+        putUninterruptibly( workQueue, END );
+      }
+      joinUninterruptibly( writerThread );
+    }
+
+    return stageWriter.errors;
+  }
+
+
+
+
+  /**
+   * Bind the transaction just read to the reading thread so the read 
+   * listeners see its frame symbols without them being placed in the symbol
+   * table shared by the other stages.
+   * 
+   * @see coyote.dx.AbstractTransformEngine#publishFrame(coyote.dx.context.TransactionContext)
+   */
+  @Override
+  protected void publishFrame( TransactionContext txnContext ) {
+    getContext().bindTransaction( txnContext );
+  }
+
+
+
+
+  private static void putUninterruptibly( BlockingQueue<Slot> queue, Slot slot ) {
+    boolean interrupted = false;
+    while ( true ) {
+      try {
+        queue.put( slot );
+        break;
+      } catch ( InterruptedException e ) {
+        interrupted = true;
+      }
+    }
+    if ( interrupted ) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+
+
+
+  private static void joinUninterruptibly( Thread thread ) {
+    boolean interrupted = false;
+    while ( thread.isAlive() ) {
+      try {
+        thread.join();
+      } catch ( InterruptedException e ) {
+        interrupted = true;
+      }
+    }
+    if ( interrupted ) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+
+
+
+  /**
+   * A transaction and its position in the read order.
+   */
+  private static class Slot {
+    final long sequence;
+    final TransactionContext transaction;
+
+
+
+
+    Slot( long sequence, TransactionContext txn ) {
+      this.sequence = sequence;
+      this.transaction = txn;
+    }
+  }
+
+
+
+
+  /**
+   * Filters, validates, transforms and maps transactions.
+   */
+  private class Worker implements Runnable {
+    private final BlockingQueue<Slot> input;
+    private final BlockingQueue<Slot> output;
+
+
+
+
+    Worker( BlockingQueue<Slot> input, BlockingQueue<Slot> output ) {
+      this.input = input;
+      this.output = output;
+    }
+
+
+
+
+    @Override
+    public void run() {
+      while ( true ) {
+        Slot slot;
+        try {
+          slot = input.take();
+        } catch ( InterruptedException e ) {
+          // we own this thread; nothing should interrupt it
+          continue;
+        }
+        if ( slot == END ) {
+          putUninterruptibly( output, END );
+          return;
+        }
+        getContext().bindTransaction( slot.transaction );
+        try {
+          processTransaction( slot.transaction );
+        } catch ( RuntimeException e ) {
+          slot.transaction.setError( e.getMessage() );
+        } catch ( Error e ) {
+          // the writer waits for every slot and END, so pass them on before
+          // this thread dies
+          slot.transaction.setError( e.toString() );
+          getContext().setError( "Pipeline worker failed: " + e.toString() );
+          putUninterruptibly( output, slot );
+          putUninterruptibly( output, END );
+          throw e;
+        }
+        finally {
+          getContext().bindTransaction( null );
+        }
+        putUninterruptibly( output, slot );
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Writes and ends transactions, optionally restoring the read order.
+   */
+  private class StageWriter implements Runnable {
+    private final BlockingQueue<Slot> input;
+    private final Semaphore inflight;
+    private final Map<Long, Slot> pending = new HashMap<Long, Slot>();
+    private long next = 0;
+    volatile long errors = 0;
+
+
+
+
+    StageWriter( BlockingQueue<Slot> input, Semaphore inflight ) {
+      this.input = input;
+      this.inflight = inflight;
+    }
+
+
+
+
+    @Override
+    public void run() {
+      int finished = 0;
+      while ( finished < threads ) {
+        Slot slot;
+        try {
+          slot = input.take();
+        } catch ( InterruptedException e ) {
+          // we own this thread; nothing should interrupt it
+          continue;
+        }
+        if ( slot == END ) {
+          finished++;
+        } else if ( ordered ) {
+          pending.put( slot.sequence, slot );
+          while ( ( slot = pending.remove( next ) ) != null ) {
+            complete( slot.transaction );
+            next++;
+          }
+        } else {
+          complete( slot.transaction );
+        }
+      }
+    }
+
+
+
+
+    private void complete( TransactionContext txnContext ) {
+      getContext().bindTransaction( txnContext );
+      try {
+        writeTransaction( txnContext );
+        txnContext.end();
+      } catch ( RuntimeException e ) {
+        txnContext.setError( e.getMessage() );
+      }
+      finally {
+        getContext().bindTransaction( null );
+        inflight.release();
+      }
+      if ( txnContext.isInError() ) {
+        errors++;
+      }
+    }
+  }
+
+}
@@ -26,6 +26,7 @@ import coyote.loader.cfg.Config;
 import coyote.loader.cfg.ConfigurationException;
 import coyote.loader.log.Log;
 import coyote.loader.log.LogMsg;
+import coyote.loader.thread.Scheduler;
 
 
 /**
@@ -183,7 +184,9 @@ public class Service extends AbstractBatchLoader implements Loader {
     }
 
     Log.debug( "Loaded " + super.components.size() + " components" );
-    Log.append( Log.getCode( "SCHEDULER" ), "Initialized Scheduler:\r\n" + getScheduler().dump() );
+    if ( Log.isLogging( Scheduler.SCHED ) ) {
+      Log.append( Scheduler.SCHED, "Initialized Scheduler:\r\n" + getScheduler().dump() );
+    }
 
     // for all the loaded components find the ones representing Jobs and run them in the scheduler.
     synchronized( components ) {
@@ -205,7 +208,9 @@ public class Service extends AbstractBatchLoader implements Loader {
         }
       }
     }
-    Log.append( Log.getCode( "SCHEDULER" ), "Initialized Scheduled Jobs:\r\n" + getScheduler().dump() );
+    if ( Log.isLogging( Scheduler.SCHED ) ) {
+      Log.append( Scheduler.SCHED, "Initialized Scheduled Jobs:\r\n" + getScheduler().dump() );
+    }
   }
 
 
@@ -128,7 +128,12 @@ public class TransformEngineFactory {
 
     if ( frame != null ) {
 
-      retval = new DefaultTransformEngine();
+      DataField pipeline = frame.getFieldIgnoreCase( ConfigTag.PIPELINE );
+      if ( pipeline != null && pipeline.isFrame() ) {
+        retval = createPipelinedEngine( new Config( (DataFrame)pipeline.getObjectValue() ) );
+      } else {
+        retval = new DefaultTransformEngine();
+      }
 
       for ( DataField field : frame.getFields() ) {
 
@@ -222,6 +227,10 @@ public class TransformEngineFactory {
           if ( !field.isFrame() ) {
             Log.error( "Invalid Schedule section - expecting complex type" );
           }
+        } else if ( ConfigTag.PIPELINE.equalsIgnoreCase( field.getName() ) ) {
+          if ( !field.isFrame() ) {
+            Log.error( "Invalid Pipeline section - expecting complex type" );
+          }
         } else {
           Log.debug( LogMsg.createMsg( CDX.MSG, "EngineFactory.unrecognized_configuration_section", field.getName() ) );
         }
@@ -236,6 +245,46 @@ public class TransformEngineFactory {
 
 
 
+  /**
+   * Create an engine which processes frames in a pipeline of threads.
+   * 
+   * @param cfg the pipeline section of the job configuration
+   * 
+   * @return an engine configured with the given pipeline settings
+   */
+  private static TransformEngine createPipelinedEngine( Config cfg ) {
+    PipelinedTransformEngine retval = new PipelinedTransformEngine();
+
+    if ( cfg.containsIgnoreCase( ConfigTag.THREADS ) ) {
+      try {
+        retval.setThreads( cfg.getInt( ConfigTag.THREADS ) );
+      } catch ( IllegalArgumentException e ) {
+        Log.error( "Invalid Pipeline threads value - " + e.getMessage() );
+      }
+    }
+
+    if ( cfg.containsIgnoreCase( ConfigTag.CAPACITY ) ) {
+      try {
+        retval.setCapacity( cfg.getInt( ConfigTag.CAPACITY ) );
+      } catch ( IllegalArgumentException e ) {
+        Log.error( "Invalid Pipeline capacity value - " + e.getMessage() );
+      }
+    }
+
+    if ( cfg.containsIgnoreCase( ConfigTag.ORDERED ) ) {
+      try {
+        retval.setOrdered( cfg.getBoolean( ConfigTag.ORDERED ) );
+      } catch ( IllegalArgumentException e ) {
+        Log.error( "Invalid Pipeline ordered value - " + e.getMessage() );
+      }
+    }
+
+    return retval;
+  }
+
+
+
+
   /**
    * Use the given configuration frame to add validators to the engine.
    *  
@@ -467,7 +516,7 @@ public class TransformEngineFactory {
       TransformContext context = engine.getContext();
 
       if ( context == null ) {
-        if ( cfg.contains( ConfigTag.CLASS ) ) {
+        if ( cfg.containsIgnoreCase( ConfigTag.CLASS ) ) {
           String className = cfg.getAsString( ConfigTag.CLASS );
           if ( className != null && StringUtil.countOccurrencesOf( className, "." ) < 1 ) {
             className = OperationalContext.class.getPackage().getName() + "." + className;
@@ -18,4 +18,32 @@ public class TransformException extends Exception {
 
   private static final long serialVersionUID = -2907145890425653296L;
 
+
+
+
+  public TransformException() {
+    super();
+  }
+
+
+
+
+  /**
+   * @param message
+   */
+  public TransformException( final String message ) {
+    super( message );
+  }
+
+
+
+
+  /**
+   * @param message
+   * @param newNested
+   */
+  public TransformException( final String message, final Throwable newNested ) {
+    super( message, newNested );
+  }
+
 }
@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2017 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote
+ *      - Initial concept and implementation
+ */
+package coyote.dx.context;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import coyote.dataframe.DataField;
+import coyote.dataframe.DataFrame;
+import coyote.dataframe.DecodeException;
+import coyote.dx.ConfigTag;
+import coyote.loader.log.Log;
+
+
+/**
+ * This context is persisted to the file system in the DataFrame wire format.
+ *
+ * <p>The {@link FileContext} rewrites the whole context as formatted JSON at
+ * the end of every run which becomes expensive when a job keeps large run
+ * histories or watermark tables in its context. This context keeps a binary
+ * snapshot of the context ({@code context.dat}) and appends only the fields
+ * which changed during the run to a log ({@code context.log}). When the
+ * context is opened, the snapshot is read and the log replayed over it.</p>
+ *
+ * <p>The log is periodically compacted into a new snapshot; when it holds the
+ * number of records set in the {@code compact} configuration attribute
+ * (default 32) or grows larger than the snapshot itself. Snapshots are written
+ * to a temporary file and renamed over the previous snapshot so a failure
+ * while writing never leaves a partial snapshot behind. Each snapshot carries
+ * a generation number which the log must match, so a log left behind by an
+ * interrupted compaction is never replayed over the newer snapshot.</p>
+ *
+ * <p>If neither the snapshot nor the log exist, but a {@code context.json}
+ * written by the {@link FileContext} does, it is read and written as the
+ * first snapshot. The JSON file is left in place, but is ignored from then
+ * on.</p>
+ */
+public class BinaryFileContext extends PersistentContext {
+  static final String FILENAME = "context.dat";
+  static final String LOGNAME = "context.log";
+  private static final int DEFAULT_COMPACT = 32;
+
+  File contextFile = null;
+  File logFile = null;
+
+  /** The last persisted field for each key, used to determine what changed */
+  private final Map<String, DataField> state = new LinkedHashMap<String, DataField>();
+  private long generation = 0;
+  private int logRecords = 0;
+  private boolean compactionRequired = false;
+
+
+
+
+  public BinaryFileContext() {}
+
+
+
+
+  /**
+   * @see coyote.dx.context.TransformContext#open()
+   */
+  @Override
+  public void open() {
+    File directory = engine.getJobDirectory();
+    contextFile = new File( directory, FILENAME );
+    logFile = new File( directory, LOGNAME );
+    state.clear();
+    generation = 0;
+    logRecords = 0;
+    compactionRequired = false;
+
+    if ( contextFile.exists() ) {
+      Log.debug( "Reading context from " + contextFile.getAbsolutePath() );
+      readSnapshot();
+    } else if ( !logFile.exists() ) {
+      File jsonFile = new File( directory, FileContext.FILENAME );
+      if ( jsonFile.exists() ) {
+        Log.info( "Migrating context from " + jsonFile.getAbsolutePath() );
+        DataFrame frame = FileContext.read( jsonFile );
+        if ( frame != null ) {
+          for ( DataField field : frame.getFields() ) {
+            state.put( field.getName(), field );
+          }
+        }
+        compactionRequired = true;
+      }
+    }
+
+    if ( logFile.exists() ) {
+      replayLog();
+    }
+
+    // fill the context with data previously persisted (if any)
+    for ( DataField field : state.values() ) {
+      set( field.getName(), field.getObjectValue() );
+    }
+
+    incrementRunCount();
+
+    setPreviousRunDate();
+
+    // now resolve our configuration
+    super.open();
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.context.TransformContext#close()
+   */
+  @Override
+  public void close() {
+    super.close();
+
+    DataFrame frame = toFrame();
+
+    // only the fields which changed are appended to the log
+    DataFrame delta = new DataFrame();
+    Set<String> names = new HashSet<String>();
+    for ( DataField field : frame.getFields() ) {
+      names.add( field.getName() );
+      DataField previous = state.get( field.getName() );
+      if ( previous == null || !Arrays.equals( previous.getBytes(), field.getBytes() ) ) {
+        delta.add( field );
+      }
+    }
+
+    // removed fields are recorded as nulls
+    for ( String name : state.keySet() ) {
+      if ( !names.contains( name ) ) {
+        delta.add( name, null );
+      }
+    }
+
+    try {
+      if ( compactionRequired || logRecords + 1 >= getCompactThreshold() || logFile.length() + delta.getEncodedSize() > contextFile.length() ) {
+        compact( frame );
+      } else if ( delta.getFieldCount() > 0 ) {
+        append( delta );
+      }
+    } catch ( IOException e ) {
+      Log.error( "Could not persist context to " + contextFile.getParentFile().getAbsolutePath() + ": " + e.getClass().getSimpleName() + " - " + e.getMessage() );
+    }
+
+    state.clear();
+    for ( DataField field : frame.getFields() ) {
+      state.put( field.getName(), field );
+    }
+  }
+
+
+
+
+  /**
+   * @return the number of log records which triggers the compaction of the
+   *         log into a new snapshot.
+   */
+  private int getCompactThreshold() {
+    if ( configuration != null && configuration.containsIgnoreCase( ConfigTag.COMPACT ) ) {
+      try {
+        return Math.max( 1, configuration.getInt( ConfigTag.COMPACT ) );
+      } catch ( NumberFormatException e ) {
+        Log.warn( "Invalid " + ConfigTag.COMPACT + " value, using default of " + DEFAULT_COMPACT );
+      }
+    }
+    return DEFAULT_COMPACT;
+  }
+
+
+
+
+  /**
+   * Read the generation and the fields of the current snapshot.
+   */
+  private void readSnapshot() {
+    try (DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( contextFile ) ) )) {
+      generation = in.readLong();
+      byte[] data = new byte[(int)contextFile.length() - 8];
+      in.readFully( data );
+      for ( DataField field : new DataFrame( data ).getFields() ) {
+        state.put( field.getName(), field );
+      }
+    } catch ( IOException | DecodeException e ) {
+      Log.warn( "Could not load context: " + e.getClass().getSimpleName() + " - " + e.getMessage() );
+      state.clear();
+      compactionRequired = true;
+    }
+  }
+
+
+
+
+  /**
+   * Apply each of the records in the log to the state read from the snapshot.
+   *
+   * <p>A log written for another generation of the snapshot is ignored. A
+   * truncated or corrupt record ends the replay; everything read up to that
+   * point is kept and the next close will write a clean snapshot.</p>
+   */
+  private void replayLog() {
+    try (DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( logFile ) ) )) {
+      long logGeneration = in.readLong();
+      if ( logGeneration != generation ) {
+        Log.warn( "Ignoring context log for generation " + logGeneration + ", snapshot is generation " + generation );
+        compactionRequired = true;
+        return;
+      }
+
+      long remaining = logFile.length() - 8;
+      while ( remaining > 0 ) {
+        int length = in.readInt();
+        remaining -= 4;
+        if ( length < 0 || length > remaining ) {
+          throw new EOFException( "truncated record" );
+        }
+        byte[] data = new byte[length];
+        in.readFully( data );
+        remaining -= length;
+
+        for ( DataField field : new DataFrame( data ).getFields() ) {
+          if ( field.isNull() ) {
+            state.remove( field.getName() );
+          } else {
+            state.put( field.getName(), field );
+          }
+        }
+        logRecords++;
+      }
+    } catch ( IOException | DecodeException e ) {
+      Log.warn( "Context log read incomplete after " + logRecords + " records: " + e.getClass().getSimpleName() + " - " + e.getMessage() );
+      compactionRequired = true;
+    }
+  }
+
+
+
+
+  /**
+   * Append the given changes to the log, starting a new log if necessary.
+   *
+   * @param delta the changed fields to append
+   *
+   * @throws IOException if the log could not be written
+   */
+  private void append( DataFrame delta ) throws IOException {
+    boolean create = !logFile.exists();
+    try (FileOutputStream fos = new FileOutputStream( logFile, true )) {
+      DataOutputStream out = new DataOutputStream( fos );
+      if ( create ) {
+        out.writeLong( generation );
+      }
+      byte[] data = delta.getBytes();
+      out.writeInt( data.length );
+      out.write( data );
+      out.flush();
+      fos.getFD().sync();
+    }
+    logRecords++;
+  }
+
+
+
+
+  /**
+   * Write the given frame as the next generation of the snapshot and remove
+   * the log it replaces.
+   *
+   * @param frame the complete context to write
+   *
+   * @throws IOException if the snapshot could not be written
+   */
+  private void compact( DataFrame frame ) throws IOException {
+    File tempFile = new File( contextFile.getParentFile(), FILENAME + ".tmp" );
+    try (FileOutputStream fos = new FileOutputStream( tempFile )) {
+      DataOutputStream out = new DataOutputStream( fos );
+      out.writeLong( generation + 1 );
+      out.write( frame.getBytes() );
+      out.flush();
+      fos.getFD().sync();
+    }
+
+    try {
+      Files.move( tempFile.toPath(), contextFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+    } catch ( AtomicMoveNotSupportedException e ) {
+      Files.move( tempFile.toPath(), contextFile.toPath(), StandardCopyOption.REPLACE_EXISTING );
+    }
+    generation++;
+
+    // the log is now stale as its generation no longer matches the snapshot
+    logFile.delete();
+    logRecords = 0;
+    compactionRequired = false;
+    Log.debug( "Compacted context into " + contextFile.getAbsolutePath() + " generation " + generation );
+  }
+
+}
@@ -12,8 +12,6 @@
 package coyote.dx.context;
 
 import java.io.File;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.List;
 
 import coyote.commons.FileUtil;
@@ -22,10 +20,7 @@ import coyote.dataframe.DataField;
 import coyote.dataframe.DataFrame;
 import coyote.dataframe.marshal.JSONMarshaler;
 import coyote.dataframe.marshal.MarshalException;
-import coyote.dx.CDX;
-import coyote.dx.Symbols;
 import coyote.loader.log.Log;
-import coyote.loader.log.LogMsg;
 
 
 /**
@@ -48,7 +43,7 @@ import coyote.loader.log.LogMsg;
  * their respective transforms being run.
  */
 public class FileContext extends PersistentContext {
-  private static final String FILENAME = "context.json";
+  static final String FILENAME = "context.json";
   File contextFile = null;
 
 
@@ -67,19 +62,12 @@ public class FileContext extends PersistentContext {
 
     contextFile = new File( engine.getJobDirectory(), FILENAME );
     Log.debug( "Reading context from " + contextFile.getAbsolutePath() );
-    String contents = FileUtil.fileToString( contextFile );
 
     // fill the context with data previously persisted to the file (if any)
-    if ( StringUtil.isNotBlank( contents ) ) {
-      try {
-        List<DataFrame> frames = JSONMarshaler.marshal( contents );
-        if ( frames.get( 0 ) != null ) {
-          for ( DataField field : frames.get( 0 ).getFields() ) {
-            set( field.getName(), field.getObjectValue() );
-          }
-        }
-      } catch ( MarshalException e ) {
-        Log.warn( "Could not load context: " + e.getClass().getSimpleName() + " - " + e.getMessage() );
+    DataFrame frame = read( contextFile );
+    if ( frame != null ) {
+      for ( DataField field : frame.getFields() ) {
+        set( field.getName(), field.getObjectValue() );
       }
     }
 
@@ -102,34 +90,37 @@ public class FileContext extends PersistentContext {
     super.close();
 
     // create a data frame to structure our data
-    DataFrame frame = new DataFrame();
-
-    // Add each property in the context to the frame
-    for ( String key : properties.keySet() ) {
-      try {
-        frame.add( key, properties.get( key ) );
-      } catch ( Exception e ) {
-        Log.debug( "Cannot persist property '" + key + "' - " + e.getMessage() );
-      }
-    }
-
-    // add the current value of the run counter
-    frame.put( Symbols.RUN_COUNT, runcount );
-
-    // Save the current run date
-    Object rundate = get( Symbols.DATETIME );
-    if ( rundate != null ) {
-      // it should be a date reference
-      if ( rundate instanceof Date ) {
-        // format it in the default format
-        frame.put( Symbols.PREVIOUS_RUN_DATETIME, new SimpleDateFormat( CDX.DEFAULT_DATETIME_FORMAT ).format( (Date)rundate ) );
-      } else {
-        Log.warn( LogMsg.createMsg( CDX.MSG, "Context.run_date_reset", rundate ) );
-      }
-    }
+    DataFrame frame = toFrame();
 
     // write the context to disk using JSON 
     FileUtil.stringToFile( JSONMarshaler.toFormattedString( frame ), contextFile.getAbsolutePath() );
 
   }
+
+
+
+
+  /**
+   * Read the context data from the given JSON file.
+   * 
+   * @param file the file to read
+   * 
+   * @return the first frame in the file or null if the file does not exist, 
+   *         is empty or could not be parsed.
+   */
+  static DataFrame read( File file ) {
+    String contents = FileUtil.fileToString( file );
+    if ( StringUtil.isNotBlank( contents ) ) {
+      try {
+        List<DataFrame> frames = JSONMarshaler.marshal( contents );
+        if ( frames.size() > 0 ) {
+          return frames.get( 0 );
+        }
+      } catch ( MarshalException e ) {
+        Log.warn( "Could not load context: " + e.getClass().getSimpleName() + " - " + e.getMessage() );
+      }
+    }
+    return null;
+  }
+
 }
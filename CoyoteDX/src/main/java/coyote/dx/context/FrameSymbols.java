@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under the 
+ * terms of the MIT License which accompanies this distribution, and is 
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote 
+ *      - Initial concept and implementation
+ */
+package coyote.dx.context;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import coyote.commons.template.SymbolTable;
+import coyote.dx.Symbols;
+
+
+/**
+ * The symbols seen by components processing a single transaction.
+ *
+ * <p>The frame number and last frame flag are read from the transaction
+ * while every other symbol is read from, and written to, the symbol table of
+ * the transform context. This allows several transactions to be processed at
+ * once without each of them updating the shared table with its own frame
+ * symbols.</p>
+ */
+@SuppressWarnings("rawtypes")
+class FrameSymbols extends SymbolTable {
+
+  private static final long serialVersionUID = 2894371583102467201L;
+
+  private final SymbolTable table;
+  private final TransactionContext transaction;
+
+
+
+
+  /**
+   * @param table the symbol table of the transform context
+   * @param transaction the transaction providing the frame symbols
+   */
+  FrameSymbols( SymbolTable table, TransactionContext transaction ) {
+    this.table = table;
+    this.transaction = transaction;
+  }
+
+
+
+
+  private static boolean isFrameSymbol( Object key ) {
+    return Symbols.CURRENT_FRAME.equals( key ) || Symbols.LAST_FRAME.equals( key );
+  }
+
+
+
+
+  /**
+   * @see java.util.HashMap#get(java.lang.Object)
+   */
+  @Override
+  public Object get( Object key ) {
+    if ( Symbols.CURRENT_FRAME.equals( key ) ) {
+      return transaction.getRow();
+    } else if ( Symbols.LAST_FRAME.equals( key ) ) {
+      return transaction.isLastFrame();
+    }
+    synchronized( table ) {
+      return table.get( key );
+    }
+  }
+
+
+
+
+  /**
+   * @see java.util.HashMap#containsKey(java.lang.Object)
+   */
+  @Override
+  public boolean containsKey( Object key ) {
+    if ( isFrameSymbol( key ) ) {
+      return true;
+    }
+    synchronized( table ) {
+      return table.containsKey( key );
+    }
+  }
+
+
+
+
+  /**
+   * @see java.util.HashMap#put(java.lang.Object, java.lang.Object)
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public Object put( Object key, Object value ) {
+    synchronized( table ) {
+      return table.put( key, value );
+    }
+  }
+
+
+
+
+  /**
+   * @see java.util.HashMap#remove(java.lang.Object)
+   */
+  @Override
+  public Object remove( Object key ) {
+    synchronized( table ) {
+      return table.remove( key );
+    }
+  }
+
+
+
+
+  /**
+   * @see coyote.commons.template.SymbolTable#merge(java.util.HashMap)
+   */
+  @Override
+  public void merge( HashMap symbols ) {
+    table.merge( symbols );
+  }
+
+
+
+
+  /**
+   * @return a copy of the names in the shared table and the frame symbols
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public Set keySet() {
+    final Set retval;
+    synchronized( table ) {
+      retval = new HashSet( table.keySet() );
+    }
+    retval.add( Symbols.CURRENT_FRAME );
+    retval.add( Symbols.LAST_FRAME );
+    return retval;
+  }
+
+
+
+
+  /**
+   * @see java.util.HashMap#size()
+   */
+  @Override
+  public int size() {
+    return keySet().size();
+  }
+
+
+
+
+  /**
+   * @see java.util.HashMap#isEmpty()
+   */
+  @Override
+  public boolean isEmpty() {
+    return false;
+  }
+
+}
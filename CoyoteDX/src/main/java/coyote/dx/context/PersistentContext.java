@@ -15,6 +15,7 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 
 import coyote.commons.DateUtil;
+import coyote.dataframe.DataFrame;
 import coyote.dx.CDX;
 import coyote.dx.Symbols;
 import coyote.loader.log.Log;
@@ -123,4 +124,46 @@ public abstract class PersistentContext extends TransformContext {
     Log.debug( "Runcount is " + runcount );
   }
 
+
+
+
+  /**
+   * Create a frame holding everything in this context which is to be 
+   * persisted.
+   * 
+   * <p>This includes the current run count and the date and time of this run 
+   * as the previous run date and time of the next run.</p>
+   * 
+   * @return a frame of all the persistable properties in this context
+   */
+  protected DataFrame toFrame() {
+    DataFrame frame = new DataFrame();
+
+    // Add each property in the context to the frame
+    for ( String key : properties.keySet() ) {
+      try {
+        frame.add( key, properties.get( key ) );
+      } catch ( Exception e ) {
+        Log.debug( "Cannot persist property '" + key + "' - " + e.getMessage() );
+      }
+    }
+
+    // add the current value of the run counter
+    frame.put( Symbols.RUN_COUNT, runcount );
+
+    // Save the current run date
+    Object rundate = get( Symbols.DATETIME );
+    if ( rundate != null ) {
+      // it should be a date reference
+      if ( rundate instanceof Date ) {
+        // format it in the default format
+        frame.put( Symbols.PREVIOUS_RUN_DATETIME, new SimpleDateFormat( CDX.DEFAULT_DATETIME_FORMAT ).format( (Date)rundate ) );
+      } else {
+        Log.warn( LogMsg.createMsg( CDX.MSG, "Context.run_date_reset", rundate ) );
+      }
+    }
+
+    return frame;
+  }
+
 }
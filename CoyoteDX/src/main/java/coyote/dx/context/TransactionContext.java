@@ -11,6 +11,7 @@
  */
 package coyote.dx.context;
 
+import coyote.commons.template.SymbolTable;
 import coyote.dataframe.DataFrame;
 
 
@@ -122,4 +123,53 @@ public class TransactionContext extends OperationalContext {
     lastFrame = isLast;
   }
 
+
+
+
+  /**
+   * @return the number of the frame in this transaction or the current row 
+   *         of the transform context if the frame number has not been set
+   */
+  @Override
+  public long getRow() {
+    return ( currentFrame > 0 ) ? currentFrame : super.getRow();
+  }
+
+
+
+
+  /**
+   * Set the number of the frame in this transaction.
+   * 
+   * <p>Unlike other contexts this does not change the row of the parent 
+   * context so each transaction keeps its own frame number when several are
+   * being processed at once.</p>
+   * 
+   * @param row the number of the frame in the sequence
+   */
+  @Override
+  public void setRow( long row ) {
+    currentFrame = row;
+  }
+
+
+
+
+  /**
+   * Return the symbols for this transaction.
+   * 
+   * <p>These are the symbols of the transform context with the frame number
+   * and last frame flag of this transaction.</p>
+   * 
+   * @return the symbols for this transaction or null if the transform context
+   *         has no symbol table
+   */
+  @Override
+  public synchronized SymbolTable getSymbols() {
+    if ( symbols == null && parent != null && parent.symbols != null ) {
+      symbols = new FrameSymbols( parent.symbols, this );
+    }
+    return symbols;
+  }
+
 }
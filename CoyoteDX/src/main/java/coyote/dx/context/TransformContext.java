@@ -17,6 +17,7 @@ import java.util.List;
 import java.util.Map;
 
 import coyote.commons.StringUtil;
+import coyote.commons.template.SymbolTable;
 import coyote.commons.template.Template;
 import coyote.dataframe.DataField;
 import coyote.dx.Database;
@@ -38,6 +39,9 @@ public class TransformContext extends OperationalContext {
 
   private volatile TransactionContext transactionContext = null;
 
+  /** Transactions bound to threads when frames are processed in parallel */
+  private final ThreadLocal<TransactionContext> boundTransaction = new ThreadLocal<TransactionContext>();
+
   private static final String WORKING = "Working.";
   private static final String SOURCE = "Source.";
   private static final String TARGET = "Target.";
@@ -172,10 +176,77 @@ public class TransformContext extends OperationalContext {
 
 
   /**
-  * @return the current transaction context
+   * Binds the given transaction to the calling thread.
+   * 
+   * <p>Engines which process several transactions at once on different 
+   * threads use this so components resolving values through this context 
+   * see the transaction of the thread on which they are being called and 
+   * not the one most recently read. Passing null removes the binding.</p>
+   * 
+   * @param context the transaction being processed by the calling thread
+   */
+  public void bindTransaction( TransactionContext context ) {
+    if ( context != null ) {
+      boundTransaction.set( context );
+    } else {
+      boundTransaction.remove();
+    }
+  }
+
+
+
+
+  /**
+  * @return the current transaction context; the one bound to the calling 
+  *         thread if there is one
   */
   public TransactionContext getTransaction() {
-    return transactionContext;
+    TransactionContext retval = boundTransaction.get();
+    if ( retval == null ) {
+      retval = transactionContext;
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Return the symbol table for this context.
+   * 
+   * <p>If a transaction is bound to the calling thread, its symbols are 
+   * returned so templates see the frame number and last frame flag of that 
+   * transaction rather than those of the frame most recently read.</p>
+   * 
+   * @see coyote.dx.context.OperationalContext#getSymbols()
+   */
+  @Override
+  public SymbolTable getSymbols() {
+    final TransactionContext bound = boundTransaction.get();
+    if ( bound != null ) {
+      final SymbolTable retval = bound.getSymbols();
+      if ( retval != null ) {
+        return retval;
+      }
+    }
+    return symbols;
+  }
+
+
+
+
+  /**
+   * @return the number of the frame in the transaction bound to the calling 
+   *         thread or the number of the frame most recently read if there is 
+   *         no bound transaction
+   */
+  @Override
+  public long getRow() {
+    final TransactionContext bound = boundTransaction.get();
+    if ( bound != null ) {
+      return bound.getRow();
+    }
+    return super.getRow();
   }
 
 
@@ -218,9 +289,10 @@ public class TransformContext extends OperationalContext {
       if ( obj != null ) {
         retval = obj.toString();
       } else {
-        if ( symbols != null ) {
-          if ( symbols.containsKey( token ) ) {
-            retval = symbols.getString( token );
+        final SymbolTable table = getSymbols();
+        if ( table != null ) {
+          if ( table.containsKey( token ) ) {
+            retval = table.getString( token );
           }
         }
       }
@@ -252,6 +324,7 @@ public class TransformContext extends OperationalContext {
    */
   public String resolveField( String token ) {
     String retval = null;
+    TransactionContext transactionContext = getTransaction();
     if ( token.startsWith( WORKING ) ) {
       String name = token.substring( WORKING.length() );
       if ( transactionContext != null && transactionContext.getWorkingFrame() != null ) {
@@ -279,6 +352,7 @@ public class TransformContext extends OperationalContext {
 
   public boolean containsField( String token ) {
     Boolean retval = false;
+    TransactionContext transactionContext = getTransaction();
     if ( token.startsWith( WORKING ) ) {
       String name = token.substring( WORKING.length() );
       if ( transactionContext != null && transactionContext.getWorkingFrame() != null ) {
@@ -63,12 +63,42 @@ public class DatabaseDialect {
   public static final String MYSQL = "MySQL";
   public static final String H2 = "H2";
   public static final String MSQL = "MICROSOFT SQL SERVER";
+  public static final String POSTGRESQL = "PostgreSQL";
+  public static final String DERBY = "Apache Derby";
+
+  // Bulk loading mechanisms
+  /** JDBC batches of single row inserts, supported by all databases */
+  public static final String BULK_BATCH = "batch";
+  /** Single INSERT statements with multiple rows of VALUES */
+  public static final String BULK_VALUES = "values";
+  /** PostgreSQL COPY FROM STDIN */
+  public static final String BULK_COPY = "copy";
 
   private static final String DEFAULT = "default";
 
   private static final Map<String, Map<String, String>> TYPES = new HashMap<String, Map<String, String>>();
   private static final Map<String, Map<String, String>> SYNTAX = new HashMap<String, Map<String, String>>();
 
+  /** The most bind parameters allowed in one statement, by upper case product name */
+  private static final Map<String, Integer> MAX_PARAMETERS = new HashMap<String, Integer>();
+
+  /** The most rows allowed in the VALUES list of one statement, by upper case product name */
+  private static final Map<String, Integer> MAX_ROWS = new HashMap<String, Integer>();
+
+  static {
+    // Only products supporting multi-row VALUES are listed
+    MAX_PARAMETERS.put( MYSQL.toUpperCase(), 65535 );
+    MAX_PARAMETERS.put( H2.toUpperCase(), 32767 );
+    // 2100 is the hard limit of the server, stay clear of it
+    MAX_PARAMETERS.put( MSQL.toUpperCase(), 2000 );
+    MAX_PARAMETERS.put( POSTGRESQL.toUpperCase(), 32767 );
+    // large statements exceed the size of the class Derby generates for them
+    MAX_PARAMETERS.put( DERBY.toUpperCase(), 2000 );
+
+    // a VALUES list of more than 1000 rows fails with error 10738
+    MAX_ROWS.put( MSQL.toUpperCase(), 1000 );
+  }
+
   static {
     // MySQL
     Map<String, String> map = new HashMap<String, String>();
@@ -247,6 +277,71 @@ public class DatabaseDialect {
 
 
 
+  /**
+   * Get the number of bind parameters the database allows in a single 
+   * multi-row INSERT statement.
+   * 
+   * @param database the database product name (case insensitive)
+   * 
+   * @return the maximum number of parameters or 0 if the database is not 
+   *         known to support multi-row VALUES.
+   */
+  public static int getMaxParameters( String database ) {
+    if ( database != null ) {
+      Integer retval = MAX_PARAMETERS.get( database.toUpperCase() );
+      if ( retval != null ) {
+        return retval;
+      }
+    }
+    return 0;
+  }
+
+
+
+
+  /**
+   * Get the number of rows the database allows in the VALUES list of a 
+   * single multi-row INSERT statement.
+   * 
+   * @param database the database product name (case insensitive)
+   * 
+   * @return the maximum number of rows or 0 if only the number of parameters
+   *         is limited.
+   */
+  public static int getMaxRows( String database ) {
+    if ( database != null ) {
+      Integer retval = MAX_ROWS.get( database.toUpperCase() );
+      if ( retval != null ) {
+        return retval;
+      }
+    }
+    return 0;
+  }
+
+
+
+
+  /**
+   * Get the fastest bulk loading mechanism for the given database.
+   * 
+   * @param database the database product name (case insensitive)
+   * 
+   * @return {@link #BULK_COPY} for PostgreSQL, {@link #BULK_VALUES} for other
+   *         databases supporting multi-row VALUES (e.g. H2 and Derby) and 
+   *         {@link #BULK_BATCH} for the rest.
+   */
+  public static String getBulkMode( String database ) {
+    if ( POSTGRESQL.equalsIgnoreCase( database ) ) {
+      return BULK_COPY;
+    } else if ( getMaxParameters( database ) > 0 ) {
+      return BULK_VALUES;
+    }
+    return BULK_BATCH;
+  }
+
+
+
+
   /**
    * Generate the proper SQL command to create a table which will hold data 
    * described by the given metric schema.
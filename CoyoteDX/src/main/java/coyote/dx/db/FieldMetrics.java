@@ -11,7 +11,9 @@
  */
 package coyote.dx.db;
 
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import coyote.dataframe.DataField;
@@ -22,11 +24,25 @@ import coyote.i13n.SimpleMetric;
 /**
  * This class examines the sampled data fields and tracks several metrics.
  * 
+ * <p>Distinct values are counted exactly until more than the exact limit of 
+ * distinct values have been observed, after which they are estimated with a 
+ * {@link HyperLogLog} sketch of the configured precision so the memory used 
+ * stays bounded however many values are sampled. A negative exact limit 
+ * counts exactly regardless of memory and a limit of zero always 
+ * estimates.</p>
+ * 
+ * <p>The distribution of string lengths is kept for quantiles and, if a top 
+ * count is given, the most frequent values are tracked with a fixed number 
+ * of counters.</p>
+ * 
  * TODO track data based on types...numerics : MinMaxAvgSDev
  */
 public class FieldMetrics {
   private static final String STRING_LENGTH = "String Length";
   private static final String BYTE_LENGTH = "Byte Length";
+
+  /** The default number of distinct values counted exactly */
+  public static final int DEFAULT_EXACT_LIMIT = 10000;
   private String fieldName = null;
   private String fieldType = null;
   private long fieldLength = -1L;
@@ -35,14 +51,46 @@ public class FieldMetrics {
   long blankCount = 0;
   SimpleMetric stringLength = new SimpleMetric( STRING_LENGTH, "" );
   SimpleMetric byteLength = new SimpleMetric( BYTE_LENGTH, "" );
+  LengthDistribution lengths = new LengthDistribution();
   private Set<Object> values = new HashSet<Object>();
+  private HyperLogLog sketch = null;
+  private TopValues topValues = null;
+  private final int exactLimit;
+  private final int precision;
   long sampleCount = 0;
 
 
 
 
   public FieldMetrics( String name ) {
+    this( name, DEFAULT_EXACT_LIMIT, HyperLogLog.DEFAULT_PRECISION, 0 );
+  }
+
+
+
+
+  /**
+   * @param name the name of the field
+   * @param exactLimit the number of distinct values counted exactly before 
+   *        they are estimated, negative to always count exactly
+   * @param precision the precision of the distinct value estimate
+   * @param top the number of most frequent values to track, 0 to not track 
+   *        them
+   */
+  public FieldMetrics( String name, int exactLimit, int precision, int top ) {
+    if ( precision < HyperLogLog.MIN_PRECISION || precision > HyperLogLog.MAX_PRECISION ) {
+      throw new IllegalArgumentException( "Precision must be between " + HyperLogLog.MIN_PRECISION + " and " + HyperLogLog.MAX_PRECISION );
+    }
     fieldName = name;
+    this.exactLimit = exactLimit;
+    this.precision = precision;
+    if ( exactLimit == 0 ) {
+      values = null;
+      sketch = new HyperLogLog( precision );
+    }
+    if ( top > 0 ) {
+      topValues = new TopValues( top );
+    }
   }
 
 
@@ -91,7 +139,17 @@ public class FieldMetrics {
     // Set metrics based on the value of the field
     String value = field.getStringValue();
     if ( value != null ) {
-      values.add( value );
+      if ( values != null ) {
+        values.add( value );
+        if ( exactLimit > 0 && values.size() > exactLimit ) {
+          estimateUniqueValues();
+        }
+      } else {
+        sketch.add( value );
+      }
+      if ( topValues != null ) {
+        topValues.add( value );
+      }
 
       if ( value.length() == 0 ) {
         emptyCount++;
@@ -100,7 +158,8 @@ public class FieldMetrics {
       }
 
       stringLength.sample( value.length() );
-      byteLength.sample( field.getBytes().length );
+      lengths.sample( value.length() );
+      byteLength.sample( field.getEncodedSize() );
     } else {
       nullCount++;
     }
@@ -110,6 +169,20 @@ public class FieldMetrics {
 
 
 
+  /**
+   * Replace the set of distinct values with a sketch of them.
+   */
+  private void estimateUniqueValues() {
+    sketch = new HyperLogLog( precision );
+    for ( Object value : values ) {
+      sketch.add( (String)value );
+    }
+    values = null;
+  }
+
+
+
+
   /**
    * @return the number of times the value was null
    */
@@ -230,8 +303,53 @@ public class FieldMetrics {
 
 
 
+  /**
+   * @return the number of distinct non-null values, estimated if 
+   *         {@link #isUniqueEstimated()} returns true
+   */
   public int getUniqueValues() {
-    return values.size();
+    if ( values != null ) {
+      return values.size();
+    } else {
+      return (int)Math.min( sketch.estimate(), Integer.MAX_VALUE );
+    }
+  }
+
+
+
+
+  /**
+   * @return true if the number of distinct values is an estimate, false if 
+   *         it is exact
+   */
+  public boolean isUniqueEstimated() {
+    return values == null;
+  }
+
+
+
+
+  /**
+   * @param quantile the quantile between 0 and 1 (e.g. 0.5 for the median)
+   * 
+   * @return the string length at the given quantile
+   */
+  public long getStringLengthQuantile( double quantile ) {
+    return lengths.getQuantile( quantile );
+  }
+
+
+
+
+  /**
+   * @return the most frequently observed values, most frequent first; empty 
+   *         if they are not being tracked
+   */
+  public List<TopValues.Entry> getTopValues() {
+    if ( topValues != null ) {
+      return topValues.getValues();
+    }
+    return Collections.emptyList();
   }
 
 
@@ -239,7 +357,7 @@ public class FieldMetrics {
 
   public float getCoincidence() {
     if ( sampleCount > 0 ) {
-      return (float)( sampleCount - ( values.size() - 1 ) ) / (float)sampleCount;
+      return (float)( sampleCount - ( getUniqueValues() - 1 ) ) / (float)sampleCount;
     } else {
       return 1F;
     }
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote
+ *      - Initial concept and implementation
+ */
+package coyote.dx.db;
+
+/**
+ * Estimates the number of distinct strings observed in a fixed amount of
+ * memory.
+ *
+ * <p>This is the HyperLogLog algorithm with the linear counting correction
+ * for small cardinalities. The sketch uses {@code 2^precision} one-byte
+ * registers and has a standard error of about
+ * {@code 1.04 / sqrt(2^precision)}; the default precision of 14 uses 16KB
+ * and is accurate to within about 0.8%.</p>
+ */
+public class HyperLogLog {
+
+  /** The smallest precision supported */
+  public static final int MIN_PRECISION = 4;
+
+  /** The largest precision supported */
+  public static final int MAX_PRECISION = 18;
+
+  /** The precision used if none is given */
+  public static final int DEFAULT_PRECISION = 14;
+
+  private final int precision;
+  private final byte[] registers;
+
+
+
+
+  public HyperLogLog() {
+    this( DEFAULT_PRECISION );
+  }
+
+
+
+
+  /**
+   * @param precision the number of bits used to select a register, between
+   *        {@link #MIN_PRECISION} and {@link #MAX_PRECISION}
+   */
+  public HyperLogLog( int precision ) {
+    if ( precision < MIN_PRECISION || precision > MAX_PRECISION ) {
+      throw new IllegalArgumentException( "Precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION );
+    }
+    this.precision = precision;
+    registers = new byte[1 << precision];
+  }
+
+
+
+
+  /**
+   * @return the number of bits used to select a register
+   */
+  public int getPrecision() {
+    return precision;
+  }
+
+
+
+
+  /**
+   * Record a value.
+   *
+   * @param value the value to record, ignored if null
+   */
+  public void add( String value ) {
+    if ( value != null ) {
+      addHash( hash( value ) );
+    }
+  }
+
+
+
+
+  /**
+   * Record the 64-bit hash of a value.
+   *
+   * @param hash a well-distributed hash of the value
+   */
+  public void addHash( long hash ) {
+    int index = (int)( hash >>> ( 64 - precision ) );
+    // the position of the first set bit in the rest of the hash; the low
+    // bits are set so a hash of all zeros still terminates
+    long rest = ( hash << precision ) | ( 1L << ( precision - 1 ) );
+    byte rank = (byte)( Long.numberOfLeadingZeros( rest ) + 1 );
+    if ( rank > registers[index] ) {
+      registers[index] = rank;
+    }
+  }
+
+
+
+
+  /**
+   * @return the estimated number of distinct values recorded
+   */
+  public long estimate() {
+    int m = registers.length;
+    double sum = 0;
+    int zeros = 0;
+    for ( int x = 0; x < m; x++ ) {
+      sum += 1.0 / ( 1L << registers[x] );
+      if ( registers[x] == 0 ) {
+        zeros++;
+      }
+    }
+
+    double estimate = alpha( m ) * m * m / sum;
+    if ( estimate <= 2.5 * m && zeros > 0 ) {
+      // linear counting is more accurate for small cardinalities
+      estimate = m * Math.log( (double)m / zeros );
+    }
+    return Math.round( estimate );
+  }
+
+
+
+
+  private static double alpha( int m ) {
+    switch ( m ) {
+      case 16:
+        return 0.673;
+      case 32:
+        return 0.697;
+      case 64:
+        return 0.709;
+      default:
+        return 0.7213 / ( 1 + 1.079 / m );
+    }
+  }
+
+
+
+
+  /**
+   * Generate a 64-bit hash of the given string.
+   *
+   * <p>This is FNV-1a over the characters followed by the MurmurHash3
+   * finalizer to spread the bits.</p>
+   *
+   * @param value the string to hash
+   *
+   * @return the hash of the string
+   */
+  static long hash( String value ) {
+    long h = 0xcbf29ce484222325L;
+    for ( int x = 0; x < value.length(); x++ ) {
+      h ^= value.charAt( x );
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+}
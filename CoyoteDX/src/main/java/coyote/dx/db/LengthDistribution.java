@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote
+ *      - Initial concept and implementation
+ */
+package coyote.dx.db;
+
+/**
+ * A histogram of non-negative lengths from which quantiles (median, 95th
+ * percentile, etc.) can be read at any time.
+ *
+ * <p>Lengths below 1024 are counted exactly. Larger lengths are counted in
+ * buckets 1/32 of a power of two wide, so quantiles above 1024 are within
+ * about 3% of the true value. The memory used is fixed regardless of how
+ * many lengths are sampled.</p>
+ */
+public class LengthDistribution {
+
+  /** Lengths below this are counted exactly */
+  private static final int EXACT = 1024;
+
+  /** Base 2 log of EXACT */
+  private static final int EXACT_BITS = 10;
+
+  /** Base 2 log of the number of buckets for each power of two */
+  private static final int SUB_BITS = 5;
+
+  private final long[] counts = new long[EXACT + ( ( 63 - EXACT_BITS ) << SUB_BITS )];
+  private long total = 0;
+
+
+
+
+  /**
+   * Record a length.
+   *
+   * @param length the length to record, negative values are ignored
+   */
+  public void sample( long length ) {
+    if ( length >= 0 ) {
+      counts[bucket( length )]++;
+      total++;
+    }
+  }
+
+
+
+
+  /**
+   * @return the number of lengths recorded
+   */
+  public long getCount() {
+    return total;
+  }
+
+
+
+
+  /**
+   * Return the length at the given quantile.
+   *
+   * @param quantile the quantile between 0 and 1 (e.g. 0.5 for the median)
+   *
+   * @return the smallest recorded length at or above the given fraction of
+   *         all the recorded lengths, or 0 if nothing was recorded
+   */
+  public long getQuantile( double quantile ) {
+    if ( total == 0 ) {
+      return 0;
+    }
+    long rank = (long)Math.ceil( quantile * total );
+    if ( rank < 1 ) {
+      rank = 1;
+    }
+    long seen = 0;
+    for ( int x = 0; x < counts.length; x++ ) {
+      seen += counts[x];
+      if ( seen >= rank ) {
+        return value( x );
+      }
+    }
+    return value( counts.length - 1 );
+  }
+
+
+
+
+  private static int bucket( long length ) {
+    if ( length < EXACT ) {
+      return (int)length;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros( length );
+    int sub = (int)( length >>> ( exponent - SUB_BITS ) ) & ( ( 1 << SUB_BITS ) - 1 );
+    return EXACT + ( ( exponent - EXACT_BITS ) << SUB_BITS ) + sub;
+  }
+
+
+
+
+  /**
+   * @return the middle of the range of lengths counted in the given bucket
+   */
+  private static long value( int bucket ) {
+    if ( bucket < EXACT ) {
+      return bucket;
+    }
+    int exponent = ( ( bucket - EXACT ) >>> SUB_BITS ) + EXACT_BITS;
+    int sub = ( bucket - EXACT ) & ( ( 1 << SUB_BITS ) - 1 );
+    long width = 1L << ( exponent - SUB_BITS );
+    return ( 1L << exponent ) + sub * width + ( width >>> 1 );
+  }
+
+}
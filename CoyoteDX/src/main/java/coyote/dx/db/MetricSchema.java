@@ -32,6 +32,10 @@ public class MetricSchema {
 
   private List<FieldMetrics> metrics = new ArrayList<FieldMetrics>();
 
+  private int exactLimit = FieldMetrics.DEFAULT_EXACT_LIMIT;
+  private int precision = HyperLogLog.DEFAULT_PRECISION;
+  private int topCount = 0;
+
 
 
 
@@ -47,6 +51,44 @@ public class MetricSchema {
 
 
 
+  /**
+   * @param limit the number of distinct values each field counts exactly 
+   *        before estimating them, negative to always count exactly, 0 to 
+   *        always estimate
+   */
+  public void setExactLimit( int limit ) {
+    exactLimit = limit;
+  }
+
+
+
+
+  /**
+   * @param bits the precision of the distinct value estimates
+   * 
+   * @see HyperLogLog
+   */
+  public void setPrecision( int bits ) {
+    if ( bits < HyperLogLog.MIN_PRECISION || bits > HyperLogLog.MAX_PRECISION ) {
+      throw new IllegalArgumentException( "Precision must be between " + HyperLogLog.MIN_PRECISION + " and " + HyperLogLog.MAX_PRECISION );
+    }
+    precision = bits;
+  }
+
+
+
+
+  /**
+   * @param count the number of most frequent values to track for each field, 
+   *        0 to not track them
+   */
+  public void setTopCount( int count ) {
+    topCount = count;
+  }
+
+
+
+
   /**
    * Return FieldMetrics associated with the named field. 
    * 
@@ -69,7 +111,7 @@ public class MetricSchema {
     }
 
     if ( retval == null ) {
-      retval = new FieldMetrics( name );
+      retval = new FieldMetrics( name, exactLimit, precision, topCount );
       metrics.add( retval );
     }
 
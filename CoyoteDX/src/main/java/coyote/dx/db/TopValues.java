@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote
+ *      - Initial concept and implementation
+ */
+package coyote.dx.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Tracks the most frequent values observed using a fixed number of counters.
+ *
+ * <p>This is the Space-Saving algorithm: when a value is not being tracked
+ * and all the counters are in use, the least frequent value is replaced by
+ * the new one which inherits its count. Any value occurring more than
+ * {@code n / capacity} times in {@code n} samples is guaranteed to be
+ * tracked, and each reported count overstates the true count by at most its
+ * error.</p>
+ *
+ * <p>The counters are kept in a heap ordered by count so the least frequent
+ * value is found without scanning.</p>
+ */
+public class TopValues {
+
+  /** How many counters are kept for each value reported */
+  private static final int COUNTERS_PER_VALUE = 4;
+
+  private final int size;
+  private final Entry[] heap;
+  private final Map<String, Entry> index;
+  private int count = 0;
+
+
+
+
+  /**
+   * @param size the number of values to report
+   */
+  public TopValues( int size ) {
+    if ( size < 1 ) {
+      throw new IllegalArgumentException( "Size must be greater than zero" );
+    }
+    this.size = size;
+    heap = new Entry[size * COUNTERS_PER_VALUE];
+    index = new HashMap<String, Entry>( heap.length * 2 );
+  }
+
+
+
+
+  /**
+   * Record an occurrence of a value.
+   *
+   * @param value the value observed, ignored if null
+   */
+  public void add( String value ) {
+    if ( value == null ) {
+      return;
+    }
+
+    Entry entry = index.get( value );
+    if ( entry != null ) {
+      entry.count++;
+      siftDown( entry.position );
+    } else if ( count < heap.length ) {
+      entry = new Entry( value, 1, 0 );
+      entry.position = count;
+      heap[count++] = entry;
+      index.put( value, entry );
+      siftUp( entry.position );
+    } else {
+      // replace the least frequent value
+      entry = heap[0];
+      index.remove( entry.value );
+      entry.error = entry.count;
+      entry.count++;
+      entry.value = value;
+      index.put( value, entry );
+      siftDown( 0 );
+    }
+  }
+
+
+
+
+  /**
+   * @return the most frequent values, most frequent first
+   */
+  public List<Entry> getValues() {
+    List<Entry> retval = new ArrayList<Entry>( count );
+    for ( int x = 0; x < count; x++ ) {
+      retval.add( new Entry( heap[x].value, heap[x].count, heap[x].error ) );
+    }
+    Collections.sort( retval, new Comparator<Entry>() {
+      @Override
+      public int compare( Entry e1, Entry e2 ) {
+        return Long.compare( e2.count, e1.count );
+      }
+    } );
+    if ( retval.size() > size ) {
+      return new ArrayList<Entry>( retval.subList( 0, size ) );
+    }
+    return retval;
+  }
+
+
+
+
+  private void siftUp( int position ) {
+    Entry entry = heap[position];
+    while ( position > 0 ) {
+      int parent = ( position - 1 ) >>> 1;
+      if ( heap[parent].count <= entry.count ) {
+        break;
+      }
+      place( heap[parent], position );
+      position = parent;
+    }
+    place( entry, position );
+  }
+
+
+
+
+  private void siftDown( int position ) {
+    Entry entry = heap[position];
+    int half = count >>> 1;
+    while ( position < half ) {
+      int child = ( position << 1 ) + 1;
+      int right = child + 1;
+      if ( right < count && heap[right].count < heap[child].count ) {
+        child = right;
+      }
+      if ( entry.count <= heap[child].count ) {
+        break;
+      }
+      place( heap[child], position );
+      position = child;
+    }
+    place( entry, position );
+  }
+
+
+
+
+  private void place( Entry entry, int position ) {
+    heap[position] = entry;
+    entry.position = position;
+  }
+
+
+
+
+  /**
+   * A value and the number of times it was observed.
+   */
+  public static class Entry {
+    String value;
+    long count;
+    long error;
+    int position;
+
+
+
+
+    Entry( String value, long count, long error ) {
+      this.value = value;
+      this.count = count;
+      this.error = error;
+    }
+
+
+
+
+    /**
+     * @return the value observed
+     */
+    public String getValue() {
+      return value;
+    }
+
+
+
+
+    /**
+     * @return the number of times the value was observed, possibly
+     *         overstated by up to the error
+     */
+    public long getCount() {
+      return count;
+    }
+
+
+
+
+    /**
+     * @return the most the count may overstate the true number of
+     *         occurrences
+     */
+    public long getError() {
+      return error;
+    }
+
+
+
+
+    @Override
+    public String toString() {
+      return value + "=" + count;
+    }
+  }
+
+}
@@ -168,6 +168,23 @@ public class BooleanEvaluator extends AbstractEvaluator<Boolean> {
 
 
 
+  /**
+   * Boolean literals do not depend on the context so they are converted once
+   * when the expression is compiled.
+   * 
+   * @see coyote.commons.eval.AbstractEvaluator#toStaticValue(java.lang.String)
+   */
+  @Override
+  protected Boolean toStaticValue( String literal ) {
+    if ( LITERAL_TRUE.equalsIgnoreCase( literal ) || LITERAL_FALSE.equalsIgnoreCase( literal ) ) {
+      return Boolean.valueOf( literal );
+    }
+    return null;
+  }
+
+
+
+
   /**
    * Return the value of a method and its string arguments.
    * 
@@ -85,6 +85,9 @@ public class DefaultHttpManager extends HTTPDRouter implements HttpManager {
       configDosTables( cfg.getSection( ConfigTag.FREQUENCY ) );
     }
 
+    // Run requests on a bounded pool of threads
+    configExecutor( ( cfg != null ) ? cfg.getSection( ConfigTag.EXECUTOR ) : null );
+
     // Set the default routes
     addDefaultRoutes();
 
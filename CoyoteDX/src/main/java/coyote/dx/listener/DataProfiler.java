@@ -18,6 +18,7 @@ import java.util.Date;
 import coyote.commons.StringUtil;
 import coyote.commons.template.SymbolTable;
 import coyote.dataframe.DataFrame;
+import coyote.dx.ConfigTag;
 import coyote.dx.FrameReader;
 import coyote.dx.FrameWriter;
 import coyote.dx.context.ContextListener;
@@ -32,6 +33,13 @@ import coyote.dx.db.MetricSchema;
 /**
  * This listener keeps track of the data read in to and out of the engine and 
  * reports on the characteristics of the data observed.
+ * 
+ * <p>Distinct values are counted exactly for each field until the 
+ * {@code exactlimit} (default 10,000) is exceeded, after which they are 
+ * estimated in a fixed amount of memory; estimated counts are reported with 
+ * a leading "~". The {@code precision} (4-18, default 14) sets the accuracy 
+ * of the estimates and {@code top} sets how many of the most frequent values 
+ * of each field are reported (default none).</p>
  */
 public class DataProfiler extends FileRecorder implements ContextListener {
   private MetricSchema inputSchema = new MetricSchema();
@@ -71,6 +79,20 @@ public class DataProfiler extends FileRecorder implements ContextListener {
   public void open( TransformContext context ) {
     super.open( context ); // initialize FileRecorder
 
+    if ( containsIgnoreCase( ConfigTag.EXACT_LIMIT ) ) {
+      inputSchema.setExactLimit( getInteger( ConfigTag.EXACT_LIMIT ) );
+      outputSchema.setExactLimit( getInteger( ConfigTag.EXACT_LIMIT ) );
+    }
+    if ( containsIgnoreCase( ConfigTag.PRECISION ) ) {
+      try {
+        inputSchema.setPrecision( getInteger( ConfigTag.PRECISION ) );
+        outputSchema.setPrecision( getInteger( ConfigTag.PRECISION ) );
+      } catch ( IllegalArgumentException e ) {
+        context.setError( "DataProfiler: " + e.getMessage() );
+      }
+    }
+    inputSchema.setTopCount( getInteger( ConfigTag.TOP ) );
+    outputSchema.setTopCount( getInteger( ConfigTag.TOP ) );
   }
 
 
@@ -320,7 +342,7 @@ public class DataProfiler extends FileRecorder implements ContextListener {
         b.append( " " );
         b.append( StringUtil.fixedLength( Long.toString( metric.getBlankCount() ), 8, StringUtil.LEFT_ALIGNMENT ) );
         b.append( " " );
-        b.append( StringUtil.fixedLength( Long.toString( metric.getUniqueValues() ), 8, StringUtil.LEFT_ALIGNMENT ) );
+        b.append( StringUtil.fixedLength( formatUnique( metric ), 8, StringUtil.LEFT_ALIGNMENT ) );
         b.append( " " );
         b.append( StringUtil.fixedLength( P_FORMAT.format( metric.getCoincidence() * 100 ), 5, StringUtil.RIGHT_ALIGNMENT ) );
         b.append( "       " );
@@ -357,6 +379,8 @@ public class DataProfiler extends FileRecorder implements ContextListener {
       b.append( formatSizeBytes( totalBytes ) );
       b.append( StringUtil.LINE_FEED );
       write( b.toString() );
+
+      writeDistribution( inputSchema, nameSize );
     }
 
     b.delete( 0, b.length() );
@@ -435,7 +459,7 @@ public class DataProfiler extends FileRecorder implements ContextListener {
         b.append( " " );
         b.append( StringUtil.fixedLength( Long.toString( metric.getBlankCount() ), 8, StringUtil.LEFT_ALIGNMENT ) );
         b.append( " " );
-        b.append( StringUtil.fixedLength( Long.toString( metric.getUniqueValues() ), 8, StringUtil.LEFT_ALIGNMENT ) );
+        b.append( StringUtil.fixedLength( formatUnique( metric ), 8, StringUtil.LEFT_ALIGNMENT ) );
         b.append( " " );
         b.append( StringUtil.fixedLength( P_FORMAT.format( metric.getCoincidence() * 100 ), 5, StringUtil.RIGHT_ALIGNMENT ) );
         b.append( "       " );
@@ -471,6 +495,10 @@ public class DataProfiler extends FileRecorder implements ContextListener {
       b.append( "  " );
       b.append( formatSizeBytes( totalBytes ) );
       b.append( StringUtil.LINE_FEED );
+      write( b.toString() );
+      b.delete( 0, b.length() );
+
+      writeDistribution( outputSchema, nameSize );
     }
 
     b.append( StringUtil.LINE_FEED );
@@ -480,6 +508,57 @@ public class DataProfiler extends FileRecorder implements ContextListener {
 
 
 
+  /**
+   * Write the string length quantiles and the most frequent values of each 
+   * field in the given schema.
+   * 
+   * @param schema the sampled fields
+   * @param nameSize the width of the field name column
+   */
+  private void writeDistribution( MetricSchema schema, int nameSize ) {
+    StringBuffer b = new StringBuffer( StringUtil.LINE_FEED );
+    b.append( StringUtil.fixedLength( "Field", nameSize + 1, StringUtil.LEFT_ALIGNMENT ) );
+    b.append( StringUtil.fixedLength( "Median", 9, StringUtil.LEFT_ALIGNMENT ) );
+    b.append( StringUtil.fixedLength( "P95", 9, StringUtil.LEFT_ALIGNMENT ) );
+    b.append( StringUtil.fixedLength( "P99", 9, StringUtil.LEFT_ALIGNMENT ) );
+    b.append( "Top Values" );
+    b.append( StringUtil.LINE_FEED );
+    write( b.toString() );
+
+    for ( FieldMetrics metric : schema.getMetrics() ) {
+      b.delete( 0, b.length() );
+      b.append( StringUtil.fixedLength( metric.getName(), nameSize, StringUtil.LEFT_ALIGNMENT ) );
+      b.append( " " );
+      b.append( StringUtil.fixedLength( Long.toString( metric.getStringLengthQuantile( 0.5 ) ), 8, StringUtil.LEFT_ALIGNMENT ) );
+      b.append( " " );
+      b.append( StringUtil.fixedLength( Long.toString( metric.getStringLengthQuantile( 0.95 ) ), 8, StringUtil.LEFT_ALIGNMENT ) );
+      b.append( " " );
+      b.append( StringUtil.fixedLength( Long.toString( metric.getStringLengthQuantile( 0.99 ) ), 8, StringUtil.LEFT_ALIGNMENT ) );
+      b.append( " " );
+      b.append( metric.getTopValues() );
+      b.append( StringUtil.LINE_FEED );
+      write( b.toString() );
+    }
+  }
+
+
+
+
+  /**
+   * @return the number of unique values of the field, prefixed with "~" if 
+   *         it is an estimate
+   */
+  private static String formatUnique( FieldMetrics metric ) {
+    if ( metric.isUniqueEstimated() ) {
+      return "~" + metric.getUniqueValues();
+    } else {
+      return Integer.toString( metric.getUniqueValues() );
+    }
+  }
+
+
+
+
   /**
    * Get a formatted string representing the difference between the two times.
    * 
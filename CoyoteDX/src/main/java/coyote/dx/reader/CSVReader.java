@@ -11,14 +11,32 @@
  */
 package coyote.dx.reader;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
 import java.net.URI;
+import java.nio.charset.Charset;
 import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import coyote.commons.StringUtil;
 import coyote.commons.UriUtil;
+import coyote.commons.csv.CSVScanner;
 import coyote.dataframe.DataFrame;
 import coyote.dataframe.DataFrameException;
 import coyote.dx.CDX;
@@ -37,12 +55,31 @@ import coyote.loader.log.LogMsg;
 /**
  * Character Separated Value Reader
  * 
+ * <p>Records are scanned directly from a character buffer and only the 
+ * values of the columns being read are copied out of it. The optional 
+ * {@code columns} configuration attribute is a comma separated list of the 
+ * header names or zero-based positions of the columns to read; when it is 
+ * omitted all the columns are read.</p>
+ * 
+ * <p>Large files may be parsed by several threads by setting "threads" to 
+ * more than one. The file is divided into chunks of "chunksize" bytes 
+ * (default 16MB) ending on line boundaries and each chunk is parsed on its 
+ * own thread as if it began with a record. Frames are returned in the order 
+ * of the chunks, and so in the order of the file. A chunk is only trusted 
+ * once the chunk before it was parsed to its end outside of a quoted field; 
+ * when a quoted field with line breaks spans a chunk boundary the two chunks 
+ * are joined and parsed again. The source must use a character encoding in 
+ * which a line feed byte is always a line feed, such as UTF-8.</p>
+ * 
  * TODO: Support preload
  */
 public class CSVReader extends AbstractFrameReader implements FrameReader, ConfigurableComponent {
 
+  /** The default number of bytes in each chunk of a file read in parallel */
+  public static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
   /** The component responsible for reading CSV files into frames */
-  private coyote.commons.csv.CSVReader reader = null;
+  private CSVScanner reader = null;
 
   /** Flag indicating all data should be loaded into and read from memory. */
   private boolean preload = false;
@@ -53,6 +90,28 @@ public class CSVReader extends AbstractFrameReader implements FrameReader, Confi
   /** The column names read in from the first line */
   private String[] header = new String[0];
 
+  /** Creates frames from the scanned records */
+  private FrameBuilder builder = null;
+
+  /** The file being read in chunks, null when read by a single thread */
+  private File chunkedFile = null;
+
+  /** The threads parsing the chunks */
+  private ExecutorService parsers = null;
+
+  /** The chunks submitted for parsing, in file order */
+  private final Deque<Chunk> pending = new ArrayDeque<Chunk>();
+
+  /** The frames of the chunk being returned */
+  private Iterator<DataFrame> frames = null;
+
+  /** The number of chunks to parse ahead of the one being returned */
+  private int ahead = 0;
+
+  private int chunkSize = DEFAULT_CHUNK_SIZE;
+  private long nextChunk = 0;
+  private long length = 0;
+
   public char SEPARATOR = ',';
 
 
@@ -101,7 +160,7 @@ public class CSVReader extends AbstractFrameReader implements FrameReader, Confi
 
     // Check if we are to use a different separator than the default ',' (comma)
     if ( cfg.contains( ConfigTag.CHARACTER ) ) {
-      String value = cfg.getAsString( ConfigTag.HEADER );
+      String value = cfg.getAsString( ConfigTag.CHARACTER );
 
       if ( StringUtil.isNotEmpty( value ) ) {
         SEPARATOR = value.charAt( 0 );
@@ -127,34 +186,256 @@ public class CSVReader extends AbstractFrameReader implements FrameReader, Confi
   public DataFrame read( TransactionContext context ) {
     DataFrame retval = null;
     try {
+      if ( chunkedFile != null ) {
+        if ( nextFrames() ) {
+          retval = frames.next();
+        }
+      } else if ( reader.next() ) {
+        // blank lines are skipped by the scanner
+        retval = builder.build( reader );
+      }
+    } catch ( IOException | ParseException e ) {
+      context.setError( e.getMessage() );
+    }
 
-      // sometimes there are blank lines in data, keep reading until data is 
-      // returned or EOF
-      while ( !eof() ) {
-        String[] data = reader.readNext();
+    // Support the concept of last frame    
+    if ( eof() ) {
+      context.setLastFrame( true );
+    }
 
-        // Deal with empty lines which may be in the file
-        reader.consumeEmptyLines();
+    return retval;
+  }
 
-        if ( data != null ) {
-          retval = new DataFrame();
-          for ( int x = 0; x < data.length; x++ ) {
-            retval.add( x < header.length ? header[x] : new String( "COL" + x ), data[x] );
-          }
+
+
+
+  /**
+   * Resolve the configured columns to their positions in the record.
+   * 
+   * @param value comma separated list of header names or column positions
+   * 
+   * @throws IllegalArgumentException if a column could not be found
+   */
+  private void selectColumns( String value ) {
+    String[] tokens = value.split( "," );
+    int[] columns = new int[tokens.length];
+    String[] names = new String[tokens.length];
+    for ( int x = 0; x < tokens.length; x++ ) {
+      String token = tokens[x].trim();
+      int position = -1;
+      for ( int y = 0; y < header.length; y++ ) {
+        if ( token.equals( header[y] ) ) {
+          position = y;
           break;
         }
       }
-    } catch ( IOException | ParseException e ) {
-      context.setError( e.getMessage() );
+      if ( position < 0 ) {
+        try {
+          position = Integer.parseInt( token );
+        } catch ( NumberFormatException e ) {
+          throw new IllegalArgumentException( "Column '" + token + "' is not in the header" );
+        }
+      }
+      columns[x] = position;
+      names[x] = position < header.length ? header[position] : "COL" + position;
     }
+    builder = new FrameBuilder( header, columns, names );
+  }
 
-    // TODO: consume empty lines: sometimes CSV files have empty lines at the end of the file...we should consume them
 
-    // Support the concept of last frame    
-    if ( reader.eof() ) {
-      context.setLastFrame( true );
+
+
+  /**
+   * Set up reading the file in chunks parsed by the given number of threads.
+   */
+  private void openChunks( File file, int threads ) throws IOException, ParseException {
+    chunkedFile = file;
+    length = file.length();
+    if ( hasHeader ) {
+      nextChunk = findRecordEnd( file );
+      CSVScanner scanner = new CSVScanner( new InputStreamReader( new ByteArrayInputStream( readRange( file, 0, nextChunk ) ), Charset.defaultCharset() ), SEPARATOR );
+      if ( scanner.next() ) {
+        header = scanner.getFields();
+      }
+    }
+
+    int size = getInteger( ConfigTag.CHUNK_SIZE );
+    if ( size > 0 ) {
+      chunkSize = size;
+    }
+    ahead = threads * 2;
+
+    final AtomicInteger count = new AtomicInteger();
+    parsers = Executors.newFixedThreadPool( threads, new ThreadFactory() {
+      @Override
+      public Thread newThread( Runnable runnable ) {
+        Thread retval = new Thread( runnable, CSVReader.class.getSimpleName() + "-Chunk-" + count.getAndIncrement() );
+        retval.setDaemon( true );
+        return retval;
+      }
+    } );
+    Log.debug( "Reading " + length + " bytes in chunks of " + chunkSize + " bytes with " + threads + " threads" );
+  }
+
+
+
+
+  /**
+   * Submit chunks for parsing until the configured number are pending or the 
+   * entire file has been submitted.
+   */
+  private void submitChunks() throws IOException {
+    while ( pending.size() < ahead && nextChunk < length ) {
+      long end = findLineEnd( chunkedFile, Math.min( length, nextChunk + chunkSize ), length );
+      Chunk chunk = new Chunk( nextChunk, end, builder.copy() );
+      chunk.future = parsers.submit( chunk );
+      pending.add( chunk );
+      nextChunk = end;
+    }
+  }
+
+
+
+
+  /**
+   * Make sure there are frames to return, waiting for the next chunk to be 
+   * parsed if necessary.
+   * 
+   * @return true if there are frames to return, false if the entire file has
+   *         been read
+   */
+  private boolean nextFrames() throws IOException, ParseException {
+    submitChunks();
+    while ( frames == null || !frames.hasNext() ) {
+      if ( pending.isEmpty() ) {
+        frames = null;
+        return false;
+      }
+      frames = takeChunk().iterator();
+    }
+    return true;
+  }
+
+
+
+
+  /**
+   * Wait for the next chunk to be parsed, joining it with the chunks after it
+   * while it ends within a quoted field.
+   * 
+   * @return the frames parsed from the chunk
+   */
+  private List<DataFrame> takeChunk() throws IOException, ParseException {
+    Chunk chunk = pending.poll();
+    Future<List<DataFrame>> future = chunk.future;
+    while ( true ) {
+      try {
+        List<DataFrame> retval = future.get();
+        submitChunks();
+        return retval;
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new IOException( "Interrupted waiting for chunk at " + chunk.start );
+      } catch ( ExecutionException e ) {
+        Throwable cause = e.getCause();
+        submitChunks();
+        if ( cause instanceof ParseException && !pending.isEmpty() ) {
+          // the following chunk began inside a quoted field, so its frames 
+          // are discarded and it is parsed again as part of this one
+          Chunk following = pending.poll();
+          following.future.cancel( true );
+          Log.debug( "Quoted field spans the chunk boundary at " + following.start + ", joining chunks" );
+          chunk = new Chunk( chunk.start, following.end, chunk.builder );
+          chunk.future = parsers.submit( chunk );
+          future = chunk.future;
+        } else if ( cause instanceof ParseException ) {
+          throw (ParseException)cause;
+        } else if ( cause instanceof IOException ) {
+          throw (IOException)cause;
+        } else {
+          throw new IOException( "Could not parse chunk at " + chunk.start + ": " + cause, cause );
+        }
+      }
     }
+  }
+
+
 
+
+  /**
+   * Find the end of the first record in the file, following quoted fields 
+   * across line breaks.
+   * 
+   * @return the position just past the line terminator of the first record
+   */
+  private long findRecordEnd( File file ) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile( file, "r" )) {
+      byte[] data = new byte[8192];
+      boolean inQuotes = false;
+      boolean escaped = false;
+      long position = 0;
+      int read;
+      while ( ( read = raf.read( data ) ) > 0 ) {
+        for ( int x = 0; x < read; x++, position++ ) {
+          byte b = data[x];
+          if ( escaped ) {
+            escaped = false;
+          } else if ( inQuotes && b == '\\' ) {
+            escaped = true;
+          } else if ( b == '"' ) {
+            inQuotes = !inQuotes;
+          } else if ( b == '\n' && !inQuotes ) {
+            return position + 1;
+          }
+        }
+      }
+      return position;
+    }
+  }
+
+
+
+
+  /**
+   * Find the start of the line at or following the given position.
+   * 
+   * @return the position just past the next line feed before or at the 
+   *         given position, or the length of the file
+   */
+  private static long findLineEnd( File file, long position, long length ) throws IOException {
+    if ( position >= length ) {
+      return length;
+    }
+    try (RandomAccessFile raf = new RandomAccessFile( file, "r" )) {
+      raf.seek( position - 1 );
+      byte[] data = new byte[8192];
+      int read;
+      while ( ( read = raf.read( data ) ) > 0 ) {
+        for ( int x = 0; x < read; x++, position++ ) {
+          if ( data[x] == '\n' ) {
+            return position;
+          }
+        }
+      }
+      return length;
+    }
+  }
+
+
+
+
+  /**
+   * @return the bytes of the file in the given range
+   */
+  private static byte[] readRange( File file, long start, long end ) throws IOException {
+    if ( end - start > Integer.MAX_VALUE - 8 ) {
+      throw new IOException( "Chunk of " + ( end - start ) + " bytes starting at " + start + " is too large" );
+    }
+    byte[] retval = new byte[(int)( end - start )];
+    try (RandomAccessFile raf = new RandomAccessFile( file, "r" )) {
+      raf.seek( start );
+      raf.readFully( retval );
+    }
     return retval;
   }
 
@@ -166,7 +447,18 @@ public class CSVReader extends AbstractFrameReader implements FrameReader, Confi
    */
   @Override
   public boolean eof() {
-    return reader.eof();
+    try {
+      if ( chunkedFile != null ) {
+        return !nextFrames();
+      }
+      return reader == null || reader.eof();
+    } catch ( IOException | ParseException e ) {
+      Log.error( "Could not read source: " + e.getMessage() );
+      getContext().setError( e.getMessage() );
+      pending.clear();
+      frames = null;
+      return true;
+    }
   }
 
 
@@ -180,6 +472,11 @@ public class CSVReader extends AbstractFrameReader implements FrameReader, Confi
     if ( reader != null ) {
       reader.close();
     }
+    if ( parsers != null ) {
+      parsers.shutdownNow();
+      parsers = null;
+    }
+    pending.clear();
   }
 
 
@@ -229,9 +526,19 @@ public class CSVReader extends AbstractFrameReader implements FrameReader, Confi
       // Basic checks
       if ( sourceFile.exists() && sourceFile.canRead() ) {
         try {
-          reader = new coyote.commons.csv.CSVReader( new FileReader( sourceFile ), SEPARATOR );
-          if ( hasHeader ) {
-            header = reader.readNext();
+          int threads = getInteger( ConfigTag.THREADS );
+          if ( threads > 1 ) {
+            openChunks( sourceFile, threads );
+          } else {
+            reader = new CSVScanner( new FileReader( sourceFile ), SEPARATOR );
+            if ( hasHeader && reader.next() ) {
+              header = reader.getFields();
+            }
+          }
+          builder = new FrameBuilder( header, null, new String[0] );
+          String selection = getString( ConfigTag.COLUMNS );
+          if ( StringUtil.isNotBlank( selection ) ) {
+            selectColumns( selection );
           }
         } catch ( Exception e ) {
           Log.error( "Could not create reader: " + e.getMessage() );
@@ -325,4 +632,108 @@ public class CSVReader extends AbstractFrameReader implements FrameReader, Confi
     configuration.put( ConfigTag.SOURCE, value );
   }
 
+
+
+
+
+  /**
+   * Creates frames from scanned records using the header names.
+   * 
+   * <p>Each thread uses its own copy as the names of unnamed columns are 
+   * added as they are seen.</p>
+   */
+  private static final class FrameBuilder {
+    private final String[] header;
+    private final int[] columns;
+    private String[] names;
+
+
+
+
+    FrameBuilder( String[] header, int[] columns, String[] names ) {
+      this.header = header;
+      this.columns = columns;
+      this.names = names;
+    }
+
+
+
+
+    FrameBuilder copy() {
+      return new FrameBuilder( header, columns, names.clone() );
+    }
+
+
+
+
+    DataFrame build( CSVScanner scanner ) {
+      DataFrame retval = new DataFrame();
+      if ( columns != null ) {
+        for ( int x = 0; x < columns.length; x++ ) {
+          retval.add( names[x], scanner.get( columns[x] ) );
+        }
+      } else {
+        int count = scanner.getFieldCount();
+        for ( int x = 0; x < count; x++ ) {
+          retval.add( getName( x ), scanner.get( x ) );
+        }
+      }
+      return retval;
+    }
+
+
+
+
+    private String getName( int position ) {
+      if ( position >= names.length ) {
+        int length = names.length;
+        names = Arrays.copyOf( names, position + 1 );
+        for ( int x = length; x < names.length; x++ ) {
+          names[x] = x < header.length ? header[x] : "COL" + x;
+        }
+      }
+      return names[position];
+    }
+  }
+
+
+
+
+  /**
+   * A range of the file, beginning and ending on line boundaries, parsed into
+   * frames on one of the parser threads.
+   */
+  private final class Chunk implements Callable<List<DataFrame>> {
+    final long start;
+    final long end;
+    final FrameBuilder builder;
+    Future<List<DataFrame>> future;
+
+
+
+
+    Chunk( long start, long end, FrameBuilder builder ) {
+      this.start = start;
+      this.end = end;
+      this.builder = builder;
+    }
+
+
+
+
+    /**
+     * @throws ParseException if the chunk ends within a quoted field
+     */
+    @Override
+    public List<DataFrame> call() throws IOException, ParseException {
+      byte[] data = readRange( chunkedFile, start, end );
+      CSVScanner scanner = new CSVScanner( new InputStreamReader( new ByteArrayInputStream( data ), Charset.defaultCharset() ), SEPARATOR );
+      List<DataFrame> retval = new ArrayList<DataFrame>();
+      while ( scanner.next() ) {
+        retval.add( builder.build( scanner ) );
+      }
+      return retval;
+    }
+  }
+
 }
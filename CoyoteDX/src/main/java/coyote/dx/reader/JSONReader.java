@@ -11,18 +11,23 @@
  */
 package coyote.dx.reader;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 
 import coyote.commons.DataFrameUtil;
-import coyote.commons.FileUtil;
 import coyote.commons.StringUtil;
 import coyote.commons.UriUtil;
 import coyote.dataframe.DataFrame;
-import coyote.dataframe.marshal.JSONMarshaler;
-import coyote.dataframe.selector.FrameSelector;
+import coyote.dataframe.DataFrameException;
+import coyote.dataframe.marshal.ParseException;
+import coyote.dataframe.marshal.json.JsonFrameParser;
 import coyote.dx.CDX;
 import coyote.dx.ConfigTag;
 import coyote.dx.ConfigurableComponent;
@@ -30,14 +35,27 @@ import coyote.dx.FrameReader;
 import coyote.dx.Symbols;
 import coyote.dx.context.TransactionContext;
 import coyote.dx.context.TransformContext;
+import coyote.loader.cfg.Config;
+import coyote.loader.cfg.ConfigurationException;
 import coyote.loader.log.Log;
 import coyote.loader.log.LogMsg;
 
 
 /**
+ * Reads frames from a JSON file.
  * 
- * 
- * TODO: Make into a streaming reader with preload optional.
+ * <p>By default, the file is streamed and frames are parsed only as they are 
+ * read so files of any size can be processed with constant memory. Each 
+ * element of a root array (or each root object) becomes a frame unless a 
+ * "Selector" is configured, in which case each object or array matching the 
+ * selector expression becomes a frame:<pre>
+ * "Reader": {
+ *     "class": "JSONReader",
+ *     "source": "nvdcve-1.0-recent.json",
+ *     "selector": "CVE_Items.*.cve"
+ * }</pre>
+ * Setting "preload" to true will read all the frames into memory when the 
+ * reader is opened.</p>
  */
 public class JSONReader extends AbstractFrameReader implements FrameReader, ConfigurableComponent {
 
@@ -45,8 +63,36 @@ public class JSONReader extends AbstractFrameReader implements FrameReader, Conf
   private volatile int currentFrame = 0;
   private volatile DataFrame nextFrame = null;
 
+  /** The source of the JSON text */
+  private Reader input = null;
+
+  /** Parses frames from the source as they are read */
+  private JsonFrameParser parser = null;
+
   /** Flag indicating all data should be loaded into and read from memory. */
-  private final boolean preload = true; // we only support buffered reads
+  private boolean preload = false;
+
+
+
+
+  /**
+   * @see coyote.dx.AbstractConfigurableComponent#setConfiguration(coyote.loader.cfg.Config)
+   */
+  @Override
+  public void setConfiguration( Config cfg ) throws ConfigurationException {
+    super.setConfiguration( cfg );
+
+    // Check if we are to load all the data into memory and read from there
+    if ( cfg.contains( ConfigTag.PRELOAD ) ) {
+      try {
+        preload = cfg.getAsBoolean( ConfigTag.PRELOAD );
+      } catch ( DataFrameException e ) {
+        Log.info( "Preload not valid " + e.getMessage() );
+        preload = false;
+      }
+    }
+    Log.debug( LogMsg.createMsg( CDX.MSG, "Reader.preload_is", preload ) );
+  }
 
 
 
@@ -63,15 +109,7 @@ public class JSONReader extends AbstractFrameReader implements FrameReader, Conf
       retval = null;
     }
     currentFrame++;
-    if ( preload ) {
-      if ( currentFrame < buffer.size() ) {
-        nextFrame = buffer.get( currentFrame );
-      } else {
-        nextFrame = null;
-      }
-    } else {
-      Log.warn( "Whoa! We don't support streaming yet" );
-    }
+    nextFrame = fetch();
 
     // Support the concept of last frame    
     if ( nextFrame == null ) {
@@ -84,6 +122,47 @@ public class JSONReader extends AbstractFrameReader implements FrameReader, Conf
 
 
 
+  /**
+   * Retrieve the frame after the current one, either from the preload buffer
+   * or from the parser.
+   * 
+   * @return the next frame or null if there are no more frames
+   */
+  private DataFrame fetch() {
+    if ( preload ) {
+      return ( currentFrame < buffer.size() ) ? buffer.get( currentFrame ) : null;
+    } else {
+      return parse();
+    }
+  }
+
+
+
+
+  /**
+   * Parse the next frame from the source, closing the source when it is 
+   * exhausted or the data could not be parsed.
+   * 
+   * @return the next frame in the source or null if there are no more frames
+   */
+  private DataFrame parse() {
+    DataFrame retval = null;
+    if ( parser != null ) {
+      try {
+        retval = parser.next();
+      } catch ( ParseException | IOException e ) {
+        getContext().setError( "Could not parse JSON data: " + e.getMessage() );
+      }
+      if ( retval == null ) {
+        closeSource();
+      }
+    }
+    return retval;
+  }
+
+
+
+
   /**
    * @see coyote.dx.FrameReader#eof()
    */
@@ -95,6 +174,33 @@ public class JSONReader extends AbstractFrameReader implements FrameReader, Conf
 
 
 
+  /**
+   * @see coyote.dx.reader.AbstractFrameReader#close()
+   */
+  @Override
+  public void close() throws IOException {
+    closeSource();
+    super.close();
+  }
+
+
+
+
+  private void closeSource() {
+    parser = null;
+    if ( input != null ) {
+      try {
+        input.close();
+      } catch ( IOException ignore ) {
+        // nothing we can do
+      }
+      input = null;
+    }
+  }
+
+
+
+
   /**
    * @see coyote.dx.reader.AbstractFrameReader#open(coyote.dx.context.TransformContext)
    */
@@ -138,26 +244,27 @@ public class JSONReader extends AbstractFrameReader implements FrameReader, Conf
 
       // Basic checks
       if ( sourceFile.exists() && sourceFile.canRead() ) {
-        String data = FileUtil.fileToString( sourceFile );
-        Log.debug( "Read in " + data.length() + " characters of data" );
-
-        List<DataFrame> frames = JSONMarshaler.marshal( data );
-        Log.debug( "Read in " + frames.size() + " frames" );
-        DataFrame frame = frames.get( 0 );
+        try {
+          input = new BufferedReader( new InputStreamReader( new FileInputStream( sourceFile ), StringUtil.ISO8859_1 ) );
+        } catch ( IOException e ) {
+          context.setError( LogMsg.createMsg( CDX.MSG, "Reader.could_not_read_from_source", getClass().getName(), sourceFile.getAbsolutePath() ).toString() );
+          return;
+        }
+        parser = new JsonFrameParser( input );
 
         String pattern = getString( ConfigTag.SELECTOR );
         if ( StringUtil.isNotBlank( pattern ) ) {
-          FrameSelector selector = new FrameSelector( "CVE_Items.*.cve" );
-          List<DataFrame> results = selector.select( frame );
-          Log.debug( "Selected " + results.size() + " frames" );
-          frames = results;
+          Log.debug( "Selecting frames matching '" + pattern + "'" );
+          parser.setSelector( pattern );
         }
 
-        if ( frames.size() > 0 ) {
-          buffer.addAll( frames );
+        if ( preload ) {
+          for ( DataFrame frame = parse(); frame != null; frame = parse() ) {
+            buffer.add( frame );
+          }
           Log.info( "Preloaded " + buffer.size() + " frames" );
-          nextFrame = buffer.get( currentFrame );
         }
+        nextFrame = fetch();
 
       } else {
         context.setError( LogMsg.createMsg( CDX.MSG, "Reader.could_not_read_from_source", getClass().getName(), sourceFile.getAbsolutePath() ).toString() );
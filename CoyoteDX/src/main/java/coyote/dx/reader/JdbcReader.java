@@ -22,6 +22,9 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import coyote.commons.StringUtil;
 import coyote.commons.jdbc.DriverDelegate;
@@ -39,7 +42,32 @@ import coyote.loader.log.LogMsg;
 /**
  * This is a frame reader which uses a JDBC result set to create frames.
  * 
- * TODO: support TransactionContext.setLastFrame( true )
+ * <p>The result set is read forward-only, one row ahead of the row being 
+ * returned so the end of the data is detected without asking the driver to 
+ * position the cursor. Setting "fetchsize" controls how many rows the driver
+ * retrieves from the server at a time, allowing very large results to be 
+ * read with constant memory. Some drivers (e.g. PostgreSQL) only use a 
+ * server-side cursor when auto-commit is off, so auto-commit is turned off 
+ * when a fetch size is given unless "autocommit" is set explicitly:<pre>
+ * "Reader": {
+ *     "class": "JdbcReader",
+ *     "source": "MyDB",
+ *     "query": "select * from events",
+ *     "fetchsize": 10000
+ * }</pre></p>
+ * 
+ * <p>A single connection limits how fast rows can be extracted, so the query 
+ * can be split into partitions which are read over separate connections at 
+ * the same time by setting "partitions" and naming a numeric "splitcolumn". 
+ * With a "splitmode" of "range" (the default) the minimum and maximum value 
+ * of the column are queried and the range divided evenly between the 
+ * partitions; "modulo" assigns rows by the remainder of the column divided by
+ * the number of partitions and requires the database support the MOD 
+ * function. Rows are placed in a queue holding up to "capacity" frames and 
+ * returned in the order they arrive from the partitions. The number of rows
+ * each partition has extracted is kept in the transform context under 
+ * "JdbcReader.Partition.<n>.Rows" and whether it has finished under 
+ * "JdbcReader.Partition.<n>.Complete".</p>
  */
 public class JdbcReader extends AbstractFrameReader {
 
@@ -50,6 +78,51 @@ public class JdbcReader extends AbstractFrameReader {
   ResultSetMetaData rsmd = null;
   private int columnCount = 0;
 
+  /** The names of the columns in the result set, in column order */
+  private String[] columnNames = new String[0];
+
+  /** The SQL types of the columns in the result set, in column order */
+  private int[] columnTypes = new int[0];
+
+  /** The auto-commit setting of the connection before we changed it */
+  private Boolean originalAutoCommit = null;
+
+  /** Split mode which divides the range of the split column between the partitions */
+  public static final String RANGE = "range";
+
+  /** Split mode which assigns rows by the split column modulo the partition count */
+  public static final String MODULO = "modulo";
+
+  /** The default number of frames which may be queued from the partitions */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  /** Prefix of the context keys holding the progress of each partition */
+  public static final String PARTITION_PREFIX = "JdbcReader.Partition.";
+
+  /** How often (in frames) the partition progress is placed in the context */
+  private static final int PROGRESS_INTERVAL = 1000;
+
+  /** Marks the end of the frames from a partition */
+  private static final DataFrame END = new DataFrame();
+
+  /** The partitions being read concurrently, null when not partitioned */
+  private Partition[] partitions = null;
+
+  /** Frames extracted by the partitions */
+  private BlockingQueue<DataFrame> queue = null;
+
+  /** The next frame from the partitions */
+  private DataFrame nextFrame = null;
+
+  /** Number of partitions which have not finished */
+  private int running = 0;
+
+  /** Number of frames taken from the partitions */
+  private long taken = 0;
+
+  /** Flag indicating the driver has been registered for our own connections */
+  private boolean registered = false;
+
 
 
 
@@ -66,79 +139,336 @@ public class JdbcReader extends AbstractFrameReader {
     Log.debug( LogMsg.createMsg( CDX.MSG, "Reader.using a source of {%s}", source ) );
     if ( StringUtil.isNotBlank( source ) ) {
 
-      // first see if it is a named database in the context
-      Database db = context.getDatabase( source );
+      connection = connect( source );
 
-      if ( db != null ) {
-        Log.debug( LogMsg.createMsg( CDX.MSG, "Reader.We have a shared database definition! {%s}", db.toString() ) );
-        connection = db.getConnection();
-      } else {
+      String query = getString( ConfigTag.QUERY );
+      Log.debug( LogMsg.createMsg( CDX.MSG, "Reader.Using a query of '{%s}'", query ) );
 
-        // configure a connection ourselves
+      if ( connection != null && getInteger( ConfigTag.PARTITIONS ) > 1 ) {
+        openPartitions( source, query );
+      } else if ( connection != null ) {
 
-        String library = getString( ConfigTag.LIBRARY );
-        Log.debug( LogMsg.createMsg( CDX.MSG, "Reader.Using a driver JAR of {%s}", library ) );
+        try {
+          int fetchSize = getInteger( ConfigTag.FETCH_SIZE );
+          setAutoCommit( fetchSize );
 
-        String driver = getString( ConfigTag.DRIVER );
-        Log.debug( LogMsg.createMsg( CDX.MSG, "Reader.Using a driver of {%s}", driver ) );
+          Statement statement = connection.createStatement( ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY );
+          if ( fetchSize > 0 ) {
+            statement.setFetchSize( fetchSize );
+            Log.debug( LogMsg.createMsg( CDX.MSG, "Reader.Using a fetch size of {%s}", fetchSize ) );
+          }
+          result = statement.executeQuery( query );
 
-        // get our configuration data
-        String target = getString( ConfigTag.TARGET );
-        Log.debug( LogMsg.createMsg( CDX.MSG, "Reader.Using a target of {%s}", target ) );
+          rsmd = result.getMetaData();
 
-        String username = getString( ConfigTag.USERNAME );
-        Log.debug( LogMsg.createMsg( CDX.MSG, "Reader.Using a user of {%s}", username ) );
+          columnCount = rsmd.getColumnCount();
+          columnNames = new String[columnCount];
+          columnTypes = new int[columnCount];
+          for ( int i = 0; i < columnCount; i++ ) {
+            columnNames[i] = rsmd.getColumnName( i + 1 );
+            columnTypes[i] = rsmd.getColumnType( i + 1 );
+          }
 
-        String password = getString( ConfigTag.PASSWORD );
-        Log.debug( LogMsg.createMsg( CDX.MSG, "Reader.Using a password with a length of {%s}", StringUtil.isBlank( password ) ? 0 : password.length() ) );
+          // position on the first row so we know if there is any data
+          EOF = !result.next();
 
-        // get the connection to the database
-        try {
+        } catch ( SQLException e ) {
+          String msg = String.format( "Error querying database: '%s' - query = '%s'", e.getMessage().trim(), query );
+          //Log.error( msg );
+          context.setError( getClass().getName() + " " + msg );
+        }
+
+      }
+
+    } else {
+      Log.error( "No source specified" );
+      context.setError( getClass().getName() + " could not determine source" );
+    }
+
+  }
+
+
+
+
+  /**
+   * Get a new connection to the source database.
+   * 
+   * <p>If the source names a database shared in the transform context, a 
+   * connection is made to it, otherwise the connection is made with the 
+   * driver and target in our configuration.</p>
+   * 
+   * @param source the name of the shared database
+   * 
+   * @return a new connection or null if one could not be made
+   */
+  private Connection connect( String source ) {
+    Connection retval = null;
+
+    // first see if it is a named database in the context
+    Database db = getContext().getDatabase( source );
+
+    if ( db != null ) {
+      Log.debug( LogMsg.createMsg( CDX.MSG, "Reader.We have a shared database definition! {%s}", db.toString() ) );
+      retval = db.getConnection();
+    } else {
+
+      // configure a connection ourselves
+
+      String library = getString( ConfigTag.LIBRARY );
+      Log.debug( LogMsg.createMsg( CDX.MSG, "Reader.Using a driver JAR of {%s}", library ) );
+
+      String driver = getString( ConfigTag.DRIVER );
+      Log.debug( LogMsg.createMsg( CDX.MSG, "Reader.Using a driver of {%s}", driver ) );
+
+      // get our configuration data
+      String target = getString( ConfigTag.TARGET );
+      Log.debug( LogMsg.createMsg( CDX.MSG, "Reader.Using a target of {%s}", target ) );
+
+      String username = getString( ConfigTag.USERNAME );
+      Log.debug( LogMsg.createMsg( CDX.MSG, "Reader.Using a user of {%s}", username ) );
+
+      String password = getString( ConfigTag.PASSWORD );
+      Log.debug( LogMsg.createMsg( CDX.MSG, "Reader.Using a password with a length of {%s}", StringUtil.isBlank( password ) ? 0 : password.length() ) );
+
+      // get the connection to the database
+      try {
+        if ( !registered ) {
           URL u = new URL( library );
           URLClassLoader ucl = new URLClassLoader( new URL[] { u } );
           Driver dvr = (Driver)Class.forName( driver, true, ucl ).newInstance();
           DriverManager.registerDriver( new DriverDelegate( dvr ) );
+          registered = true;
+        }
 
-          connection = DriverManager.getConnection( target, username, password );
+        retval = DriverManager.getConnection( target, username, password );
 
-          if ( connection != null ) {
-            Log.debug( LogMsg.createMsg( CDX.MSG, "Reader.Connected to {%s}", target ) );
-          }
-        } catch ( InstantiationException | IllegalAccessException | ClassNotFoundException | SQLException | MalformedURLException e ) {
-          Log.error( "Could not connect to database: " + e.getClass().getSimpleName() + " - " + e.getMessage() );
+        if ( retval != null ) {
+          Log.debug( LogMsg.createMsg( CDX.MSG, "Reader.Connected to {%s}", target ) );
         }
+      } catch ( InstantiationException | IllegalAccessException | ClassNotFoundException | SQLException | MalformedURLException e ) {
+        Log.error( "Could not connect to database: " + e.getClass().getSimpleName() + " - " + e.getMessage() );
       }
+    }
+    return retval;
+  }
 
-      String query = getString( ConfigTag.QUERY );
-      Log.debug( LogMsg.createMsg( CDX.MSG, "Reader.Using a query of '{%s}'", query ) );
 
-      if ( connection != null ) {
 
-        try {
-          Statement statement = connection.createStatement( ResultSet.TYPE_SCROLL_SENSITIVE, ResultSet.CONCUR_READ_ONLY );
-          result = statement.executeQuery( query );
 
-          rsmd = result.getMetaData();
+  /**
+   * Split the query into partitions and start reading each of them over its 
+   * own connection.
+   * 
+   * <p>The connection already opened is used to determine the range of the 
+   * split column and then by the first partition.</p>
+   * 
+   * @param source the name of the source database
+   * @param query the query to split
+   */
+  private void openPartitions( String source, String query ) {
+    int count = getInteger( ConfigTag.PARTITIONS );
+    String column = getString( ConfigTag.SPLIT_COLUMN );
+    String mode = getString( ConfigTag.SPLIT_MODE );
+    int capacity = containsIgnoreCase( ConfigTag.CAPACITY ) ? getInteger( ConfigTag.CAPACITY ) : DEFAULT_CAPACITY;
+
+    if ( StringUtil.isBlank( column ) ) {
+      getContext().setError( getClass().getName() + " requires a " + ConfigTag.SPLIT_COLUMN + " to read " + count + " partitions" );
+      return;
+    }
+    if ( capacity < 1 ) {
+      getContext().setError( getClass().getName() + " " + ConfigTag.CAPACITY + " must be greater than zero" );
+      return;
+    }
 
-          columnCount = rsmd.getColumnCount();
+    String[] conditions;
+    try {
+      if ( StringUtil.isBlank( mode ) || RANGE.equalsIgnoreCase( mode ) ) {
+        conditions = getRangeConditions( query, column, count );
+      } else if ( MODULO.equalsIgnoreCase( mode ) ) {
+        conditions = getModuloConditions( column, count );
+      } else {
+        getContext().setError( getClass().getName() + " unknown " + ConfigTag.SPLIT_MODE + " of '" + mode + "'" );
+        return;
+      }
+    } catch ( SQLException e ) {
+      getContext().setError( getClass().getName() + " " + String.format( "Error querying database: '%s' - query = '%s'", e.getMessage().trim(), query ) );
+      return;
+    }
 
-          if ( result.isBeforeFirst() ) {
-            EOF = false;
-          }
+    int fetchSize = getInteger( ConfigTag.FETCH_SIZE );
+    queue = new ArrayBlockingQueue<DataFrame>( capacity );
+    partitions = new Partition[count];
+    for ( int x = 0; x < count; x++ ) {
+      String sql = "SELECT * FROM ( " + query + " ) p WHERE " + conditions[x];
+      Log.debug( LogMsg.createMsg( CDX.MSG, "Reader.Partition {%s} using a query of '{%s}'", x, sql ) );
+      Connection conn = ( x == 0 ) ? connection : connect( source );
+      if ( conn == null ) {
+        getContext().setError( getClass().getName() + " could not connect to read partition " + x );
+        for ( int y = 0; y < x; y++ ) {
+          partitions[y].close();
+        }
+        partitions = null;
+        return;
+      }
+      partitions[x] = new Partition( x, conn, sql, fetchSize );
+      getContext().set( partitions[x].rowsKey, 0L );
+      getContext().set( partitions[x].completeKey, false );
+    }
 
-        } catch ( SQLException e ) {
-          String msg = String.format( "Error querying database: '%s' - query = '%s'", e.getMessage().trim(), query );
-          //Log.error( msg );
-          context.setError( getClass().getName() + " " + msg );
+    running = count;
+    for ( int x = 0; x < count; x++ ) {
+      Thread thread = new Thread( partitions[x], getClass().getSimpleName() + "-Partition-" + x );
+      thread.setDaemon( true );
+      thread.start();
+    }
+
+    nextFrame = take();
+    EOF = ( nextFrame == null );
+  }
+
+
+
+
+  /**
+   * Divide the range of values of the split column evenly between the 
+   * partitions.
+   * 
+   * @param query the query being split
+   * @param column the numeric column to split the query on
+   * @param count the number of partitions
+   * 
+   * @return the condition selecting the rows of each partition
+   * 
+   * @throws SQLException if the range of the column could not be queried
+   */
+  private String[] getRangeConditions( String query, String column, int count ) throws SQLException {
+    long min = 0;
+    long max = 0;
+    try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery( "SELECT MIN(" + column + "), MAX(" + column + ") FROM ( " + query + " ) p" )) {
+      if ( rs.next() ) {
+        min = rs.getLong( 1 );
+        max = rs.getLong( 2 );
+      }
+    }
+    Log.debug( LogMsg.createMsg( CDX.MSG, "Reader.Splitting {%s} from {%s} to {%s}", column, min, max ) );
+
+    long step = ( max - min ) / count + 1;
+    String[] retval = new String[count];
+    for ( int x = 0; x < count; x++ ) {
+      if ( x == 0 ) {
+        // rows without a value must go somewhere
+        retval[x] = "( " + column + " IS NULL OR " + column + " < " + ( min + step ) + " )";
+      } else if ( x < count - 1 ) {
+        retval[x] = column + " >= " + ( min + step * x ) + " AND " + column + " < " + ( min + step * ( x + 1 ) );
+      } else {
+        retval[x] = column + " >= " + ( min + step * x );
+      }
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Assign rows to partitions by the remainder of the split column divided by
+   * the number of partitions.
+   * 
+   * @param column the numeric column to split the query on
+   * @param count the number of partitions
+   * 
+   * @return the condition selecting the rows of each partition
+   */
+  private static String[] getModuloConditions( String column, int count ) {
+    String[] retval = new String[count];
+    for ( int x = 0; x < count; x++ ) {
+      retval[x] = "ABS(MOD(" + column + ", " + count + ")) = " + x;
+    }
+    // rows without a value must go somewhere
+    retval[0] = "( " + column + " IS NULL OR " + retval[0] + " )";
+    return retval;
+  }
+
+
+
+
+  /**
+   * Take the next frame extracted by the partitions, waiting for one if none 
+   * are queued.
+   * 
+   * @return the next frame or null if all the partitions have finished
+   */
+  private DataFrame take() {
+    while ( running > 0 ) {
+      DataFrame frame;
+      try {
+        frame = queue.take();
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        getContext().setError( getClass().getName() + " interrupted waiting for partitions" );
+        return null;
+      }
+
+      if ( frame == END ) {
+        running--;
+        publishProgress();
+      } else {
+        if ( ++taken % PROGRESS_INTERVAL == 0 ) {
+          publishProgress();
         }
+        return frame;
+      }
+    }
 
+    // report any partition errors once all of them are done
+    for ( Partition partition : partitions ) {
+      if ( partition.error != null ) {
+        getContext().setError( getClass().getName() + " " + partition.error );
       }
+    }
+    return null;
+  }
 
-    } else {
-      Log.error( "No source specified" );
-      context.setError( getClass().getName() + " could not determine source" );
+
+
+
+  /**
+   * Place the number of rows extracted by each partition in the context.
+   */
+  private void publishProgress() {
+    for ( Partition partition : partitions ) {
+      getContext().set( partition.rowsKey, partition.rows );
+      getContext().set( partition.completeKey, partition.complete );
+    }
+  }
+
+
+
+
+  /**
+   * Set the auto-commit mode of the connection for the query.
+   * 
+   * <p>If "autocommit" is configured it is used, otherwise auto-commit is 
+   * turned off when a fetch size is set so drivers will use a cursor. The 
+   * original setting is restored when the reader is closed.</p>
+   * 
+   * @param fetchSize the configured fetch size
+   * 
+   * @throws SQLException if the auto-commit mode could not be set
+   */
+  private void setAutoCommit( int fetchSize ) throws SQLException {
+    Boolean autoCommit = null;
+    if ( containsIgnoreCase( ConfigTag.AUTO_COMMIT ) ) {
+      autoCommit = getBoolean( ConfigTag.AUTO_COMMIT );
+    } else if ( fetchSize > 0 ) {
+      autoCommit = Boolean.FALSE;
     }
 
+    if ( autoCommit != null && connection.getAutoCommit() != autoCommit ) {
+      originalAutoCommit = connection.getAutoCommit();
+      connection.setAutoCommit( autoCommit );
+      Log.debug( LogMsg.createMsg( CDX.MSG, "Reader.Set auto-commit to {%s}", autoCommit ) );
+    }
   }
 
 
@@ -151,34 +481,35 @@ public class JdbcReader extends AbstractFrameReader {
   public DataFrame read( TransactionContext context ) {
     DataFrame retval = null;
 
-    if ( result != null ) {
+    if ( partitions != null ) {
+      retval = nextFrame;
+      nextFrame = take();
+      EOF = ( nextFrame == null );
+    } else if ( result != null && !EOF ) {
       try {
-        if ( result.next() ) {
-          retval = new DataFrame();
-
-          // Set EOF if this is the last record
-          EOF = result.isLast();
-
-          // add each of the fields to the dataframe
-          for ( int i = 1; i <= columnCount; i++ ) {
-            // Log.info( rsmd.getColumnName( i ) + " - '" + result.getString( i ) + "' (" + rsmd.getColumnType( i ) + ")" );
-            retval.add( rsmd.getColumnName( i ), DatabaseDialect.resolveValue( result.getObject( i ), rsmd.getColumnType( i ) ) );
-          }
+        retval = new DataFrame();
 
-        } else {
-          Log.error( "Read past EOF" );
-          EOF = true;
-          return retval;
+        // add each of the fields of the current row to the dataframe
+        for ( int i = 0; i < columnCount; i++ ) {
+          retval.add( columnNames[i], DatabaseDialect.resolveValue( result.getObject( i + 1 ), columnTypes[i] ) );
         }
+
+        // look ahead to see if this is the last record
+        EOF = !result.next();
       } catch ( SQLException e ) {
         e.printStackTrace();
         EOF = true;
       }
     } else {
+      if ( result != null ) {
+        Log.error( "Read past EOF" );
+      }
       EOF = true;
     }
 
-    // TODO: support TransactionContext.setLastFrame( true )
+    if ( EOF ) {
+      context.setLastFrame( true );
+    }
 
     return retval;
   }
@@ -186,10 +517,6 @@ public class JdbcReader extends AbstractFrameReader {
 
 
 
- 
-
-
-
   /**
    * @see coyote.dx.FrameReader#eof()
    */
@@ -209,11 +536,147 @@ public class JdbcReader extends AbstractFrameReader {
 
     if ( result != null ) {
       try {
+        Statement statement = result.getStatement();
         result.close();
+        if ( statement != null ) {
+          statement.close();
+        }
       } catch ( SQLException ignore ) {}
     }
 
+    if ( partitions != null ) {
+      for ( Partition partition : partitions ) {
+        partition.stopped = true;
+      }
+      // let any partitions blocked on a full queue finish
+      queue.clear();
+      partitions = null;
+    }
+
+    if ( originalAutoCommit != null && connection != null ) {
+      try {
+        // end the read-only transaction the cursor was opened in
+        if ( !connection.getAutoCommit() ) {
+          connection.commit();
+        }
+        connection.setAutoCommit( originalAutoCommit );
+      } catch ( SQLException e ) {
+        Log.warn( "Could not restore auto-commit: " + e.getMessage() );
+      }
+      originalAutoCommit = null;
+    }
+
     super.close();
   }
 
+
+
+
+  /**
+   * Reads one partition of the query over its own connection, placing the 
+   * frames in the queue.
+   */
+  private class Partition implements Runnable {
+    private final Connection conn;
+    private final String sql;
+    private final int fetchSize;
+    final String rowsKey;
+    final String completeKey;
+    volatile long rows = 0;
+    volatile boolean complete = false;
+    volatile boolean stopped = false;
+    volatile String error = null;
+
+
+
+
+    Partition( int index, Connection conn, String sql, int fetchSize ) {
+      this.conn = conn;
+      this.sql = sql;
+      this.fetchSize = fetchSize;
+      rowsKey = PARTITION_PREFIX + index + ".Rows";
+      completeKey = PARTITION_PREFIX + index + ".Complete";
+    }
+
+
+
+
+    @Override
+    public void run() {
+      try {
+        if ( fetchSize > 0 ) {
+          // drivers such as PostgreSQL only use a cursor outside auto-commit
+          conn.setAutoCommit( containsIgnoreCase( ConfigTag.AUTO_COMMIT ) ? getBoolean( ConfigTag.AUTO_COMMIT ) : false );
+        }
+        try (Statement statement = conn.createStatement( ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY )) {
+          if ( fetchSize > 0 ) {
+            statement.setFetchSize( fetchSize );
+          }
+          try (ResultSet rs = statement.executeQuery( sql )) {
+            ResultSetMetaData meta = rs.getMetaData();
+            int count = meta.getColumnCount();
+            String[] names = new String[count];
+            int[] types = new int[count];
+            for ( int i = 0; i < count; i++ ) {
+              names[i] = meta.getColumnName( i + 1 );
+              types[i] = meta.getColumnType( i + 1 );
+            }
+
+            while ( !stopped && rs.next() ) {
+              DataFrame frame = new DataFrame();
+              for ( int i = 0; i < count; i++ ) {
+                frame.add( names[i], DatabaseDialect.resolveValue( rs.getObject( i + 1 ), types[i] ) );
+              }
+              if ( !offer( frame ) ) {
+                return;
+              }
+              rows++;
+            }
+          }
+        }
+        if ( !conn.getAutoCommit() ) {
+          conn.commit();
+        }
+      } catch ( SQLException e ) {
+        error = String.format( "Error querying database: '%s' - query = '%s'", e.getMessage().trim(), sql );
+      }
+      finally {
+        complete = true;
+        close();
+        offer( END );
+      }
+    }
+
+
+
+
+    void close() {
+      try {
+        conn.close();
+      } catch ( SQLException ignore ) {}
+    }
+
+
+
+
+    /**
+     * Place the frame in the queue, waiting for room unless the reader is 
+     * closed.
+     * 
+     * @return false if the reader was closed before the frame was queued
+     */
+    private boolean offer( DataFrame frame ) {
+      try {
+        while ( !stopped ) {
+          if ( queue.offer( frame, 100, TimeUnit.MILLISECONDS ) ) {
+            return true;
+          }
+        }
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      }
+      return false;
+    }
+  }
+
 }
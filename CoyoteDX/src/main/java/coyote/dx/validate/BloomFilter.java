@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote
+ *      - Initial concept and implementation
+ */
+package coyote.dx.validate;
+
+/**
+ * A set of hashes which may report false positives but never false
+ * negatives.
+ *
+ * <p>The bit positions are derived from a single 64-bit hash by combining
+ * its two halves, so callers only hash each value once. Adding more values
+ * than expected raises the false positive rate but never causes a false
+ * negative.</p>
+ */
+class BloomFilter {
+
+  private final long[] bits;
+  private final long size;
+  private final int hashes;
+
+
+
+
+  /**
+   * @param expected the number of values expected to be added
+   * @param probability the desired false positive probability (e.g. 0.01)
+   */
+  BloomFilter( long expected, double probability ) {
+    expected = Math.max( 1, expected );
+    double ln2 = Math.log( 2 );
+    long count = (long)Math.ceil( -expected * Math.log( probability ) / ( ln2 * ln2 ) );
+    // round up to whole words
+    count = Math.max( 64, ( count + 63 ) & ~63L );
+    bits = new long[(int)Math.min( Integer.MAX_VALUE - 8, count >>> 6 )];
+    size = (long)bits.length << 6;
+    hashes = Math.max( 1, (int)Math.round( (double)size / expected * ln2 ) );
+  }
+
+
+
+
+  /**
+   * @param hash a well-distributed 64-bit hash of the value
+   */
+  void add( long hash ) {
+    int h1 = (int)hash;
+    int h2 = (int)( hash >>> 32 );
+    for ( int x = 1; x <= hashes; x++ ) {
+      long index = ( ( h1 + (long)x * h2 ) & Long.MAX_VALUE ) % size;
+      bits[(int)( index >>> 6 )] |= 1L << index;
+    }
+  }
+
+
+
+
+  /**
+   * @param hash a well-distributed 64-bit hash of the value
+   *
+   * @return false if the value was definitely never added, true if it may
+   *         have been
+   */
+  boolean mightContain( long hash ) {
+    int h1 = (int)hash;
+    int h2 = (int)( hash >>> 32 );
+    for ( int x = 1; x <= hashes; x++ ) {
+      long index = ( ( h1 + (long)x * h2 ) & Long.MAX_VALUE ) % size;
+      if ( ( bits[(int)( index >>> 6 )] & ( 1L << index ) ) == 0 ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
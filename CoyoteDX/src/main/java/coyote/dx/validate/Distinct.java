@@ -11,14 +11,19 @@
  */
 package coyote.dx.validate;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
 import coyote.commons.StringUtil;
 import coyote.dataframe.DataField;
 import coyote.dataframe.DataFrame;
+import coyote.dx.ConfigTag;
 import coyote.dx.FrameValidator;
+import coyote.dx.Symbols;
 import coyote.dx.context.TransactionContext;
+import coyote.dx.context.TransformContext;
 
 
 /**
@@ -26,10 +31,24 @@ import coyote.dx.context.TransactionContext;
  * 
  *<pre>"Distinct" : { "field" : "model",  "desc" : "Optional description value"  },</pre>
  *
+ * <p>By default the values seen are kept in memory. For large data sets a 
+ * memory budget in megabytes can be given, along with the number of distinct 
+ * values expected:<pre>
+ * "Distinct" : { "field" : "id", "budget" : 64, "expected" : 50000000 },</pre>
+ * The values are then kept outside of the Java heap and checked against a 
+ * Bloom filter first; once they exceed the budget they are moved to files in 
+ * the job's work directory which are removed when the job ends. Duplicates 
+ * are still detected exactly.</p>
  */
 public class Distinct extends AbstractValidator implements FrameValidator {
 
-  private final Map<String, Integer> values = new HashMap<String, Integer>();
+  /** The number of distinct values expected if not configured */
+  private static final long DEFAULT_EXPECTED = 1000000;
+
+  private static final long MEGABYTE = 1024 * 1024;
+
+  private final Map<String, int[]> values = new HashMap<String, int[]>();
+  private KeyCounter counter = null;
   long emptycount = 0;
   long missingcount = 0;
 
@@ -43,6 +62,39 @@ public class Distinct extends AbstractValidator implements FrameValidator {
 
 
 
+  /**
+   * @see coyote.dx.validate.AbstractValidator#open(coyote.dx.context.TransformContext)
+   */
+  @Override
+  public void open( TransformContext context ) {
+    super.open( context );
+
+    if ( configuration.containsIgnoreCase( ConfigTag.BUDGET ) ) {
+      long budget;
+      long expected = DEFAULT_EXPECTED;
+      try {
+        budget = configuration.getLong( ConfigTag.BUDGET ) * MEGABYTE;
+        if ( configuration.containsIgnoreCase( ConfigTag.EXPECTED ) ) {
+          expected = configuration.getLong( ConfigTag.EXPECTED );
+        }
+      } catch ( NumberFormatException e ) {
+        context.setError( "Distinct validator of " + fieldName + " has an invalid " + ConfigTag.BUDGET + " or " + ConfigTag.EXPECTED + " value" );
+        return;
+      }
+
+      String dir = ( context.getSymbols() != null ) ? context.getSymbols().getString( Symbols.WORK_DIRECTORY ) : null;
+      File directory = StringUtil.isNotBlank( dir ) ? new File( dir ) : new File( System.getProperty( "java.io.tmpdir" ) );
+      try {
+        counter = new KeyCounter( budget, expected, directory );
+      } catch ( IOException e ) {
+        context.setError( "Distinct validator of " + fieldName + " could not create its key store: " + e.getMessage() );
+      }
+    }
+  }
+
+
+
+
   /**
    * @see coyote.dx.FrameValidator#process(coyote.dx.context.TransactionContext)
    */
@@ -59,14 +111,16 @@ public class Distinct extends AbstractValidator implements FrameValidator {
         // get the value
         String key = field.getStringValue();
         if ( StringUtil.isNotBlank( key ) ) {
-          if ( values.containsKey( key ) ) {
-            int count = (Integer)values.get( key );
-            count++;
-            values.put( key, count );
+          int count;
+          try {
+            count = count( key );
+          } catch ( IOException e ) {
+            context.setError( "Distinct validator of " + fieldName + " could not record a value: " + e.getMessage() );
+            return false;
+          }
+          if ( count > 1 ) {
             fail( context, fieldName, fieldName + ": value of '" + key + "' has occured " + count + " times" );
             return false;
-          } else {
-            values.put( key, 1 );
           }
         } else {
           fail( context, fieldName, "Empty value for " + fieldName + " count: " + ++emptycount );
@@ -83,4 +137,47 @@ public class Distinct extends AbstractValidator implements FrameValidator {
     return true;
   }
 
+
+
+
+  /**
+   * Count an occurrence of the given value.
+   * 
+   * @param key the value observed
+   * 
+   * @return the number of times the value has been observed including this 
+   *         one
+   * 
+   * @throws IOException if the key store could not be updated
+   */
+  private synchronized int count( String key ) throws IOException {
+    if ( counter != null ) {
+      return counter.increment( key );
+    } else {
+      int[] count = values.get( key );
+      if ( count != null ) {
+        return ++count[0];
+      } else {
+        values.put( key, new int[] { 1 } );
+        return 1;
+      }
+    }
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.validate.AbstractValidator#close()
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if ( counter != null ) {
+      counter.close();
+      counter = null;
+    }
+    values.clear();
+    super.close();
+  }
+
 }
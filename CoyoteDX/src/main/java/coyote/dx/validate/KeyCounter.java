@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote
+ *      - Initial concept and implementation
+ */
+package coyote.dx.validate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import coyote.loader.log.Log;
+
+
+/**
+ * Counts the occurrences of string keys outside of the Java heap.
+ *
+ * <p>Keys are stored as UTF-8 in an append-only log and indexed by an open
+ * addressing hash table of fixed-size slots (hash, key position, key length
+ * and count). Both start in direct memory; once together they exceed the
+ * memory budget they are moved to memory-mapped files in the spill
+ * directory, letting the operating system page them as needed. The files
+ * are removed when the counter is closed.</p>
+ *
+ * <p>A Bloom filter is checked before the table so keys which have never
+ * been seen (the common case when validating distinct values) are added
+ * without comparing against any stored keys.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+class KeyCounter {
+
+  /** Size of each block of memory or file mapping */
+  private static final int SEGMENT_SIZE = 1 << 22;
+
+  /** Bytes in each table slot: hash(8), key position(8), key length(4), count(4) */
+  private static final int SLOT_SIZE = 24;
+
+  private static final int SLOTS_PER_SEGMENT = SEGMENT_SIZE / SLOT_SIZE;
+
+  /** Initial number of slots in the table */
+  private static final int INITIAL_SLOTS = 1 << 12;
+
+  private final long budget;
+  private final File spillDirectory;
+  private final BloomFilter filter;
+
+  private Region keys;
+  private long keyPosition = 0;
+  private Region table;
+  private long slots = INITIAL_SLOTS;
+  private long size = 0;
+  private byte[] scratch = new byte[256];
+
+
+
+
+  /**
+   * @param budget the number of bytes the table and keys may occupy in
+   *        memory before they are moved to files
+   * @param expected the number of distinct keys expected, used to size the
+   *        Bloom filter
+   * @param directory where the files are created if the budget is exceeded
+   * 
+   * @throws IOException if the counter could not be created
+   */
+  KeyCounter( long budget, long expected, File directory ) throws IOException {
+    this.budget = budget;
+    spillDirectory = directory;
+    filter = new BloomFilter( expected, 0.01 );
+    keys = new Region( SEGMENT_SIZE, null );
+    table = new Region( SLOTS_PER_SEGMENT * SLOT_SIZE, null );
+  }
+
+
+
+
+  /**
+   * Count an occurrence of the given key.
+   *
+   * @param key the key observed
+   *
+   * @return the number of times the key has been observed including this
+   *         one
+   *
+   * @throws IOException if the spill files could not be written
+   */
+  int increment( String key ) throws IOException {
+    byte[] data = key.getBytes( StandardCharsets.UTF_8 );
+    long hash = hash( data );
+
+    if ( filter.mightContain( hash ) ) {
+      long slot = find( hash, data );
+      if ( slot >= 0 ) {
+        ByteBuffer segment = table.segment( (int)( slot / SLOTS_PER_SEGMENT ) );
+        int offset = (int)( slot % SLOTS_PER_SEGMENT ) * SLOT_SIZE;
+        int count = segment.getInt( offset + 20 ) + 1;
+        segment.putInt( offset + 20, count );
+        return count;
+      }
+    } else {
+      filter.add( hash );
+    }
+
+    insert( hash, data );
+    return 1;
+  }
+
+
+
+
+  /**
+   * @return the number of distinct keys counted
+   */
+  long size() {
+    return size;
+  }
+
+
+
+
+  /**
+   * @return true if the keys have been moved to files
+   */
+  boolean isSpilled() {
+    return table.channel != null;
+  }
+
+
+
+
+  /**
+   * Release the memory and remove any files.
+   */
+  void close() {
+    keys.close();
+    table.close();
+  }
+
+
+
+
+  /**
+   * @return the slot holding the given key or -1 if it is not in the table
+   */
+  private long find( long hash, byte[] data ) {
+    long mask = slots - 1;
+    for ( long slot = hash & mask;; slot = ( slot + 1 ) & mask ) {
+      ByteBuffer segment = table.segment( (int)( slot / SLOTS_PER_SEGMENT ) );
+      int offset = (int)( slot % SLOTS_PER_SEGMENT ) * SLOT_SIZE;
+      if ( segment.getInt( offset + 20 ) == 0 ) {
+        return -1;
+      }
+      if ( segment.getLong( offset ) == hash && segment.getInt( offset + 16 ) == data.length && keyEquals( segment.getLong( offset + 8 ), data ) ) {
+        return slot;
+      }
+    }
+  }
+
+
+
+
+  private boolean keyEquals( long position, byte[] data ) {
+    if ( scratch.length < data.length ) {
+      scratch = new byte[data.length];
+    }
+    ByteBuffer segment = keys.segment( (int)( position / SEGMENT_SIZE ) ).duplicate();
+    segment.position( (int)( position % SEGMENT_SIZE ) );
+    segment.get( scratch, 0, data.length );
+    for ( int x = 0; x < data.length; x++ ) {
+      if ( scratch[x] != data[x] ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+
+
+  private void insert( long hash, byte[] data ) throws IOException {
+    if ( data.length > SEGMENT_SIZE ) {
+      throw new IllegalArgumentException( "Key of " + data.length + " bytes is too long" );
+    }
+
+    // keys never span segments
+    int offset = (int)( keyPosition % SEGMENT_SIZE );
+    if ( offset + data.length > SEGMENT_SIZE ) {
+      keyPosition += SEGMENT_SIZE - offset;
+    }
+    long position = keyPosition;
+    ByteBuffer segment = keys.segment( (int)( position / SEGMENT_SIZE ) ).duplicate();
+    segment.position( (int)( position % SEGMENT_SIZE ) );
+    segment.put( data );
+    keyPosition += data.length;
+
+    put( table, slots, hash, position, data.length, 1 );
+    size++;
+
+    if ( size * 2 > slots ) {
+      grow();
+    }
+    if ( !isSpilled() && keys.getAllocated() + table.getAllocated() > budget ) {
+      spill();
+    }
+  }
+
+
+
+
+  private static void put( Region region, long capacity, long hash, long position, int length, int count ) {
+    long mask = capacity - 1;
+    for ( long slot = hash & mask;; slot = ( slot + 1 ) & mask ) {
+      ByteBuffer segment = region.segment( (int)( slot / SLOTS_PER_SEGMENT ) );
+      int offset = (int)( slot % SLOTS_PER_SEGMENT ) * SLOT_SIZE;
+      if ( segment.getInt( offset + 20 ) == 0 ) {
+        segment.putLong( offset, hash );
+        segment.putLong( offset + 8, position );
+        segment.putInt( offset + 16, length );
+        segment.putInt( offset + 20, count );
+        return;
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Double the size of the table, rehashing the slots without reading the
+   * keys.
+   */
+  private void grow() throws IOException {
+    long capacity = slots * 2;
+    Region larger = new Region( table.segmentSize, isSpilled() ? createFile( "tbl" ) : null );
+    for ( long slot = 0; slot < slots; slot++ ) {
+      ByteBuffer segment = table.segment( (int)( slot / SLOTS_PER_SEGMENT ) );
+      int offset = (int)( slot % SLOTS_PER_SEGMENT ) * SLOT_SIZE;
+      int count = segment.getInt( offset + 20 );
+      if ( count != 0 ) {
+        put( larger, capacity, segment.getLong( offset ), segment.getLong( offset + 8 ), segment.getInt( offset + 16 ), count );
+      }
+    }
+    table.close();
+    table = larger;
+    slots = capacity;
+  }
+
+
+
+
+  /**
+   * Move the keys and the table to memory-mapped files.
+   */
+  private void spill() throws IOException {
+    Log.debug( "Distinct key store of " + size + " keys exceeded its budget of " + budget + " bytes, moving to " + spillDirectory );
+    keys = keys.copyTo( createFile( "key" ) );
+    table = table.copyTo( createFile( "tbl" ) );
+  }
+
+
+
+
+  private File createFile( String suffix ) throws IOException {
+    if ( spillDirectory != null && !spillDirectory.exists() ) {
+      spillDirectory.mkdirs();
+    }
+    File retval = File.createTempFile( "distinct", "." + suffix, spillDirectory );
+    retval.deleteOnExit();
+    return retval;
+  }
+
+
+
+
+  /**
+   * FNV-1a over the bytes followed by the MurmurHash3 finalizer.
+   */
+  private static long hash( byte[] data ) {
+    long h = 0xcbf29ce484222325L;
+    for ( int x = 0; x < data.length; x++ ) {
+      h ^= data[x] & 0xff;
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+
+
+
+  /**
+   * A growable sequence of equally sized segments in direct memory or mapped
+   * from a file.
+   */
+  private static final class Region {
+    final int segmentSize;
+    final List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+    final File file;
+    final FileChannel channel;
+
+
+
+
+    @SuppressWarnings("resource")
+    Region( int segmentSize, File file ) throws IOException {
+      this.segmentSize = segmentSize;
+      this.file = file;
+      channel = ( file != null ) ? new RandomAccessFile( file, "rw" ).getChannel() : null;
+    }
+
+
+
+
+    ByteBuffer segment( int index ) {
+      while ( segments.size() <= index ) {
+        if ( channel == null ) {
+          segments.add( ByteBuffer.allocateDirect( segmentSize ) );
+        } else {
+          try {
+            segments.add( channel.map( FileChannel.MapMode.READ_WRITE, (long)segments.size() * segmentSize, segmentSize ) );
+          } catch ( IOException e ) {
+            throw new IllegalStateException( "Could not map " + file + ": " + e.getMessage(), e );
+          }
+        }
+      }
+      return segments.get( index );
+    }
+
+
+
+
+    long getAllocated() {
+      return (long)segments.size() * segmentSize;
+    }
+
+
+
+
+    Region copyTo( File target ) throws IOException {
+      Region retval = new Region( segmentSize, target );
+      for ( int x = 0; x < segments.size(); x++ ) {
+        ByteBuffer source = segments.get( x ).duplicate();
+        source.clear();
+        retval.segment( x ).duplicate().put( source );
+      }
+      close();
+      return retval;
+    }
+
+
+
+
+    void close() {
+      segments.clear();
+      if ( channel != null ) {
+        try {
+          channel.close();
+        } catch ( IOException ignore ) {}
+        // mapped segments may keep the file open on some platforms
+        if ( !file.delete() ) {
+          file.deleteOnExit();
+        }
+      }
+    }
+  }
+
+}
@@ -11,12 +11,20 @@
  */
 package coyote.dx.writer;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.io.Writer;
 import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
 import coyote.commons.StringUtil;
 import coyote.commons.UriUtil;
@@ -33,14 +41,60 @@ import coyote.loader.log.LogMsg;
 
 /**
  * Base class for all frame writers writing frames to files
+ * 
+ * <p>Output to files is buffered ("buffer" bytes, default 64KB), encoded 
+ * with the configured "encoding" (default the platform encoding) and may be 
+ * compressed as it is written by setting "compression" to {@code gzip} or 
+ * {@code deflate}.</p>
+ * 
+ * <p>Output may be divided into several files by setting "rotaterows" to 
+ * the number of rows in each file and/or "rotatesize" to the approximate 
+ * number of bytes in each file. The first file is the target, subsequent 
+ * files have a sequence number inserted before the extension of the target 
+ * (e.g. {@code data.csv.gz}, {@code data.1.csv.gz}, {@code data.2.csv.gz}).
+ * Subclasses call {@link #startRow()} before writing each row so rotation 
+ * happens between rows and override {@link #startFile()} and 
+ * {@link #endFile()} to write whatever each file begins and ends with.</p>
  */
 public abstract class AbstractFrameFileWriter extends AbstractFrameWriter implements FrameWriter {
 
   protected static final String STDOUT = "STDOUT";
   protected static final String STDERR = "STDERR";
+
+  /** The default size of the output buffers in bytes */
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  /** Compression value for the GZIP format */
+  public static final String GZIP = "gzip";
+
+  /** Compression value for the ZLIB (deflate) format */
+  public static final String DEFLATE = "deflate";
+
+  /** Extensions kept at the end of the name when rotating files */
+  private static final String[] COMPRESSED_EXTENSIONS = { ".gz", ".zz", ".z" };
+
   protected int rowNumber = 0;
   protected PrintWriter printwriter = null;
 
+  /** The first file written, null when not writing to a file */
+  private File targetFile = null;
+
+  /** The file currently being written */
+  private File currentFile = null;
+
+  /** The sequence number of the current file */
+  private int fileIndex = 0;
+
+  /** Counts the bytes written to the current file */
+  private CountingOutputStream counter = null;
+
+  private long rowsInFile = 0;
+  private long rotateRows = 0;
+  private long rotateSize = 0;
+
+  /** Flag indicating output is to the console and is flushed after each row */
+  private boolean console = false;
+
 
 
 
@@ -50,6 +104,7 @@ public abstract class AbstractFrameFileWriter extends AbstractFrameWriter implem
   @Override
   public void close() throws IOException {
     if ( printwriter != null ) {
+      endFile();
       try {
         printwriter.flush();
         printwriter.close();
@@ -99,8 +154,12 @@ public abstract class AbstractFrameFileWriter extends AbstractFrameWriter implem
         // Check to see if it is STDOUT or STDERR
         if ( STDOUT.equalsIgnoreCase( target ) ) {
           printwriter = new PrintWriter( System.out );
+          console = true;
+          return;
         } else if ( STDERR.equalsIgnoreCase( target ) ) {
           printwriter = new PrintWriter( System.err );
+          console = true;
+          return;
         } else if ( uri != null ) {
           if ( UriUtil.isFile( uri ) ) {
             targetFile = UriUtil.getFile( uri );
@@ -125,10 +184,13 @@ public abstract class AbstractFrameFileWriter extends AbstractFrameWriter implem
         }
         Log.debug( "Using a target file of " + targetFile.getAbsolutePath() );
 
-        try {
-          final Writer fwriter = new FileWriter( targetFile );
-          printwriter = new PrintWriter( fwriter );
+        rotateRows = getLong( ConfigTag.ROTATE_ROWS );
+        rotateSize = getLong( ConfigTag.ROTATE_SIZE );
 
+        try {
+          printwriter = createWriter( targetFile );
+          this.targetFile = targetFile;
+          currentFile = targetFile;
         } catch ( final Exception e ) {
           Log.error( "Could not create writer: " + e.getMessage() );
           context.setError( e.getMessage() );
@@ -154,4 +216,231 @@ public abstract class AbstractFrameFileWriter extends AbstractFrameWriter implem
     printwriter = writer;
   }
 
+
+
+
+
+  /**
+   * Called by subclasses before writing each row.
+   * 
+   * <p>If the current file has reached the configured number of rows or 
+   * bytes, it is ended and the next file is started before the row is 
+   * written.</p>
+   */
+  protected void startRow() {
+    if ( currentFile != null && rowsInFile > 0 && ( ( rotateRows > 0 && rowsInFile >= rotateRows ) || ( rotateSize > 0 && counter.getCount() >= rotateSize ) ) ) {
+      rotate();
+    }
+    rowsInFile++;
+  }
+
+
+
+
+  /**
+   * Called by subclasses after writing each row.
+   * 
+   * <p>File output is left in the buffers, only console output is flushed 
+   * so it appears as it is written.</p>
+   */
+  protected void endRow() {
+    if ( console ) {
+      printwriter.flush();
+    }
+  }
+
+
+
+
+  /**
+   * Called after the second and each later file is opened so subclasses can 
+   * write whatever a file begins with.
+   * 
+   * <p>Subclasses writing a preamble to the first file do so when they are 
+   * opened.</p>
+   */
+  protected void startFile() {}
+
+
+
+
+  /**
+   * Called before each file is closed so subclasses can write whatever a file
+   * ends with.
+   */
+  protected void endFile() {}
+
+
+
+
+  /**
+   * @return the file currently being written, or null if the output is not a
+   *         file
+   */
+  public File getCurrentFile() {
+    return currentFile;
+  }
+
+
+
+
+  /**
+   * End the current file and continue writing to the next one.
+   */
+  private void rotate() {
+    final File nextFile = getRotatedFile( targetFile, fileIndex + 1 );
+    final PrintWriter nextWriter;
+    try {
+      nextWriter = createWriter( nextFile );
+    } catch ( final IOException e ) {
+      // keep writing to the current file
+      Log.error( "Could not create writer for " + nextFile.getAbsolutePath() + ": " + e.getMessage() );
+      context.setError( e.getMessage() );
+      return;
+    }
+
+    endFile();
+    printwriter.close();
+    Log.debug( "Wrote " + rowsInFile + " rows to " + currentFile.getAbsolutePath() + ", continuing with " + nextFile.getAbsolutePath() );
+
+    printwriter = nextWriter;
+    currentFile = nextFile;
+    fileIndex++;
+    rowsInFile = 0;
+    startFile();
+  }
+
+
+
+
+  /**
+   * Create the writer for the given file using the configured encoding, 
+   * buffer size and compression.
+   * 
+   * @param file the file to write
+   * 
+   * @return a writer to the file
+   * 
+   * @throws IOException if the file could not be created
+   */
+  private PrintWriter createWriter( final File file ) throws IOException {
+    int size = getInteger( ConfigTag.BUFFER );
+    if ( size <= 0 ) {
+      size = DEFAULT_BUFFER_SIZE;
+    }
+
+    Charset charset = Charset.defaultCharset();
+    final String encoding = getString( ConfigTag.ENCODING );
+    if ( StringUtil.isNotBlank( encoding ) ) {
+      try {
+        charset = Charset.forName( encoding.trim() );
+      } catch ( final IllegalArgumentException e ) {
+        Log.warn( "Unsupported encoding '" + encoding + "', using " + charset.name() );
+      }
+    }
+
+    final CountingOutputStream count = new CountingOutputStream( Files.newOutputStream( file.toPath() ) );
+    OutputStream out;
+    final String compression = getString( ConfigTag.COMPRESSION );
+    if ( GZIP.equalsIgnoreCase( compression ) ) {
+      out = new GZIPOutputStream( count, size );
+    } else if ( DEFLATE.equalsIgnoreCase( compression ) ) {
+      final Deflater deflater = new Deflater();
+      out = new DeflaterOutputStream( count, deflater, size ) {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          }
+          finally {
+            deflater.end();
+          }
+        }
+      };
+    } else {
+      if ( StringUtil.isNotBlank( compression ) ) {
+        Log.warn( "Unsupported compression '" + compression + "', writing uncompressed data" );
+      }
+      out = new BufferedOutputStream( count, size );
+    }
+
+    counter = count;
+    return new PrintWriter( new BufferedWriter( new OutputStreamWriter( out, charset ), size ) );
+  }
+
+
+
+
+  /**
+   * Insert the sequence number before the extension of the file name, 
+   * keeping any compression extension at the end.
+   * 
+   * @param file the first file
+   * @param index the sequence number
+   * 
+   * @return the file with the given sequence number
+   */
+  static File getRotatedFile( final File file, final int index ) {
+    String name = file.getName();
+    String suffix = "";
+    final String lower = name.toLowerCase();
+    for ( final String extension : COMPRESSED_EXTENSIONS ) {
+      if ( lower.endsWith( extension ) && name.length() > extension.length() ) {
+        suffix = name.substring( name.length() - extension.length() );
+        name = name.substring( 0, name.length() - extension.length() );
+        break;
+      }
+    }
+
+    final int dot = name.lastIndexOf( '.' );
+    if ( dot > 0 ) {
+      name = name.substring( 0, dot ) + "." + index + name.substring( dot ) + suffix;
+    } else {
+      name = name + "." + index + suffix;
+    }
+    return new File( file.getParentFile(), name );
+  }
+
+
+
+
+  /**
+   * Counts the bytes passing through to the file.
+   */
+  private static final class CountingOutputStream extends FilterOutputStream {
+    private long count = 0;
+
+
+
+
+    CountingOutputStream( final OutputStream out ) {
+      super( out );
+    }
+
+
+
+
+    @Override
+    public void write( final int b ) throws IOException {
+      out.write( b );
+      count++;
+    }
+
+
+
+
+    @Override
+    public void write( final byte[] b, final int off, final int len ) throws IOException {
+      out.write( b, off, len );
+      count += len;
+    }
+
+
+
+
+    long getCount() {
+      return count;
+    }
+  }
+
 }
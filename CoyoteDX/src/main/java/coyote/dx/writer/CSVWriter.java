@@ -298,6 +298,8 @@ public class CSVWriter extends AbstractFrameFileWriter implements FrameWriter, C
    * @param frame the frame to be written
    */
   private void writeFrame( final DataFrame frame ) {
+    startRow();
+
     // The first frame sets the columns and column order
     if ( rowNumber == 0 ) {
 
@@ -351,6 +353,21 @@ public class CSVWriter extends AbstractFrameFileWriter implements FrameWriter, C
 
 
 
+  /**
+   * Each file after the first begins with the header, if one is used.
+   * 
+   * @see coyote.dx.writer.AbstractFrameFileWriter#startFile()
+   */
+  @Override
+  protected void startFile() {
+    if ( isUsingHeader() ) {
+      writeHeader();
+    }
+  }
+
+
+
+
   /**
    * Write a single row of data.
    * 
@@ -400,7 +417,7 @@ public class CSVWriter extends AbstractFrameFileWriter implements FrameWriter, C
 
     retval.append( LINE_DELIMITER );
     printwriter.write( retval.toString() );
-    printwriter.flush();
+    endRow();
 
   }
 
@@ -140,6 +140,8 @@ public class FlatFileWriter extends AbstractFrameFileWriter implements FrameWrit
    * @param frame the frame to be written
    */
   private void writeFrame( final DataFrame frame ) {
+    startRow();
+
     final StringBuilder line = new StringBuilder( recordLength );
     for ( int i = 0; i < recordLength; i++ ) {
       line.append( padChar );
@@ -178,7 +180,7 @@ public class FlatFileWriter extends AbstractFrameFileWriter implements FrameWrit
     // write to line to the file
     printwriter.write( line.toString() );
     printwriter.write( StringUtil.LINE_FEED );
-    printwriter.flush();
+    endRow();
 
     // Increment the row number
     rowNumber++;
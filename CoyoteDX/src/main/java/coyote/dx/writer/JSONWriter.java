@@ -59,10 +59,11 @@ public class JSONWriter extends AbstractFrameFileWriter implements FrameWriter,
    * @param frame the frame to be written
    */
   private void writeFrame( final DataFrame frame ) {
+    startRow();
 
     printwriter.write( frame.toString() );
     printwriter.write( StringUtil.LINE_FEED );
-    printwriter.flush();
+    endRow();
 
     // Increment the row number
     rowNumber++;
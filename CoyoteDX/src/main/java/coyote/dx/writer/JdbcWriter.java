@@ -12,6 +12,9 @@
 package coyote.dx.writer;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
@@ -25,6 +28,9 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import coyote.commons.JdbcUtil;
 import coyote.commons.StringUtil;
@@ -58,6 +64,17 @@ import coyote.loader.log.LogMsg;
  * format (DataFrame) is designed to support data types common to many 
  * different technologies and therefore dictates what the framework 
  * supports.</p> 
+ * 
+ * <p>Setting "bulk" to true loads each batch with the fastest mechanism the 
+ * database supports: COPY for PostgreSQL, INSERT statements with multiple 
+ * rows of VALUES (sized to the parameter limit of the database) for H2, 
+ * Derby, MySQL and SQL Server, and JDBC batches for everything else. A 
+ * mechanism can also be named explicitly with "bulk" set to "copy", "values"
+ * or "batch". Bulk loading only applies when "batch" is greater than 1.</p>
+ * 
+ * <p>Normally the driver commits each statement. Setting "commitinterval" 
+ * turns off auto-commit and commits after at least that many rows have been
+ * written, independent of the batch size.</p>
  */
 public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, ConfigurableComponent {
 
@@ -89,6 +106,27 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
 
   protected PreparedStatement ps = null;
 
+  /** The names of the columns in the INSERT statement, in parameter order */
+  private String[] columnNames = null;
+
+  /** The SQL type used to bind a null to each column in the INSERT statement */
+  private int[] nullTypes = null;
+
+  /** The position each column was last found in a frame, tried first on the next frame */
+  private int[] fieldHints = null;
+
+  /** The bulk loading mechanism from the DatabaseDialect, null for JDBC batches */
+  private String bulkMode = null;
+
+  /** Multi-row INSERT statements by the number of rows they insert */
+  private final Map<Integer, PreparedStatement> bulkStatements = new HashMap<Integer, PreparedStatement>();
+
+  /** The number of rows to write between commits, 0 leaves commits to the driver */
+  private int commitInterval = 0;
+
+  /** The number of rows written since the last commit */
+  private long uncommitted = 0;
+
 
 
 
@@ -112,6 +150,15 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
       }
     }
 
+    for ( final PreparedStatement stmt : bulkStatements.values() ) {
+      try {
+        stmt.close();
+      } catch ( final SQLException e ) {
+        Log.error( LogMsg.createMsg( CDX.MSG, "Writer.Could not close prepared statememt: {%s}", e.getMessage() ) );
+      }
+    }
+    bulkStatements.clear();
+
     if ( connection != null ) {
       try {
         commit();
@@ -147,25 +194,32 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
 
 
   /**
-   * @return the insert SQL appropriate for this frameset
+   * @param rows the number of rows of values the statement is to insert
+   * 
+   * @return the insert SQL for the planned columns
    */
-  private String generateInsertSQL() {
+  private String generateInsertSQL( final int rows ) {
     final StringBuffer c = new StringBuffer( "insert into " );
-    final StringBuffer v = new StringBuffer();
+    final StringBuffer v = new StringBuffer( "(" );
 
     c.append( getTable() );
     c.append( " (" );
-    for ( final String name : frameset.getColumns() ) {
+    for ( final String name : columnNames ) {
       c.append( name );
       c.append( ", " );
       v.append( "?, " );
     }
     c.delete( c.length() - 2, c.length() );
     v.delete( v.length() - 2, v.length() );
+    v.append( ")" );
 
-    c.append( ") values (" );
-    c.append( v.toString() );
-    c.append( ")" );
+    c.append( ") values " );
+    for ( int r = 0; r < rows; r++ ) {
+      if ( r > 0 ) {
+        c.append( ", " );
+      }
+      c.append( v );
+    }
 
     return c.toString();
   }
@@ -173,6 +227,302 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
 
 
 
+  /**
+   * Plan how frames are bound to the INSERT statement.
+   * 
+   * <p>The columns are fixed in the order they will appear in the statement 
+   * and the type used to bind nulls is taken from the table definition so 
+   * that binding a row does not need to look anything up by name.</p>
+   */
+  private void planColumns() {
+    final List<String> columns = frameset.getColumns();
+    columnNames = columns.toArray( new String[columns.size()] );
+    nullTypes = new int[columnNames.length];
+    fieldHints = new int[columnNames.length];
+
+    for ( int i = 0; i < columnNames.length; i++ ) {
+      final ColumnDefinition column = ( tableschema != null ) ? tableschema.findColumn( columnNames[i] ) : null;
+      nullTypes[i] = getNullType( ( column != null ) ? column.getType() : null );
+      fieldHints[i] = -1;
+    }
+  }
+
+
+
+
+  /**
+   * @param type the type of the table column
+   * 
+   * @return the SQL type to use when binding a null to the column
+   */
+  private static int getNullType( final ColumnType type ) {
+    if ( type == null ) {
+      return Types.VARCHAR;
+    }
+    switch ( type ) {
+      case BOOLEAN:
+        return Types.BOOLEAN;
+      case BYTE:
+        return Types.TINYINT;
+      case SHORT:
+        return Types.SMALLINT;
+      case INT:
+        return Types.INTEGER;
+      case LONG:
+        return Types.BIGINT;
+      case FLOAT:
+        return Types.FLOAT;
+      case DOUBLE:
+        return Types.DOUBLE;
+      case DATE:
+        return Types.TIMESTAMP;
+      default:
+        return Types.VARCHAR;
+    }
+  }
+
+
+
+
+  /**
+   * Find the field for the planned column in the given frame.
+   * 
+   * <p>Frames usually share the same layout, so the position the column was 
+   * found in the last frame is checked before searching by name.</p>
+   * 
+   * @param frame the frame being written
+   * @param column the index of the planned column
+   * 
+   * @return the field for the column or null if the frame does not contain it
+   */
+  private DataField findField( final DataFrame frame, final int column ) {
+    final int hint = fieldHints[column];
+    if ( hint >= 0 && hint < frame.getFieldCount() ) {
+      final DataField field = frame.getField( hint );
+      if ( columnNames[column].equals( field.getName() ) ) {
+        return field;
+      }
+    }
+    final int indx = frame.indexOf( columnNames[column] );
+    fieldHints[column] = indx;
+    return ( indx > -1 ) ? frame.getField( indx ) : null;
+  }
+
+
+
+
+  /**
+   * Bind the fields of the given frame to the parameters of the prepared 
+   * statement according to the column plan.
+   * 
+   * @param stmt the statement to which the fields are bound
+   * @param offset the number of parameters in the statement before this row
+   * @param frame the frame to bind
+   */
+  private void bindFrame( final PreparedStatement stmt, final int offset, final DataFrame frame ) {
+    for ( int i = 0; i < columnNames.length; i++ ) {
+      final DataField field = findField( frame, i );
+      if ( field != null ) {
+        setData( stmt, offset + i + 1, field );
+      } else {
+        try {
+          stmt.setNull( offset + i + 1, nullTypes[i] );
+        } catch ( final SQLException e ) {
+          getContext().setError( "Could not bind null to " + columnNames[i] + ": " + e.getMessage() );
+        }
+      }
+      if ( getContext().isInError() ) {
+        break;
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Determine which bulk loading mechanism to use from our configuration and
+   * the database we are connected to.
+   * 
+   * @return the bulk mode from the DatabaseDialect or null to use JDBC 
+   *         batches
+   */
+  private String getBulkMode() {
+    final String value = getString( ConfigTag.BULK );
+    if ( StringUtil.isBlank( value ) || batchsize <= 1 ) {
+      return null;
+    } else if ( getBoolean( ConfigTag.BULK ) ) {
+      return DatabaseDialect.getBulkMode( database );
+    } else if ( DatabaseDialect.BULK_COPY.equalsIgnoreCase( value ) ) {
+      return DatabaseDialect.BULK_COPY;
+    } else if ( DatabaseDialect.BULK_VALUES.equalsIgnoreCase( value ) ) {
+      return DatabaseDialect.BULK_VALUES;
+    }
+    return null;
+  }
+
+
+
+
+  /**
+   * Write the rows in the frameset with multi-row INSERT statements, each 
+   * holding as many rows as the batch size and the parameter and row limits 
+   * of the database allow.
+   */
+  private void writeValues() {
+    final List<DataFrame> rows = frameset.getRows();
+    int limit = DatabaseDialect.getMaxParameters( database );
+    if ( limit < 1 ) {
+      // unknown database, stay within the most restrictive known limit
+      limit = 2000;
+    }
+    int perStatement = Math.max( 1, Math.min( batchsize, limit / columnNames.length ) );
+    final int maxRows = DatabaseDialect.getMaxRows( database );
+    if ( maxRows > 0 && perStatement > maxRows ) {
+      perStatement = maxRows;
+    }
+
+    int start = 0;
+    while ( start < rows.size() && getContext().isNotInError() ) {
+      final int count = Math.min( perStatement, rows.size() - start );
+      try {
+        PreparedStatement stmt = bulkStatements.get( count );
+        if ( stmt == null ) {
+          stmt = getConnection().prepareStatement( generateInsertSQL( count ) );
+          bulkStatements.put( count, stmt );
+        }
+        for ( int r = 0; r < count && getContext().isNotInError(); r++ ) {
+          bindFrame( stmt, r * columnNames.length, rows.get( start + r ) );
+        }
+        if ( getContext().isNotInError() ) {
+          stmt.executeUpdate();
+        }
+      } catch ( final SQLException e ) {
+        getContext().setError( "Could not insert rows: " + e.getMessage() );
+      }
+      start += count;
+    }
+  }
+
+
+
+
+  /**
+   * Write the rows in the frameset with the PostgreSQL COPY command.
+   * 
+   * <p>The driver is accessed reflectively so it is not needed to build this
+   * writer. If the driver does not provide the copy API, multi-row INSERT 
+   * statements are used instead.</p>
+   */
+  private void writeCopy() {
+    final StringBuilder csv = new StringBuilder();
+    for ( final DataFrame frame : frameset.getRows() ) {
+      for ( int i = 0; i < columnNames.length; i++ ) {
+        if ( i > 0 ) {
+          csv.append( ',' );
+        }
+        appendCsv( csv, findField( frame, i ) );
+      }
+      csv.append( '\n' );
+    }
+    if ( getContext().isInError() ) {
+      return;
+    }
+
+    final StringBuilder sql = new StringBuilder( "COPY " );
+    sql.append( getTable() );
+    sql.append( " (" );
+    for ( int i = 0; i < columnNames.length; i++ ) {
+      if ( i > 0 ) {
+        sql.append( ", " );
+      }
+      sql.append( columnNames[i] );
+    }
+    sql.append( ") FROM STDIN WITH (FORMAT csv)" );
+
+    try {
+      final Connection conn = getConnection();
+      final Class<?> pgConnection = Class.forName( "org.postgresql.PGConnection", true, conn.getClass().getClassLoader() );
+      final Object copyApi = pgConnection.getMethod( "getCopyAPI" ).invoke( conn.unwrap( pgConnection ) );
+      copyApi.getClass().getMethod( "copyIn", String.class, Reader.class ).invoke( copyApi, sql.toString(), new StringReader( csv.toString() ) );
+    } catch ( final InvocationTargetException e ) {
+      getContext().setError( "Could not copy rows: " + e.getCause().getMessage() );
+    } catch ( final ClassNotFoundException | NoSuchMethodException | IllegalAccessException | SQLException e ) {
+      Log.warn( LogMsg.createMsg( CDX.MSG, "Writer.COPY is not available ({%s}), using multi-row inserts", e.getMessage() ) );
+      bulkMode = DatabaseDialect.BULK_VALUES;
+      writeValues();
+    }
+  }
+
+
+
+
+  /**
+   * Append the value of the field to the buffer in CSV format as expected by 
+   * the PostgreSQL COPY command.
+   * 
+   * @param csv the buffer to which the value is appended
+   * @param field the field to append, may be null
+   */
+  private void appendCsv( final StringBuilder csv, final DataField field ) {
+    // an empty unquoted value is a null
+    if ( field == null || field.isNull() ) {
+      return;
+    }
+    switch ( field.getType() ) {
+      case DataField.FRAMETYPE:
+      case DataField.BYTEARRAY:
+      case DataField.ARRAY:
+        getContext().setError( "Cannot add complex objects to table" );
+        break;
+      case DataField.DATE:
+        csv.append( JdbcUtil.getTimeStamp( (Date)field.getObjectValue() ).toString() );
+        break;
+      case DataField.STRING:
+      case DataField.URI:
+      case DataField.UDEF:
+        final String value = field.getStringValue();
+        csv.append( '"' );
+        for ( int i = 0; i < value.length(); i++ ) {
+          final char ch = value.charAt( i );
+          if ( ch == '"' ) {
+            csv.append( '"' );
+          }
+          csv.append( ch );
+        }
+        csv.append( '"' );
+        break;
+      default:
+        csv.append( field.getObjectValue() );
+        break;
+    }
+  }
+
+
+
+
+  /**
+   * Commit once enough rows have been written since the last commit.
+   * 
+   * @param rows the number of rows just written
+   */
+  private void commitInterval( final int rows ) {
+    if ( commitInterval > 0 ) {
+      uncommitted += rows;
+      if ( uncommitted >= commitInterval ) {
+        try {
+          commit();
+        } catch ( final SQLException e ) {
+          getContext().setError( "Could not commit: " + e.getMessage() );
+        }
+        uncommitted = 0;
+      }
+    }
+  }
+
+
+
+
   public int getBatchSize() {
     try {
       return configuration.getAsInt( ConfigTag.BATCH );
@@ -311,6 +661,9 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
       setBatchSize( getInteger( ConfigTag.BATCH ) );
       Log.debug( LogMsg.createMsg( CDX.MSG, "Writer.using_batch_size", getClass().getName(), getBatchSize() ) );
 
+      commitInterval = Math.max( 0, getInteger( ConfigTag.COMMIT_INTERVAL ) );
+      Log.debug( LogMsg.createMsg( CDX.MSG, "Writer.Using a commit interval of {%s}", commitInterval ) );
+
       setLibrary( getString( ConfigTag.LIBRARY ) );
       Log.debug( LogMsg.createMsg( CDX.MSG, "Writer.using_driver", getClass().getName(), getLibrary() ) );
       //TODO: try to ensure the JAR exists
@@ -401,7 +754,9 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
           getContext().setError( "Cannot add byte arrays to table" );
           break;
         case DataField.STRING:
-          Log.debug( LogMsg.createMsg( CDX.MSG, "Database.saving_field_as", getClass().getName(), field.getName(), indx, "String" ) );
+          if ( Log.isLogging( Log.DEBUG_EVENTS ) ) {
+            Log.debug( LogMsg.createMsg( CDX.MSG, "Database.saving_field_as", getClass().getName(), field.getName(), indx, "String" ) );
+          }
           if ( field.isNull() ) {
             pstmt.setNull( indx, java.sql.Types.VARCHAR );
           } else {
@@ -410,42 +765,52 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
           break;
         case DataField.S8:
         case DataField.U8:
-          Log.debug( LogMsg.createMsg( CDX.MSG, "Database.saving_field_as", getClass().getName(), field.getName(), indx, "S8-byte" ) );
+          if ( Log.isLogging( Log.DEBUG_EVENTS ) ) {
+            Log.debug( LogMsg.createMsg( CDX.MSG, "Database.saving_field_as", getClass().getName(), field.getName(), indx, "S8-byte" ) );
+          }
           if ( field.isNull() ) {
             pstmt.setNull( indx, java.sql.Types.TINYINT );
           } else {
-            pstmt.setByte( indx, (byte)field.getObjectValue() );
+            pstmt.setByte( indx, ( (Number)field.getObjectValue() ).byteValue() );
           }
           break;
         case DataField.S16:
         case DataField.U16:
-          Log.debug( LogMsg.createMsg( CDX.MSG, "Database.saving_field_as", getClass().getName(), field.getName(), indx, "S16-Short" ) );
+          if ( Log.isLogging( Log.DEBUG_EVENTS ) ) {
+            Log.debug( LogMsg.createMsg( CDX.MSG, "Database.saving_field_as", getClass().getName(), field.getName(), indx, "S16-Short" ) );
+          }
           if ( field.isNull() ) {
             pstmt.setNull( indx, java.sql.Types.SMALLINT );
           } else {
-            pstmt.setShort( indx, (Short)field.getObjectValue() );
+            pstmt.setShort( indx, ( (Number)field.getObjectValue() ).shortValue() );
           }
           break;
         case DataField.S32:
         case DataField.U32:
-          Log.debug( LogMsg.createMsg( CDX.MSG, "Database.saving_field_as", getClass().getName(), field.getName(), indx, "S32-Integer" ) );
+          if ( Log.isLogging( Log.DEBUG_EVENTS ) ) {
+            Log.debug( LogMsg.createMsg( CDX.MSG, "Database.saving_field_as", getClass().getName(), field.getName(), indx, "S32-Integer" ) );
+          }
           if ( field.isNull() ) {
             pstmt.setNull( indx, java.sql.Types.INTEGER );
           } else {
-            pstmt.setInt( indx, (Integer)field.getObjectValue() );
+            pstmt.setInt( indx, ( (Number)field.getObjectValue() ).intValue() );
           }
           break;
         case DataField.S64:
         case DataField.U64:
-          Log.debug( LogMsg.createMsg( CDX.MSG, "Database.saving_field_as", getClass().getName(), field.getName(), indx, "S64-Long" ) );
+          if ( Log.isLogging( Log.DEBUG_EVENTS ) ) {
+            Log.debug( LogMsg.createMsg( CDX.MSG, "Database.saving_field_as", getClass().getName(), field.getName(), indx, "S64-Long" ) );
+          }
           if ( field.isNull() ) {
             pstmt.setNull( indx, java.sql.Types.BIGINT );
           } else {
-            pstmt.setLong( indx, (Integer)field.getObjectValue() );
+            pstmt.setLong( indx, ( (Number)field.getObjectValue() ).longValue() );
           }
           break;
         case DataField.FLOAT:
-          Log.debug( LogMsg.createMsg( CDX.MSG, "Database.saving_field_as", getClass().getName(), field.getName(), indx, "Float" ) );
+          if ( Log.isLogging( Log.DEBUG_EVENTS ) ) {
+            Log.debug( LogMsg.createMsg( CDX.MSG, "Database.saving_field_as", getClass().getName(), field.getName(), indx, "Float" ) );
+          }
           if ( field.isNull() ) {
             pstmt.setNull( indx, java.sql.Types.FLOAT );
           } else {
@@ -453,7 +818,9 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
           }
           break;
         case DataField.DOUBLE:
-          Log.debug( LogMsg.createMsg( CDX.MSG, "Database.saving_field_as", getClass().getName(), field.getName(), indx, "Double" ) );
+          if ( Log.isLogging( Log.DEBUG_EVENTS ) ) {
+            Log.debug( LogMsg.createMsg( CDX.MSG, "Database.saving_field_as", getClass().getName(), field.getName(), indx, "Double" ) );
+          }
           if ( field.isNull() ) {
             pstmt.setNull( indx, java.sql.Types.DOUBLE );
           } else {
@@ -461,7 +828,9 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
           }
           break;
         case DataField.BOOLEANTYPE:
-          Log.debug( LogMsg.createMsg( CDX.MSG, "Database.saving_field_as", getClass().getName(), field.getName(), indx, "Boolean" ) );
+          if ( Log.isLogging( Log.DEBUG_EVENTS ) ) {
+            Log.debug( LogMsg.createMsg( CDX.MSG, "Database.saving_field_as", getClass().getName(), field.getName(), indx, "Boolean" ) );
+          }
           if ( field.isNull() ) {
             pstmt.setNull( indx, java.sql.Types.BOOLEAN );
           } else {
@@ -469,7 +838,9 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
           }
           break;
         case DataField.DATE:
-          Log.debug( LogMsg.createMsg( CDX.MSG, "Database.saving_field_as", getClass().getName(), field.getName(), indx, "Timestamp" ) );
+          if ( Log.isLogging( Log.DEBUG_EVENTS ) ) {
+            Log.debug( LogMsg.createMsg( CDX.MSG, "Database.saving_field_as", getClass().getName(), field.getName(), indx, "Timestamp" ) );
+          }
           if ( field.isNull() ) {
             pstmt.setNull( indx, java.sql.Types.TIMESTAMP );
           } else {
@@ -478,7 +849,9 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
           }
           break;
         case DataField.URI:
-          Log.debug( LogMsg.createMsg( CDX.MSG, "Database.saving_field_as", getClass().getName(), field.getName(), indx, "String" ) );
+          if ( Log.isLogging( Log.DEBUG_EVENTS ) ) {
+            Log.debug( LogMsg.createMsg( CDX.MSG, "Database.saving_field_as", getClass().getName(), field.getName(), indx, "String" ) );
+          }
           pstmt.setString( indx, field.getStringValue() );
           break;
         case DataField.ARRAY:
@@ -585,11 +958,18 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
       // sure the table exists
       if ( checkTable() ) {
 
-        SQL = generateInsertSQL();
+        planColumns();
+        SQL = generateInsertSQL( 1 );
         Log.debug( LogMsg.createMsg( CDX.MSG, "Writer.using_sql", getClass().getName(), SQL ) );
 
+        bulkMode = getBulkMode();
+        Log.debug( LogMsg.createMsg( CDX.MSG, "Writer.Using a bulk mode of {%s}", bulkMode ) );
+
         final Connection connection = getConnection();
         try {
+          if ( commitInterval > 0 ) {
+            connection.setAutoCommit( false );
+          }
           ps = connection.prepareStatement( SQL );
         } catch ( final SQLException e ) {
 
@@ -615,39 +995,39 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
     if ( getContext().isNotInError() ) {
       if ( batchsize <= 1 ) {
         final DataFrame frame = frameset.get( 0 );
-        Log.debug( LogMsg.createMsg( CDX.MSG, "Writer.Writing single frame {%s}", getClass().getName(), frame ) );
-
-        int indx = 1;
-        for ( final String name : frameset.getColumns() ) {
-          final DataField field = frame.getField( name );
-          setData( ps, indx++, field );
-          if ( getContext().isInError() ) {
-            break;
-          }
+        if ( Log.isLogging( Log.DEBUG_EVENTS ) ) {
+          Log.debug( LogMsg.createMsg( CDX.MSG, "Writer.Writing single frame {%s}", getClass().getName(), frame ) );
         }
 
-        Log.debug( LogMsg.createMsg( CDX.MSG, "Writer.executing_sql", getClass().getName(), ps.toString() ) );
+        bindFrame( ps, 0, frame );
+
+        if ( Log.isLogging( Log.DEBUG_EVENTS ) ) {
+          Log.debug( LogMsg.createMsg( CDX.MSG, "Writer.executing_sql", getClass().getName(), ps.toString() ) );
+        }
 
         try {
           ps.execute();
+          commitInterval( 1 );
         } catch ( final SQLException e ) {
           getContext().setError( "Could not insert single row: " + e.getMessage() );
         }
 
+      } else if ( DatabaseDialect.BULK_VALUES.equals( bulkMode ) ) {
+        writeValues();
+        commitInterval( frameset.size() );
+      } else if ( DatabaseDialect.BULK_COPY.equals( bulkMode ) ) {
+        writeCopy();
+        commitInterval( frameset.size() );
       } else {
         // Now write a batch
         for ( final DataFrame frame : frameset.getRows() ) {
-          Log.debug( LogMsg.createMsg( CDX.MSG, "Writer.writing_frame", this.getClass().getName(), frame ) );
+          if ( Log.isLogging( Log.DEBUG_EVENTS ) ) {
+            Log.debug( LogMsg.createMsg( CDX.MSG, "Writer.writing_frame", this.getClass().getName(), frame ) );
+          }
 
-          int indx = 1;
-          for ( final String name : frameset.getColumns() ) {
-            final DataField field = frame.getField( name );
-            if ( ( field != null ) && !field.isNull() ) {
-              setData( ps, indx++, field );
-            }
-            if ( getContext().isInError() ) {
-              break;
-            }
+          bindFrame( ps, 0, frame );
+          if ( getContext().isInError() ) {
+            break;
           }
 
           // add this frame as a record to the batch
@@ -661,6 +1041,7 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
         if ( getContext().isNotInError() ) {
           try {
             ps.executeBatch();
+            commitInterval( frameset.size() );
           } catch ( final SQLException e ) {
             getContext().setError( "Could not insert batch: " + e.getMessage() );
           }
@@ -956,11 +1337,15 @@ public class JdbcWriter extends AbstractFrameWriter implements FrameWriter, Conf
    * @param frame the frame to be written
    */
   private void writeFrame( final DataFrame frame ) {
-    Log.debug( LogMsg.createMsg( CDX.MSG, "Writer.writing_fields", getClass().getName(), frame.size() ) );
+    if ( Log.isLogging( Log.DEBUG_EVENTS ) ) {
+      Log.debug( LogMsg.createMsg( CDX.MSG, "Writer.writing_fields", getClass().getName(), frame.size() ) );
+    }
     frameset.add( frame );
 
     if ( frameset.size() >= batchsize ) {
-      Log.debug( LogMsg.createMsg( CDX.MSG, "Writer.writing_batch", getClass().getName(), frameset.size(), batchsize ) );
+      if ( Log.isLogging( Log.DEBUG_EVENTS ) ) {
+        Log.debug( LogMsg.createMsg( CDX.MSG, "Writer.writing_batch", getClass().getName(), frameset.size(), batchsize ) );
+      }
       writeBatch();
     }
 
@@ -54,17 +54,49 @@ public class XMLWriter extends AbstractFrameFileWriter implements FrameWriter, C
    */
   @Override
   public void close() throws IOException {
+    b.delete( 0, b.length() );
+
+    // Super class close always comes last
+    super.close();
+  }
 
+
+
+
+  /**
+   * Each file ends with the closing root element and the footer.
+   * 
+   * @see coyote.dx.writer.AbstractFrameFileWriter#endFile()
+   */
+  @Override
+  protected void endFile() {
     printwriter.write( "</" + rootElement + ">" );
     printwriter.write( StringUtil.LINE_FEED );
     printwriter.write( footerText );
     printwriter.write( StringUtil.LINE_FEED );
-    printwriter.flush();
-    
-    b.delete( 0, b.length() );
+  }
 
-    // Super class close always comes last
-    super.close();
+
+
+
+  /**
+   * Each file begins with the header and the opening root element.
+   * 
+   * @see coyote.dx.writer.AbstractFrameFileWriter#startFile()
+   */
+  @Override
+  protected void startFile() {
+    printwriter.write( headerText );
+    printwriter.write( StringUtil.LINE_FEED );
+    final StringBuffer root = new StringBuffer( "<" );
+    root.append( rootElement );
+    if ( StringUtil.isNotBlank( rootAttributes ) ) {
+      root.append( " " );
+      root.append( Template.resolve( rootAttributes, context.getSymbols() ).trim() );
+    }
+    root.append( ">" );
+    printwriter.write( root.toString() );
+    printwriter.write( StringUtil.LINE_FEED );
   }
 
 
@@ -189,18 +221,9 @@ public class XMLWriter extends AbstractFrameFileWriter implements FrameWriter, C
       setFieldFormat( new MessageFormat( format ) );
     }
 
-    printwriter.write( headerText );
-    printwriter.write( StringUtil.LINE_FEED );
-    final StringBuffer b = new StringBuffer( "<" );
-    b.append( rootElement );
-    if ( StringUtil.isNotBlank( rootAttributes ) ) {
-      b.append( " " );
-      b.append( Template.resolve( rootAttributes, context.getSymbols() ).trim() );
+    if ( printwriter != null ) {
+      startFile();
     }
-    b.append( ">" );
-    printwriter.write( b.toString() );
-    printwriter.write( StringUtil.LINE_FEED );
-    printwriter.flush();
 
   }
 
@@ -310,6 +333,7 @@ public class XMLWriter extends AbstractFrameFileWriter implements FrameWriter, C
    * @param frame the frame to be written
    */
   private void writeFrame( final DataFrame frame ) {
+    startRow();
 
     // Clear out our buffer
     b.delete( 0, b.length() );
@@ -349,7 +373,7 @@ public class XMLWriter extends AbstractFrameFileWriter implements FrameWriter, C
 
     printwriter.write( b.toString() );
     printwriter.write( StringUtil.LINE_FEED );
-    printwriter.flush();
+    endRow();
 
     // Increment the row number
     rowNumber++;
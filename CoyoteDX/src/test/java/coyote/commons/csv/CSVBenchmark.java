@@ -0,0 +1,96 @@
+package coyote.commons.csv;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+
+
+/**
+ * Compares the time taken by the CSVReader and the CSVScanner to read a
+ * generated file.
+ *
+ * <p>This is not run as part of the unit tests. The first argument is the
+ * size of the generated file in megabytes (default 1024) and the optional
+ * second argument is the number of columns the scanner should materialize
+ * to show the effect of reading only some of the columns.</p>
+ */
+public class CSVBenchmark {
+
+  public static void main( String[] args ) throws Exception {
+    long megabytes = ( args.length > 0 ) ? Long.parseLong( args[0] ) : 1024;
+    int wanted = ( args.length > 1 ) ? Integer.parseInt( args[1] ) : Integer.MAX_VALUE;
+
+    File file = File.createTempFile( "benchmark", ".csv" );
+    file.deleteOnExit();
+    long records = generate( file, megabytes * 1024 * 1024 );
+    System.out.println( "Generated " + file.length() + " bytes in " + records + " records" );
+
+    for ( int run = 0; run < 3; run++ ) {
+      long start = System.nanoTime();
+      long count = 0;
+      long chars = 0;
+      CSVReader reader = new CSVReader( new FileReader( file ) );
+      String[] fields;
+      while ( ( fields = reader.readNext() ) != null ) {
+        count++;
+        for ( int x = 0; x < fields.length && x < wanted; x++ ) {
+          chars += fields[x].length();
+        }
+      }
+      reader.close();
+      report( "CSVReader", count, chars, start );
+
+      start = System.nanoTime();
+      count = 0;
+      chars = 0;
+      CSVScanner scanner = new CSVScanner( new FileReader( file ) );
+      while ( scanner.next() ) {
+        count++;
+        int fieldCount = scanner.getFieldCount();
+        for ( int x = 0; x < fieldCount && x < wanted; x++ ) {
+          chars += scanner.get( x ).length();
+        }
+      }
+      scanner.close();
+      report( "CSVScanner", count, chars, start );
+    }
+    file.delete();
+  }
+
+
+
+
+  private static void report( String name, long count, long chars, long start ) {
+    long millis = ( System.nanoTime() - start ) / 1000000;
+    System.out.println( name + ": " + count + " records, " + chars + " characters in " + millis + "ms" );
+  }
+
+
+
+
+  private static long generate( File file, long size ) throws IOException {
+    long records = 0;
+    long written = 0;
+    try (BufferedWriter writer = new BufferedWriter( new FileWriter( file ), 1 << 16 )) {
+      StringBuilder b = new StringBuilder();
+      while ( written < size ) {
+        b.setLength( 0 );
+        b.append( records ).append( ',' );
+        b.append( "\"Name ").append( records % 1000 ).append( ", Jr.\"," );
+        b.append( records * 31 % 100000 ).append( '.' ).append( records % 100 ).append( ',' );
+        b.append( "plain text field number " ).append( records % 97 ).append( ',' );
+        b.append( "\"a \"\"quoted\"\" value\"," );
+        b.append( ( records % 2 == 0 ) ? "true" : "false" ).append( ',' );
+        b.append( "2016-01-" ).append( 10 + records % 20 ).append( "T12:00:00" );
+        b.append( '\n' );
+        writer.append( b );
+        written += b.length();
+        records++;
+      }
+    }
+    return records;
+  }
+
+}
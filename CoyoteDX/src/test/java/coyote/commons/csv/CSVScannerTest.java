@@ -0,0 +1,140 @@
+package coyote.commons.csv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.text.ParseException;
+
+import org.junit.Test;
+
+
+public class CSVScannerTest {
+
+  private static CSVScanner scanner( String text, int size ) {
+    return new CSVScanner( new StringReader( text ), ',', '"', '\\', size );
+  }
+
+
+
+
+  @Test
+  public void simple() throws Exception {
+    CSVScanner scanner = scanner( "a,b,c\r\n1,,3\n\n\nx", 1024 );
+    assertTrue( scanner.next() );
+    assertArrayEquals( new String[]{ "a", "b", "c" }, scanner.getFields() );
+    assertTrue( scanner.next() );
+    assertArrayEquals( new String[]{ "1", "", "3" }, scanner.getFields() );
+    assertFalse( scanner.eof() );
+    assertTrue( scanner.next() );
+    assertArrayEquals( new String[]{ "x" }, scanner.getFields() );
+    assertTrue( scanner.eof() );
+    assertFalse( scanner.next() );
+    assertEquals( 3, scanner.getRecordNumber() );
+    scanner.close();
+  }
+
+
+
+
+  @Test
+  public void quoted() throws Exception {
+    CSVScanner scanner = scanner( "\"a,b\",\"say \"\"hi\"\"\",\"back\\\\slash \\\"q\\\"\", \"lead\",tail\"s\"\n", 1024 );
+    assertTrue( scanner.next() );
+    assertEquals( 5, scanner.getFieldCount() );
+    assertEquals( "a,b", scanner.get( 0 ) );
+    assertEquals( "say \"hi\"", scanner.get( 1 ) );
+    assertEquals( "back\\slash \"q\"", scanner.get( 2 ) );
+    assertEquals( "lead", scanner.get( 3 ) );
+    assertEquals( "tail\"s", scanner.get( 4 ) );
+    assertNull( scanner.get( 5 ) );
+    assertFalse( scanner.next() );
+  }
+
+
+
+
+  @Test
+  public void multiLine() throws Exception {
+    CSVScanner scanner = scanner( "1,\"line one\r\nline two\",3\n4,5,6", 1024 );
+    assertTrue( scanner.next() );
+    assertEquals( "line one\nline two", scanner.get( 1 ) );
+    assertEquals( "3", scanner.get( 2 ) );
+    assertTrue( scanner.next() );
+    assertEquals( "6", scanner.get( 2 ) );
+  }
+
+
+
+
+  @Test
+  public void smallBuffer() throws Exception {
+    StringBuilder b = new StringBuilder();
+    for ( int x = 0; x < 500; x++ ) {
+      b.append( x ).append( ",\"value " ).append( x ).append( " with \"\"quotes\"\" and,\ncommas\"," );
+      for ( int y = 0; y < x % 50; y++ ) {
+        b.append( 'z' );
+      }
+      b.append( "\r\n" );
+    }
+
+    CSVScanner scanner = scanner( b.toString(), 16 );
+    for ( int x = 0; x < 500; x++ ) {
+      assertTrue( scanner.next() );
+      assertEquals( Integer.toString( x ), scanner.get( 0 ) );
+      assertEquals( "value " + x + " with \"quotes\" and,\ncommas", scanner.get( 1 ) );
+      assertEquals( x % 50, scanner.get( 2 ).length() );
+      // look ahead must not disturb the current record
+      assertEquals( x == 499, scanner.eof() );
+      assertEquals( Integer.toString( x ), scanner.get( 0 ) );
+    }
+    assertFalse( scanner.next() );
+  }
+
+
+
+
+  @Test
+  public void sameAsParser() throws Exception {
+    String[] lines = { "one,two,three", "\"quoted\",plain,\"with, comma\"", "1,2", "\"a \"\"b\"\" c\",,x", "a\\b,c", "a\"b\",c", " \"a\" ,b", "\"a\\nb\",c", "\"a\\zb\",c", "x,\"multi\r\nline\",y", "\"back\\\\slash \\\"q\\\"\", \"lead\",tail\"s\"", "trailing," };
+    StringBuilder b = new StringBuilder();
+    for ( String line : lines ) {
+      b.append( line ).append( '\n' );
+    }
+
+    // the reader parses one line at a time with a single parser
+    for ( int size : new int[]{ 16, 1024 } ) {
+      CSVReader reader = new CSVReader( new StringReader( b.toString() ) );
+      CSVScanner scanner = scanner( b.toString(), size );
+      int records = 0;
+      String[] expected;
+      while ( ( expected = reader.readNext() ) != null ) {
+        assertTrue( scanner.next() );
+        assertArrayEquals( expected, scanner.getFields() );
+        records++;
+      }
+      assertFalse( scanner.next() );
+      assertEquals( lines.length, records );
+      reader.close();
+    }
+  }
+
+
+
+
+  @Test
+  public void unterminated() throws Exception {
+    CSVScanner scanner = scanner( "a,\"b\nc", 1024 );
+    try {
+      scanner.next();
+      fail( "should not scan an unterminated quote" );
+    } catch ( ParseException e ) {
+      // expected
+    }
+  }
+
+}
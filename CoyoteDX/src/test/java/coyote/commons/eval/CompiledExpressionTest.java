@@ -0,0 +1,184 @@
+package coyote.commons.eval;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+
+public class CompiledExpressionTest {
+
+  @Test
+  public void sameResults() {
+    DoubleEvaluator evaluator = new DoubleEvaluator();
+    String[] expressions = { "2+-2^2", "7 % 2.5", "sin ( pi /2)", "min(8,3,1,-1)", "avg(8,3,1,0)", "(1+2)*(3-4)/2", "round(2.45)", "-(-3)" };
+    for ( String expression : expressions ) {
+      CompiledExpression<Double> plan = evaluator.compile( expression );
+      assertEquals( expression, new DoubleEvaluator().evaluate( expression ), evaluator.evaluate( plan, null ), 0.001 );
+    }
+  }
+
+
+
+
+  @Test
+  public void variables() {
+    DoubleEvaluator evaluator = new DoubleEvaluator();
+    CompiledExpression<Double> plan = evaluator.compile( "x * 2 + max(x, y)" );
+    StaticVariableSet<Double> variables = new StaticVariableSet<Double>();
+    for ( int x = 0; x < 100; x++ ) {
+      variables.set( "x", (double)x );
+      variables.set( "y", 50. );
+      assertEquals( x * 2 + Math.max( x, 50 ), evaluator.evaluate( plan, variables ), 0.001 );
+    }
+  }
+
+
+
+
+  @Test
+  public void methodArguments() {
+    final AtomicInteger calls = new AtomicInteger();
+    Parameters params = new Parameters();
+    params.addMethods( java.util.Collections.singletonList( new Method( "length", 2 ) ) );
+    params.add( DoubleEvaluator.PLUS );
+    params.addExpressionBracket( BracketPair.PARENTHESES );
+    params.addFunctionBracket( BracketPair.PARENTHESES );
+    DoubleEvaluator evaluator = new DoubleEvaluator( params ) {
+      @Override
+      protected Double evaluate( Method method, java.util.Iterator<String> arguments, Object evaluationContext ) {
+        calls.incrementAndGet();
+        // arguments are presented last to first
+        String second = arguments.next();
+        String first = arguments.next();
+        return (double)( first.length() * 10 + second.length() );
+      }
+    };
+    CompiledExpression<Double> plan = evaluator.compile( "length(abc, de) + 1" );
+    assertEquals( 33, evaluator.evaluate( plan, null ), 0.001 );
+    assertEquals( 33, evaluator.evaluate( plan, null ), 0.001 );
+    assertEquals( 2, calls.get() );
+  }
+
+
+
+
+  @Test
+  public void nestedEvaluation() {
+    // deep enough to grow the value stack shared by the thread's evaluations
+    StringBuilder deep = new StringBuilder( "1" );
+    for ( int x = 0; x < 50; x++ ) {
+      deep.insert( 0, "1+(" ).append( ")" );
+    }
+    final DoubleEvaluator inner = new DoubleEvaluator();
+    final CompiledExpression<Double> innerPlan = inner.compile( deep.toString() );
+
+    Parameters params = DoubleEvaluator.getDefaultParameters();
+    params.addMethods( java.util.Collections.singletonList( new Method( "inner", 1 ) ) );
+    DoubleEvaluator evaluator = new DoubleEvaluator( params ) {
+      @Override
+      protected Double evaluate( Method method, java.util.Iterator<String> arguments, Object evaluationContext ) {
+        String argument = arguments.next();
+        return inner.evaluate( innerPlan, null ) + argument.length();
+      }
+    };
+
+    CompiledExpression<Double> plan = evaluator.compile( "2 * 3 + inner(abc) * (4 - 2)" );
+    for ( int x = 0; x < 3; x++ ) {
+      assertEquals( 6 + ( 51 + 3 ) * 2, evaluator.evaluate( plan, null ), 0.001 );
+    }
+  }
+
+
+
+
+  @Test
+  public void recoversFromErrors() {
+    DoubleEvaluator evaluator = new DoubleEvaluator();
+    CompiledExpression<Double> plan = evaluator.compile( "1 + 2 * x" );
+    try {
+      evaluator.evaluate( plan, null );
+      fail( "x is not defined" );
+    } catch ( IllegalArgumentException e ) {
+      // expected
+    }
+    StaticVariableSet<Double> variables = new StaticVariableSet<Double>();
+    variables.set( "x", 3. );
+    assertEquals( 7, evaluator.evaluate( plan, variables ), 0.001 );
+  }
+
+
+
+
+  @Test
+  public void compileErrors() {
+    DoubleEvaluator evaluator = new DoubleEvaluator();
+    String[] invalid = { "1+", "(1+2", "10 5 +", "min()", "ln(1,2)", ")" };
+    for ( String expression : invalid ) {
+      try {
+        evaluator.compile( expression );
+        fail( "Should not compile: " + expression );
+      } catch ( IllegalArgumentException e ) {
+        // expected
+      }
+    }
+  }
+
+
+
+
+  @Test
+  public void literalsResolvedOnEvaluation() {
+    // this evaluator's literals depend on the context; they must not be fixed at compile time
+    BooleanSetEvaluator evaluator = new BooleanSetEvaluator();
+    CompiledExpression<java.util.BitSet> plan = evaluator.compile( "01 + 10" );
+    assertEquals( "{0, 1}", evaluator.evaluate( plan, new BooleanSetEvaluator.BitSetEvaluationContext( 2 ) ).toString() );
+  }
+
+
+
+
+  @Test
+  public void threads() throws Exception {
+    final DoubleEvaluator evaluator = new DoubleEvaluator();
+    final CompiledExpression<Double> plan = evaluator.compile( "x * x - 1" );
+    final AtomicInteger failures = new AtomicInteger();
+    Thread[] threads = new Thread[4];
+    for ( int t = 0; t < threads.length; t++ ) {
+      final int offset = t * 10000;
+      threads[t] = new Thread( new Runnable() {
+        @Override
+        public void run() {
+          StaticVariableSet<Double> variables = new StaticVariableSet<Double>();
+          for ( int x = offset; x < offset + 10000; x++ ) {
+            variables.set( "x", (double)x );
+            if ( evaluator.evaluate( plan, variables ) != (double)x * x - 1 ) {
+              failures.incrementAndGet();
+            }
+          }
+        }
+      } );
+      threads[t].start();
+    }
+    for ( Thread thread : threads ) {
+      thread.join();
+    }
+    assertEquals( 0, failures.get() );
+  }
+
+
+
+
+  @Test
+  public void booleanLiterals() {
+    SimpleBooleanEvaluator evaluator = new SimpleBooleanEvaluator();
+    assertTrue( evaluator.evaluate( "true || false" ) );
+    assertFalse( evaluator.evaluate( "true && false" ) );
+    assertFalse( evaluator.evaluate( "!true" ) );
+  }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under the 
+ * terms of the MIT License which accompanies this distribution, and is 
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote 
+ *      - Initial concept and implementation
+ */
+package coyote.dx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import coyote.commons.template.SymbolTable;
+import coyote.dataframe.DataFrame;
+import coyote.dx.context.TransformContext;
+import coyote.dx.transform.AbstractFrameTransform;
+import coyote.dx.reader.ContextReader;
+import coyote.dx.writer.ContextWriter;
+
+
+/**
+ *
+ */
+public class PipelinedTransformEngineTest extends AbstractTest {
+
+  private static final int FRAME_COUNT = 2000;
+
+
+
+
+  private TransformEngine createEngine( boolean ordered ) {
+    return createEngine( ordered, 4 );
+  }
+
+
+
+
+  private TransformEngine createEngine( boolean ordered, int threads ) {
+    String cfg = "{ \"Name\": \"PipelineTest\", " //
+        + "\"Pipeline\": { \"threads\": " + threads + ", \"capacity\": 64, \"ordered\": " + ordered + " }, " //
+        + "\"Reader\": { \"class\": \"ContextReader\" }, " //
+        + "\"Transform\": { " //
+        + "\"Set\": { \"Name\": \"copy\", \"Value\": \"[#Context.working(id)#]\" }, " //
+        + "\"Set\": { \"Name\": \"row\", \"Value\": \"[#$CurrentFrame#]\" }, " //
+        + "\"Set\": { \"Name\": \"last\", \"Value\": \"[#$LastFrame#]\" } }, " //
+        + "\"Writer\": { \"class\": \"ContextWriter\" } }";
+    TransformEngine engine = TransformEngineFactory.getInstance( cfg );
+    assertNotNull( engine );
+    assertTrue( engine instanceof PipelinedTransformEngine );
+
+    List<DataFrame> frames = new ArrayList<DataFrame>();
+    for ( int x = 0; x < FRAME_COUNT; x++ ) {
+      frames.add( new DataFrame().set( "id", x ).set( "name", "Frame" + x ) );
+    }
+    engine.setContext( new TransformContext() );
+    engine.getContext().set( ContextReader.DEFAULT_CONTEXT_FIELD, frames );
+    return engine;
+  }
+
+
+
+
+  @Test
+  public void ordered() throws Exception {
+    TransformEngine engine = createEngine( true );
+    turnOver( engine );
+
+    TransformContext context = engine.getContext();
+    assertTrue( context.isNotInError() );
+    assertEquals( FRAME_COUNT, context.getRow() );
+
+    DataFrame[] output = (DataFrame[])context.get( ContextWriter.DEFAULT_CONTEXT_FIELD );
+    assertNotNull( output );
+    assertEquals( FRAME_COUNT, output.length );
+    for ( int x = 0; x < output.length; x++ ) {
+      assertEquals( x, output[x].getAsInt( "id" ) );
+      // each worker must have resolved the template against its own frame
+      assertEquals( Integer.toString( x ), output[x].getAsString( "copy" ) );
+      assertEquals( Integer.toString( x + 1 ), output[x].getAsString( "row" ) );
+      assertEquals( Boolean.toString( x == FRAME_COUNT - 1 ), output[x].getAsString( "last" ) );
+    }
+  }
+
+
+
+
+  @Test
+  public void unordered() throws Exception {
+    TransformEngine engine = createEngine( false );
+    turnOver( engine );
+
+    TransformContext context = engine.getContext();
+    assertTrue( context.isNotInError() );
+
+    DataFrame[] output = (DataFrame[])context.get( ContextWriter.DEFAULT_CONTEXT_FIELD );
+    assertNotNull( output );
+    assertEquals( FRAME_COUNT, output.length );
+    boolean[] seen = new boolean[FRAME_COUNT];
+    for ( DataFrame frame : output ) {
+      int id = frame.getAsInt( "id" );
+      assertEquals( Integer.toString( id ), frame.getAsString( "copy" ) );
+      assertEquals( Integer.toString( id + 1 ), frame.getAsString( "row" ) );
+      seen[id] = true;
+    }
+    for ( boolean flag : seen ) {
+      assertTrue( flag );
+    }
+  }
+
+
+
+
+  @Test
+  public void workerErrors() throws Exception {
+    for ( int threads = 1; threads <= 2; threads++ ) {
+      final TransformEngine engine = createEngine( true, threads );
+      engine.addTransformer( new AbstractFrameTransform() {
+        @Override
+        public DataFrame process( DataFrame frame ) throws TransformException {
+          if ( "100".equals( frame.getAsString( "id" ) ) ) {
+            throw new StackOverflowError( "bad expression" );
+          }
+          return frame;
+        }
+      } );
+
+      Thread runner = new Thread( new Runnable() {
+        @Override
+        public void run() {
+          turnOver( engine );
+        }
+      } );
+      runner.start();
+      runner.join( 30000 );
+
+      // the job must fail rather than wait for the lost frames
+      assertFalse( "engine hung with " + threads + " worker(s)", runner.isAlive() );
+      assertTrue( engine.getContext().isInError() );
+    }
+  }
+
+
+
+
+  @Test
+  public void frameSymbolsNotShared() throws Exception {
+    TransformEngine engine = createEngine( true );
+    // the table is shared with engines run by other tests
+    SymbolTable symbols = engine.getSymbolTable();
+    symbols.remove( Symbols.CURRENT_FRAME );
+    symbols.remove( Symbols.LAST_FRAME );
+    turnOver( engine );
+
+    // the frame symbols are only held by each transaction
+    assertFalse( symbols.containsKey( Symbols.CURRENT_FRAME ) );
+    assertFalse( symbols.containsKey( Symbols.LAST_FRAME ) );
+  }
+
+}
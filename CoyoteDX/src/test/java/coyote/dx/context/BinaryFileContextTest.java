@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2017 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote
+ *      - Initial concept and implementation
+ */
+package coyote.dx.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import coyote.commons.FileUtil;
+import coyote.dataframe.DataFrame;
+import coyote.dx.DefaultTransformEngine;
+import coyote.dx.Symbols;
+import coyote.dx.TransformEngine;
+import coyote.loader.cfg.Config;
+
+
+/**
+ *
+ */
+public class BinaryFileContextTest extends AbstractContextTest {
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    FileUtil.deleteDirectory( new File( "wrk" ) );
+  }
+
+
+
+
+  private static TransformEngine createEngine( String name ) {
+    TransformEngine engine = new DefaultTransformEngine();
+    engine.setName( name );
+    return engine;
+  }
+
+
+
+
+  private static TransformContext createContext( TransformEngine engine, int compact ) {
+    TransformContext context = new BinaryFileContext();
+    context.setConfiguration( new Config( new DataFrame().set( "compact", compact ) ) );
+    engine.setContext( context );
+    return context;
+  }
+
+
+
+
+  /**
+   * Run the engine, set (or remove with a null value) the given property
+   * before closing and return the run count.
+   */
+  private static long run( TransformEngine engine, String key, Object value ) throws Exception {
+    engine.run();
+    engine.getContext().set( key, value );
+    long retval = (Long)engine.getContext().get( Symbols.RUN_COUNT );
+    engine.close();
+    return retval;
+  }
+
+
+
+
+  @Test
+  public void logAndCompact() throws Exception {
+    TransformEngine engine = createEngine( "BinaryContextTest" );
+    createContext( engine, 3 );
+
+    // make the snapshot large enough for the log to stay smaller than it
+    StringBuilder b = new StringBuilder();
+    for ( int x = 0; x < 1000; x++ ) {
+      b.append( "history " ).append( x );
+    }
+    assertEquals( 1, run( engine, "History", b.toString() ) );
+    File directory = engine.getJobDirectory();
+    File snapshot = new File( directory, BinaryFileContext.FILENAME );
+    File log = new File( directory, BinaryFileContext.LOGNAME );
+    assertTrue( snapshot.exists() );
+    assertFalse( log.exists() );
+
+    assertEquals( 2, run( engine, "Watermark", 100L ) );
+    assertTrue( log.exists() );
+
+    assertEquals( 3, run( engine, "Watermark", 200L ) );
+    long snapshotSize = snapshot.length();
+    assertTrue( log.exists() );
+    assertTrue( log.length() < snapshotSize );
+
+    // a new context instance must see the snapshot with the log applied
+    TransformContext context = createContext( engine, 3 );
+    engine.run();
+    assertEquals( 4L, context.get( Symbols.RUN_COUNT ) );
+    assertEquals( "200", context.getAsString( "Watermark" ) );
+    assertEquals( b.toString(), context.getAsString( "History" ) );
+    context.set( "Watermark", null );
+    engine.close();
+
+    // the third log record compacts the log into the snapshot
+    assertFalse( log.exists() );
+
+    context = createContext( engine, 3 );
+    engine.run();
+    assertEquals( 5L, context.get( Symbols.RUN_COUNT ) );
+    assertNull( context.get( "Watermark" ) );
+    assertEquals( b.toString(), context.getAsString( "History" ) );
+    engine.close();
+  }
+
+
+
+
+  @Test
+  public void truncatedLog() throws Exception {
+    TransformEngine engine = createEngine( "TruncatedContextTest" );
+    createContext( engine, 100 );
+    run( engine, "History", new String( new char[4096] ).replace( '\0', 'x' ) );
+    run( engine, "Watermark", 1L );
+    run( engine, "Watermark", 2L );
+
+    // simulate a crash while appending the last record
+    File log = new File( engine.getJobDirectory(), BinaryFileContext.LOGNAME );
+    try (RandomAccessFile file = new RandomAccessFile( log, "rw" )) {
+      file.setLength( file.length() - 3 );
+    }
+
+    TransformContext context = createContext( engine, 100 );
+    engine.run();
+    assertEquals( 3L, context.get( Symbols.RUN_COUNT ) );
+    assertEquals( "1", context.getAsString( "Watermark" ) );
+    engine.close();
+
+    // the damaged log is replaced by a clean snapshot
+    assertFalse( log.exists() );
+    context = createContext( engine, 100 );
+    engine.run();
+    assertEquals( 4L, context.get( Symbols.RUN_COUNT ) );
+    engine.close();
+  }
+
+
+
+
+  @Test
+  public void migrateJson() throws Exception {
+    TransformEngine engine = createEngine( "MigrateContextTest" );
+    TransformContext context = new FileContext();
+    context.setConfiguration( new Config() );
+    engine.setContext( context );
+    run( engine, "Watermark", "abc" );
+    run( engine, "Watermark", "def" );
+    File json = new File( engine.getJobDirectory(), FileContext.FILENAME );
+    assertTrue( json.exists() );
+
+    context = createContext( engine, 10 );
+    assertEquals( 3, run( engine, "Other", "value" ) );
+    assertEquals( "def", context.getAsString( "Watermark" ) );
+    assertTrue( new File( engine.getJobDirectory(), BinaryFileContext.FILENAME ).exists() );
+
+    context = createContext( engine, 10 );
+    assertEquals( 4, run( engine, "Other", "value" ) );
+    assertEquals( "def", context.getAsString( "Watermark" ) );
+  }
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote
+ *      - Initial concept and implementation
+ */
+package coyote.dx.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+
+/**
+ *
+ */
+public class DatabaseDialectTest {
+
+  @Test
+  public void valuesLimits() {
+    // SQL Server rejects more than 1000 rows and 2100 parameters
+    assertEquals( 1000, DatabaseDialect.getMaxRows( "Microsoft SQL Server" ) );
+    assertTrue( DatabaseDialect.getMaxParameters( "Microsoft SQL Server" ) < 2100 );
+
+    // the others are only limited by their parameters
+    assertEquals( 0, DatabaseDialect.getMaxRows( DatabaseDialect.H2 ) );
+    assertEquals( 0, DatabaseDialect.getMaxRows( null ) );
+    assertEquals( DatabaseDialect.BULK_VALUES, DatabaseDialect.getBulkMode( DatabaseDialect.MSQL ) );
+  }
+
+}
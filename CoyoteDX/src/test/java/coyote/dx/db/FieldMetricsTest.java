@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote
+ *      - Initial concept and implementation
+ */
+package coyote.dx.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import coyote.dataframe.DataField;
+
+
+/**
+ *
+ */
+public class FieldMetricsTest {
+
+  @Test
+  public void exact() {
+    FieldMetrics metrics = new FieldMetrics( "test" );
+    for ( int x = 0; x < 1000; x++ ) {
+      metrics.sample( new DataField( "test", "Value" + ( x % 100 ) ) );
+    }
+    assertFalse( metrics.isUniqueEstimated() );
+    assertEquals( 100, metrics.getUniqueValues() );
+    assertEquals( 0.901F, metrics.getCoincidence(), 0.0001F );
+  }
+
+
+
+
+  @Test
+  public void estimated() {
+    FieldMetrics metrics = new FieldMetrics( "test", 1000, HyperLogLog.DEFAULT_PRECISION, 0 );
+    int distinct = 500000;
+    for ( int x = 0; x < distinct; x++ ) {
+      metrics.sample( new DataField( "test", "Value" + x ) );
+    }
+    assertTrue( metrics.isUniqueEstimated() );
+    double error = Math.abs( metrics.getUniqueValues() - distinct ) / (double)distinct;
+    assertTrue( "error of " + error, error < 0.03 );
+  }
+
+
+
+
+  @Test
+  public void smallEstimates() {
+    HyperLogLog sketch = new HyperLogLog();
+    for ( int x = 0; x < 100; x++ ) {
+      sketch.add( "Value" + x );
+      sketch.add( "Value" + x );
+    }
+    assertEquals( 100, sketch.estimate(), 2 );
+  }
+
+
+
+
+  @Test
+  public void quantiles() {
+    LengthDistribution lengths = new LengthDistribution();
+    for ( int x = 1; x <= 100; x++ ) {
+      lengths.sample( x );
+    }
+    assertEquals( 50, lengths.getQuantile( 0.5 ) );
+    assertEquals( 95, lengths.getQuantile( 0.95 ) );
+    assertEquals( 100, lengths.getQuantile( 1 ) );
+
+    lengths = new LengthDistribution();
+    lengths.sample( 100000 );
+    long value = lengths.getQuantile( 0.5 );
+    assertTrue( Long.toString( value ), Math.abs( value - 100000 ) < 100000 * 0.03 );
+  }
+
+
+
+
+  @Test
+  public void topValues() {
+    TopValues top = new TopValues( 3 );
+    for ( int x = 0; x < 100000; x++ ) {
+      if ( x % 2 == 0 ) {
+        top.add( "Even" );
+      } else if ( x % 5 == 0 ) {
+        top.add( "Five" );
+      } else if ( x % 7 == 0 ) {
+        top.add( "Seven" );
+      } else {
+        top.add( "Other" + x );
+      }
+    }
+    List<TopValues.Entry> values = top.getValues();
+    assertEquals( 3, values.size() );
+    assertEquals( "Even", values.get( 0 ).getValue() );
+    assertEquals( "Five", values.get( 1 ).getValue() );
+    assertEquals( "Seven", values.get( 2 ).getValue() );
+    assertTrue( values.get( 0 ).getCount() - values.get( 0 ).getError() <= 50000 );
+    assertTrue( values.get( 0 ).getCount() >= 50000 );
+  }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote
+ *      - Initial concept and implementation
+ */
+package coyote.dx.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import coyote.dataframe.DataFrame;
+import coyote.dx.AbstractTest;
+import coyote.dx.context.TransactionContext;
+
+
+/**
+ *
+ */
+public class CSVReaderTest extends AbstractTest {
+
+  private static final int RECORDS = 2000;
+  private static File file = null;
+
+
+
+
+  @BeforeClass
+  public static void createFile() throws Exception {
+    file = File.createTempFile( "CSVReaderTest", ".csv" );
+    try (Writer writer = new FileWriter( file )) {
+      writer.write( "id,\"note\",amount\r\n" );
+      for ( int x = 0; x < RECORDS; x++ ) {
+        writer.write( x + "," );
+        if ( x % 3 == 0 ) {
+          // long enough for quoted line breaks to cross chunk boundaries
+          writer.write( "\"first line " + x + "\nsecond, \"\"quoted\"\" line\n\nlast line\"" );
+        } else {
+          writer.write( "plain " + x );
+        }
+        writer.write( "," + ( x * 10 ) + "\n" );
+        if ( x % 100 == 0 ) {
+          writer.write( "\n" );
+        }
+      }
+    }
+  }
+
+
+
+
+  @AfterClass
+  public static void deleteFile() {
+    file.delete();
+  }
+
+
+
+
+  private List<DataFrame> readAll( String cfgData ) throws Exception {
+    CSVReader reader = new CSVReader();
+    reader.setConfiguration( parseConfiguration( cfgData ) );
+    reader.open( getTransformContext() );
+    assertFalse( getTransformContext().getErrorMessage(), getTransformContext().isInError() );
+
+    List<DataFrame> retval = new ArrayList<DataFrame>();
+    while ( !reader.eof() ) {
+      TransactionContext context = createTransactionContext();
+      DataFrame frame = reader.read( context );
+      assertFalse( context.getErrorMessage(), context.isInError() );
+      if ( frame != null ) {
+        retval.add( frame );
+        assertEquals( retval.size() == RECORDS, context.isLastFrame() );
+      }
+    }
+    reader.close();
+    return retval;
+  }
+
+
+
+
+  private static String source() {
+    return "\"source\" : \"" + file.getAbsolutePath().replace( "\\", "\\\\" ) + "\", \"header\" : true";
+  }
+
+
+
+
+  private static void verify( List<DataFrame> frames ) {
+    assertEquals( RECORDS, frames.size() );
+    for ( int x = 0; x < RECORDS; x++ ) {
+      DataFrame frame = frames.get( x );
+      assertEquals( Integer.toString( x ), frame.getAsString( "id" ) );
+      assertEquals( Integer.toString( x * 10 ), frame.getAsString( "amount" ) );
+      if ( x % 3 == 0 ) {
+        assertEquals( "first line " + x + "\nsecond, \"quoted\" line\n\nlast line", frame.getAsString( "note" ) );
+      } else {
+        assertEquals( "plain " + x, frame.getAsString( "note" ) );
+      }
+    }
+  }
+
+
+
+
+  @Test
+  public void sequential() throws Exception {
+    verify( readAll( "{ " + source() + " }" ) );
+  }
+
+
+
+
+  @Test
+  public void chunked() throws Exception {
+    verify( readAll( "{ " + source() + ", \"threads\" : 4, \"chunksize\" : 100 }" ) );
+    verify( readAll( "{ " + source() + ", \"threads\" : 3, \"chunksize\" : 4096 }" ) );
+  }
+
+
+
+
+  @Test
+  public void columns() throws Exception {
+    List<DataFrame> frames = readAll( "{ " + source() + ", \"columns\" : \"amount, 0\", \"threads\" : 2, \"chunksize\" : 1000 }" );
+    assertEquals( RECORDS, frames.size() );
+    DataFrame frame = frames.get( 7 );
+    assertEquals( 2, frame.getFieldCount() );
+    assertEquals( "70", frame.getAsString( "amount" ) );
+    assertEquals( "7", frame.getAsString( "id" ) );
+    assertNull( frame.getField( "note" ) );
+    assertTrue( frames.get( 0 ).contains( "id" ) );
+  }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote
+ *      - Initial concept and implementation
+ */
+package coyote.dx.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import coyote.dataframe.DataFrame;
+import coyote.dx.AbstractTest;
+import coyote.dx.context.TransactionContext;
+
+
+/**
+ * Reads rows from an H2 database.
+ */
+public class JdbcReaderTest extends AbstractTest {
+
+  private static final String LIBRARY = "jar:file:src/resources/demojars/h2-1.4.187.jar!/";
+  private static final String DRIVER = "org.h2.Driver";
+
+  private String target = null;
+
+
+
+
+  @Before
+  public void createTable() throws Exception {
+    File dir = new File( System.getProperty( "java.io.tmpdir" ), "JdbcReaderTest" + System.nanoTime() );
+    dir.mkdirs();
+    target = "jdbc:h2:" + new File( dir, "reader" ).getAbsolutePath().replace( "\\", "/" );
+    try (Connection conn = connect(); Statement stmt = conn.createStatement()) {
+      stmt.executeUpdate( "CREATE TABLE readertest ( id INTEGER, name VARCHAR(50) )" );
+    }
+  }
+
+
+
+
+  private Connection connect() throws Exception {
+    URLClassLoader loader = new URLClassLoader( new URL[] { new URL( LIBRARY ) } );
+    Driver driver = (Driver)Class.forName( DRIVER, true, loader ).newInstance();
+    Properties props = new Properties();
+    props.put( "user", "sa" );
+    props.put( "password", "" );
+    return driver.connect( target, props );
+  }
+
+
+
+
+  /**
+   * Insert a row for each of the given ids.
+   */
+  private void insert( int first, int last ) throws Exception {
+    try (Connection conn = connect(); PreparedStatement stmt = conn.prepareStatement( "INSERT INTO readertest ( id, name ) VALUES ( ?, ? )" )) {
+      for ( int x = first; x <= last; x++ ) {
+        stmt.setInt( 1, x );
+        stmt.setString( 2, "Row " + x );
+        stmt.addBatch();
+      }
+      stmt.executeBatch();
+    }
+  }
+
+
+
+
+  private JdbcReader createReader( String query, String options ) throws Exception {
+    JdbcReader reader = new JdbcReader();
+    reader.setConfiguration( parseConfiguration( "{ \"source\" : \"readertest\", \"target\" : \"" + target + "\", \"username\" : \"sa\", \"password\" : \"\", \"driver\" : \"" + DRIVER + "\", \"library\" : \"" + LIBRARY + "\", \"query\" : \"" + query + "\"" + options + " }" ) );
+    reader.open( getTransformContext() );
+    assertFalse( getTransformContext().getErrorMessage(), getTransformContext().isInError() );
+    return reader;
+  }
+
+
+
+
+  /**
+   * Read every frame, checking the last frame flag and EOF after each read.
+   *
+   * @param reader the opened reader
+   * @param expected the number of frames the reader must return
+   *
+   * @return the frames in the order they were read
+   */
+  private List<DataFrame> readAll( JdbcReader reader, int expected ) throws Exception {
+    List<DataFrame> retval = new ArrayList<DataFrame>();
+    while ( !reader.eof() ) {
+      TransactionContext context = createTransactionContext();
+      DataFrame frame = reader.read( context );
+      assertNotNull( frame );
+      retval.add( frame );
+      assertEquals( retval.size() == expected, context.isLastFrame() );
+      assertEquals( retval.size() == expected, reader.eof() );
+    }
+    reader.close();
+    assertFalse( getTransformContext().getErrorMessage(), getTransformContext().isInError() );
+    assertEquals( expected, retval.size() );
+    return retval;
+  }
+
+
+
+
+  @Test
+  public void fetchSize() throws Exception {
+    // several fetches and a final partial one
+    insert( 0, 254 );
+    JdbcReader reader = createReader( "SELECT id, name FROM readertest ORDER BY id", ", \"fetchsize\" : 10" );
+    assertEquals( ResultSet.TYPE_FORWARD_ONLY, reader.result.getType() );
+    assertEquals( 10, reader.result.getStatement().getFetchSize() );
+    List<DataFrame> frames = readAll( reader, 255 );
+    for ( int x = 0; x < frames.size(); x++ ) {
+      DataFrame frame = frames.get( x );
+      assertEquals( Integer.toString( x ), frame.getAsString( "ID" ) );
+      assertEquals( "Row " + x, frame.getAsString( "NAME" ) );
+    }
+
+    // no rows is EOF as soon as the reader is opened
+    reader = createReader( "SELECT id, name FROM readertest WHERE id < 0", ", \"fetchsize\" : 10" );
+    assertTrue( reader.eof() );
+    reader.close();
+  }
+
+
+
+
+  @Test
+  public void partitions() throws Exception {
+    // ranges of 250 ids hold 250, 50, 0 and 100 rows
+    insert( 0, 299 );
+    insert( 900, 999 );
+    JdbcReader reader = createReader( "SELECT id, name FROM readertest", ", \"partitions\" : 4, \"splitcolumn\" : \"id\", \"capacity\" : 16, \"fetchsize\" : 25" );
+    List<DataFrame> frames = readAll( reader, 400 );
+
+    Set<String> ids = new HashSet<String>();
+    for ( DataFrame frame : frames ) {
+      String id = frame.getAsString( "ID" );
+      assertTrue( "duplicate row " + id, ids.add( id ) );
+      assertEquals( "Row " + id, frame.getAsString( "NAME" ) );
+    }
+    assertEquals( 400, ids.size() );
+
+    long[] rows = { 250, 50, 0, 100 };
+    for ( int x = 0; x < rows.length; x++ ) {
+      assertEquals( rows[x], getTransformContext().get( JdbcReader.PARTITION_PREFIX + x + ".Rows" ) );
+      assertEquals( Boolean.TRUE, getTransformContext().get( JdbcReader.PARTITION_PREFIX + x + ".Complete" ) );
+    }
+  }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote
+ *      - Initial concept and implementation
+ */
+package coyote.dx.validate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import coyote.dataframe.DataFrame;
+import coyote.dx.AbstractTest;
+import coyote.dx.FrameValidator;
+import coyote.dx.context.TransactionContext;
+import coyote.loader.cfg.Config;
+import coyote.loader.cfg.ConfigurationException;
+
+
+/**
+ *
+ */
+public class DistinctTest extends AbstractTest {
+
+  private void validate( String cfgData ) throws Exception {
+    Config configuration = parseConfiguration( cfgData );
+
+    FrameValidator validator = new Distinct();
+    try {
+      validator.setConfiguration( configuration );
+    } catch ( ConfigurationException e ) {
+      e.printStackTrace();
+      fail( e.getMessage() );
+    }
+    validator.open( getTransformContext() );
+
+    for ( int x = 0; x < 3000; x++ ) {
+      TransactionContext context = createTransactionContext();
+      DataFrame sourceFrame = new DataFrame();
+      sourceFrame.put( "model", "PT" + ( x % 2000 ) );
+      context.setSourceFrame( sourceFrame );
+      boolean result = validator.process( context );
+      if ( x < 2000 ) {
+        assertTrue( result );
+      } else {
+        assertFalse( result );
+      }
+    }
+    validator.close();
+  }
+
+
+
+
+  @Test
+  public void inMemory() throws Exception {
+    validate( "{ \"field\" : \"model\" }" );
+  }
+
+
+
+
+  @Test
+  public void budgeted() throws Exception {
+    validate( "{ \"field\" : \"model\", \"budget\" : 16, \"expected\" : 1000 }" );
+  }
+
+
+
+
+  @Test
+  public void spilled() throws Exception {
+    File dir = new File( System.getProperty( "java.io.tmpdir" ), "distinct" + System.nanoTime() );
+    KeyCounter counter = new KeyCounter( 0, 10000, dir );
+    try {
+      for ( int x = 0; x < 200000; x++ ) {
+        assertEquals( 1, counter.increment( "Key" + x ) );
+      }
+      assertTrue( counter.isSpilled() );
+      assertEquals( 200000, counter.size() );
+      for ( int x = 0; x < 200000; x += 7 ) {
+        assertEquals( 2, counter.increment( "Key" + x ) );
+      }
+      assertEquals( 3, counter.increment( "Key0" ) );
+      assertEquals( 1, counter.increment( "Key-1" ) );
+    }
+    finally {
+      counter.close();
+    }
+    String[] files = dir.list();
+    assertTrue( files == null || files.length == 0 );
+    dir.delete();
+  }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote
+ *      - Initial concept and implementation
+ */
+package coyote.dx.writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+import coyote.dataframe.DataFrame;
+import coyote.dx.AbstractTest;
+
+
+/**
+ *
+ */
+public class CSVWriterTest extends AbstractTest {
+
+  private File write( File target, String options, int rows ) throws Exception {
+    CSVWriter writer = new CSVWriter();
+    writer.setConfiguration( parseConfiguration( "{ \"target\" : \"" + target.getAbsolutePath().replace( "\\", "\\\\" ) + "\", \"header\" : true" + options + " }" ) );
+    writer.open( getTransformContext() );
+    assertFalse( getTransformContext().getErrorMessage(), getTransformContext().isInError() );
+    for ( int x = 0; x < rows; x++ ) {
+      DataFrame frame = new DataFrame();
+      frame.put( "id", x );
+      frame.put( "name", "Row " + x );
+      writer.write( frame );
+    }
+    File retval = writer.getCurrentFile();
+    writer.close();
+    return retval;
+  }
+
+
+
+
+  private static List<String> readLines( File file, boolean compressed ) throws IOException {
+    List<String> retval = new ArrayList<String>();
+    InputStream in = new FileInputStream( file );
+    if ( compressed ) {
+      in = new GZIPInputStream( in );
+    }
+    try (BufferedReader reader = new BufferedReader( new InputStreamReader( in, "UTF-8" ) )) {
+      String line;
+      while ( ( line = reader.readLine() ) != null ) {
+        retval.add( line );
+      }
+    }
+    return retval;
+  }
+
+
+
+
+  private static File tempDir() {
+    File retval = new File( System.getProperty( "java.io.tmpdir" ), "CSVWriterTest" + System.nanoTime() );
+    retval.mkdirs();
+    return retval;
+  }
+
+
+
+
+  private static void delete( File dir ) {
+    for ( File file : dir.listFiles() ) {
+      file.delete();
+    }
+    dir.delete();
+  }
+
+
+
+
+  @Test
+  public void rotateRows() throws Exception {
+    File dir = tempDir();
+    try {
+      File last = write( new File( dir, "data.csv.gz" ), ", \"compression\" : \"gzip\", \"encoding\" : \"UTF-8\", \"rotaterows\" : 40", 100 );
+      assertEquals( new File( dir, "data.2.csv.gz" ), last );
+      assertEquals( 3, dir.list().length );
+
+      int id = 0;
+      String[] names = { "data.csv.gz", "data.1.csv.gz", "data.2.csv.gz" };
+      for ( String name : names ) {
+        List<String> lines = readLines( new File( dir, name ), true );
+        assertEquals( "id,name", lines.get( 0 ) );
+        for ( int x = 1; x < lines.size(); x++ ) {
+          assertEquals( id + ",Row " + id, lines.get( x ) );
+          id++;
+        }
+      }
+      assertEquals( 100, id );
+    }
+    finally {
+      delete( dir );
+    }
+  }
+
+
+
+
+  @Test
+  public void rotateSize() throws Exception {
+    File dir = tempDir();
+    try {
+      File last = write( new File( dir, "data.csv" ), ", \"rotatesize\" : 20000, \"buffer\" : 1024", 10000 );
+      String[] files = dir.list();
+      assertTrue( files.length > 2 );
+      int rows = 0;
+      for ( String name : files ) {
+        File file = new File( dir, name );
+        // the size is checked against what has left the buffers
+        if ( !file.equals( last ) ) {
+          assertTrue( name + " is " + file.length(), file.length() >= 20000 && file.length() < 20000 + 16 * 1024 );
+        }
+        List<String> lines = readLines( file, false );
+        assertEquals( "id,name", lines.get( 0 ) );
+        rows += lines.size() - 1;
+      }
+      assertEquals( 10000, rows );
+    }
+    finally {
+      delete( dir );
+    }
+  }
+
+
+
+
+  @Test
+  public void rotatedNames() {
+    File dir = new File( "out" );
+    assertEquals( new File( dir, "data.3.csv" ), AbstractFrameFileWriter.getRotatedFile( new File( dir, "data.csv" ), 3 ) );
+    assertEquals( new File( dir, "data.1.json.Z" ), AbstractFrameFileWriter.getRotatedFile( new File( dir, "data.json.Z" ), 1 ) );
+    assertEquals( new File( dir, "data.1" ), AbstractFrameFileWriter.getRotatedFile( new File( dir, "data" ), 1 ) );
+  }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote
+ *      - Initial concept and implementation
+ */
+package coyote.dx.writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import coyote.dataframe.DataFrame;
+import coyote.dx.AbstractTest;
+
+
+/**
+ * Writes frames to an H2 database and reads the stored rows back.
+ */
+public class JdbcWriterTest extends AbstractTest {
+
+  private static final String LIBRARY = "jar:file:src/resources/demojars/h2-1.4.187.jar!/";
+  private static final String DRIVER = "org.h2.Driver";
+
+  private String target = null;
+
+
+
+
+  @Before
+  public void createTable() throws Exception {
+    File dir = new File( System.getProperty( "java.io.tmpdir" ), "JdbcWriterTest" + System.nanoTime() );
+    dir.mkdirs();
+    target = "jdbc:h2:" + new File( dir, "writer" ).getAbsolutePath().replace( "\\", "/" );
+    execute( "CREATE TABLE writertest ( id INTEGER, name VARCHAR(50), amount DOUBLE )" );
+  }
+
+
+
+
+  private Connection connect() throws Exception {
+    URLClassLoader loader = new URLClassLoader( new URL[] { new URL( LIBRARY ) } );
+    Driver driver = (Driver)Class.forName( DRIVER, true, loader ).newInstance();
+    Properties props = new Properties();
+    props.put( "user", "sa" );
+    props.put( "password", "" );
+    return driver.connect( target, props );
+  }
+
+
+
+
+  private void execute( String sql ) throws Exception {
+    try (Connection conn = connect(); Statement stmt = conn.createStatement()) {
+      stmt.executeUpdate( sql );
+    }
+  }
+
+
+
+
+  /**
+   * @return each stored row as "id|name|amount" in id order
+   */
+  private List<String> readRows() throws Exception {
+    List<String> retval = new ArrayList<String>();
+    try (Connection conn = connect(); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery( "SELECT id, name, amount FROM writertest ORDER BY id" )) {
+      while ( rs.next() ) {
+        retval.add( rs.getInt( 1 ) + "|" + rs.getString( 2 ) + "|" + rs.getObject( 3 ) );
+      }
+    }
+    return retval;
+  }
+
+
+
+
+  private JdbcWriter createWriter( String options ) throws Exception {
+    JdbcWriter writer = new JdbcWriter();
+    writer.setConfiguration( parseConfiguration( "{ \"target\" : \"" + target + "\", \"table\" : \"writertest\", \"username\" : \"sa\", \"password\" : \"\", \"driver\" : \"" + DRIVER + "\", \"library\" : \"" + LIBRARY + "\"" + options + " }" ) );
+    writer.open( getTransformContext() );
+    assertFalse( getTransformContext().getErrorMessage(), getTransformContext().isInError() );
+    return writer;
+  }
+
+
+
+
+  private static DataFrame row( int id ) {
+    return new DataFrame().set( "id", id ).set( "name", "Row " + id ).set( "amount", id * 1.5D );
+  }
+
+
+
+
+  @Test
+  public void bulkValues() throws Exception {
+    // 120 rows in statements of 50, 50 and 20 rows
+    JdbcWriter writer = createWriter( ", \"batch\" : 50, \"bulk\" : \"values\"" );
+    for ( int x = 0; x < 120; x++ ) {
+      writer.write( row( x ) );
+    }
+    writer.close();
+    assertFalse( getTransformContext().getErrorMessage(), getTransformContext().isInError() );
+
+    List<String> rows = readRows();
+    assertEquals( 120, rows.size() );
+    for ( int x = 0; x < rows.size(); x++ ) {
+      assertEquals( x + "|Row " + x + "|" + ( x * 1.5D ), rows.get( x ) );
+    }
+  }
+
+
+
+
+  @Test
+  public void commitInterval() throws Exception {
+    JdbcWriter writer = createWriter( ", \"batch\" : 10, \"bulk\" : \"values\", \"commitinterval\" : 15" );
+    for ( int x = 0; x < 30; x++ ) {
+      writer.write( row( x ) );
+    }
+    // the second batch reached the interval, the third is not yet committed
+    writer.connection.rollback();
+    writer.close();
+    assertFalse( getTransformContext().getErrorMessage(), getTransformContext().isInError() );
+    assertEquals( 20, readRows().size() );
+  }
+
+
+
+
+  @Test
+  public void columnPlan() throws Exception {
+    // single rows, JDBC batches and multi-row VALUES bind the same way
+    for ( String options : new String[]{ "", ", \"batch\" : 3", ", \"batch\" : 3, \"bulk\" : \"values\"" } ) {
+      execute( "DELETE FROM writertest" );
+      JdbcWriter writer = createWriter( options );
+
+      // the columns are planned from the first batch
+      writer.write( row( 0 ) );
+      writer.write( new DataFrame().set( "id", 1 ).set( "name", "Row 1" ) );
+      writer.write( new DataFrame().set( "amount", 3D ).set( "name", null ).set( "id", 2 ) );
+
+      // fields which were not planned are ignored
+      writer.write( row( 3 ).set( "note", "extra" ) );
+      writer.write( new DataFrame().set( "note", "extra" ).set( "id", 4 ) );
+      writer.write( row( 5 ) );
+      writer.close();
+      assertFalse( getTransformContext().getErrorMessage(), getTransformContext().isInError() );
+
+      List<String> rows = readRows();
+      assertEquals( 6, rows.size() );
+      assertEquals( "0|Row 0|0.0", rows.get( 0 ) );
+      assertEquals( "1|Row 1|null", rows.get( 1 ) );
+      assertEquals( "2|null|3.0", rows.get( 2 ) );
+      assertEquals( "3|Row 3|4.5", rows.get( 3 ) );
+      assertEquals( "4|null|null", rows.get( 4 ) );
+      assertEquals( "5|Row 5|7.5", rows.get( 5 ) );
+    }
+  }
+
+}
@@ -60,6 +60,15 @@ public class RemoteSite extends DataFrame {
 
   private volatile boolean opened = false;
 
+  /** Number of connections used to transfer the files of a directory */
+  private int channels = 1;
+
+  /** Flag indicating partially transferred files are to be completed */
+  private boolean resume = false;
+
+  /** The statistics of the last directory transfer */
+  private volatile TransferStats transferStats = null;
+
 
 
 
@@ -264,6 +273,76 @@ public class RemoteSite extends DataFrame {
 
 
 
+  /**
+   * @return the number of connections used to transfer the files of a 
+   *         directory
+   */
+  public int getChannels() {
+    return channels;
+  }
+
+
+
+
+  /**
+   * Set the number of connections used to transfer the files of a directory.
+   * 
+   * <p>Each connection is a separate session with the remote host, so files 
+   * are transferred in parallel. Values less than 1 result in a single 
+   * connection.</p>
+   * 
+   * @param value the number of connections to use
+   */
+  public void setChannels( int value ) {
+    channels = ( value > 1 ) ? value : 1;
+  }
+
+
+
+
+  /**
+   * @return true if partially transferred files are completed, false if they 
+   *         are transferred again from the beginning
+   */
+  public boolean isResume() {
+    return resume;
+  }
+
+
+
+
+  /**
+   * Set whether a target file which is shorter than its source is completed 
+   * by transferring only the missing bytes, allowing an interrupted transfer 
+   * to be run again without moving the same data twice.
+   * 
+   * @param flag true to resume partial files, false to overwrite them
+   */
+  public void setResume( boolean flag ) {
+    resume = flag;
+  }
+
+
+
+
+  /**
+   * @return the statistics of the last directory transfer, or null if no 
+   *         directory has been transferred
+   */
+  public TransferStats getTransferStats() {
+    return transferStats;
+  }
+
+
+
+
+  void setTransferStats( TransferStats stats ) {
+    transferStats = stats;
+  }
+
+
+
+
   public static int getProtocolPort( String protocolname ) {
     if ( protocolname != null ) {
       if ( FTP.equalsIgnoreCase( protocolname.trim() ) ) {
@@ -536,4 +615,27 @@ public class RemoteSite extends DataFrame {
     return false;
   }
 
+
+
+
+  /**
+   * This publishes a local directory to a directory on this remote site.
+   * 
+   * @param local path to the local directory
+   * @param remote the path to the remote directory
+   * @param pattern RegEx to be used in selecting files (null results in everything)
+   * @param recurse flag indicating sub directories are to be included
+   * @param preserve flag indicating the hierarchy of the recursed directories should be preserved
+   * 
+   * @return true if the directory is transferred, false if it did not.
+   */
+  public boolean publishDirectory( String local, String remote, String pattern, boolean recurse, boolean preserve ) {
+    if ( !opened )
+      open();
+    if ( SFTP.equalsIgnoreCase( getProtocol() ) ) {
+      return SFTPUtil.publishDirectory( this, local, remote, pattern, recurse, preserve );
+    }
+    return false;
+  }
+
 }
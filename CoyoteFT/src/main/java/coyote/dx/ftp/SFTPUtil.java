@@ -1,17 +1,17 @@
 package coyote.dx.ftp;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 
 import com.jcraft.jsch.ChannelSftp;
@@ -23,6 +23,7 @@ import com.jcraft.jsch.ProxyHTTP;
 import com.jcraft.jsch.Session;
 import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
+import com.jcraft.jsch.SftpProgressMonitor;
 import com.jcraft.jsch.UserInfo;
 
 import coyote.commons.Assert;
@@ -303,19 +304,14 @@ public class SFTPUtil {
       String absolutePath = null;
 
       for ( LsEntry entry : entries ) {
+        if ( ".".equals( entry.getFilename() ) || "..".equals( entry.getFilename() ) ) {
+          continue;
+        }
         absolutePath = directory + "/" + entry.getFilename();
         // if there is no pattern, or there is a pattern and it matches
         if ( regex == null || ( regex != null && regex.matcher( absolutePath ).matches() ) ) {
 
-          Buffer buf = new Buffer();
-          buf.putInt( entry.getAttrs().getFlags() );
-          buf.putLong( entry.getAttrs().getSize() );
-          buf.putInt( entry.getAttrs().getUId() );
-          buf.putInt( entry.getAttrs().getGId() );
-          buf.putInt( entry.getAttrs().getPermissions() );
-          buf.putInt( entry.getAttrs().getATime() );
-          buf.putInt( entry.getAttrs().getMTime() );
-          RemoteFile rfile = new RemoteFile( absolutePath, FileAttributes.getAttributes( buf ) );
+          RemoteFile rfile = new RemoteFile( absolutePath, toAttributes( entry.getAttrs() ) );
           fileListings.add( rfile ); // add the remote file to the list
           if ( recurse && rfile.isDirectory() ) {
             fileListings.addAll( listFiles( channelSftp, rfile.getAbsolutePath(), pattern, recurse ) );
@@ -364,17 +360,7 @@ public class SFTPUtil {
       try {
         SftpATTRS stats = channelSftp.stat( filename );
 
-        // create an array of bytes to be parsed by the FileAttributes 
-        Buffer buf = new Buffer();
-        buf.putInt( stats.getFlags() );
-        buf.putLong( stats.getSize() );
-        buf.putInt( stats.getUId() );
-        buf.putInt( stats.getGId() );
-        buf.putInt( stats.getPermissions() );
-        buf.putInt( stats.getATime() );
-        buf.putInt( stats.getMTime() );
-
-        return FileAttributes.getAttributes( buf );
+        return toAttributes( stats );
 
       } catch ( final SftpException e ) {
         Log.debug( LogMsg.createMsg( CFT.MSG, "SFTP.error_getting_attributes", filename, e.getClass().getSimpleName(), e.getMessage() ) );
@@ -388,7 +374,7 @@ public class SFTPUtil {
 
   public static boolean retrieveFile( RemoteSite site, String remote, String local ) {
     try {
-      transferToLocal( getConnection( site.getUsername(), site.getPassword(), site.getPort(), site.getHost() ), remote, local );
+      transferToLocal( getConnection( site.getUsername(), site.getPassword(), site.getPort(), site.getHost() ), remote, local, site.isResume() );
       return true;
     } catch ( final FileTransferException e ) {
       Log.error( e.getMessage() );
@@ -402,6 +388,11 @@ public class SFTPUtil {
   /**
    * This retrieves a directory from the given remote site to a local directory.
    * 
+   * <p>The files are transferred over as many connections as the site is 
+   * configured to use. The first failed transfer stops the transfer of any 
+   * remaining files, but only the files which were transferred are deleted 
+   * from the remote site.</p>
+   * 
    * @param site the remote sire to query
    * @param remoteDir the path to the remote directory to retrieve
    * @param localDir path to the local directory
@@ -438,8 +429,11 @@ public class SFTPUtil {
       }
     }
 
-    // This is a list of files copied successfully
-    List<String> remoteFilesCopied = new ArrayList<String>();
+    // This is a list of files copied successfully, possibly by many threads
+    List<String> remoteFilesCopied = Collections.synchronizedList( new ArrayList<String>() );
+
+    TransferStats stats = new TransferStats();
+    site.setTransferStats( stats );
 
     // reference to our SFTP connection
     ChannelSftp channelSftp = null;
@@ -451,39 +445,44 @@ public class SFTPUtil {
       // Get a listing of all the files
       final List<RemoteFile> fileListings = listFiles( channelSftp, remoteDir, pattern, recurse );
 
-      if ( fileListings.size() > 0 ) {
-        String localname = null;
-        for ( RemoteFile remoteFile : fileListings ) {
-          if ( !remoteFile.isDirectory() ) {
+      // Pair each remote file with its local name
+      final List<String[]> transfers = new ArrayList<String[]>();
+      String localname = null;
+      for ( RemoteFile remoteFile : fileListings ) {
+        if ( !remoteFile.isDirectory() ) {
 
-            if ( preserve ) {
-              if ( remoteFile.getAbsolutePath().startsWith( remoteDir ) ) {
-                String core = remoteFile.getAbsolutePath().substring( remoteDir.length() + 1, remoteFile.getAbsolutePath().length() );
-                localname = directory.getAbsolutePath() + FileUtil.FILE_SEPARATOR + core;
+          if ( preserve ) {
+            if ( remoteFile.getAbsolutePath().startsWith( remoteDir ) ) {
+              String core = remoteFile.getAbsolutePath().substring( remoteDir.length() + 1, remoteFile.getAbsolutePath().length() );
+              localname = directory.getAbsolutePath() + FileUtil.FILE_SEPARATOR + core;
 
-              } else {
-                localname = directory.getAbsolutePath() + FileUtil.FILE_SEPARATOR + remoteFile.getName();
-              }
             } else {
               localname = directory.getAbsolutePath() + FileUtil.FILE_SEPARATOR + remoteFile.getName();
             }
-
-            localname = FileUtil.normalizePath( localname );
-            transferToLocal( channelSftp, remoteFile.getAbsolutePath(), localname );
-            remoteFilesCopied.add( remoteFile.getAbsolutePath() );
+          } else {
+            localname = directory.getAbsolutePath() + FileUtil.FILE_SEPARATOR + remoteFile.getName();
           }
 
+          localname = FileUtil.normalizePath( localname );
+          transfers.add( new String[] { remoteFile.getAbsolutePath(), localname } );
         }
+      }
+
+      if ( transfers.size() > 0 ) {
+        retval = transfer( site, channelSftp, transfers, true, stats, remoteFilesCopied );
       } else {
         Log.debug( LogMsg.createMsg( CFT.MSG, "SFTP.no_matching_files_found", remoteDir, pattern, recurse ) );
+        // we made it all the way through
+        retval = true;
       }
-      // we made it all the way through
-      retval = true;
 
     } catch ( FileTransferException e ) {
-      e.printStackTrace();
+      Log.error( e.getMessage() );
     }
     finally {
+      stats.end();
+      Log.info( LogMsg.createMsg( CFT.MSG, "SFTP.transfer_complete", stats.getFiles(), stats.getBytes(), stats.getElapsed(), stats.getChannels(), stats.getThroughput(), stats.getFailures() ) );
+
       if ( delete && channelSftp != null ) {
         for ( String remoteFile : remoteFilesCopied ) {
           try {
@@ -528,7 +527,7 @@ public class SFTPUtil {
 
   public static boolean publishFile( RemoteSite site, String local, String remote ) {
     try {
-      transferToRemote( getConnection( site.getUsername(), site.getPassword(), site.getPort(), site.getHost() ), local, remote );
+      transferToRemote( getConnection( site.getUsername(), site.getPassword(), site.getPort(), site.getHost() ), local, remote, site.isResume() );
       return true;
     } catch ( final FileTransferException e ) {
       Log.error( e.getMessage() );
@@ -539,36 +538,267 @@ public class SFTPUtil {
 
 
 
+  /**
+   * This publishes a local directory to a directory on the given remote site.
+   * 
+   * <p>The files are transferred over as many connections as the site is 
+   * configured to use. The first failed transfer stops the transfer of any 
+   * remaining files.</p>
+   * 
+   * @param site the remote site to which the files are sent
+   * @param localDir path to the local directory
+   * @param remoteDir the path to the remote directory
+   * @param pattern RegEx to be used in selecting files (null results in everything)
+   * @param recurse flag indicating sub directories are to be included
+   * @param preserve flag indicating the hierarchy of the recursed directories should be preserved
+   * 
+   * @return true if the directory is transferred, false if it did not.
+   */
+  public static boolean publishDirectory( RemoteSite site, String localDir, String remoteDir, String pattern, boolean recurse, boolean preserve ) {
+    Assert.notNull( site );
+    Assert.notNull( localDir );
+    Assert.notNull( remoteDir );
+
+    boolean retval = false;
+
+    Log.debug( LogMsg.createMsg( CFT.MSG, "SFTP.publishing_directory", localDir, remoteDir, pattern, recurse, preserve ) );
+
+    File directory = new File( localDir );
+    if ( !directory.isDirectory() ) {
+      Log.error( LogMsg.createMsg( CFT.MSG, "SFTP.local_directory_not_found", directory.getAbsolutePath() ) );
+      return false;
+    }
+
+    // Remote paths always use forward slashes
+    String remoteRoot = remoteDir.replace( '\\', '/' );
+    if ( remoteRoot.endsWith( "/" ) ) {
+      remoteRoot = remoteRoot.substring( 0, remoteRoot.length() - 1 );
+    }
+
+    // Pair each local file with its remote name
+    final List<String[]> transfers = new ArrayList<String[]>();
+    final String localRoot = directory.getAbsolutePath();
+    for ( File file : FileUtil.getFiles( directory, pattern, recurse ) ) {
+      String remotename = null;
+      if ( preserve && file.getAbsolutePath().startsWith( localRoot ) ) {
+        remotename = remoteRoot + "/" + file.getAbsolutePath().substring( localRoot.length() + 1 ).replace( '\\', '/' );
+      } else {
+        remotename = remoteRoot + "/" + file.getName();
+      }
+      transfers.add( new String[] { file.getAbsolutePath(), remotename } );
+    }
+
+    TransferStats stats = new TransferStats();
+    site.setTransferStats( stats );
+
+    try {
+      if ( transfers.size() > 0 ) {
+        ChannelSftp channelSftp = getConnection( site.getUsername(), site.getPassword(), site.getPort(), site.getHost() );
+        retval = transfer( site, channelSftp, transfers, false, stats, new ArrayList<String>() );
+      } else {
+        Log.debug( LogMsg.createMsg( CFT.MSG, "SFTP.no_matching_files_found", localDir, pattern, recurse ) );
+        retval = true;
+      }
+    } catch ( FileTransferException e ) {
+      Log.error( e.getMessage() );
+    }
+    finally {
+      stats.end();
+      Log.info( LogMsg.createMsg( CFT.MSG, "SFTP.transfer_complete", stats.getFiles(), stats.getBytes(), stats.getElapsed(), stats.getChannels(), stats.getThroughput(), stats.getFailures() ) );
+    }
+
+    return retval;
+  }
+
+
+
+
+  /**
+   * Transfer each of the given files, in parallel if the site is configured 
+   * to use more than one channel.
+   * 
+   * <p>The given channel is used by the calling thread. Each additional 
+   * channel is a new session with the remote site, opened and closed by its 
+   * own thread. All the channels take their next file from the same queue so 
+   * a channel which moves small files is not held up by one moving a large 
+   * file. If an additional channel can not be opened, the remaining channels 
+   * transfer its share of the files.</p>
+   * 
+   * @param site the remote site with which files are exchanged
+   * @param channelSftp the channel for the calling thread
+   * @param transfers the source and target path of each file
+   * @param retrieve true to copy remote files to the local file system, false 
+   *        to copy local files to the remote site
+   * @param stats the statistics to update with each transfer
+   * @param completed the list to which the source path of each successfully 
+   *        transferred file is added
+   * 
+   * @return true if all the files were transferred, false otherwise
+   */
+  private static boolean transfer( final RemoteSite site, final ChannelSftp channelSftp, final List<String[]> transfers, final boolean retrieve, final TransferStats stats, final List<String> completed ) {
+    final Queue<String[]> pending = new ConcurrentLinkedQueue<String[]>( transfers );
+    final AtomicBoolean failed = new AtomicBoolean( false );
+    final int channels = Math.min( site.getChannels(), transfers.size() );
+    stats.setChannels( channels );
+
+    final List<Thread> threads = new ArrayList<Thread>();
+    for ( int x = 1; x < channels; x++ ) {
+      Thread thread = new Thread( new Runnable() {
+        @Override
+        public void run() {
+          ChannelSftp channel = null;
+          try {
+            channel = openNewConnection( site.getHost(), site.getPort(), site.getUsername(), site.getPassword() );
+            drain( channel, pending, retrieve, site.isResume(), stats, completed, failed );
+          } catch ( FileTransferException e ) {
+            Log.warn( LogMsg.createMsg( CFT.MSG, "SFTP.could_not_open_channel", site.getHost(), e.getMessage() ) );
+          }
+          finally {
+            disconnect( channel );
+          }
+        }
+      }, "SFTP-" + site.getHost() + "-" + x );
+      thread.setDaemon( true );
+      threads.add( thread );
+      thread.start();
+    }
+
+    drain( channelSftp, pending, retrieve, site.isResume(), stats, completed, failed );
+
+    for ( Thread thread : threads ) {
+      try {
+        thread.join();
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        failed.set( true );
+      }
+    }
+
+    return !failed.get() && pending.isEmpty();
+  }
+
+
+
+
+  /**
+   * Transfer files from the queue over the given channel until the queue is 
+   * empty or any of the channels fails a transfer.
+   */
+  private static void drain( final ChannelSftp channel, final Queue<String[]> pending, final boolean retrieve, final boolean resume, final TransferStats stats, final List<String> completed, final AtomicBoolean failed ) {
+    String[] transfer;
+    while ( !failed.get() && ( transfer = pending.poll() ) != null ) {
+      try {
+        if ( retrieve ) {
+          stats.add( transferToLocal( channel, transfer[0], transfer[1], resume ) );
+        } else {
+          stats.add( transferToRemote( channel, transfer[0], transfer[1], resume ) );
+        }
+        completed.add( transfer[0] );
+      } catch ( FileTransferException e ) {
+        Log.error( e.getMessage() );
+        stats.fail();
+        failed.set( true );
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Close the given channel and its session.
+   */
+  private static void disconnect( final ChannelSftp channelSftp ) {
+    if ( channelSftp != null ) {
+      try {
+        if ( channelSftp.getSession() != null ) {
+          channelSftp.getSession().disconnect();
+        }
+        channelSftp.exit();
+      } catch ( JSchException ignore ) {}
+    }
+  }
+
+
+
+
+  /**
+   * Convert the JSch attributes into our own file attributes.
+   * 
+   * <p>Only the attributes the flags mark as present are written as that is 
+   * how FileAttributes parses them. The setters are not used as they strip 
+   * the file type from the permissions.</p>
+   */
+  private static FileAttributes toAttributes( final SftpATTRS attrs ) {
+    final int flags = attrs.getFlags() & ~FileAttributes.FILE_ATTR_EXTENDED;
+    final Buffer buf = new Buffer();
+    buf.putInt( flags );
+    if ( ( flags & FileAttributes.FILE_ATTR_SIZE ) != 0 ) {
+      buf.putLong( attrs.getSize() );
+    }
+    if ( ( flags & FileAttributes.FILE_ATTR_UIDGID ) != 0 ) {
+      buf.putInt( attrs.getUId() );
+      buf.putInt( attrs.getGId() );
+    }
+    if ( ( flags & FileAttributes.FILE_ATTR_PERMISSIONS ) != 0 ) {
+      buf.putInt( attrs.getPermissions() );
+    }
+    if ( ( flags & FileAttributes.FILE_ATTR_ACMODTIME ) != 0 ) {
+      buf.putInt( attrs.getATime() );
+      buf.putInt( attrs.getMTime() );
+    }
+    return FileAttributes.getAttributes( buf );
+  }
+
+
+
+
+  /**
+   * Log the size and rate of a completed transfer.
+   */
+  private static void logTransfer( final String file, final long bytes, final long millis ) {
+    if ( Log.isLogging( Log.DEBUG_EVENTS ) ) {
+      Log.debug( LogMsg.createMsg( CFT.MSG, "SFTP.transferred_file", file, bytes, millis, TransferStats.throughput( bytes, millis ) ) );
+    }
+  }
+
+
+
+
   /**
   * Transfer Remote file to the local file system
   *
+  * <p>If resuming and the local file exists, only the bytes following the 
+  * end of the local file are transferred and appended to it.</p>
+  *
   * @param channelSftp
   * @param sourceFile
   * @param targetFile
+  * @param resume true to complete a partial local file
+  * 
+  * @return the number of bytes transferred
   * 
   * @throws FileTransferException
   */
-  private static void transferToLocal( final ChannelSftp channelSftp, final String sourceFile, final String targetFile ) throws FileTransferException {
+  private static long transferToLocal( final ChannelSftp channelSftp, final String sourceFile, final String targetFile, final boolean resume ) throws FileTransferException {
     Assert.notNull( channelSftp );
     Assert.notNull( sourceFile );
     Assert.notNull( targetFile );
 
     Log.debug( "Transferring file to local [sourceFile=" + sourceFile + ", destinationPath=" + targetFile + "]" );
     FileUtil.makeParentDirectory( targetFile );
-    FileOutputStream fileOutputStream = null;
+    final File target = new File( targetFile );
+    final boolean append = resume && target.exists();
+    final ByteCounter counter = new ByteCounter( append ? target.length() : 0 );
+    final long start = System.currentTimeMillis();
     try {
-      fileOutputStream = new FileOutputStream( targetFile );
-      channelSftp.get( sourceFile, fileOutputStream );
+      channelSftp.get( sourceFile, targetFile, counter, append ? ChannelSftp.RESUME : ChannelSftp.OVERWRITE );
     } catch ( final SftpException sftpException ) {
-      final String message = ( "Error transfering files from ftp to local [sourceFile=" + sourceFile + ", destinationPath=" + targetFile + "]" );
+      final String message = ( "Error transfering files from ftp to local [sourceFile=" + sourceFile + ", destinationPath=" + targetFile + "] - " + sftpException.getMessage() );
       throw new FileTransferException( message, sftpException );
-    } catch ( final FileNotFoundException fileNotFoundException ) {
-      final String message = ( "Error transfering files from ftp to local [sourceFile=" + sourceFile + ", destinationPath=" + targetFile + "]" );
-      throw new FileTransferException( message, fileNotFoundException );
-    }
-    finally {
-      FileUtil.close( fileOutputStream );
     }
+    logTransfer( sourceFile, counter.getCount(), System.currentTimeMillis() - start );
+    return counter.getCount();
   }
 
 
@@ -577,13 +807,19 @@ public class SFTPUtil {
   /**
    * Transfer the file from local System to the Remote Ftp Channel
    *
+   * <p>If resuming and the remote file exists, only the bytes following the 
+   * end of the remote file are transferred and appended to it.</p>
+   *
    * @param channelSftp
    * @param localFile
    * @param remoteFile
+   * @param resume true to complete a partial remote file
+   * 
+   * @return the number of bytes transferred
    * 
    * @throws FileTransferException
    */
-  private static void transferToRemote( final ChannelSftp channelSftp, final String localFile, final String remoteFile ) throws FileTransferException {
+  private static long transferToRemote( final ChannelSftp channelSftp, final String localFile, final String remoteFile, final boolean resume ) throws FileTransferException {
     Assert.notNull( channelSftp );
     Assert.notNull( localFile );
     Assert.notNull( remoteFile );
@@ -599,29 +835,25 @@ public class SFTPUtil {
     Log.debug( LogMsg.createMsg( CFT.MSG, "SFTP.destination_directory", remoteDestinationDirectory ) );
     Log.debug( LogMsg.createMsg( CFT.MSG, "SFTP.destination_file", remoteDestinationFileName ) );
 
-    OutputStream outputStream = null;
-    InputStream inputStream = null;
+    final long start = System.currentTimeMillis();
+    ByteCounter counter = null;
     try {
 
       // Create our directory if it doesn't exist
       SFTPUtil.createRemoteDirectory( channelSftp, remoteDestinationDirectory );
-      // TODO: Maybe a check should be performed first?
 
       // change to that remote directory
       channelSftp.cd( remoteDestinationDirectory );
 
-      outputStream = channelSftp.put( remoteDestinationFileName );
-      inputStream = new FileInputStream( localFile );
-      FileUtil.copy( inputStream, outputStream );
-    } catch ( final SftpException | IOException e ) {
+      counter = new ByteCounter( resume ? remoteSize( channelSftp, remoteDestinationFileName ) : 0 );
+      channelSftp.put( localFile, remoteDestinationFileName, counter, resume ? ChannelSftp.RESUME : ChannelSftp.OVERWRITE );
+    } catch ( final SftpException e ) {
       //e.printStackTrace();
       final String message = ( "Error transferring file to sftp [sourcePath=" + localFile + ", remoteDestinationPath=" + remoteFile + "] - " + e.getMessage() );
       throw new FileTransferException( message, e );
     }
-    finally {
-      FileUtil.close( inputStream );
-      FileUtil.close( outputStream );
-    }
+    logTransfer( localFile, counter.getCount(), System.currentTimeMillis() - start );
+    return counter.getCount();
   }
 
 
@@ -633,22 +865,15 @@ public class SFTPUtil {
    * @param site the remote site to which all connections should be closed.
    */
   public static void close( RemoteSite site ) {
-    try {
-      ChannelSftp channelSftp = removeConnection( site.getUsername(), site.getPassword(), site.getPort(), site.getHost() );
-      if ( channelSftp != null ) {
-        if ( channelSftp.getSession() != null ) {
-          channelSftp.getSession().disconnect();
-        }
-        channelSftp.exit();
-      }
-    } catch ( JSchException ignore ) {}
+    disconnect( removeConnection( site.getUsername(), site.getPassword(), site.getPort(), site.getHost() ) );
   }
 
 
 
 
   /**
-   * Create the specified directory on the remote Ftp channel
+   * Create the specified directory, and any missing parent directories, on 
+   * the remote Ftp channel
    *
    * @param channelSftp the channel on which to issue the command
    * @param directory fully qualified directory path from root
@@ -659,11 +884,20 @@ public class SFTPUtil {
 
     Log.debug( "Creating remote directory [directory=" + directory + "]" );
 
-    try {
-      channelSftp.cd( "/" );
-      channelSftp.mkdir( directory );
-    } catch ( final SftpException exception ) {
-      Log.debug( "Could not create directory: " + directory + " - " + exception.getMessage() + " (maybe it already exists)" );
+    final StringBuilder path = new StringBuilder();
+    for ( String segment : directory.split( "/" ) ) {
+      if ( segment.length() > 0 ) {
+        path.append( '/' ).append( segment );
+        try {
+          channelSftp.stat( path.toString() );
+        } catch ( final SftpException notFound ) {
+          try {
+            channelSftp.mkdir( path.toString() );
+          } catch ( final SftpException exception ) {
+            Log.debug( "Could not create directory: " + path + " - " + exception.getMessage() + " (maybe it already exists)" );
+          }
+        }
+      }
     }
   }
 
@@ -815,6 +1049,69 @@ public class SFTPUtil {
 
   //
 
+  /**
+   * @return the size of the remote file or 0 if it does not exist
+   */
+  private static long remoteSize( final ChannelSftp channelSftp, final String remoteFile ) {
+    try {
+      return channelSftp.stat( remoteFile ).getSize();
+    } catch ( final SftpException notFound ) {
+      return 0;
+    }
+  }
+
+
+
+
+  /**
+   * Counts the bytes actually moved by a transfer.
+   * 
+   * <p>When resuming, JSch reports the bytes already at the destination to 
+   * the monitor as if they were transferred, so they are subtracted.</p>
+   */
+  static class ByteCounter implements SftpProgressMonitor {
+    private final long offset;
+    private long count = 0;
+
+
+
+
+    ByteCounter( final long offset ) {
+      this.offset = offset;
+    }
+
+
+
+
+    long getCount() {
+      return Math.max( 0, count - offset );
+    }
+
+
+
+
+    @Override
+    public void init( final int op, final String src, final String dest, final long max ) {}
+
+
+
+
+    @Override
+    public boolean count( final long bytes ) {
+      count += bytes;
+      return true;
+    }
+
+
+
+
+    @Override
+    public void end() {}
+  }
+
+
+
+
   /**
    * 
    */
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2017 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote
+ *      - Initial concept and implementation
+ */
+package coyote.dx.ftp;
+
+/**
+ * The number of files and bytes moved during a transfer and the time it took
+ * to move them.
+ *
+ * <p>A single instance is shared by all the channels of a parallel transfer
+ * so all the accessors are synchronized.</p>
+ */
+public class TransferStats {
+
+  private final long started = System.currentTimeMillis();
+  private long ended = 0;
+  private int channels = 1;
+  private int files = 0;
+  private int failures = 0;
+  private long bytes = 0;
+
+
+
+
+  /**
+   * Calculate the throughput of a transfer.
+   *
+   * @param bytes the number of bytes moved
+   * @param millis the number of milliseconds it took to move them
+   *
+   * @return the number of bytes moved per second
+   */
+  public static long throughput( final long bytes, final long millis ) {
+    return ( millis > 0 ) ? ( bytes * 1000 ) / millis : bytes;
+  }
+
+
+
+
+  /**
+   * Record a file successfully transferred.
+   *
+   * @param count the number of bytes actually moved, which is less than the
+   *        size of the file if the transfer was resumed
+   */
+  synchronized void add( final long count ) {
+    files++;
+    bytes += count;
+  }
+
+
+
+
+  /**
+   * Record a file which could not be transferred.
+   */
+  synchronized void fail() {
+    failures++;
+  }
+
+
+
+
+  /**
+   * Mark the end of the transfer.
+   */
+  synchronized void end() {
+    ended = System.currentTimeMillis();
+  }
+
+
+
+
+  /**
+   * @param count the number of channels used to move the files
+   */
+  synchronized void setChannels( final int count ) {
+    channels = count;
+  }
+
+
+
+
+  /**
+   * @return the number of channels used to move the files
+   */
+  public synchronized int getChannels() {
+    return channels;
+  }
+
+
+
+
+  /**
+   * @return the number of files successfully transferred
+   */
+  public synchronized int getFiles() {
+    return files;
+  }
+
+
+
+
+  /**
+   * @return the number of files which could not be transferred
+   */
+  public synchronized int getFailures() {
+    return failures;
+  }
+
+
+
+
+  /**
+   * @return the total number of bytes moved
+   */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+
+
+
+  /**
+   * @return the number of milliseconds the transfer took, or has taken so
+   *         far if it has not yet ended
+   */
+  public synchronized long getElapsed() {
+    return ( ( ended > 0 ) ? ended : System.currentTimeMillis() ) - started;
+  }
+
+
+
+
+  /**
+   * @return the aggregate number of bytes moved per second
+   */
+  public long getThroughput() {
+    return throughput( getBytes(), getElapsed() );
+  }
+
+
+
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public synchronized String toString() {
+    return String.format( "%d files, %d bytes in %d ms over %d channels (%d bytes/sec), %d failed", files, bytes, getElapsed(), channels, getThroughput(), failures );
+  }
+
+}
@@ -59,7 +59,7 @@ public abstract class AbstractFileTransferTask extends AbstractFileTask {
     }
 
     if ( contains( ConfigTag.USERNAME ) ) {
-      site.setUsername( getString( ConfigTag.USERNAME ) );
+      retval.setUsername( getString( ConfigTag.USERNAME ) );
     }
 
     if ( contains( ConfigTag.PASSWORD ) ) {
@@ -79,6 +79,11 @@ public abstract class AbstractFileTransferTask extends AbstractFileTask {
       retval.setPassword( CipherUtil.decryptString( getString( Loader.ENCRYPT_PREFIX+ConfigTag.PASSWORD ) ) );
     }
 
+    // how many connections to use for directories, and if partial files are 
+    // to be completed rather than transferred again
+    retval.setChannels( getInteger( ConfigTag.CHANNELS ) );
+    retval.setResume( getBoolean( ConfigTag.RESUME ) );
+
     return retval;
   }
 
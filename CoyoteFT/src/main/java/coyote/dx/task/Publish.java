@@ -20,7 +20,6 @@ import coyote.dx.ConfigTag;
 import coyote.dx.TaskException;
 import coyote.dx.TransformTask;
 import coyote.dx.context.TransformContext;
-import coyote.dx.ftp.RemoteSite;
 import coyote.commons.Assert;
 import coyote.commons.UriUtil;
 import coyote.loader.cfg.ConfigurationException;
@@ -40,6 +39,10 @@ import coyote.loader.log.LogMsg;
  */
 public class Publish extends AbstractFileTransferTask implements TransformTask {
 
+  private String pattern = null;
+  private boolean recurse = false;
+  private boolean preserve = false;
+
   /**
    * @see coyote.dx.task.AbstractTransformTask#open(coyote.dx.context.TransformContext)
    */
@@ -68,6 +71,17 @@ public class Publish extends AbstractFileTransferTask implements TransformTask {
         localFile = UriUtil.getFilePath( new URI( source ) );
       }
       Log.debug( LogMsg.createMsg( CFT.MSG, "Publish.using_local_file", localFile ) );
+
+      if ( new File( localFile ).isDirectory() ) {
+        // look for pattern
+        pattern = getString( ConfigTag.PATTERN );
+
+        // look for recurse
+        recurse = getBoolean( ConfigTag.RECURSE );
+
+        // determine if we should preserve hierarchy or flatten to one directory
+        preserve = getBoolean( ConfigTag.PRESERVE );
+      }
     } catch ( Exception e ) {
       String msg = String.format( "Publish task source initialization failed: %s - %s", e.getClass().getName(), e.getMessage() );
       Log.error( msg );
@@ -86,16 +100,14 @@ public class Publish extends AbstractFileTransferTask implements TransformTask {
     try {
       // The target configuration must be a URI
       URI targetUri = new URI( target );
-      site = new RemoteSite( targetUri );
-
-      // TODO: support the separate setting of username, password, port, protocol and host
+      site = configureSite( targetUri );
 
       Log.debug( LogMsg.createMsg( CFT.MSG, "Publish.using_site", site.toString() ) );
 
       remoteFile = targetUri.getPath();
       Log.debug( LogMsg.createMsg( CFT.MSG, "Publish.using_remote_file", remoteFile ) );
 
-    } catch ( URISyntaxException e ) {
+    } catch ( URISyntaxException | ConfigurationException e ) {
       String msg = String.format( "Publish task target initialization failed: %s - %s", e.getClass().getName(), e.getMessage() );
       Log.error( msg );
       if ( haltOnError() ) {
@@ -119,8 +131,24 @@ public class Publish extends AbstractFileTransferTask implements TransformTask {
   public void execute() throws TaskException {
 
     try {
-      // perform the retrieval
-      if ( !site.publishFile( localFile, remoteFile ) ) {
+
+      if ( new File( localFile ).isDirectory() ) {
+
+        if ( !site.publishDirectory( localFile, remoteFile, pattern, recurse, preserve ) ) {
+          String msg = String.format( "Publish task failed to send all files from %s to %s at %s", localFile, site.getHost(), remoteFile );
+          Log.error( msg );
+          if ( haltOnError() ) {
+            context.setError( msg );
+            if ( site != null ) {
+              site.close();
+            }
+            return;
+          }
+        } else {
+          Log.debug( LogMsg.createMsg( CFT.MSG, "Publish.published_directory", localFile, site.getHost(), remoteFile ) );
+        }
+
+      } else if ( !site.publishFile( localFile, remoteFile ) ) {
         String msg = String.format( "Publish task failed to send %s to %s at %s", localFile, site.getHost(), remoteFile );
         Log.error( msg );
         if ( haltOnError() ) {
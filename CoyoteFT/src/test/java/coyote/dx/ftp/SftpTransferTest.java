@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2017 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote
+ *      - Initial concept and implementation
+ */
+package coyote.dx.ftp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.common.session.Session;
+import org.apache.sshd.common.session.SessionListener;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.auth.password.PasswordAuthenticator;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.server.session.ServerSession;
+import org.apache.sshd.sftp.server.SftpSubsystemFactory;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import coyote.commons.FileUtil;
+
+
+/**
+ * Transfers directories to and from an embedded SFTP server.
+ */
+public class SftpTransferTest {
+
+  private static final File WORK = new File( "wrk" + File.separator + "sftp" );
+  private static final File SERVER_ROOT = new File( WORK, "server" );
+  private static final File LOCAL = new File( WORK, "local" );
+
+  private static SshServer sshd = null;
+  private static final AtomicInteger sessions = new AtomicInteger();
+
+  private RemoteSite site = null;
+
+
+
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    FileUtil.deleteDirectory( WORK );
+    SERVER_ROOT.mkdirs();
+
+    sshd = SshServer.setUpDefaultServer();
+    sshd.setHost( "localhost" );
+    sshd.setPort( 0 );
+    sshd.setKeyPairProvider( new SimpleGeneratorHostKeyProvider( new File( WORK, "hostkey.ser" ).toPath() ) );
+    sshd.setPasswordAuthenticator( new PasswordAuthenticator() {
+      @Override
+      public boolean authenticate( String username, String password, ServerSession session ) {
+        return "user".equals( username ) && "secret".equals( password );
+      }
+    } );
+    sshd.setSubsystemFactories( Collections.singletonList( new SftpSubsystemFactory() ) );
+    sshd.setFileSystemFactory( new VirtualFileSystemFactory( SERVER_ROOT.getAbsoluteFile().toPath() ) );
+    sshd.addSessionListener( new SessionListener() {
+      @Override
+      public void sessionCreated( Session session ) {
+        sessions.incrementAndGet();
+      }
+    } );
+    sshd.start();
+  }
+
+
+
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    sshd.stop( true );
+    FileUtil.deleteDirectory( WORK );
+  }
+
+
+
+
+  @Before
+  public void setUp() throws Exception {
+    FileUtil.deleteDirectory( LOCAL );
+    FileUtil.deleteDirectory( new File( SERVER_ROOT, "drop" ) );
+    LOCAL.mkdirs();
+    sessions.set( 0 );
+
+    site = new RemoteSite();
+    site.setProtocol( RemoteSite.SFTP );
+    site.setHost( "localhost" );
+    site.setPort( sshd.getPort() );
+    site.setUsername( "user" );
+    site.setPassword( "secret" );
+  }
+
+
+
+
+  @After
+  public void tearDown() {
+    site.close();
+  }
+
+
+
+
+  /**
+   * Create a file of random data of the given size.
+   */
+  private static byte[] createFile( File file, int size ) throws IOException {
+    file.getParentFile().mkdirs();
+    byte[] data = new byte[size];
+    new Random( size ).nextBytes( data );
+    Files.write( file.toPath(), data );
+    return data;
+  }
+
+
+
+
+  /**
+   * Truncate the given copy of a file to simulate an interrupted transfer.
+   */
+  private static void truncate( File file, long length ) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile( file, "rw" )) {
+      raf.setLength( length );
+    }
+  }
+
+
+
+
+  private static boolean sameContent( File expected, File actual ) throws IOException {
+    return actual.exists() && Arrays.equals( Files.readAllBytes( expected.toPath() ), Files.readAllBytes( actual.toPath() ) );
+  }
+
+
+
+
+  @Test
+  public void retrieveParallel() throws Exception {
+    File drop = new File( SERVER_ROOT, "drop" );
+    long total = 0;
+    for ( int x = 0; x < 20; x++ ) {
+      File dir = ( x % 2 == 0 ) ? drop : new File( drop, "sub" );
+      total += createFile( new File( dir, "file" + x + ".dat" ), 1000 + x * 500 ).length;
+    }
+
+    site.setChannels( 4 );
+    assertTrue( site.retrieveDirectory( "/drop", LOCAL.getAbsolutePath(), null, true, true, true ) );
+
+    for ( int x = 0; x < 20; x++ ) {
+      String path = ( ( x % 2 == 0 ) ? "" : "sub" + File.separator ) + "file" + x + ".dat";
+      File local = new File( LOCAL, path );
+      assertTrue( path, local.exists() );
+      assertEquals( 1000 + x * 500, local.length() );
+      // retrieved files were deleted from the server
+      assertFalse( path, new File( drop, path ).exists() );
+    }
+
+    TransferStats stats = site.getTransferStats();
+    assertEquals( 20, stats.getFiles() );
+    assertEquals( 0, stats.getFailures() );
+    assertEquals( total, stats.getBytes() );
+    assertEquals( 4, stats.getChannels() );
+    assertEquals( 4, sessions.get() );
+  }
+
+
+
+
+  @Test
+  public void retrieveResume() throws Exception {
+    File remote = new File( SERVER_ROOT, "drop" + File.separator + "large.dat" );
+    createFile( remote, 100000 );
+    File local = new File( LOCAL, "large.dat" );
+    Files.copy( remote.toPath(), local.toPath() );
+    truncate( local, 40000 );
+
+    site.setResume( true );
+    assertTrue( site.retrieveDirectory( "/drop", LOCAL.getAbsolutePath(), null, false, false, false ) );
+    assertTrue( sameContent( remote, local ) );
+    assertEquals( 60000, site.getTransferStats().getBytes() );
+
+    // without resume, the whole file is transferred again
+    truncate( local, 40000 );
+    site.setResume( false );
+    assertTrue( site.retrieveDirectory( "/drop", LOCAL.getAbsolutePath(), null, false, false, false ) );
+    assertTrue( sameContent( remote, local ) );
+    assertEquals( 100000, site.getTransferStats().getBytes() );
+  }
+
+
+
+
+  @Test
+  public void publishParallel() throws Exception {
+    for ( int x = 0; x < 12; x++ ) {
+      File dir = ( x % 3 == 0 ) ? LOCAL : new File( LOCAL, "a" + File.separator + "b" );
+      createFile( new File( dir, "file" + x + ".txt" ), 2000 + x );
+    }
+    createFile( new File( LOCAL, "skip.bin" ), 10 );
+
+    site.setChannels( 3 );
+    assertTrue( site.publishDirectory( LOCAL.getAbsolutePath(), "/drop/out", ".*\\.txt", true, true ) );
+
+    for ( int x = 0; x < 12; x++ ) {
+      String path = ( ( x % 3 == 0 ) ? "" : "a" + File.separator + "b" + File.separator ) + "file" + x + ".txt";
+      assertTrue( path, sameContent( new File( LOCAL, path ), new File( SERVER_ROOT, "drop" + File.separator + "out" + File.separator + path ) ) );
+    }
+    assertFalse( new File( SERVER_ROOT, "drop" + File.separator + "out" + File.separator + "skip.bin" ).exists() );
+    assertEquals( 12, site.getTransferStats().getFiles() );
+    assertEquals( 3, sessions.get() );
+  }
+
+
+
+
+  @Test
+  public void publishResume() throws Exception {
+    File local = new File( LOCAL, "large.dat" );
+    createFile( local, 50000 );
+    File remote = new File( SERVER_ROOT, "drop" + File.separator + "large.dat" );
+    remote.getParentFile().mkdirs();
+    Files.copy( local.toPath(), remote.toPath() );
+    truncate( remote, 20000 );
+
+    site.setResume( true );
+    assertTrue( site.publishDirectory( LOCAL.getAbsolutePath(), "/drop", null, false, false ) );
+    assertTrue( sameContent( local, remote ) );
+    assertEquals( 30000, site.getTransferStats().getBytes() );
+  }
+
+
+
+
+  @Test
+  public void missingRemoteDirectory() throws Exception {
+    site.setChannels( 2 );
+    assertFalse( site.retrieveDirectory( "/nothere", LOCAL.getAbsolutePath(), null, false, false, false ) );
+  }
+
+}
@@ -18,12 +18,18 @@ import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 import com.rabbitmq.client.ConsumerCancelledException;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
 import com.rabbitmq.client.GetResponse;
 import com.rabbitmq.client.ShutdownSignalException;
 
@@ -46,21 +52,54 @@ import coyote.mq.CMQ;
 
 
 /**
+ * Reads frames from messages in a RabbitMQ queue.
  * 
+ * <p>By default each message is retrieved with a separate request to the 
+ * broker. Setting "Consume" to true registers a consumer instead, and the 
+ * broker pushes up to "Prefetch" unacknowledged messages (default 100) into 
+ * a local buffer the reader takes them from.</p>
+ * 
+ * <p>Messages are acknowledged as they are read. Setting "batch" to more 
+ * than one acknowledges them together once that many have been read, or 
+ * sooner if there are no more messages waiting, so the broker is never left 
+ * waiting on acknowledgements to deliver more.</p>
  */
 public class RabbitReader extends AbstractFrameReader implements FrameReader, ConfigurableComponent {
 
   private static final boolean NO_AUTO_ACK = false;
-  private static final boolean REQUEUE = true;
+  private static final boolean MULTIPLE = true;
   private static final boolean DURABLE = true;
   private static final boolean PUBLIC = false;
   private static final boolean KEEP = false;
   private static final Map<String, Object> NO_ARGUMENTS = null;
 
+  /** The default number of unacknowledged messages pushed to a consumer */
+  public static final int DEFAULT_PREFETCH = 100;
+
+  /** Milliseconds to wait for a message to be pushed when checking for EOF */
+  private static final long EOF_WAIT = 250;
+
+  /** Milliseconds to wait for each message when listening */
+  private static final long LISTEN_WAIT = 1000;
+
   private Connection connection = null;
   private Channel channel = null;
   private int prefetchCount = 1;
-  private boolean peekEofCheck = true;
+
+  /** Messages pushed by the broker, null when retrieving each message */
+  private BlockingQueue<Message> deliveries = null;
+
+  /** A message received while checking for EOF, returned by the next read */
+  private Message next = null;
+
+  /** The number of messages to read before acknowledging them */
+  private int ackBatch = 1;
+
+  /** The number of messages read but not yet acknowledged */
+  private int unacknowledged = 0;
+
+  /** The delivery tag of the last message read */
+  private long lastTag = 0;
 
 
 
@@ -127,6 +166,16 @@ public class RabbitReader extends AbstractFrameReader implements FrameReader, Co
 
 
 
+  public boolean isConsuming() {
+    if ( configuration.containsIgnoreCase( ConfigTag.CONSUME ) ) {
+      return configuration.getBoolean( ConfigTag.CONSUME );
+    }
+    return false;
+  }
+
+
+
+
   public String getQueueName() {
     if ( configuration.containsIgnoreCase( ConfigTag.QUEUE ) ) {
       return configuration.getString( ConfigTag.QUEUE );
@@ -144,6 +193,20 @@ public class RabbitReader extends AbstractFrameReader implements FrameReader, Co
   public void open( TransformContext context ) {
     super.open( context );
 
+    if ( isConsuming() ) {
+      prefetchCount = DEFAULT_PREFETCH;
+    }
+    try {
+      if ( configuration.containsIgnoreCase( ConfigTag.PREFETCH ) ) {
+        prefetchCount = Math.max( 0, configuration.getInt( ConfigTag.PREFETCH ) );
+      }
+      if ( configuration.containsIgnoreCase( ConfigTag.BATCH ) ) {
+        ackBatch = Math.max( 1, configuration.getInt( ConfigTag.BATCH ) );
+      }
+    } catch ( NumberFormatException e ) {
+      Log.error( "Invalid " + getClass().getSimpleName() + " configuration - " + e.getMessage() );
+    }
+
     ConnectionFactory factory = new ConnectionFactory();
 
     try {
@@ -162,6 +225,23 @@ public class RabbitReader extends AbstractFrameReader implements FrameReader, Co
       channel = connection.createChannel();
       channel.basicQos( prefetchCount );
       channel.queueDeclare( getQueueName(), DURABLE, PUBLIC, KEEP, NO_ARGUMENTS );
+
+      if ( isConsuming() ) {
+        // the broker never has more than the prefetch count outstanding, so 
+        // the buffer only fills when no prefetch limit is set
+        final BlockingQueue<Message> buffer = new LinkedBlockingQueue<Message>( prefetchCount > 0 ? prefetchCount : DEFAULT_PREFETCH );
+        channel.basicConsume( getQueueName(), NO_AUTO_ACK, new DefaultConsumer( channel ) {
+          @Override
+          public void handleDelivery( String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body ) throws IOException {
+            try {
+              buffer.put( new Message( envelope.getDeliveryTag(), body ) );
+            } catch ( InterruptedException e ) {
+              Thread.currentThread().interrupt();
+            }
+          }
+        } );
+        deliveries = buffer;
+      }
     } catch ( KeyManagementException | NoSuchAlgorithmException | URISyntaxException | IOException | TimeoutException | ShutdownSignalException | ConsumerCancelledException e ) {
       Log.error( e.getClass().getSimpleName() + ":" + e.getMessage() + "\n" + ExceptionUtil.stackTrace( e ) );
       getContext().setError( "Could not open " + getClass().getSimpleName() + ": " + e.getMessage() );
@@ -180,44 +260,18 @@ public class RabbitReader extends AbstractFrameReader implements FrameReader, Co
     DataFrame retval = null;
     try {
       while ( retval == null ) {
-        GetResponse response = channel.basicGet( getQueueName(), NO_AUTO_ACK );
-        if ( response != null ) {
-          byte[] data = null;
-          try {
-            data = response.getBody();
-            channel.basicAck( response.getEnvelope().getDeliveryTag(), false );
-          } catch ( IOException e ) {
-            Log.error( "Could not get data from message body: " + e.getClass().getName() + " - " + e.getMessage() );
-          }
-          if ( data != null ) {
-            try {
-              retval = new DataFrame( data );
-            } catch ( Exception e ) {
-              Log.debug( "Received data not in dataframe wire format" );
-              String text = StringUtil.getString( data );
-              try {
-                List<DataFrame> frames = JSONMarshaler.marshal( text );
-                if ( frames != null && frames.size() > 0 ) {
-                  retval = frames.get( 0 );
-                } else {
-                  Log.notice( "Received an empty JSON message" );
-                }
-              } catch ( MarshalException e1 ) {
-                Log.debug( "Received data not in JSON format" );
-                try {
-                  List<DataFrame> frames = XMLMarshaler.marshal( text );
-                  if ( frames != null && frames.size() > 0 ) {
-                    retval = frames.get( 0 );
-                  } else {
-                    Log.notice( "Received an empty XML message" );
-                  }
-                } catch ( MarshalException e2 ) {
-                  Log.error( "Could not parse the data received from " + channel.toString() );
-                }
-              }
-            }
+        Message message = next;
+        next = null;
+        if ( message == null ) {
+          message = receive( isListening() ? LISTEN_WAIT : 0 );
+        }
+
+        if ( message != null ) {
+          acknowledge( message.tag );
+          if ( message.body != null ) {
+            retval = toFrame( message.body );
           } else {
-            Log.warn( "Retrieved an empty body from a message: " + response.getEnvelope().getDeliveryTag() );
+            Log.warn( "Retrieved an empty body from a message: " + message.tag );
           }
         } else {
           // If we are not in listen mode, break out of the loop and return null, otherwise loop
@@ -236,27 +290,69 @@ public class RabbitReader extends AbstractFrameReader implements FrameReader, Co
 
 
   /**
-   * @see coyote.dx.FrameReader#eof()
+   * Parse the message body as a frame in wire format, JSON or XML.
+   * 
+   * @param data the body of the message
+   * 
+   * @return the frame or null if the data could not be parsed
    */
-  @Override
-  public boolean eof() {
-    boolean retval = true;
-    if ( isListening() ) {
-      retval = false;
-    } else {
-      if ( peekEofCheck ) {
+  private DataFrame toFrame( byte[] data ) {
+    DataFrame retval = null;
+    try {
+      retval = new DataFrame( data );
+    } catch ( Exception e ) {
+      Log.debug( "Received data not in dataframe wire format" );
+      String text = StringUtil.getString( data );
+      try {
+        List<DataFrame> frames = JSONMarshaler.marshal( text );
+        if ( frames != null && frames.size() > 0 ) {
+          retval = frames.get( 0 );
+        } else {
+          Log.notice( "Received an empty JSON message" );
+        }
+      } catch ( MarshalException e1 ) {
+        Log.debug( "Received data not in JSON format" );
         try {
-          GetResponse response = channel.basicGet( getQueueName(), NO_AUTO_ACK );
-          if ( response != null ) {
-            retval = false;
-            try {
-              channel.basicReject( response.getEnvelope().getDeliveryTag(), REQUEUE );
-            } catch ( Exception e ) {
-              Log.error( "Could not requeue message on EOF check: " + e.getClass().getName() + " - " + e.getMessage() );
-            }
+          List<DataFrame> frames = XMLMarshaler.marshal( text );
+          if ( frames != null && frames.size() > 0 ) {
+            retval = frames.get( 0 );
+          } else {
+            Log.notice( "Received an empty XML message" );
           }
-        } catch ( IOException e ) {
-          Log.error( "Exception on EOF check: " + e.getClass().getName() + " - " + e.getMessage() );
+        } catch ( MarshalException e2 ) {
+          Log.error( "Could not parse the data received from " + channel.toString() );
+        }
+      }
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Receive the next message from the broker.
+   * 
+   * @param wait milliseconds to wait for a message to be pushed when 
+   *        consuming, ignored when retrieving each message
+   * 
+   * @return the next message or null if none was available
+   */
+  private Message receive( long wait ) throws IOException {
+    if ( deliveries == null ) {
+      GetResponse response = channel.basicGet( getQueueName(), NO_AUTO_ACK );
+      return ( response != null ) ? new Message( response.getEnvelope().getDeliveryTag(), response.getBody() ) : null;
+    }
+
+    Message retval = deliveries.poll();
+    if ( retval == null ) {
+      // the broker may be waiting on our acknowledgements to send more
+      flushAcknowledgements();
+      if ( wait > 0 ) {
+        try {
+          retval = deliveries.poll( wait, TimeUnit.MILLISECONDS );
+        } catch ( InterruptedException e ) {
+          Thread.currentThread().interrupt();
         }
       }
     }
@@ -266,6 +362,70 @@ public class RabbitReader extends AbstractFrameReader implements FrameReader, Co
 
 
 
+  /**
+   * Acknowledge the message with the given tag, along with any others not 
+   * yet acknowledged, once the batch size has been reached.
+   */
+  private void acknowledge( long tag ) throws IOException {
+    lastTag = tag;
+    if ( ++unacknowledged >= ackBatch ) {
+      flushAcknowledgements();
+    }
+  }
+
+
+
+
+  /**
+   * Acknowledge all the messages read so far.
+   */
+  private void flushAcknowledgements() throws IOException {
+    if ( unacknowledged > 0 ) {
+      channel.basicAck( lastTag, MULTIPLE );
+      unacknowledged = 0;
+    }
+  }
+
+
+
+
+  /**
+   * The message received while checking for EOF is kept for the next read, 
+   * so checking neither costs an extra request nor changes the order of the 
+   * messages.
+   * 
+   * @see coyote.dx.FrameReader#eof()
+   */
+  @Override
+  public boolean eof() {
+    if ( isListening() ) {
+      return false;
+    }
+    if ( next != null ) {
+      return false;
+    }
+    if ( channel == null ) {
+      // never connected, so there is nothing to read
+      return true;
+    }
+    try {
+      next = receive( EOF_WAIT );
+      if ( next != null ) {
+        return false;
+      }
+      if ( deliveries != null ) {
+        // messages may still be on their way to the consumer
+        return channel.queueDeclarePassive( getQueueName() ).getMessageCount() == 0;
+      }
+    } catch ( IOException e ) {
+      Log.error( "Exception on EOF check: " + e.getClass().getName() + " - " + e.getMessage() );
+    }
+    return true;
+  }
+
+
+
+
   /**
    * @see coyote.dx.reader.AbstractFrameReader#close()
    */
@@ -273,6 +433,11 @@ public class RabbitReader extends AbstractFrameReader implements FrameReader, Co
   public void close() throws IOException {
     // perform our closing functions first
     if ( connection != null ) {
+      try {
+        flushAcknowledgements();
+      } catch ( IOException e ) {
+        Log.warn( "Could not acknowledge messages on close: " + e.getMessage() );
+      }
       connection.close();
     }
 
@@ -280,4 +445,23 @@ public class RabbitReader extends AbstractFrameReader implements FrameReader, Co
     super.close();
   }
 
+
+
+
+  /**
+   * A message received from the broker.
+   */
+  private static final class Message {
+    final long tag;
+    final byte[] body;
+
+
+
+
+    Message( long tag, byte[] body ) {
+      this.tag = tag;
+      this.body = body;
+    }
+  }
+
 }
@@ -14,11 +14,21 @@ package coyote.dx.writer;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.Charset;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 import com.rabbitmq.client.ConsumerCancelledException;
@@ -41,16 +51,59 @@ import coyote.mq.CMQ;
 
 
 /**
+ * Writes frames as messages to a RabbitMQ queue.
  * 
+ * <p>Setting "Confirm" to true has the broker confirm each message. Messages 
+ * are published without waiting for their confirmations, up to "capacity" 
+ * (default 1000) unconfirmed messages at a time, after which the writer 
+ * waits for confirmations before publishing more. Messages the broker 
+ * rejects are published again. The writer waits for all the outstanding 
+ * confirmations every "batch" messages and/or "interval" milliseconds if 
+ * set, and always when it is closed, waiting at most "timeout" milliseconds 
+ * (default 30000) before reporting an error.</p>
  */
 public class RabbitWriter extends AbstractFrameWriter implements FrameWriter, ConfigurableComponent {
 
   private static final String BINARY = "Binary";
   private static final String JSON = "JSON";
   private static final String XML = "XML";
+
+  /** The default number of messages which may be waiting for confirmation */
+  public static final int DEFAULT_CAPACITY = 1000;
+
+  /** The default number of milliseconds to wait for confirmations */
+  public static final long DEFAULT_TIMEOUT = 30000;
+
+  /** The number of times rejected messages are published again */
+  private static final int ATTEMPTS = 3;
+
   private Connection connection = null;
   private Channel channel = null;
 
+  /** The message format, resolved when opened */
+  private String messageFormat = BINARY;
+
+  /** The encoding of JSON and XML messages, null for the default */
+  private Charset charset = null;
+
+  private boolean confirming = false;
+  private int capacity = DEFAULT_CAPACITY;
+  private int batch = 0;
+  private long interval = 0;
+  private long timeout = DEFAULT_TIMEOUT;
+
+  /** Permits for each message which may be waiting for confirmation */
+  private Semaphore window = null;
+
+  /** Published messages by sequence number, waiting for confirmation */
+  private final ConcurrentNavigableMap<Long, byte[]> unconfirmed = new ConcurrentSkipListMap<Long, byte[]>();
+
+  /** Messages rejected by the broker, to be published again */
+  private final Queue<byte[]> rejected = new ConcurrentLinkedQueue<byte[]>();
+
+  private int sinceCheckpoint = 0;
+  private long lastCheckpoint = 0;
+
 
 
 
@@ -145,12 +198,15 @@ public class RabbitWriter extends AbstractFrameWriter implements FrameWriter, Co
     super.open( context );
 
     String format = getFormat();
-    if ( StringUtil.isNotBlank( format ) ) {
-      if ( format.equalsIgnoreCase( JSON ) || format.equalsIgnoreCase( XML ) ) {
-        String encoding = getEncoding();
+    if ( StringUtil.isBlank( format ) || format.equalsIgnoreCase( BINARY ) ) {
+      messageFormat = BINARY;
+    } else if ( format.equalsIgnoreCase( JSON ) || format.equalsIgnoreCase( XML ) ) {
+      messageFormat = format.equalsIgnoreCase( JSON ) ? JSON : XML;
+      String encoding = getEncoding();
+      if ( StringUtil.isNotBlank( encoding ) ) {
         try {
-          "Testing".getBytes( encoding );
-        } catch ( final java.io.UnsupportedEncodingException e ) {
+          charset = Charset.forName( encoding );
+        } catch ( final IllegalArgumentException e ) {
           Log.error( "Unsupported string encoding of '" + encoding + "'" );
           getContext().setError( "Unsupported string encoding of '" + encoding + "'" );
         }
@@ -160,6 +216,26 @@ public class RabbitWriter extends AbstractFrameWriter implements FrameWriter, Co
       getContext().setError( "Unsupported message format of '" + format + "'" );
     }
 
+    if ( configuration.containsIgnoreCase( ConfigTag.CONFIRM ) ) {
+      confirming = configuration.getBoolean( ConfigTag.CONFIRM );
+    }
+    try {
+      if ( configuration.containsIgnoreCase( ConfigTag.CAPACITY ) ) {
+        capacity = Math.max( 1, configuration.getInt( ConfigTag.CAPACITY ) );
+      }
+      if ( configuration.containsIgnoreCase( ConfigTag.BATCH ) ) {
+        batch = configuration.getInt( ConfigTag.BATCH );
+      }
+      if ( configuration.containsIgnoreCase( ConfigTag.INTERVAL ) ) {
+        interval = configuration.getLong( ConfigTag.INTERVAL );
+      }
+      if ( configuration.containsIgnoreCase( ConfigTag.TIMEOUT ) ) {
+        timeout = configuration.getLong( ConfigTag.TIMEOUT );
+      }
+    } catch ( NumberFormatException e ) {
+      Log.error( "Invalid " + getClass().getSimpleName() + " configuration - " + e.getMessage() );
+    }
+
     ConnectionFactory factory = new ConnectionFactory();
 
     try {
@@ -178,6 +254,26 @@ public class RabbitWriter extends AbstractFrameWriter implements FrameWriter, Co
       channel = connection.createChannel();
       channel.queueDeclare( getQueueName(), true, false, false, null );
 
+      if ( confirming ) {
+        window = new Semaphore( capacity );
+        channel.addConfirmListener( new ConfirmListener() {
+          @Override
+          public void handleAck( long deliveryTag, boolean multiple ) {
+            confirmed( deliveryTag, multiple, false );
+          }
+
+
+
+
+          @Override
+          public void handleNack( long deliveryTag, boolean multiple ) {
+            confirmed( deliveryTag, multiple, true );
+          }
+        } );
+        channel.confirmSelect();
+        lastCheckpoint = System.currentTimeMillis();
+      }
+
     } catch ( KeyManagementException | NoSuchAlgorithmException | URISyntaxException | IOException | TimeoutException | ShutdownSignalException | ConsumerCancelledException e ) {
       Log.error( e.getClass().getSimpleName() + ":" + e.getMessage() + "\n" + ExceptionUtil.stackTrace( e ) );
       getContext().setError( "Could not open " + getClass().getSimpleName() + ": " + e.getMessage() );
@@ -195,47 +291,138 @@ public class RabbitWriter extends AbstractFrameWriter implements FrameWriter, Co
   public void write( DataFrame frame ) {
     if ( frame != null ) {
       byte[] data;
+      if ( BINARY.equals( messageFormat ) ) {
+        data = frame.getBytes();
+      } else {
+        String datastring = JSON.equals( messageFormat ) ? JSONMarshaler.marshal( frame ) : XMLMarshaler.marshal( frame );
+        data = ( charset != null ) ? datastring.getBytes( charset ) : StringUtil.getBytes( datastring );
+      }
 
       try {
-        String format = getFormat();
-        if ( StringUtil.isNotBlank( format ) ) {
-
-          if ( format.equalsIgnoreCase( BINARY ) ) {
-            data = frame.getBytes();
-          } else {
-            String datastring;
-            if ( format.equalsIgnoreCase( JSON ) ) {
-              datastring = JSONMarshaler.marshal( frame );
-            } else if ( format.equalsIgnoreCase( XML ) ) {
-              datastring = XMLMarshaler.marshal( frame );
-            } else {
-              Log.error( "Unsupported message format of '" + format + "' JSON and XML are the currently supported options" );
-              getContext().setError( "Unsupported message format of '" + format + "'" );
-              return;
-            }
-            String encoding = getEncoding();
-            if ( StringUtil.isNotBlank( encoding ) ) {
-              try {
-                data = datastring.getBytes( encoding );
-              } catch ( Exception e ) {
-                Log.error( "Unsupported string encoding of '" + encoding + "'" );
-                getContext().setError( "Unsupported string encoding of '" + encoding + "'" );
-                return;
-              }
-            } else {
-              data = StringUtil.getBytes( datastring );
-            }
+        if ( confirming ) {
+          publishRejected();
+          publishConfirmed( data );
+          sinceCheckpoint++;
+          if ( ( batch > 0 && sinceCheckpoint >= batch ) || ( interval > 0 && System.currentTimeMillis() - lastCheckpoint >= interval ) ) {
+            checkpoint();
           }
         } else {
-          data = frame.getBytes();
+          channel.basicPublish( "", getQueueName(), null, data );
+        }
+        if ( Log.isLogging( Log.DEBUG_EVENTS ) ) {
+          Log.debug( "Sent " + data.length + " bytes to '" + getQueueName() + "'" );
         }
-
-        channel.basicPublish( "", getQueueName(), null, data );
-        Log.debug( "Sent " + data.length + " bytes to '" + getQueueName() + "'" );
       } catch ( IOException e ) {
         Log.error( e.getClass().getSimpleName() + ":" + e.getMessage() + "\n" + ExceptionUtil.stackTrace( e ) );
+        getContext().setError( "Could not publish to '" + getQueueName() + "': " + e.getMessage() );
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Publish a message to be confirmed, waiting for room in the window of 
+   * unconfirmed messages if necessary.
+   */
+  private void publishConfirmed( byte[] data ) throws IOException {
+    try {
+      if ( !window.tryAcquire( timeout, TimeUnit.MILLISECONDS ) ) {
+        throw new IOException( unconfirmed.size() + " messages were not confirmed within " + timeout + "ms" );
+      }
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new IOException( "Interrupted waiting for confirmations" );
+    }
+
+    long sequence = channel.getNextPublishSeqNo();
+    unconfirmed.put( sequence, data );
+    try {
+      channel.basicPublish( "", getQueueName(), null, data );
+    } catch ( IOException | RuntimeException e ) {
+      if ( unconfirmed.remove( sequence ) != null ) {
+        window.release();
       }
+      throw e;
+    }
+  }
+
+
+
+
+  /**
+   * Publish any messages the broker rejected.
+   * 
+   * @return true if any messages were published
+   */
+  private boolean publishRejected() throws IOException {
+    boolean retval = false;
+    byte[] data;
+    while ( ( data = rejected.poll() ) != null ) {
+      publishConfirmed( data );
+      retval = true;
     }
+    if ( retval ) {
+      Log.warn( "Published messages rejected by the broker again" );
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Wait for every published message to be confirmed.
+   * 
+   * @throws IOException if the messages were not confirmed within the 
+   *         timeout or continue to be rejected
+   */
+  private void checkpoint() throws IOException {
+    int attempts = 0;
+    do {
+      if ( ++attempts > ATTEMPTS ) {
+        throw new IOException( rejected.size() + " messages were rejected by the broker " + ATTEMPTS + " times" );
+      }
+      try {
+        if ( !window.tryAcquire( capacity, timeout, TimeUnit.MILLISECONDS ) ) {
+          throw new IOException( unconfirmed.size() + " messages were not confirmed within " + timeout + "ms" );
+        }
+        window.release( capacity );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new IOException( "Interrupted waiting for confirmations" );
+      }
+    }
+    while ( publishRejected() );
+
+    sinceCheckpoint = 0;
+    lastCheckpoint = System.currentTimeMillis();
+  }
+
+
+
+
+  /**
+   * Called by the connection as the broker confirms messages.
+   * 
+   * @param tag the sequence number of the message
+   * @param multiple true if all the messages up to and including the tag 
+   *        are confirmed
+   * @param reject true if the broker rejected the messages
+   */
+  private void confirmed( long tag, boolean multiple, boolean reject ) {
+    Map<Long, byte[]> messages = multiple ? unconfirmed.headMap( tag, true ) : unconfirmed.subMap( tag, true, tag, true );
+    int count = 0;
+    for ( Iterator<Map.Entry<Long, byte[]>> it = messages.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry<Long, byte[]> entry = it.next();
+      if ( reject ) {
+        rejected.add( entry.getValue() );
+      }
+      it.remove();
+      count++;
+    }
+    window.release( count );
   }
 
 
@@ -247,6 +434,14 @@ public class RabbitWriter extends AbstractFrameWriter implements FrameWriter, Co
   @Override
   public void close() throws IOException {
     if ( connection != null ) {
+      if ( confirming && channel != null && channel.isOpen() ) {
+        try {
+          checkpoint();
+        } catch ( IOException e ) {
+          Log.error( "Not all messages were confirmed: " + e.getMessage() );
+          getContext().setError( "Not all messages were confirmed: " + e.getMessage() );
+        }
+      }
       connection.close();
     }
 
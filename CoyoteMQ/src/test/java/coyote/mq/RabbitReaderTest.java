@@ -154,4 +154,64 @@ public class RabbitReaderTest extends AbstractMessagingTest {
 
   }
 
+
+
+
+
+  @Test
+  public void consume() throws ConfigurationException {
+    final String QUEUE_NAME = "rtw/consume";
+
+    for ( int x = 0; x < 25; x++ ) {
+      sendMessage( QUEUE_NAME, new DataFrame( "SEQ", x ) );
+    }
+
+    Config cfg = new Config();
+    cfg.set( ConfigTag.SOURCE, "amqp://localhost:" + broker.port );
+    cfg.set( ConfigTag.USERNAME, "guest" );
+    cfg.set( ConfigTag.PASSWORD, "guest" );
+    cfg.set( ConfigTag.QUEUE, QUEUE_NAME );
+    cfg.set( ConfigTag.USE_SSL, true );
+    cfg.set( ConfigTag.CONSUME, true );
+    cfg.set( ConfigTag.PREFETCH, 4 );
+    cfg.set( ConfigTag.BATCH, 3 );
+
+    FrameReader reader = new RabbitReader();
+    reader.setConfiguration( cfg );
+    reader.open( getContext() );
+
+    List<DataFrame> received = new ArrayList<DataFrame>();
+    while ( getContext().isNotInError() && !reader.eof() ) {
+      TransactionContext txnContext = new TransactionContext( getContext() );
+      DataFrame frame = reader.read( txnContext );
+      if ( frame != null ) {
+        received.add( frame );
+      }
+    }
+
+    try {
+      reader.close();
+    } catch ( IOException e ) {
+      Log.warn( e.getClass().getSimpleName() + ":" + e.getMessage() );
+    }
+
+    // all the messages arrive in the order they were sent
+    assertEquals( 25, received.size() );
+    for ( int x = 0; x < received.size(); x++ ) {
+      assertEquals( Integer.toString( x ), received.get( x ).getAsString( "SEQ" ) );
+    }
+
+    // and all of them were acknowledged
+    cfg.set( ConfigTag.CONSUME, false );
+    reader = new RabbitReader();
+    reader.setConfiguration( cfg );
+    reader.open( getContext() );
+    assertTrue( reader.eof() );
+    try {
+      reader.close();
+    } catch ( IOException e ) {
+      Log.warn( e.getClass().getSimpleName() + ":" + e.getMessage() );
+    }
+  }
+
 }
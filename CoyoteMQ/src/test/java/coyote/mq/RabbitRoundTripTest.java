@@ -11,9 +11,12 @@
  */
 package coyote.mq;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -36,7 +39,7 @@ import coyote.loader.cfg.ConfigurationException;
 public class RabbitRoundTripTest extends AbstractMessagingTest {
 
   @Test
-  public void test() throws ConfigurationException {
+  public void test() throws ConfigurationException, IOException {
     final String QUEUE_NAME = "rtw/work";
 
     List<DataFrame> received = new ArrayList<DataFrame>();
@@ -77,6 +80,52 @@ public class RabbitRoundTripTest extends AbstractMessagingTest {
     }
 
     assertTrue( received.size() == limit );
+
+    writer.close();
+    reader.close();
+  }
+
+
+
+
+  @Test
+  public void confirmed() throws ConfigurationException, IOException {
+    final String QUEUE_NAME = "rtw/confirmed";
+
+    Config cfg = new Config();
+    cfg.set( ConfigTag.TARGET, "amqp://localhost:" + broker.port );
+    cfg.set( ConfigTag.SOURCE, cfg.getAsString( ConfigTag.TARGET ) );
+    cfg.set( ConfigTag.USERNAME, "guest" );
+    cfg.set( ConfigTag.PASSWORD, "guest" );
+    cfg.set( ConfigTag.QUEUE, QUEUE_NAME );
+    cfg.set( ConfigTag.USE_SSL, true );
+    cfg.set( ConfigTag.CONFIRM, true );
+    cfg.set( ConfigTag.CAPACITY, 16 );
+    cfg.set( ConfigTag.BATCH, 100 );
+
+    FrameWriter writer = new RabbitWriter();
+    writer.setConfiguration( cfg );
+    writer.open( getContext() );
+
+    int limit = 500;
+    for ( int x = 0; x < limit; x++ ) {
+      writer.write( new DataFrame().set( "SEQ", x ) );
+    }
+
+    // closing waits for the last of the confirmations
+    writer.close();
+    assertFalse( getContext().getErrorMessage(), getContext().isInError() );
+
+    // every message is on the queue once confirmed
+    FrameReader reader = new RabbitReader();
+    reader.setConfiguration( cfg );
+    reader.open( getContext() );
+    List<DataFrame> received = new ArrayList<DataFrame>();
+    while ( !reader.eof() ) {
+      read( reader, received );
+    }
+    reader.close();
+    assertEquals( limit, received.size() );
   }
 
 
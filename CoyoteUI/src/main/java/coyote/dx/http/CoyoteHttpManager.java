@@ -11,6 +11,7 @@
  */
 package coyote.dx.http;
 
+import coyote.dx.ConfigTag;
 import coyote.dx.Service;
 import coyote.dx.http.HttpManager;
 import coyote.dx.http.responder.CommandResponder;
@@ -80,10 +81,15 @@ public class CoyoteHttpManager extends HTTPDRouter implements HttpManager {
     config = cfg;
 
     Config authConfig = null;
+    Config executorConfig = null;
     if ( cfg != null ) {
       authConfig = cfg.getSection( GenericAuthProvider.AUTH_SECTION );
+      executorConfig = cfg.getSection( ConfigTag.EXECUTOR );
     }
 
+    // Run requests on a bounded pool of threads
+    configExecutor( executorConfig );
+
     // Setup auth provider from configuration - No configuration results in deny-all operation
     setAuthProvider( new GenericAuthProvider( authConfig ) );
 
@@ -64,6 +64,11 @@ public class CWS {
   // for the reader
   public static final String SELECTOR = "Selector";
 
+  // for the lookup
+  public static final String CACHE_SIZE = "cachesize";
+  public static final String TTL = "ttl";
+  public static final String NEGATIVE_TTL = "negativettl";
+
   // Message bundle for i18n
   public static final BundleBaseName MSG;
   static {
@@ -11,52 +11,135 @@
  */
 package coyote.dx.reader;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import coyote.commons.StringUtil;
+import coyote.commons.network.http.Body;
+import coyote.commons.network.http.HTTP;
+import coyote.commons.network.http.HTTPD;
 import coyote.commons.network.http.IHTTPSession;
+import coyote.commons.network.http.Method;
 import coyote.commons.network.http.Response;
+import coyote.commons.network.http.Status;
 import coyote.commons.network.http.responder.HTTPDRouter;
 import coyote.commons.network.http.responder.Resource;
 import coyote.commons.network.http.responder.Responder;
+import coyote.dataframe.DataField;
 import coyote.dataframe.DataFrame;
+import coyote.dataframe.marshal.JSONMarshaler;
+import coyote.dataframe.marshal.MarshalException;
+import coyote.dx.ConfigTag;
 import coyote.dx.ConfigurableComponent;
 import coyote.dx.FrameReader;
-import coyote.dx.FrameValidator;
-import coyote.dx.FrameWriter;
-import coyote.dx.context.ContextListener;
-import coyote.dx.context.OperationalContext;
 import coyote.dx.context.TransactionContext;
 import coyote.dx.context.TransformContext;
-import coyote.dx.web.ResponseFuture;
-import coyote.dx.web.ResponseFutureQueue;
+import coyote.dx.http.responder.AbstractBatchResponder;
+import coyote.i13n.StatBoard;
+import coyote.loader.cfg.Config;
+import coyote.loader.cfg.ConfigurationException;
 import coyote.loader.log.Log;
 
 
 /**
- * This reader stands a web server up at a particular port and sends any 
- * received data as a data frame through the transformation pipeline.
- * 
- * <p>Note that the transform is a single thread and multiple requests result 
- * in reach request thread placing messages in a queue for serial processing. 
- * This instance then notifies the responder threads when the transform is 
- * complete and allows them to generate responses based on the state of the 
- * transaction context.
- * 
- * <p>This reader implements the Responder interface and registers this class 
- * with the WebServer so it can place ResponseFuture objects in a queue for 
- * processing which them block the request thread until a listener notifies 
- * that processing is complete which allows the response to be sent after the 
- * request has been processed by the transform engine. 
+ * This reader stands a web server up at a particular port and sends any
+ * received data as data frames through the transformation pipeline.
+ *
+ * <p>Requests are POSTed (or PUT) to the configured path with a body of a
+ * single JSON object, a JSON array of objects or newline delimited JSON
+ * objects. All the frames in the body are placed in a bounded queue and the
+ * request is acknowledged with a 202 (Accepted) as soon as they are queued.
+ * The request threads never wait for the transform engine to process the
+ * frames, so the web server threads are free to accept the next request
+ * regardless of how slow the rest of the pipeline is.
+ *
+ * <p>The frames of a request are queued all or nothing. If the queue does
+ * not have room for all of them, none are queued and the request is answered
+ * with a 429 (Too Many Requests) and a Retry-After header so the client can
+ * back off and send the same body again. A body with more frames than the
+ * queue can ever hold is answered with a 413 (Payload Too Large).
+ *
+ * <p>Note the queue is held in memory; frames accepted but not yet read by
+ * the engine are lost if the job is terminated.
+ *
+ * <p>A GET request to the path returns the depth and capacity of the queue
+ * along with the number of frames accepted and requests rejected. These
+ * values are also kept in the StatBoard of the server.
+ *
+ * <p>The configuration is:<pre>
+ * "Reader":{
+ *   "class":"WebServerReader",
+ *   "port":8080,
+ *   "path":"/api",
+ *   "capacity":1024
+ * }</pre>
  */
-public class WebServerReader extends AbstractFrameReader implements FrameReader, ConfigurableComponent, Responder, ContextListener {
+public class WebServerReader extends AbstractFrameReader implements FrameReader, ConfigurableComponent {
+
+  public static final String ACCEPTED = "WebServerReader.Accepted";
+  public static final String REJECTED = "WebServerReader.Rejected";
+  public static final String DEPTH = "WebServerReader.Depth";
 
   private static final int DEFAULT_PORT = 80;
+  private static final String DEFAULT_PATH = "/api";
+  private static final int DEFAULT_CAPACITY = 1024;
 
-  private static final String PORT = "Port";
+  /** Number of seconds clients are asked to wait when the queue is full */
+  private static final String RETRY_SECONDS = "1";
+
+  /** How long the engine thread waits for a frame before returning null */
+  private static final long POLL_INTERVAL = 1000;
 
   private HTTPDRouter server = null;
 
-  private ResponseFutureQueue futureQueue = new ResponseFutureQueue( 1024 );
+  private int port = DEFAULT_PORT;
+  private String path = DEFAULT_PATH;
+  private int capacity = DEFAULT_CAPACITY;
+
+  private BlockingQueue<DataFrame> queue = null;
+
+  /** Serializes the requests adding frames so each body is queued whole */
+  private final Object admission = new Object();
+
+
+
+
+  /**
+   * @see coyote.dx.AbstractConfigurableComponent#setConfiguration(coyote.loader.cfg.Config)
+   */
+  @Override
+  public void setConfiguration( Config cfg ) throws ConfigurationException {
+    super.setConfiguration( cfg );
+
+    if ( getConfiguration().containsIgnoreCase( ConfigTag.PORT ) ) {
+      try {
+        port = getConfiguration().getInt( ConfigTag.PORT );
+      } catch ( NumberFormatException e ) {
+        throw new ConfigurationException( "Invalid " + ConfigTag.PORT + " value: " + e.getMessage() );
+      }
+    }
+
+    if ( getConfiguration().containsIgnoreCase( ConfigTag.CAPACITY ) ) {
+      try {
+        capacity = getConfiguration().getInt( ConfigTag.CAPACITY );
+      } catch ( NumberFormatException e ) {
+        throw new ConfigurationException( "Invalid " + ConfigTag.CAPACITY + " value: " + e.getMessage() );
+      }
+      if ( capacity < 1 ) {
+        throw new ConfigurationException( ConfigTag.CAPACITY + " must be greater than zero" );
+      }
+    }
+
+    String value = getConfiguration().getString( ConfigTag.PATH );
+    if ( StringUtil.isNotBlank( value ) ) {
+      path = value.trim();
+    }
+  }
 
 
 
@@ -66,13 +149,21 @@ public class WebServerReader extends AbstractFrameReader implements FrameReader,
    */
   @Override
   public void open( final TransformContext context ) {
-    super.context = context;
+    super.open( context );
 
-    // TODO: find a webserver in the context, and if none is found or we are configured to stand one up ourselves, create one of our own.
+    queue = new ArrayBlockingQueue<DataFrame>( capacity );
 
-    // Register this instance as a context listener so we will be able to 
-    // perform processing when the transaction context completes.
-    context.addListener( this );
+    try {
+      server = new HTTPDRouter( port );
+      server.configIpACL( getConfiguration().getSection( ConfigTag.IPACL ) );
+      server.configDosTables( getConfiguration().getSection( ConfigTag.FREQUENCY ) );
+      server.addDefaultRoutes();
+      server.addRoute( path, IngestResponder.class, this );
+      server.start( HTTPD.SOCKET_READ_TIMEOUT, true );
+      Log.debug( "Accepting frames on port " + port + " at " + path + " with a queue capacity of " + capacity );
+    } catch ( IOException e ) {
+      context.setError( "Could not start web server on port " + port + ": " + e.getMessage() );
+    }
   }
 
 
@@ -80,31 +171,22 @@ public class WebServerReader extends AbstractFrameReader implements FrameReader,
 
   /**
    * Called by the transform engine thread to read data for processing.
-   * 
-   * <p>This pulls
+   *
+   * <p>This waits a short time for a frame to arrive, returning null if none
+   * did so the engine can check if it should continue running.
+   *
    * @see coyote.dx.FrameReader#read(coyote.dx.context.TransactionContext)
    */
   @Override
   public DataFrame read( TransactionContext context ) {
     DataFrame retval = null;
+    try {
+      retval = queue.poll( POLL_INTERVAL, TimeUnit.MILLISECONDS );
+    } catch ( InterruptedException ignore ) {}
 
-    ResponseFuture future = null;
-    while ( future == null ) {
-      try {
-        future = futureQueue.get( 1000 );
-      } catch ( InterruptedException e ) {}
-
-      if ( future == null ) {
-        //Check to see if we should shutdown
-      } else {
-        future.setTransactionContext( context );
-        // TODO: retrieve data from it
-        // TODO: make sure it is valid - if not update the future with the error and go back to blocking
-        // 
-      }
-
-    } // while - blocking read
-
+    if ( retval != null ) {
+      getStatBoard().setState( DEPTH, queue.size() );
+    }
     return retval;
   }
 
@@ -123,138 +205,200 @@ public class WebServerReader extends AbstractFrameReader implements FrameReader,
 
 
   /**
-   * @see coyote.commons.network.http.responder.Responder#delete(coyote.commons.network.http.responder.Resource, java.util.Map, coyote.commons.network.http.IHTTPSession)
+   * @see coyote.dx.reader.AbstractFrameReader#close()
    */
   @Override
-  public Response delete( Resource resource, Map<String, String> urlParams, IHTTPSession session ) {
-    return null;
+  public void close() throws IOException {
+    if ( server != null ) {
+      server.stop();
+    }
+    if ( queue != null && queue.size() > 0 ) {
+      Log.warn( "Closing with " + queue.size() + " accepted frames left unread" );
+    }
+    super.close();
   }
 
 
 
 
   /**
-   * @see coyote.commons.network.http.responder.Responder#get(coyote.commons.network.http.responder.Resource, java.util.Map, coyote.commons.network.http.IHTTPSession)
+   * Place all the given frames in the queue or none of them.
+   *
+   * <p>Only the engine thread removes frames from the queue so the space
+   * checked here can only grow before the frames are added.
+   *
+   * @param frames the frames received in one request
+   *
+   * @return true if the frames were queued, false if there was no room
    */
-  @Override
-  public Response get( Resource resource, Map<String, String> urlParams, IHTTPSession session ) {
-    return null;
+  boolean offer( final List<DataFrame> frames ) {
+    synchronized( admission ) {
+      if ( queue.remainingCapacity() < frames.size() ) {
+        getStatBoard().increment( REJECTED );
+        return false;
+      }
+      queue.addAll( frames );
+      getStatBoard().increase( ACCEPTED, frames.size() );
+      getStatBoard().setState( DEPTH, queue.size() );
+    }
+    return true;
   }
 
 
 
 
   /**
-   * @see coyote.commons.network.http.responder.Responder#other(java.lang.String, coyote.commons.network.http.responder.Resource, java.util.Map, coyote.commons.network.http.IHTTPSession)
+   * @return the number of frames waiting to be read by the engine
    */
-  @Override
-  public Response other( String method, Resource resource, Map<String, String> urlParams, IHTTPSession session ) {
-    return null;
+  public int getQueueDepth() {
+    return ( queue != null ) ? queue.size() : 0;
   }
 
 
 
 
   /**
-   * @see coyote.commons.network.http.responder.Responder#post(coyote.commons.network.http.responder.Resource, java.util.Map, coyote.commons.network.http.IHTTPSession)
+   * @return the number of frames the queue can hold
    */
-  @Override
-  public Response post( Resource resource, Map<String, String> urlParams, IHTTPSession session ) {
-    return null;
+  public int getQueueCapacity() {
+    return capacity;
   }
 
 
 
 
   /**
-   * Called by the web server request thread to queue up data for the reader
-   * to process in the transform engine thread.
-   * 
-   * <p>Once the processing is complete, this thread will then generate a 
-   * response based on the state of the transaction context.
-   * 
-   * @see coyote.commons.network.http.responder.Responder#put(coyote.commons.network.http.responder.Resource, java.util.Map, coyote.commons.network.http.IHTTPSession)
+   * @return the port on which this reader listens for requests
    */
-  @Override
-  public Response put( Resource resource, Map<String, String> urlParams, IHTTPSession session ) {
-    try {
-      ResponseFuture future = new ResponseFuture( session );
-      futureQueue.put( future );
-      future.wait( 120000 );
-      TransactionContext txnctx = future.getTransactionContext();
-      // TODO: create a response based on the state of the transaction context
-    } catch ( InterruptedException e ) {
-      e.printStackTrace();
-    }
-    return null;
+  public int getPort() {
+    return port;
   }
 
 
 
 
   /**
-   * @see coyote.dx.context.ContextListener#onEnd(coyote.dx.context.OperationalContext)
+   * @return the statistics board of the web server, holding the counts of
+   *         accepted frames, rejected requests and the depth of the queue.
    */
-  @Override
-  public void onEnd( OperationalContext context ) {
-    if ( context instanceof TransactionContext ) {
-      Log.debug( "Notifying responder the transaction is complete" );
-      // TODO: Notify the WebTransaction that the processing is complete
-    }
+  public StatBoard getStatBoard() {
+    return server.getStatBoard();
   }
 
 
 
 
   /**
-   * @see coyote.dx.context.ContextListener#onStart(coyote.dx.context.OperationalContext)
+   * Convert the body of a request into frames.
+   *
+   * <p>Each JSON object in the body is a frame; objects may be separated by
+   * whitespace (e.g. newline delimited JSON) or be the elements of an array.
+   *
+   * @param body the text of the request body
+   *
+   * @return the frames in the body, never null
+   *
+   * @throws MarshalException if the body is not valid JSON
    */
-  @Override
-  public void onStart( OperationalContext context ) {}
+  static List<DataFrame> parse( final String body ) throws MarshalException {
+    final List<DataFrame> retval = new ArrayList<DataFrame>();
+    if ( StringUtil.isNotBlank( body ) ) {
+      for ( DataFrame frame : JSONMarshaler.marshal( body ) ) {
+        if ( frame.getFieldCount() > 0 && frame.isArray() ) {
+          for ( DataField field : frame.getFields() ) {
+            if ( field.isFrame() ) {
+              retval.add( (DataFrame)field.getObjectValue() );
+            } else {
+              throw new MarshalException( "Array elements must be objects" );
+            }
+          }
+        } else {
+          retval.add( frame );
+        }
+      }
+    }
+    return retval;
+  }
 
 
 
 
   /**
-   * @see coyote.dx.context.ContextListener#onWrite(coyote.dx.context.TransactionContext, coyote.dx.FrameWriter)
+   * Handles requests for the reader in the web server request threads.
+   *
+   * <p>The reader is passed as the first init parameter of the route.
    */
-  @Override
-  public void onWrite( TransactionContext context, FrameWriter writer ) {}
+  public static class IngestResponder extends AbstractBatchResponder implements Responder {
+
+    /**
+     * Return the state of the queue.
+     *
+     * @see coyote.dx.http.responder.AbstractBatchResponder#get(coyote.commons.network.http.responder.Resource, java.util.Map, coyote.commons.network.http.IHTTPSession)
+     */
+    @Override
+    public Response get( Resource resource, Map<String, String> urlParams, IHTTPSession session ) {
+      final WebServerReader reader = resource.initParameter( 0, WebServerReader.class );
+      results.put( "Depth", reader.getQueueDepth() );
+      results.put( "Capacity", reader.getQueueCapacity() );
+      results.put( "Accepted", reader.getStatBoard().getCounter( ACCEPTED ).getValue() );
+      results.put( "Rejected", reader.getStatBoard().getCounter( REJECTED ).getValue() );
+      return super.get( resource, urlParams, session );
+    }
 
 
 
 
-  /**
-   * @see coyote.dx.context.ContextListener#onRead(coyote.dx.context.TransactionContext, coyote.dx.FrameReader)
-   */
-  @Override
-  public void onRead( TransactionContext context, FrameReader reader ) {}
-
-
+    @Override
+    public Response post( Resource resource, Map<String, String> urlParams, IHTTPSession session ) {
+      return ingest( resource.initParameter( 0, WebServerReader.class ), session );
+    }
 
 
-  /**
-   * @see coyote.dx.context.ContextListener#onError(coyote.dx.context.OperationalContext)
-   */
-  @Override
-  public void onError( OperationalContext context ) {}
 
 
+    @Override
+    public Response put( Resource resource, Map<String, String> urlParams, IHTTPSession session ) {
+      return ingest( resource.initParameter( 0, WebServerReader.class ), session );
+    }
 
 
-  /**
-   * @see coyote.dx.context.ContextListener#onValidationFailed(coyote.dx.context.OperationalContext, coyote.dx.FrameValidator, java.lang.String)
-   */
-  @Override
-  public void onValidationFailed( OperationalContext context, FrameValidator validator, String msg ) {}
 
 
+    /**
+     * Queue the frames in the request body, answering as soon as they are
+     * queued or rejected.
+     */
+    private Response ingest( final WebServerReader reader, final IHTTPSession session ) {
+      List<DataFrame> frames = null;
+      try {
+        final Body body = session.parseBody();
+        if ( Method.PUT.equals( session.getMethod() ) ) {
+          frames = parse( body.getContent() );
+        } else {
+          frames = parse( (String)body.get( "postData" ) );
+        }
+      } catch ( final Exception e ) {
+        status = Status.BAD_REQUEST;
+        results.put( "Message", "Could not read frames: " + e.getMessage() );
+        return Response.createFixedLengthResponse( getStatus(), getMimeType(), getText() );
+      }
 
+      if ( frames.size() > reader.getQueueCapacity() ) {
+        status = Status.PAYLOAD_TOO_LARGE;
+        results.put( "Message", "Request holds " + frames.size() + " frames, the limit is " + reader.getQueueCapacity() );
+      } else if ( reader.offer( frames ) ) {
+        status = Status.ACCEPTED;
+        results.put( "Accepted", frames.size() );
+      } else {
+        status = Status.TOO_MANY_REQUESTS;
+        results.put( "Message", "Queue full" );
+        final Response response = Response.createFixedLengthResponse( getStatus(), getMimeType(), getText() );
+        response.addHeader( HTTP.HDR_RETRY_AFTER, RETRY_SECONDS );
+        return response;
+      }
+      return Response.createFixedLengthResponse( getStatus(), getMimeType(), getText() );
+    }
 
-  /**
-   * @see coyote.dx.context.ContextListener#onFrameValidationFailed(coyote.dx.context.TransactionContext)
-   */
-  @Override
-  public void onFrameValidationFailed( TransactionContext context ) {}
+  }
 
 }
@@ -1,22 +1,424 @@
 /*
  * Copyright (c) 2017 Stephan D. Cote' - All rights reserved.
- * 
- * This program and the accompanying materials are made available under the 
- * terms of the MIT License which accompanies this distribution, and is 
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
  * available at http://creativecommons.org/licenses/MIT/
  *
  * Contributors:
- *   Stephan D. Cote 
+ *   Stephan D. Cote
  *      - Initial concept and implementation
  */
 package coyote.dx.transform;
 
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import coyote.commons.StringUtil;
+import coyote.commons.template.SymbolTable;
+import coyote.commons.template.Template;
+import coyote.dataframe.DataField;
+import coyote.dataframe.DataFrame;
+import coyote.dataframe.marshal.JSONMarshaler;
+import coyote.dx.CWS;
+import coyote.dx.ConfigTag;
+import coyote.dx.FrameTransform;
+import coyote.dx.TransformException;
+import coyote.dx.context.TransformContext;
+import coyote.dx.web.InvocationException;
+import coyote.dx.web.Parameters;
+import coyote.dx.web.Proxy;
+import coyote.dx.web.Resource;
+import coyote.dx.web.Response;
+import coyote.dx.web.auth.AuthenticationException;
+import coyote.i13n.StatBoard;
+import coyote.i13n.StatBoardImpl;
+import coyote.loader.cfg.ConfigurationException;
+import coyote.loader.log.Log;
+import coyote.loader.log.LogMsg;
+
+
 /**
- * The vision for this component is to perform a web service lookup of a value 
- * and place the results in the working frame.
- * 
- * <p>The configuration for this transform can get complex and not expected to be easy to read. 
+ * This performs a web service lookup for each frame and places the results in
+ * the working frame.
+ *
+ * <p>The values of the {@code fields} (a comma separated list of field names)
+ * form the request. If a {@code path} is configured, it is treated as a
+ * template and the field values are substituted into it (e.g. {@code
+ * "/users/[#$id#]"}), otherwise the fields are sent as the request payload.
+ * The fields of the result are placed in the frame, or if a {@code field} is
+ * configured, the whole result is placed in the frame as that field:<pre>
+ * "WebServiceLookup" : {
+ *   "target" : "https://api.example.com", "path" : "/users/[#$id#]",
+ *   "fields" : "id", "field" : "user",
+ *   "Protocol" : { "ExchangeType" : "JSON_REST", "Method" : "GET" },
+ *   "cachesize" : 100000, "ttl" : 600000, "negativettl" : 60000
+ * }</pre>
+ *
+ * <p>Results are cached by request so enriching many frames with the same
+ * key values does not mean the same number of requests. The cache holds the
+ * {@code cachesize} (default 10000) most recently used results for {@code
+ * ttl} milliseconds (default 5 minutes). A lookup which found nothing (a 404
+ * or empty response) is also cached, for {@code negativettl} milliseconds
+ * (default 1 minute), and leaves the frame as it is. Failed lookups are not
+ * cached and place the transaction in error.</p>
+ *
+ * <p>When several threads look up the same request at once, only one request
+ * is made and the others wait for its result. Hits, misses and coalesced
+ * lookups are counted in the StatBoard set on this transform.</p>
  */
-public class WebServiceLookup {
+public class WebServiceLookup extends AbstractFrameTransform implements FrameTransform {
+  public static final String HITS = "WebServiceLookup.Hits";
+  public static final String MISSES = "WebServiceLookup.Misses";
+  public static final String COALESCED = "WebServiceLookup.Coalesced";
+  public static final String ERRORS = "WebServiceLookup.Errors";
+
+  public static final int DEFAULT_CACHE_SIZE = 10000;
+  public static final long DEFAULT_TTL = 5 * 60 * 1000;
+  public static final long DEFAULT_NEGATIVE_TTL = 60 * 1000;
+
+  private final List<String> keyFields = new ArrayList<String>();
+  private String servicePath = null;
+  private String resultField = null;
+  private long ttl = DEFAULT_TTL;
+  private long negativeTtl = DEFAULT_NEGATIVE_TTL;
+  private int cacheSize = DEFAULT_CACHE_SIZE;
+  private Map<String, Lookup> cache = null;
+  private Resource resource = null;
+  private volatile StatBoard stats = new StatBoardImpl();
+
+
+
+
+  /**
+   * @see coyote.dx.transform.AbstractFrameTransform#open(coyote.dx.context.TransformContext)
+   */
+  @Override
+  public void open( final TransformContext context ) {
+    super.open( context );
+
+    String fields = getConfiguration().getString( ConfigTag.FIELDS );
+    if ( StringUtil.isNotBlank( fields ) ) {
+      for ( String name : fields.split( "," ) ) {
+        if ( StringUtil.isNotBlank( name ) ) {
+          keyFields.add( name.trim() );
+        }
+      }
+    }
+    if ( keyFields.size() == 0 ) {
+      context.setError( "The lookup configuration did not contain the '" + ConfigTag.FIELDS + "' element" );
+      return;
+    }
+
+    servicePath = getConfiguration().getString( ConfigTag.PATH );
+    resultField = getConfiguration().getString( ConfigTag.FIELD );
+
+    try {
+      if ( getConfiguration().containsIgnoreCase( CWS.CACHE_SIZE ) ) {
+        cacheSize = getConfiguration().getInt( CWS.CACHE_SIZE );
+      }
+      if ( getConfiguration().containsIgnoreCase( CWS.TTL ) ) {
+        ttl = getConfiguration().getLong( CWS.TTL );
+      }
+      if ( getConfiguration().containsIgnoreCase( CWS.NEGATIVE_TTL ) ) {
+        negativeTtl = getConfiguration().getLong( CWS.NEGATIVE_TTL );
+      }
+    } catch ( NumberFormatException e ) {
+      context.setError( "Invalid lookup cache configuration: " + e.getMessage() );
+      return;
+    }
+
+    // least recently used results are removed when the cache is full, but
+    // never while their request is still in-flight
+    cache = new LinkedHashMap<String, Lookup>( 16, 0.75f, true ) {
+      private static final long serialVersionUID = 1L;
+
+
+
+
+      @Override
+      protected boolean removeEldestEntry( Map.Entry<String, Lookup> eldest ) {
+        return size() > cacheSize && eldest.getValue().future.isDone();
+      }
+    };
+
+    String targetUrl = getString( ConfigTag.TARGET );
+    if ( StringUtil.isBlank( targetUrl ) ) {
+      context.setError( "The lookup configuration did not contain the '" + ConfigTag.TARGET + "' element" );
+      return;
+    }
+
+    try {
+      resource = createResource( targetUrl );
+      resource.open();
+    } catch ( ConfigurationException e ) {
+      context.setError( "Could not configure lookup: " + e.getMessage() );
+    } catch ( IOException e ) {
+      context.setError( "The lookup could not connect the resource: " + e.getMessage() );
+    } catch ( AuthenticationException e ) {
+      context.setError( "The lookup could not authenticate the resource: " + e.getMessage() );
+    }
+  }
+
+
+
+
+  /**
+   * Create the resource from the proxy, protocol, authenticator and
+   * decorator sections of the configuration.
+   */
+  private Resource createResource( String targetUrl ) throws ConfigurationException, IOException {
+    Proxy proxy = null;
+    Parameters parameters = null;
+    DataFrame authConfig = null;
+    List<DataFrame> decorators = new ArrayList<DataFrame>();
+
+    for ( DataField field : getConfiguration().getFields() ) {
+      if ( field.getName() != null && field.isFrame() ) {
+        DataFrame section = (DataFrame)field.getObjectValue();
+        if ( field.getName().equalsIgnoreCase( CWS.PROXY ) ) {
+          proxy = CWS.configProxy( section );
+        } else if ( field.getName().equalsIgnoreCase( CWS.PROTOCOL ) ) {
+          parameters = CWS.configParameters( section );
+        } else if ( field.getName().equalsIgnoreCase( CWS.AUTHENTICATOR ) ) {
+          authConfig = section;
+        } else if ( field.getName().equalsIgnoreCase( CWS.DECORATOR ) ) {
+          decorators.add( section );
+        }
+      }
+    }
+
+    Resource retval = new Resource( targetUrl, parameters, proxy );
+    if ( authConfig != null ) {
+      retval.setAuthenticator( CWS.configAuthenticator( authConfig ) );
+    }
+    for ( DataFrame section : decorators ) {
+      for ( DataField field : section.getFields() ) {
+        if ( field.isFrame() && StringUtil.isNotBlank( field.getName() ) ) {
+          CWS.configDecorator( field.getName(), (DataFrame)field.getObjectValue(), retval );
+        } else {
+          Log.error( LogMsg.createMsg( CWS.MSG, "Decorator.invalid_decorator_configuration_section" ) );
+        }
+      }
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.FrameTransform#process(coyote.dataframe.DataFrame)
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public DataFrame process( final DataFrame frame ) throws TransformException {
+    SymbolTable symbols = new SymbolTable();
+    DataFrame payload = new DataFrame();
+    for ( String name : keyFields ) {
+      Object value = frame.getObject( name );
+      payload.put( name, value );
+      symbols.put( name, ( value != null ) ? value.toString() : "" );
+    }
+
+    String path = null;
+    if ( StringUtil.isNotBlank( servicePath ) ) {
+      path = Template.resolve( servicePath, symbols );
+      payload = null;
+    }
+    String key = ( path != null ) ? path : JSONMarshaler.marshal( payload );
+
+    DataFrame result = lookup( key, path, payload );
+    if ( result != null ) {
+      // the cached result is shared, so each frame gets its own copy
+      result = (DataFrame)result.clone();
+      if ( StringUtil.isNotBlank( resultField ) ) {
+        frame.put( resultField, result );
+      } else {
+        for ( DataField field : result.getFields() ) {
+          frame.put( field.getName(), field.getObjectValue() );
+        }
+      }
+    }
+
+    return frame;
+  }
+
+
+
+
+  /**
+   * Return the cached result of the request, making the request if there is
+   * no current result or waiting for it if another thread is making the
+   * same request.
+   *
+   * @return the result of the lookup or null if nothing was found.
+   */
+  private DataFrame lookup( String key, String path, DataFrame payload ) throws TransformException {
+    Lookup entry;
+    boolean owner = false;
+    boolean pending = false;
+    synchronized( cache ) {
+      entry = cache.get( key );
+      if ( entry == null || entry.isExpired() ) {
+        entry = new Lookup();
+        cache.put( key, entry );
+        owner = true;
+      } else {
+        pending = !entry.future.isDone();
+      }
+    }
+
+    if ( owner ) {
+      count( MISSES );
+      try {
+        DataFrame result = request( path, payload );
+        entry.expires = System.currentTimeMillis() + ( ( result != null ) ? ttl : negativeTtl );
+        entry.future.complete( result );
+      } catch ( TransformException | RuntimeException e ) {
+        // failures are not cached, the next lookup will try again
+        synchronized( cache ) {
+          cache.remove( key, entry );
+        }
+        count( ERRORS );
+        final TransformException error = ( e instanceof TransformException ) ? (TransformException)e : new TransformException( "Lookup request failed: " + e.getMessage(), e );
+        entry.future.completeExceptionally( error );
+        throw error;
+      }
+    } else {
+      count( pending ? COALESCED : HITS );
+    }
+
+    try {
+      return entry.future.get();
+    } catch ( ExecutionException e ) {
+      throw new TransformException( e.getCause().getMessage(), e.getCause() );
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new TransformException( "Interrupted waiting for lookup of " + key, e );
+    }
+  }
+
+
+
+
+  /**
+   * Make the request and wait for its response.
+   *
+   * @param path the resolved service path or null to send the payload
+   * @param payload the key fields to send or null if the path is used
+   *
+   * @return the result of the request or null if nothing was found.
+   *
+   * @throws TransformException if the request failed
+   */
+  protected DataFrame request( String path, DataFrame payload ) throws TransformException {
+    Parameters params = new Parameters();
+    Parameters defaults = resource.getDefaultParameters();
+    if ( defaults != null ) {
+      params.setExchangeType( defaults.getExchangeType() );
+      params.setContentType( defaults.getContentType() );
+      params.setAcceptTypes( defaults.getAcceptTypes() );
+    }
+    params.setPayload( payload );
+
+    Response response;
+    try {
+      // the path is shared by all requests on the resource, but is resolved
+      // into the request before it returns
+      synchronized( resource ) {
+        if ( path != null ) {
+          resource.setPath( path );
+        }
+        response = resource.request( params );
+      }
+    } catch ( URISyntaxException | InvocationException e ) {
+      throw new TransformException( "Lookup request failed: " + e.getMessage(), e );
+    }
+
+    while ( !response.isComplete() ) {
+      response.waitForComplete( 1000 );
+    }
+
+    if ( response.isInError() ) {
+      throw new TransformException( "Lookup request failed: " + response.getErrorMessage() );
+    } else if ( response.getHttpStatusCode() == 404 ) {
+      return null;
+    } else if ( response.getHttpStatusCode() >= 400 ) {
+      throw new TransformException( "Lookup request failed: HTTP " + response.getHttpStatusCode() + " " + response.getHttpStatusPhrase() );
+    }
+    return response.getResult();
+  }
+
+
+
+
+  private void count( String name ) {
+    final StatBoard board = stats;
+    if ( board != null ) {
+      board.increment( name );
+    }
+  }
+
+
+
+
+  /**
+   * @param statboard the board in which to count hits and misses, may be null
+   */
+  public void setStatBoard( final StatBoard statboard ) {
+    stats = statboard;
+  }
+
+
+
+
+  /**
+   * @return the board in which hits and misses are counted
+   */
+  public StatBoard getStatBoard() {
+    return stats;
+  }
+
+
+
+
+  /**
+   * @see coyote.dx.transform.AbstractFrameTransform#close()
+   */
+  @Override
+  public void close() throws IOException {
+    final StatBoard board = stats;
+    if ( board != null ) {
+      Log.debug( "Lookup hits: " + board.getCounter( HITS ).getValue() + " misses: " + board.getCounter( MISSES ).getValue() + " coalesced: " + board.getCounter( COALESCED ).getValue() );
+    }
+    if ( resource != null ) {
+      resource.close();
+    }
+  }
+
+
+
+
+  /**
+   * A cached (or in-flight) lookup result.
+   */
+  private static class Lookup {
+    final CompletableFuture<DataFrame> future = new CompletableFuture<DataFrame>();
+    volatile long expires = Long.MAX_VALUE;
+
+
+
+
+    boolean isExpired() {
+      return future.isDone() && System.currentTimeMillis() >= expires;
+    }
+  }
 
 }
@@ -16,7 +16,9 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import coyote.dx.web.auth.AuthenticationException;
 import coyote.dx.web.auth.Authenticator;
@@ -38,8 +40,11 @@ public class Resource implements Closeable {
   /** optional decorators which enrich the requests before they are submitted */
   private final List<RequestDecorator> requestDecorators = new ArrayList<RequestDecorator>();
 
-  /** The worker which handles the specific protocol for the resource  */
-  private volatile ResourceWorker worker;
+  /** The workers which handle the specific protocols for the resource, by exchange type */
+  private final Map<ExchangeType, ResourceWorker> workers = new EnumMap<ExchangeType, ResourceWorker>( ExchangeType.class );
+
+  /** The number of concurrent connections workers may open to the resource, 0 uses the client defaults */
+  private volatile int maxConnections = 0;
 
   /** The default request parameters (can be overridden on the request) */
   private final Parameters defaultParameters;
@@ -172,14 +177,43 @@ public class Resource implements Closeable {
    */
   @Override
   public void close() throws IOException {
-    if ( worker != null ) {
-      worker.close();
+    synchronized( workers ) {
+      for ( ResourceWorker worker : workers.values() ) {
+        worker.close();
+      }
+      workers.clear();
     }
   }
 
 
 
 
+  /**
+   * @return the number of concurrent connections workers may open to the 
+   *         resource, 0 if the client defaults are used.
+   */
+  public int getMaxConnections() {
+    return maxConnections;
+  }
+
+
+
+
+  /**
+   * Set the number of concurrent connections workers may open to the resource.
+   * 
+   * <p>This must be set before the first request is made as the connection 
+   * pool of a worker is sized when the worker is created.</p>
+   * 
+   * @param max the maximum number of concurrent connections
+   */
+  public void setMaxConnections( int max ) {
+    maxConnections = max;
+  }
+
+
+
+
   /**
    * @return the defaultParameters
    */
@@ -350,7 +384,18 @@ public class Resource implements Closeable {
    */
   private ResourceWorker getWorker( Parameters params ) {
     if ( params != null && params.getExchangeType() != null ) {
-      return params.getExchangeType().getWorker( this );
+      // workers hold the HTTP client and its connection pool so they are 
+      // created once and reused for all requests of that exchange type
+      synchronized( workers ) {
+        ResourceWorker retval = workers.get( params.getExchangeType() );
+        if ( retval == null ) {
+          retval = params.getExchangeType().getWorker( this );
+          if ( retval != null ) {
+            workers.put( params.getExchangeType(), retval );
+          }
+        }
+        return retval;
+      }
     } else {
       return getWorker( defaultParameters );
     }
@@ -45,6 +45,9 @@ public class Response {
 
   /** multi-purpose attribute normally used with 300 series errors containing a link to the redirected location */
   private String link = null;
+
+  /** the reason the request could not be completed, null if a response was received */
+  private volatile String errorMessage = null;
   
   protected Object lock = new Object();
 
@@ -66,9 +69,34 @@ public class Response {
 
 
 
+  /**
+   * @return true if the request failed before a response was received from 
+   *         the resource. The HTTP status of a received response is not 
+   *         considered; see {@link #getHttpStatusCode()}.
+   */
   public boolean isInError() {
-    // TODO Auto-generated method stub
-    return false;
+    return errorMessage != null;
+  }
+
+
+
+
+  /**
+   * @return the reason the request failed or null if the request did not 
+   *         fail.
+   */
+  public String getErrorMessage() {
+    return errorMessage;
+  }
+
+
+
+
+  /**
+   * @param message the reason the request failed
+   */
+  public void setErrorMessage( String message ) {
+    errorMessage = message;
   }
 
 
@@ -90,6 +118,12 @@ public class Response {
 
   public synchronized void setComplete( boolean flag ) {
     complete = flag;
+    if ( flag ) {
+      // wake any threads waiting for completion
+      synchronized( lock ) {
+        lock.notifyAll();
+      }
+    }
   }
 
 
@@ -5,7 +5,11 @@ package coyote.dx.web.worker;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.http.HeaderElement;
 import org.apache.http.HeaderElementIterator;
@@ -36,6 +40,7 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HTTP;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
@@ -64,10 +69,20 @@ public abstract class AbstractWorker implements ResourceWorker {
   protected static final String ERROR_MESSAGE_FIELD = "message";
   protected static final String ERROR_DETAIL_FIELD = "detail";
   protected static final Logger log = LoggerFactory.getLogger( AbstractWorker.class );
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
   protected Resource resource;
 
   // This is the persistent http client we will use to send all our requests
   protected CloseableHttpClient httpClient;
+  // Runs requests so the caller does not block while they are in-flight
+  protected final ExecutorService executor = Executors.newCachedThreadPool( new ThreadFactory() {
+    @Override
+    public Thread newThread( final Runnable runnable ) {
+      final Thread retval = new Thread( runnable, AbstractWorker.class.getSimpleName() + "-" + THREAD_COUNT.getAndIncrement() );
+      retval.setDaemon( true );
+      return retval;
+    }
+  } );
   // Create a context in which we will execute our request
   protected final HttpClientContext localContext = HttpClientContext.create();
 
@@ -96,6 +111,12 @@ public abstract class AbstractWorker implements ResourceWorker {
     final PoolingHttpClientConnectionManager connMgr = new PoolingHttpClientConnectionManager();
     connMgr.closeIdleConnections( 15, TimeUnit.MINUTES );
 
+    // allow as many concurrent requests to the resource as configured
+    if ( resource.getMaxConnections() > 0 ) {
+      connMgr.setMaxTotal( Math.max( resource.getMaxConnections(), connMgr.getMaxTotal() ) );
+      connMgr.setDefaultMaxPerRoute( resource.getMaxConnections() );
+    }
+
     // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
     // our own keep-alive strategy
     final ConnectionKeepAliveStrategy myStrategy = new ConnectionKeepAliveStrategy() {
@@ -175,6 +196,7 @@ public abstract class AbstractWorker implements ResourceWorker {
   @Override
   public void close() throws IOException {
     log.debug( "Closing Worker..." );
+    executor.shutdown();
     try {
       httpClient.close();
     } catch ( final IOException e ) {
@@ -329,8 +351,7 @@ public abstract class AbstractWorker implements ResourceWorker {
     setRequestHeaders( request, params );
 
     // execute the request in a separate thread
-    final Thread thread = new Thread( new RequestRunner( request, retval, params ) );
-    thread.start();
+    executor.execute( new RequestRunner( request, retval, params ) );
 
     // return the results of processing the request
     return retval;
@@ -397,7 +418,11 @@ public abstract class AbstractWorker implements ResourceWorker {
       response.transactionStart();
       response.requestStart();
 
-      try (CloseableHttpResponse httpResponse = httpClient.execute( target, request, localContext )) {
+      // requests may run concurrently, so each gets its own context which 
+      // inherits the credentials and settings of the shared one
+      final HttpClientContext requestContext = HttpClientContext.adapt( new BasicHttpContext( localContext ) );
+
+      try (CloseableHttpResponse httpResponse = httpClient.execute( target, request, requestContext )) {
         response.requestEnd();
 
         final int status = httpResponse.getStatusLine().getStatusCode();
@@ -436,10 +461,16 @@ public abstract class AbstractWorker implements ResourceWorker {
 
       } catch ( final ClientProtocolException e1 ) {
         response.requestEnd();
+        response.setErrorMessage( e1.getClass().getSimpleName() + " - " + e1.getMessage() );
         log.error( e1.getMessage() );
       } catch ( final IOException e1 ) {
         response.requestEnd();
+        response.setErrorMessage( e1.getClass().getSimpleName() + " - " + e1.getMessage() );
         log.error( e1.getMessage() );
+      } catch ( final RuntimeException e1 ) {
+        response.requestEnd();
+        response.setErrorMessage( e1.getClass().getSimpleName() + " - " + e1.getMessage() );
+        log.error( e1.toString() );
       }
       finally {
         response.transactionEnd();
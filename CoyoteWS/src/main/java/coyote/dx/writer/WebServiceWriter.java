@@ -13,6 +13,11 @@ package coyote.dx.writer;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
 
 import coyote.commons.StringUtil;
 import coyote.commons.template.Template;
@@ -24,6 +29,7 @@ import coyote.dx.CWS;
 import coyote.dx.ConfigTag;
 import coyote.dx.ConfigurableComponent;
 import coyote.dx.FrameWriter;
+import coyote.dx.context.TransactionContext;
 import coyote.dx.context.TransformContext;
 import coyote.dx.eval.Evaluator;
 import coyote.dx.web.InvocationException;
@@ -42,8 +48,27 @@ import coyote.loader.log.LogMsg;
 
 /**
  * This component simply PUTs or POSTs the data frame to a particular service endpoint.
+ * 
+ * <p>By default each frame is written with one request and the writer waits 
+ * for its response before returning. Setting {@code capacity} to more than 
+ * one allows that many requests to be in-flight at once; the writer only 
+ * blocks when the window is full, waiting for the oldest request to 
+ * complete. This applies backpressure to the engine instead of queuing an 
+ * unbounded number of requests.</p>
+ * 
+ * <p>Setting {@code batch} to more than one collects that many frames and 
+ * sends them in a single request as an array (e.g. a JSON array body).</p>
+ * 
+ * <p>Responses which fail or return an HTTP status of 400 or more are logged 
+ * and recorded as an error in the transaction context of the (last) frame 
+ * in the request. When the request is asynchronous, this usually happens 
+ * after that transaction has completed, so the error is also set in the 
+ * transform context, failing the job.</p>
  */
 public class WebServiceWriter extends AbstractConfigurableComponent implements FrameWriter, ConfigurableComponent {
+  /** The default number of requests which may be in-flight at once */
+  public static final int DEFAULT_CAPACITY = 1;
+
   private Evaluator evaluator = new Evaluator();
   private String expression = null;
   private String servicePath = null;
@@ -57,6 +82,12 @@ public class WebServiceWriter extends AbstractConfigurableComponent implements F
   private Proxy proxy = null;
   private Parameters parameters = null;
 
+  private int capacity = DEFAULT_CAPACITY;
+  private int batchSize = 1;
+  private final List<DataFrame> batch = new ArrayList<DataFrame>();
+  private final Deque<Request> inflight = new ArrayDeque<Request>();
+  private long errorCount = 0;
+
 
 
 
@@ -80,6 +111,28 @@ public class WebServiceWriter extends AbstractConfigurableComponent implements F
 
     // look for a path
     servicePath = getConfiguration().getString( ConfigTag.PATH );
+
+    if ( getConfiguration().containsIgnoreCase( ConfigTag.CAPACITY ) ) {
+      try {
+        capacity = getConfiguration().getInt( ConfigTag.CAPACITY );
+      } catch ( NumberFormatException e ) {
+        throw new ConfigurationException( "Invalid " + ConfigTag.CAPACITY + " value: " + e.getMessage() );
+      }
+      if ( capacity < 1 ) {
+        throw new ConfigurationException( ConfigTag.CAPACITY + " must be greater than zero" );
+      }
+    }
+
+    if ( getConfiguration().containsIgnoreCase( ConfigTag.BATCH ) ) {
+      try {
+        batchSize = getConfiguration().getInt( ConfigTag.BATCH );
+      } catch ( NumberFormatException e ) {
+        throw new ConfigurationException( "Invalid " + ConfigTag.BATCH + " value: " + e.getMessage() );
+      }
+      if ( batchSize < 1 ) {
+        throw new ConfigurationException( ConfigTag.BATCH + " must be greater than zero" );
+      }
+    }
   }
 
 
@@ -170,6 +223,9 @@ public class WebServiceWriter extends AbstractConfigurableComponent implements F
         try {
           resource = new Resource( targetUrl, parameters, proxy );
 
+          // one connection for each request which may be in-flight
+          resource.setMaxConnections( capacity );
+
           resource.setAuthenticator( authenticator );
 
           // Now look for Request Decorators 
@@ -250,21 +306,72 @@ public class WebServiceWriter extends AbstractConfigurableComponent implements F
   /**
    * This is where we actually write a frame to the web service endpoint
    * 
-   * @param frame the frame to write
+   * <p>When batching, the frame is added to the current batch which is only 
+   * sent when full.</p>
    * 
-   * @return the number of bytes written
+   * @param frame the frame to write
    */
-  private int writeFrame( DataFrame frame ) {
-    int bytesWritten = 0;
-    lastRequest = frame;
+  private void writeFrame( DataFrame frame ) {
+    if ( Log.isLogging( Log.DEBUG_EVENTS ) ) {
+      Log.debug( frame.toString() );
+    }
+
+    if ( batchSize > 1 ) {
+      // the frame may be reused by the engine after this call returns
+      batch.add( (DataFrame)frame.clone() );
+      if ( batch.size() >= batchSize ) {
+        sendBatch();
+      }
+    } else {
+      lastRequest = frame;
+      send( frame, 1 );
+    }
+  }
+
 
-    Log.info( frame.toString() );
+
+
+  /**
+   * Send all the frames in the current batch as an array in one request.
+   */
+  private void sendBatch() {
+    if ( batch.size() > 0 ) {
+      DataFrame payload = new DataFrame();
+      for ( DataFrame frame : batch ) {
+        payload.add( frame );
+      }
+      lastRequest = payload;
+      send( payload, batch.size() );
+      batch.clear();
+    }
+  }
+
+
+
+
+  /**
+   * Send the payload to the resource, waiting for a slot in the in-flight 
+   * window first.
+   * 
+   * @param payload the frame to send
+   * @param frames the number of data frames in the payload
+   */
+  private void send( DataFrame payload, int frames ) {
     // Set up an object to hold our request parameters these will over-ride 
     // the default protocol parameters
     Parameters params = new Parameters();
 
+    // the worker is selected by the exchange type of the request parameters 
+    // so carry over the configured protocol settings which select it
+    Parameters defaults = resource.getDefaultParameters();
+    if ( defaults != null ) {
+      params.setExchangeType( defaults.getExchangeType() );
+      params.setContentType( defaults.getContentType() );
+      params.setAcceptTypes( defaults.getAcceptTypes() );
+    }
+
     // Place the request payload in the request parameters
-    params.setPayload( frame );
+    params.setPayload( payload );
 
     // Treat the resource URI as a template, substituting variables in the URI 
     // (e.g. ReST identifiers in the path) for data in the transaction context
@@ -277,46 +384,93 @@ public class WebServiceWriter extends AbstractConfigurableComponent implements F
       } catch ( URISyntaxException e ) {
         super.context.setError( "The Writer could not generate URI path: " + e.getMessage() );
         super.context.setState( "Resource Path Error" );
-        return bytesWritten;
+        return;
       }
     }
+
+    // apply backpressure when the window is full
+    reap();
+    while ( inflight.size() >= capacity ) {
+      complete( inflight.removeFirst() );
+      reap();
+    }
+
     try {
-      // invoke the operation and receive an object representing our results
-      lastResponse = resource.request( params );
-
-      // wait for results (invocation may be asynchronous)
-      while ( !lastResponse.isComplete() ) {
-        if ( lastResponse.isTimedOut() ) {
-          // nothing happened
-          System.err.println( "Operation timed-out" );
-          System.exit( 1 );
-        } else if ( lastResponse.isInError() ) {
-          // we received one or more errors
-          System.err.println( "Operation failed" );
-          System.exit( 2 );
-        } else {
-          // wait for the results to arrive
-          lastResponse.wait( 100 );
-        }
+      // invoke the operation; the resource URI is resolved before this returns
+      Request request = new Request( resource.request( params ), getContext().getTransaction(), frames );
+      inflight.addLast( request );
+      if ( capacity == 1 ) {
+        complete( inflight.removeFirst() );
+      }
+    } catch ( InvocationException e ) {
+      errorCount++;
+      Log.error( LogMsg.createMsg( CWS.MSG, "Writer.request_error", e.getMessage() ) );
+      if ( getContext().getTransaction() != null ) {
+        getContext().getTransaction().setError( "Request failed: " + e.getMessage() );
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Complete all the in-flight requests which have received their response.
+   */
+  private void reap() {
+    for ( Iterator<Request> it = inflight.iterator(); it.hasNext(); ) {
+      Request request = it.next();
+      if ( request.response.isComplete() ) {
+        it.remove();
+        complete( request );
       }
+    }
+  }
+
+
+
 
-      if ( Log.isLogging( Log.DEBUG_EVENTS ) ) {
-        Log.debug( "Performance Metric: Write " + lastResponse.getOperationTime() );
-        Log.debug( "Performance Metric: Transaction " + lastResponse.getTransactionTime() );
-        Log.debug( "Performance Metric: WebResponse " + lastResponse.getRequestTime() );
-        Log.debug( "Performance Metric: Parsing " + lastResponse.getParsingTime() );
+  /**
+   * Wait for the given request to complete and record its results.
+   * 
+   * @param request the in-flight request to complete
+   */
+  private void complete( Request request ) {
+    Response response = request.response;
+    while ( !response.isComplete() ) {
+      response.waitForComplete( 1000 );
+    }
+    lastResponse = response;
+
+    String error = null;
+    if ( response.isInError() ) {
+      error = "Request failed: " + response.getErrorMessage();
+    } else if ( response.getHttpStatusCode() >= 400 ) {
+      error = "Request failed: HTTP " + response.getHttpStatusCode() + " " + response.getHttpStatusPhrase();
+    }
+
+    if ( error != null ) {
+      errorCount++;
+      Log.error( LogMsg.createMsg( CWS.MSG, "Writer.request_error", error ) );
+      if ( request.context != null ) {
+        request.context.setError( error );
       }
 
-      rowCounter++;
-    } catch ( InvocationException e ) {
-      // TODO Auto-generated catch block
-      e.printStackTrace();
-    } catch ( InterruptedException e ) {
-      // TODO Auto-generated catch block
-      e.printStackTrace();
+      // the engine has moved past the transaction, so let it see the error
+      final TransformContext transform = getContext();
+      if ( transform != null && request.context != transform.getTransaction() && transform.isNotInError() ) {
+        transform.setError( error );
+      }
+    } else {
+      rowCounter += request.frames;
     }
 
-    return bytesWritten;
+    if ( Log.isLogging( Log.DEBUG_EVENTS ) ) {
+      Log.debug( "Performance Metric: Write " + response.getOperationTime() );
+      Log.debug( "Performance Metric: Transaction " + response.getTransactionTime() );
+      Log.debug( "Performance Metric: WebResponse " + response.getRequestTime() );
+      Log.debug( "Performance Metric: Parsing " + response.getParsingTime() );
+    }
   }
 
 
@@ -327,6 +481,18 @@ public class WebServiceWriter extends AbstractConfigurableComponent implements F
    */
   @Override
   public void close() throws IOException {
+    // send any partial batch and wait for everything still in-flight
+    if ( resource != null ) {
+      sendBatch();
+      while ( inflight.size() > 0 ) {
+        complete( inflight.removeFirst() );
+      }
+    }
+
+    if ( errorCount > 0 ) {
+      Log.warn( LogMsg.createMsg( CWS.MSG, "Writer.request_errors", errorCount ) );
+    }
+
     // close our stuff first
     Log.debug( LogMsg.createMsg( CWS.MSG, "Writer.records_processed", rowCounter, ( context != null ) ? context.getRow() : 0 ) );
 
@@ -360,4 +526,35 @@ public class WebServiceWriter extends AbstractConfigurableComponent implements F
     return lastRequest;
   }
 
+
+
+
+  /**
+   * @return the number of requests which failed or returned an error status
+   */
+  public long getErrorCount() {
+    return errorCount;
+  }
+
+
+
+
+  /**
+   * A request which has been sent and the transaction which generated it.
+   */
+  private static class Request {
+    final Response response;
+    final TransactionContext context;
+    final int frames;
+
+
+
+
+    Request( Response response, TransactionContext context, int frames ) {
+      this.response = response;
+      this.context = context;
+      this.frames = frames;
+    }
+  }
+
 }
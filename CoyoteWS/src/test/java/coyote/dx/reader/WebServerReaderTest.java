@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2017 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote
+ *      - Initial concept and implementation
+ */
+package coyote.dx.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Scanner;
+
+import org.junit.After;
+import org.junit.Test;
+
+import coyote.commons.NetUtil;
+import coyote.dataframe.DataFrame;
+import coyote.dataframe.marshal.JSONMarshaler;
+import coyote.dx.ConfigTag;
+import coyote.dx.context.TransactionContext;
+import coyote.dx.context.TransformContext;
+import coyote.loader.cfg.Config;
+
+
+/**
+ *
+ */
+public class WebServerReaderTest {
+
+  private static int port = 54324;
+
+  private WebServerReader reader = null;
+  private TransformContext context = null;
+
+
+
+
+  @After
+  public void tearDown() throws Exception {
+    if ( reader != null ) {
+      reader.close();
+    }
+  }
+
+
+
+
+  private void createReader( int capacity ) throws Exception {
+    port = NetUtil.getNextAvailablePort( port + 1 );
+    Config cfg = new Config();
+    cfg.put( ConfigTag.PORT, port );
+    cfg.put( ConfigTag.CAPACITY, capacity );
+
+    reader = new WebServerReader();
+    reader.setConfiguration( cfg );
+    context = new TransformContext();
+    reader.open( context );
+    assertFalse( context.getErrorMessage(), context.isInError() );
+  }
+
+
+
+
+  /**
+   * Send the body to the reader and return the connection holding the
+   * response.
+   */
+  private static HttpURLConnection send( String method, String body ) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection)new URL( "http://localhost:" + port + "/api" ).openConnection();
+    connection.setRequestMethod( method );
+    if ( body != null ) {
+      connection.setDoOutput( true );
+      connection.setRequestProperty( "Content-Type", "application/json" );
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write( body.getBytes( StandardCharsets.UTF_8 ) );
+      }
+    }
+    connection.getResponseCode();
+    return connection;
+  }
+
+
+
+
+  private static DataFrame results( HttpURLConnection connection ) throws Exception {
+    InputStream in = ( connection.getResponseCode() < 400 ) ? connection.getInputStream() : connection.getErrorStream();
+    try (Scanner scanner = new Scanner( in, "UTF-8" )) {
+      List<DataFrame> frames = JSONMarshaler.marshal( scanner.useDelimiter( "\\A" ).next() );
+      return frames.get( 0 );
+    }
+  }
+
+
+
+
+  private DataFrame read() {
+    return reader.read( new TransactionContext( context ) );
+  }
+
+
+
+
+  @Test
+  public void batched() throws Exception {
+    createReader( 16 );
+
+    HttpURLConnection connection = send( "POST", "[{\"id\":1},{\"id\":2},{\"id\":3}]" );
+    assertEquals( 202, connection.getResponseCode() );
+    assertEquals( 3, results( connection ).getAsInt( "Accepted" ) );
+
+    connection = send( "POST", "{\"id\":4}\n{\"id\":5}\n" );
+    assertEquals( 202, connection.getResponseCode() );
+
+    connection = send( "PUT", "{\"id\":6}" );
+    assertEquals( 202, connection.getResponseCode() );
+
+    assertEquals( 6, reader.getQueueDepth() );
+    for ( int x = 1; x <= 6; x++ ) {
+      assertEquals( x, read().getAsInt( "id" ) );
+    }
+    assertEquals( 0, reader.getQueueDepth() );
+  }
+
+
+
+
+  @Test
+  public void backpressure() throws Exception {
+    createReader( 4 );
+
+    assertEquals( 202, send( "POST", "[{\"id\":1},{\"id\":2},{\"id\":3}]" ).getResponseCode() );
+
+    // none of the frames are queued when they do not all fit
+    HttpURLConnection connection = send( "POST", "[{\"id\":4},{\"id\":5}]" );
+    assertEquals( 429, connection.getResponseCode() );
+    assertNotNull( connection.getHeaderField( "Retry-After" ) );
+    assertEquals( 3, reader.getQueueDepth() );
+
+    // reading makes room for the retry
+    assertEquals( 1, read().getAsInt( "id" ) );
+    assertEquals( 202, send( "POST", "[{\"id\":4},{\"id\":5}]" ).getResponseCode() );
+    assertEquals( 4, reader.getQueueDepth() );
+
+    // never fits
+    assertEquals( 413, send( "POST", "[{},{},{},{},{}]" ).getResponseCode() );
+
+    DataFrame metrics = results( send( "GET", null ) );
+    assertEquals( 4, metrics.getAsInt( "Depth" ) );
+    assertEquals( 4, metrics.getAsInt( "Capacity" ) );
+    assertEquals( 5, metrics.getAsLong( "Accepted" ) );
+    assertEquals( 1, metrics.getAsLong( "Rejected" ) );
+  }
+
+
+
+
+  @Test
+  public void badRequest() throws Exception {
+    createReader( 4 );
+    assertEquals( 400, send( "POST", "{\"id\":" ).getResponseCode() );
+    assertEquals( 400, send( "POST", "[1,2]" ).getResponseCode() );
+    assertEquals( 0, reader.getQueueDepth() );
+    assertNull( read() );
+  }
+
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2017 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote
+ *      - Initial concept and implementation
+ */
+package coyote.dx.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import coyote.commons.NetUtil;
+import coyote.commons.network.http.HTTPD;
+import coyote.commons.network.http.IHTTPSession;
+import coyote.commons.network.http.Response;
+import coyote.commons.network.http.Status;
+import coyote.dataframe.DataFrame;
+import coyote.dx.CWS;
+import coyote.dx.TransformException;
+import coyote.dx.context.TransformContext;
+import coyote.loader.cfg.Config;
+
+
+/**
+ *
+ */
+public class WebServiceLookupTest {
+
+  private static ReferenceServer server = null;
+  private static int port = 54323;
+
+
+
+
+  /**
+   * Serves "/users/{id}" slowly, not finding id 404 and failing id 500.
+   */
+  private static class ReferenceServer extends HTTPD {
+    final AtomicInteger requests = new AtomicInteger();
+
+
+
+
+    ReferenceServer( final int port ) {
+      super( port );
+    }
+
+
+
+
+    @Override
+    public Response serve( final IHTTPSession session ) {
+      requests.incrementAndGet();
+      final String id = session.getUri().substring( session.getUri().lastIndexOf( '/' ) + 1 );
+      try {
+        Thread.sleep( 50 );
+      } catch ( final InterruptedException ignore ) {}
+      if ( "404".equals( id ) ) {
+        return Response.createFixedLengthResponse( Status.NOT_FOUND, "text/plain", "not found" );
+      } else if ( "500".equals( id ) ) {
+        return Response.createFixedLengthResponse( Status.INTERNAL_ERROR, "text/plain", "failed" );
+      }
+      return Response.createFixedLengthResponse( Status.OK, "application/json", "{\"name\":\"User " + id + "\",\"active\":true}" );
+    }
+  }
+
+
+
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    port = NetUtil.getNextAvailablePort( port );
+    server = new ReferenceServer( port );
+    server.start( HTTPD.SOCKET_READ_TIMEOUT, true );
+  }
+
+
+
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    server.stop();
+  }
+
+
+
+
+  @Before
+  public void reset() {
+    server.requests.set( 0 );
+  }
+
+
+
+
+  private static WebServiceLookup createLookup( String options ) throws Exception {
+    Config cfg = new Config( "{ \"target\" : \"http://localhost:" + port + "\", \"path\" : \"/users/[#$id#]\", \"fields\" : \"id\"" + options + " }" );
+    cfg.put( CWS.PROTOCOL, new DataFrame().set( CWS.EXCHANGE_TYPE, "JSON_REST" ).set( CWS.METHOD, "GET" ) );
+
+    WebServiceLookup lookup = new WebServiceLookup();
+    lookup.setConfiguration( cfg );
+    TransformContext context = new TransformContext();
+    lookup.open( context );
+    assertFalse( context.getErrorMessage(), context.isInError() );
+    return lookup;
+  }
+
+
+
+
+  private static long count( WebServiceLookup lookup, String name ) {
+    return lookup.getStatBoard().getCounter( name ).getValue();
+  }
+
+
+
+
+  @Test
+  public void cached() throws Exception {
+    WebServiceLookup lookup = createLookup( "" );
+    for ( int x = 0; x < 20; x++ ) {
+      DataFrame frame = lookup.process( new DataFrame().set( "id", x % 4 ).set( "row", x ) );
+      assertEquals( "User " + ( x % 4 ), frame.getAsString( "name" ) );
+      assertTrue( frame.getAsBoolean( "active" ) );
+      assertEquals( x, frame.getAsInt( "row" ) );
+    }
+    lookup.close();
+
+    assertEquals( 4, server.requests.get() );
+    assertEquals( 4, count( lookup, WebServiceLookup.MISSES ) );
+    assertEquals( 16, count( lookup, WebServiceLookup.HITS ) );
+  }
+
+
+
+
+  @Test
+  public void resultField() throws Exception {
+    WebServiceLookup lookup = createLookup( ", \"field\" : \"user\"" );
+    DataFrame frame = lookup.process( new DataFrame().set( "id", 7 ) );
+    lookup.close();
+    assertEquals( "User 7", frame.getAsFrame( "user" ).getAsString( "name" ) );
+    assertNull( frame.getField( "name" ) );
+  }
+
+
+
+
+  @Test
+  public void resultsNotShared() throws Exception {
+    WebServiceLookup lookup = createLookup( "" );
+    DataFrame first = lookup.process( new DataFrame().set( "id", 8 ) );
+    first.put( "name", "Changed" );
+    DataFrame second = lookup.process( new DataFrame().set( "id", 8 ) );
+    lookup.close();
+    assertEquals( 1, server.requests.get() );
+    assertEquals( "User 8", second.getAsString( "name" ) );
+  }
+
+
+
+
+  @Test
+  public void negative() throws Exception {
+    WebServiceLookup lookup = createLookup( ", \"negativettl\" : 200" );
+    for ( int x = 0; x < 5; x++ ) {
+      DataFrame frame = lookup.process( new DataFrame().set( "id", 404 ) );
+      assertNull( frame.getField( "name" ) );
+    }
+    assertEquals( 1, server.requests.get() );
+
+    // the negative result expires sooner than found results
+    Thread.sleep( 300 );
+    lookup.process( new DataFrame().set( "id", 404 ) );
+    assertEquals( 2, server.requests.get() );
+    lookup.close();
+  }
+
+
+
+
+  @Test
+  public void errorsNotCached() throws Exception {
+    WebServiceLookup lookup = createLookup( "" );
+    for ( int x = 0; x < 2; x++ ) {
+      try {
+        lookup.process( new DataFrame().set( "id", 500 ) );
+        fail( "lookup should fail" );
+      } catch ( TransformException e ) {
+        assertTrue( e.getMessage(), e.getMessage().contains( "500" ) );
+      }
+    }
+    lookup.close();
+    assertEquals( 2, server.requests.get() );
+    assertEquals( 2, count( lookup, WebServiceLookup.ERRORS ) );
+  }
+
+
+
+
+  @Test
+  public void uncheckedErrorsNotCached() throws Exception {
+    final AtomicInteger calls = new AtomicInteger();
+    WebServiceLookup lookup = new WebServiceLookup() {
+      @Override
+      protected DataFrame request( String path, DataFrame payload ) throws TransformException {
+        if ( calls.incrementAndGet() == 1 ) {
+          throw new NullPointerException( "no worker" );
+        }
+        return super.request( path, payload );
+      }
+    };
+    Config cfg = new Config( "{ \"target\" : \"http://localhost:" + port + "\", \"path\" : \"/users/[#$id#]\", \"fields\" : \"id\" }" );
+    cfg.put( CWS.PROTOCOL, new DataFrame().set( CWS.EXCHANGE_TYPE, "JSON_REST" ).set( CWS.METHOD, "GET" ) );
+    lookup.setConfiguration( cfg );
+    lookup.open( new TransformContext() );
+
+    try {
+      lookup.process( new DataFrame().set( "id", 9 ) );
+      fail( "lookup should fail" );
+    } catch ( TransformException e ) {
+      assertTrue( e.getCause() instanceof NullPointerException );
+    }
+
+    // the failed lookup must not leave an entry which is never completed
+    DataFrame frame = lookup.process( new DataFrame().set( "id", 9 ) );
+    lookup.close();
+    assertEquals( "User 9", frame.getAsString( "name" ) );
+    assertEquals( 2, calls.get() );
+    assertEquals( 1, count( lookup, WebServiceLookup.ERRORS ) );
+  }
+
+
+
+
+  @Test
+  public void coalesced() throws Exception {
+    final WebServiceLookup lookup = createLookup( "" );
+    final List<Thread> threads = new ArrayList<Thread>();
+    final AtomicInteger found = new AtomicInteger();
+    for ( int x = 0; x < 8; x++ ) {
+      Thread thread = new Thread( new Runnable() {
+        @Override
+        public void run() {
+          try {
+            if ( "User 42".equals( lookup.process( new DataFrame().set( "id", 42 ) ).getAsString( "name" ) ) ) {
+              found.incrementAndGet();
+            }
+          } catch ( TransformException e ) {
+            e.printStackTrace();
+          }
+        }
+      } );
+      threads.add( thread );
+      thread.start();
+    }
+    for ( Thread thread : threads ) {
+      thread.join();
+    }
+    lookup.close();
+
+    assertEquals( 8, found.get() );
+    assertEquals( 1, server.requests.get() );
+    assertEquals( 7, count( lookup, WebServiceLookup.HITS ) + count( lookup, WebServiceLookup.COALESCED ) );
+  }
+
+
+
+
+  @Test
+  public void evicted() throws Exception {
+    WebServiceLookup lookup = createLookup( ", \"cachesize\" : 2" );
+    lookup.process( new DataFrame().set( "id", 1 ) );
+    lookup.process( new DataFrame().set( "id", 2 ) );
+    lookup.process( new DataFrame().set( "id", 1 ) );
+    lookup.process( new DataFrame().set( "id", 3 ) ); // evicts 2
+    lookup.process( new DataFrame().set( "id", 1 ) );
+    lookup.process( new DataFrame().set( "id", 2 ) );
+    lookup.close();
+    assertEquals( 4, server.requests.get() );
+  }
+
+}
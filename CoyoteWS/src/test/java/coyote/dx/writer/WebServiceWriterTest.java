@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2016 Stephan D. Cote' - All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the MIT License which accompanies this distribution, and is
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote
+ *      - Initial concept and implementation
+ */
+package coyote.dx.writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import coyote.commons.NetUtil;
+import coyote.commons.network.http.Body;
+import coyote.commons.network.http.HTTPD;
+import coyote.commons.network.http.IHTTPSession;
+import coyote.commons.network.http.Response;
+import coyote.commons.network.http.Status;
+import coyote.dataframe.DataFrame;
+import coyote.dataframe.marshal.JSONMarshaler;
+import coyote.dx.CWS;
+import coyote.dx.ConfigTag;
+import coyote.dx.context.TransactionContext;
+import coyote.dx.context.TransformContext;
+import coyote.loader.cfg.Config;
+
+
+/**
+ *
+ */
+public class WebServiceWriterTest {
+
+  private static RecordingServer server = null;
+  private static int port = 54322;
+
+
+
+
+  /**
+   * Records the body of each request, responding slowly to keep requests
+   * in-flight and failing requests for records named "fail".
+   */
+  private static class RecordingServer extends HTTPD {
+    final ConcurrentLinkedQueue<String> bodies = new ConcurrentLinkedQueue<String>();
+    final AtomicInteger active = new AtomicInteger();
+    final AtomicInteger maxActive = new AtomicInteger();
+
+
+
+
+    RecordingServer( final int port ) {
+      super( port );
+    }
+
+
+
+
+    @Override
+    public Response serve( final IHTTPSession session ) {
+      final int current = active.incrementAndGet();
+      maxActive.accumulateAndGet( current, Math::max );
+      try {
+        final Body body = session.parseBody();
+        final String content = (String)body.get( "postData" );
+        bodies.add( content );
+        Thread.sleep( 20 );
+        if ( content.contains( "\"fail\"" ) ) {
+          return Response.createFixedLengthResponse( Status.INTERNAL_ERROR, "text/plain", "failed" );
+        }
+        return Response.createFixedLengthResponse( Status.OK, "application/json", "{\"status\":\"ok\"}" );
+      } catch ( final Exception e ) {
+        return Response.createFixedLengthResponse( Status.INTERNAL_ERROR, "text/plain", e.getMessage() );
+      }
+      finally {
+        active.decrementAndGet();
+      }
+    }
+  }
+
+
+
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    port = NetUtil.getNextAvailablePort( port );
+    server = new RecordingServer( port );
+    server.start( HTTPD.SOCKET_READ_TIMEOUT, true );
+  }
+
+
+
+
+  @AfterClass
+  public static void tearDownAfterClass() throws Exception {
+    server.stop();
+  }
+
+
+
+
+  @Before
+  public void reset() {
+    server.bodies.clear();
+    server.maxActive.set( 0 );
+  }
+
+
+
+
+  private static WebServiceWriter createWriter( TransformContext context, int capacity, int batch ) throws Exception {
+    Config cfg = new Config();
+    cfg.put( ConfigTag.TARGET, "http://localhost:" + port + "/data" );
+    cfg.put( ConfigTag.CAPACITY, capacity );
+    cfg.put( ConfigTag.BATCH, batch );
+    cfg.put( CWS.PROTOCOL, new DataFrame().set( CWS.EXCHANGE_TYPE, "JSON_REST" ).set( CWS.METHOD, "POST" ) );
+
+    WebServiceWriter writer = new WebServiceWriter();
+    writer.setConfiguration( cfg );
+    writer.open( context );
+    assertFalse( context.getErrorMessage(), context.isInError() );
+    return writer;
+  }
+
+
+
+
+  /**
+   * Write the given number of records, returning the transaction contexts
+   * used for each.
+   */
+  private static List<TransactionContext> write( WebServiceWriter writer, TransformContext context, int count ) throws Exception {
+    List<TransactionContext> retval = new ArrayList<TransactionContext>();
+    for ( int x = 0; x < count; x++ ) {
+      TransactionContext txn = new TransactionContext( context );
+      context.setTransaction( txn );
+      retval.add( txn );
+      writer.write( new DataFrame().set( "id", x ).set( "name", ( x == 7 ) ? "fail" : "record " + x ) );
+    }
+    writer.close();
+    return retval;
+  }
+
+
+
+
+  @Test
+  public void synchronous() throws Exception {
+    TransformContext context = new TransformContext();
+    WebServiceWriter writer = createWriter( context, 1, 1 );
+    List<TransactionContext> transactions = write( writer, context, 10 );
+
+    assertEquals( 10, server.bodies.size() );
+    assertEquals( 1, server.maxActive.get() );
+    assertEquals( 1, writer.getErrorCount() );
+    for ( int x = 0; x < transactions.size(); x++ ) {
+      assertEquals( x == 7, transactions.get( x ).isInError() );
+    }
+
+    // the engine handled the error in the transaction
+    assertFalse( context.isInError() );
+  }
+
+
+
+
+  @Test
+  public void inflight() throws Exception {
+    TransformContext context = new TransformContext();
+    WebServiceWriter writer = createWriter( context, 8, 1 );
+    List<TransactionContext> transactions = write( writer, context, 100 );
+
+    assertEquals( 100, server.bodies.size() );
+    assertTrue( "max active " + server.maxActive.get(), server.maxActive.get() > 1 );
+    assertTrue( "max active " + server.maxActive.get(), server.maxActive.get() <= 8 );
+
+    // the failed response is attributed to the transaction which sent it
+    assertEquals( 1, writer.getErrorCount() );
+    for ( int x = 0; x < transactions.size(); x++ ) {
+      assertEquals( x == 7, transactions.get( x ).isInError() );
+    }
+
+    // and fails the job as that transaction has already completed
+    assertTrue( context.isInError() );
+  }
+
+
+
+
+  @Test
+  public void batched() throws Exception {
+    TransformContext context = new TransformContext();
+    WebServiceWriter writer = createWriter( context, 4, 10 );
+    write( writer, context, 25 );
+
+    // two full batches and the partial batch sent on close
+    assertEquals( 3, server.bodies.size() );
+    int records = 0;
+    for ( String body : server.bodies ) {
+      assertTrue( body, body.startsWith( "[" ) );
+      List<DataFrame> frames = JSONMarshaler.marshal( body );
+      records += frames.get( 0 ).getFieldCount();
+    }
+    assertEquals( 25, records );
+    assertEquals( 1, writer.getErrorCount() );
+    assertTrue( context.isInError() );
+  }
+
+}
@@ -11,10 +11,12 @@
  */
 package coyote.dataframe;
 
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -151,7 +153,25 @@ public class DataField implements Cloneable {
   short type;
 
   /** The actual value being held. Empty arrays are equivalent to a null value. */
-  byte[] value;
+  volatile byte[] value;
+
+  /** 
+   * The native (decoded) value of the field, only held for immutable types. 
+   * If the encoded value is null, this has not been encoded yet.
+   */
+  Object objectValue;
+
+  /** The frame whose name index includes this field, told when it is renamed */
+  transient volatile DataFrame indexedBy;
+
+  /** The encoded form of a field without a name */
+  private static final byte[] NO_NAME = new byte[0];
+
+  /** The name the cached name octets were encoded from */
+  private transient String encodedName;
+
+  /** The cached wire format of the name */
+  private transient byte[] nameBytes;
 
 
 
@@ -222,7 +242,7 @@ public class DataField implements Cloneable {
    */
   public DataField( final Object obj ) {
     type = DataField.getType( obj );
-    value = DataField.encode( obj, type );
+    setValue( obj );
   }
 
 
@@ -239,7 +259,82 @@ public class DataField implements Cloneable {
   public DataField( final String name, final Object obj ) throws IllegalArgumentException {
     this.name = DataField.nameCheck( name );
     type = DataField.getType( obj );
-    value = DataField.encode( obj, type );
+    setValue( obj );
+  }
+
+
+
+
+  /**
+   * Place the given object in this field as its value.
+   * 
+   * <p>Immutable values are held in their native form and only encoded when 
+   * the wire format is requested, all others are encoded immediately so 
+   * later changes to the object do not alter the field.
+   * 
+   * @param obj the value of the field; must be of this fields type
+   */
+  private void setValue( final Object obj ) {
+    if ( isNative( obj ) ) {
+      objectValue = obj;
+      value = null;
+    } else {
+      objectValue = null;
+      value = DataField.encode( obj, type );
+    }
+  }
+
+
+
+
+  /**
+   * Replace the value of this field with the given object, changing the type 
+   * of the field to match the object.
+   * 
+   * @param obj the new value of the field
+   * 
+   * @throws IllegalArgumentException if the object is an unsupported type.
+   */
+  void assign( final Object obj ) throws IllegalArgumentException {
+    type = DataField.getType( obj );
+    setValue( obj );
+  }
+
+
+
+
+  /**
+   * Determine if the given object can be held in its native form.
+   * 
+   * <p>Only final, immutable classes which decode back into an equal object 
+   * of the same class are held natively. Empty strings are encoded as they 
+   * represent a null value.
+   * 
+   * @param obj the object to check
+   * 
+   * @return true if the object can be held in place of its encoded value
+   */
+  private static boolean isNative( final Object obj ) {
+    if ( obj instanceof String ) {
+      return ( (String)obj ).length() > 0;
+    }
+    return obj instanceof Integer || obj instanceof Long || obj instanceof Double || obj instanceof Float || obj instanceof Boolean;
+  }
+
+
+
+
+  /**
+   * @return the encoded value of this field, encoding the native value if 
+   *         it has not been encoded yet.
+   */
+  private byte[] encoded() {
+    byte[] retval = value;
+    if ( retval == null && objectValue != null ) {
+      retval = DataField.encode( objectValue, type );
+      value = retval;
+    }
+    return retval;
   }
 
 
@@ -260,6 +355,9 @@ public class DataField implements Cloneable {
     retval.name = name;
     retval.type = type;
 
+    // only immutable values are held natively
+    retval.objectValue = objectValue;
+
     if ( value != null ) {
       retval.value = new byte[value.length];
 
@@ -363,6 +461,88 @@ public class DataField implements Cloneable {
 
 
 
+  /**
+   * Construct the data field from data read from the given buffer.
+   * 
+   * <p>The field is read from the current position of the buffer which is 
+   * left positioned at the first octet after the field. Only the value octets
+   * are copied out of the buffer so the field remains valid after the buffer 
+   * is reused or unmapped. Nested frames are kept in their wire format and 
+   * are not decoded until their value is requested.</p>
+   * 
+   * <p>Multi-octet values are always read in network (big-endian) order 
+   * regardless of the byte order of the buffer, which is left unchanged.</p>
+   *
+   * @param buffer The buffer from which the data field will be read
+   *
+   * @throws DecodeException if the buffer does not contain a valid field.
+   */
+  public DataField( final ByteBuffer buffer ) throws DecodeException {
+    // The first octet is the length of the name to read in
+    final int nameLength = buffer.get() & 0xFF;
+
+    // If there is a name of any length, read it in as a String
+    if ( nameLength > 0 ) {
+      final int i = buffer.remaining();
+
+      if ( i < nameLength ) {
+        throw new DecodeException( "value underflow: name length specified as " + nameLength + " but only " + i + " octets are available" );
+      }
+
+      final byte[] nameData = new byte[nameLength];
+      buffer.get( nameData );
+
+      try {
+        name = new String( nameData, DataField.strEnc );
+      } catch ( final UnsupportedEncodingException e ) {
+        throw new DecodeException( "unsupported name encoding: " + DataField.strEnc, e );
+      }
+      encodedName = name;
+      nameBytes = nameData;
+    }
+
+    // the next field we read is the data type
+    type = buffer.get();
+    FieldType datatype = null;
+    try {
+      // get the proper field type
+      datatype = getDataType( type );
+    } catch ( Throwable ball ) {
+      if ( nameLength > 0 ) {
+        throw new DecodeException( "non supported type: '" + type + "' for field: '" + name + "'" );
+      } else {
+        throw new DecodeException( "non supported type: '" + type + "'" );
+      }
+    }
+
+    // if the file type is a variable length (i.e. size < 0), read in the length
+    int length = datatype.getSize();
+    if ( length < 0 ) {
+      final ByteOrder order = buffer.order();
+      try {
+        length = buffer.order( ByteOrder.BIG_ENDIAN ).getInt();
+      }
+      finally {
+        buffer.order( order );
+      }
+
+      if ( length < 0 ) {
+        throw new DecodeException( "read length bad value: length = " + length + " type = " + type );
+      }
+    }
+
+    final int i = buffer.remaining();
+    if ( i < length ) {
+      throw new DecodeException( "value underflow: length specified as " + length + " but only " + i + " octets are available" );
+    }
+
+    value = new byte[length];
+    buffer.get( value );
+  }
+
+
+
+
   /**
    * Get the numeric code representing the type of the passed object
    *
@@ -465,7 +645,7 @@ public class DataField implements Cloneable {
    * @return The number of octets this fields value uses.
    */
   public int getLength() {
-    return value.length;
+    return encoded().length;
   }
 
 
@@ -475,7 +655,7 @@ public class DataField implements Cloneable {
    * @return The encoded value of this field.
    */
   public byte[] getValue() {
-    return value;
+    return encoded();
   }
 
 
@@ -485,7 +665,15 @@ public class DataField implements Cloneable {
    * @return The value of this field as an object.
    */
   public Object getObjectValue() {
-    return getObjectValue( type, value );
+    Object retval = objectValue;
+    if ( retval == null ) {
+      retval = getObjectValue( type, value );
+      if ( isNative( retval ) ) {
+        // no need to decode it again
+        objectValue = retval;
+      }
+    }
+    return retval;
   }
 
 
@@ -516,6 +704,8 @@ public class DataField implements Cloneable {
    * @throws IOException if there is a problem writing to the output stream.
    */
   public void write( final DataOutputStream dos ) throws IOException {
+    final byte[] data = encoded();
+
     // If we have a name...
     if ( name != null ) {
       // write the length and name fields
@@ -531,18 +721,18 @@ public class DataField implements Cloneable {
     // Write the type field
     dos.write( ByteUtil.renderShortByte( type ) );
 
-    if ( value != null ) {
+    if ( data != null ) {
 
       FieldType datatype = getDataType( type );
 
       // If the value is variable in length
       if ( datatype.getSize() < 0 ) {
         // write the length
-        dos.write( ByteUtil.renderUnsignedInt( (long)value.length ) );
+        dos.write( ByteUtil.renderUnsignedInt( (long)data.length ) );
       }
 
       // write the value itself
-      dos.write( value );
+      dos.write( data );
     } else {
       dos.writeShort( 0 );
     }
@@ -554,19 +744,119 @@ public class DataField implements Cloneable {
 
 
   /**
-   * Get the wire format of the Data.
+   * Write the field to the given buffer.
+   * 
+   * <p>The field is written at the current position of the buffer which is 
+   * advanced past the field. Use {@link #getEncodedSize()} to ensure the 
+   * buffer has enough space remaining.</p>
+   * 
+   * <p>Multi-octet values are always written in network (big-endian) order 
+   * regardless of the byte order of the buffer, which is left unchanged.</p>
    *
-   * @return binary representation of the field.
+   * @param buffer The buffer (heap or direct) to which the field is written.
+   *
+   * @throws java.nio.BufferOverflowException if the buffer does not have 
+   *         enough space remaining for the field.
    */
-  public byte[] getBytes() {
-    final ByteArrayOutputStream out = new ByteArrayOutputStream();
-    final DataOutputStream dos = new DataOutputStream( out );
+  public void write( final ByteBuffer buffer ) {
+    final byte[] data = encoded();
 
+    // write the length and name fields, a length of 0 indicates no name
+    final byte[] nameField = getNameBytes();
+    buffer.put( (byte)nameField.length );
+    buffer.put( nameField );
+
+    // Write the type field
+    buffer.put( (byte)type );
+
+    final ByteOrder order = buffer.order();
+    buffer.order( ByteOrder.BIG_ENDIAN );
     try {
-      write( dos );
-    } catch ( final IOException ioe ) {}
+      if ( data != null ) {
+        // If the value is variable in length, write the length
+        if ( getDataType( type ).getSize() < 0 ) {
+          buffer.putInt( data.length );
+        }
+
+        // write the value itself
+        buffer.put( data );
+      } else {
+        buffer.putShort( (short)0 );
+      }
+    }
+    finally {
+      buffer.order( order );
+    }
+  }
+
 
-    return out.toByteArray();
+
+
+  /**
+   * Calculate the exact number of octets this field occupies in its wire 
+   * format.
+   * 
+   * <p>This allows callers to allocate buffers of the exact size needed 
+   * before encoding.</p>
+   *
+   * @return the number of octets written by {@link #write(ByteBuffer)}.
+   */
+  public int getEncodedSize() {
+    final byte[] data = encoded();
+
+    // name length, name and type
+    int retval = 2 + getNameBytes().length;
+
+    if ( data != null ) {
+      if ( getDataType( type ).getSize() < 0 ) {
+        retval += 4;
+      }
+      retval += data.length;
+    } else {
+      retval += 2;
+    }
+
+    return retval;
+  }
+
+
+
+
+  /**
+   * @return the name of this field in its encoded form, encoding it only when 
+   *         the name has changed since the last call.
+   */
+  private byte[] getNameBytes() {
+    final String current = name;
+    if ( current == null ) {
+      return NO_NAME;
+    }
+
+    byte[] retval = nameBytes;
+    if ( retval == null || encodedName != current ) {
+      try {
+        retval = current.getBytes( DataField.strEnc );
+      } catch ( final UnsupportedEncodingException e ) {
+        retval = current.getBytes();
+      }
+      nameBytes = retval;
+      encodedName = current;
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Get the wire format of the Data.
+   *
+   * @return binary representation of the field.
+   */
+  public byte[] getBytes() {
+    final byte[] retval = new byte[getEncodedSize()];
+    write( ByteBuffer.wrap( retval ) );
+    return retval;
   }
 
 
@@ -591,6 +881,10 @@ public class DataField implements Cloneable {
    */
   public void setName( final String string ) {
     name = string;
+    final DataFrame frame = indexedBy;
+    if ( frame != null ) {
+      frame.fieldRenamed();
+    }
   }
 
 
@@ -724,12 +1018,13 @@ public class DataField implements Cloneable {
     buf.append( " name='" + name + "'" );
     buf.append( " type=" + this.getTypeName() );
     buf.append( "(" + type + ")" );
-    if ( value.length > 32 ) {
+    final byte[] data = encoded();
+    if ( data.length > 32 ) {
       byte[] sample = new byte[32];
-      System.arraycopy( value, 0, sample, 0, sample.length );
+      System.arraycopy( data, 0, sample, 0, sample.length );
       buf.append( " value=[" + ByteUtil.bytesToHex( sample ) + " ...]" );
     } else
-      buf.append( " value=[" + ByteUtil.bytesToHex( value ) + "]" );
+      buf.append( " value=[" + ByteUtil.bytesToHex( data ) + "]" );
 
     return buf.toString();
   }
@@ -751,6 +1046,10 @@ public class DataField implements Cloneable {
    * @return The value of this field as a String.
    */
   public String getStringValue() {
+    if ( objectValue != null ) {
+      // string value of all native types is the string of the decoded object
+      return objectValue.toString();
+    }
     return getStringValue( type, value );
   }
 
@@ -782,7 +1081,7 @@ public class DataField implements Cloneable {
    * @return true if there is no value, false if there is data in this field
    */
   public boolean isNull() {
-    return ( value == null || value.length == 0 );
+    return objectValue == null && ( value == null || value.length == 0 );
   }
 
 
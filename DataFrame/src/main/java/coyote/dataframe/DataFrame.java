@@ -18,11 +18,14 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -39,6 +42,8 @@ import coyote.commons.ByteUtil;
  * <p>This is a surprisingly efficient transmission scheme as all field values 
  * and child frames are stored in their wire format as byte arrays. They are 
  * then marshaled only when accessed and are ready for transmission.
+ * Strings, numbers and booleans are the exception; they are immutable so they 
+ * are kept as objects and encoded only when the wire format is requested.
  * 
  * <p>This class was conceived to implement the Data Transfer Object (DTO) 
  * design pattern in distributed applications. Passing a DataFrame as both 
@@ -69,6 +74,12 @@ public class DataFrame implements Cloneable {
   /** flag indicating the data in this frame should be treated as an array; no named fields should be added, marshaling rules, etc. */
   protected volatile boolean arrayBiased = false;
 
+  /** Frames with at least this many fields have their fields indexed by name */
+  private static final int INDEX_THRESHOLD = 8;
+
+  /** Position of the first field with each name, built when first needed */
+  private volatile NameIndex index = null;
+
 
 
 
@@ -98,22 +109,42 @@ public class DataFrame implements Cloneable {
    * @param data The byte array from which to construct the frame.
    */
   public DataFrame( final byte[] data ) {
-    if ( data != null ) {
+    this( ( data != null ) ? ByteBuffer.wrap( data ) : null );
+  }
+
+
+
+
+  /**
+   * Construct the frame from the octets remaining in the given buffer.
+   * 
+   * <p>All the fields between the position and the limit of the buffer are 
+   * decoded directly from the buffer, which may be a direct or memory-mapped 
+   * buffer, without any intermediate streams or copies of the data. Nested 
+   * frames remain in their wire format until they are retrieved from the 
+   * frame. The buffer is left positioned at its limit.</p>
+   * 
+   * <p>To decode one of several frames held in a single buffer, set the limit
+   * of the buffer (or a slice of it) to the end of that frame.</p>
+   * 
+   * <p>The wire format is big-endian; the byte order of the buffer is 
+   * ignored and left unchanged.</p>
+   *
+   * @param buffer The buffer from which to construct the frame.
+   */
+  public DataFrame( final ByteBuffer buffer ) {
+    if ( buffer != null ) {
+      final int start = buffer.position();
       int loc = 0;
       int ploc = 0;
       try {
-        final ByteArrayInputStream bais = new ByteArrayInputStream( data );
-        final DataInputStream in = new DataInputStream( bais );
-
-        while ( in.available() > 0 ) {
+        while ( buffer.hasRemaining() ) {
           ploc = loc;
-          loc = data.length - in.available();
-          add( new DataField( in ) );
+          loc = buffer.position() - start;
+          add( new DataField( buffer ) );
         }
-      } catch ( final EOFException eof ) {
-        throw new DecodeException( "Data underflow adding field", eof, loc, ploc, ( fields.size() + 1 ), ( fields.size() > 0 ) ? fields.get( fields.size() - 1 ) : null );
-      } catch ( final IOException ioe ) {
-        throw new DecodeException( "Problems decoding field", ioe, loc, ploc, ( fields.size() + 1 ), ( fields.size() > 0 ) ? fields.get( fields.size() - 1 ) : null );
+      } catch ( final BufferUnderflowException bue ) {
+        throw new DecodeException( "Data underflow adding field", bue, loc, ploc, ( fields.size() + 1 ), ( fields.size() > 0 ) ? fields.get( fields.size() - 1 ) : null );
       } catch ( final DecodeException de ) {
         throw new DecodeException( "DF:" + de.getMessage(), de.getCause(), loc, ploc, de.getFieldIndex(), de.getField() );
       }
@@ -134,15 +165,87 @@ public class DataFrame implements Cloneable {
    * @see #getFieldIgnoreCase(String)
    */
   public DataField getField( final String name ) {
-    for ( int i = 0; i < fields.size(); i++ ) {
-      final DataField field = fields.get( i );
+    final int indx = indexOf( name );
+    return ( indx > -1 ) ? fields.get( indx ) : null;
+  }
 
-      if ( ( field.getName() != null ) && field.getName().equals( name ) ) {
-        return field;
+
+
+
+  /**
+   * Return the position of the first occurrence of a named field.
+   * 
+   * <p>Larger frames keep an index of their field names which is built the 
+   * first time it is needed and kept current as fields are added. Smaller 
+   * frames are simply scanned as that is faster than hashing the name.</p>
+   *
+   * @param name The name of the field to locate.
+   *
+   * @return The zero-based position of the first field with the given name 
+   *         or -1 if there is no field with that name.
+   */
+  public int indexOf( final String name ) {
+    if ( name == null ) {
+      return -1;
+    }
+
+    final int size = fields.size();
+    if ( size >= INDEX_THRESHOLD ) {
+      NameIndex idx = index;
+      if ( idx == null || !idx.covers( fields ) ) {
+        idx = new NameIndex( this );
+        index = idx;
+      }
+      final Integer indx = idx.positions.get( name );
+      if ( indx == null ) {
+        return -1;
       }
+      if ( name.equals( fields.get( indx ).name ) ) {
+        return indx;
+      }
+      // the list was altered directly, fall back to a scan
+      index = null;
     }
 
-    return null;
+    for ( int i = 0; i < size; i++ ) {
+      if ( name.equals( fields.get( i ).name ) ) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+
+
+
+  /**
+   * Add the last field in the list to the index, if there is one, so adding 
+   * fields does not force the index to be rebuilt.
+   */
+  private void indexAppended() {
+    final NameIndex idx = index;
+    if ( idx != null ) {
+      if ( idx.list == fields && idx.size == fields.size() - 1 ) {
+        final String name = idx.claim( fields.get( idx.size ) );
+        if ( name != null && !idx.positions.containsKey( name ) ) {
+          idx.positions.put( name, idx.size );
+        }
+        idx.size++;
+      } else {
+        index = null;
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Called by an indexed field of this frame when its name changes so the 
+   * index is rebuilt the next time it is needed.
+   */
+  void fieldRenamed() {
+    index = null;
   }
 
 
@@ -188,13 +291,7 @@ public class DataFrame implements Cloneable {
    * @see #containsIgnoreCase(String)
    */
   public boolean contains( final String name ) {
-    for ( int i = 0; i < fields.size(); i++ ) {
-      final DataField field = fields.get( i );
-      if ( ( field.getName() != null ) && field.getName().equals( name ) ) {
-        return true;
-      }
-    }
-    return false;
+    return indexOf( name ) > -1;
   }
 
 
@@ -756,15 +853,8 @@ public class DataFrame implements Cloneable {
    *         if the field with the given name was not found.
    */
   public Object getObject( final String name ) {
-    for ( int i = 0; i < fields.size(); i++ ) {
-      final DataField field = fields.get( i );
-
-      if ( ( field.getName() != null ) && field.getName().equals( name ) ) {
-        return field.getObjectValue();
-      }
-    }
-
-    return null;
+    final int indx = indexOf( name );
+    return ( indx > -1 ) ? fields.get( indx ).getObjectValue() : null;
   }
 
 
@@ -848,6 +938,7 @@ public class DataFrame implements Cloneable {
     } else {
       fields.add( new DataField( value ) );
     }
+    indexAppended();
     return fields.size() - 1;
   }
 
@@ -871,6 +962,7 @@ public class DataFrame implements Cloneable {
   public int add( final String name, final Object value ) {
     modified = true;
     fields.add( new DataField( name, value ) );
+    indexAppended();
     return fields.size() - 1;
   }
 
@@ -891,6 +983,7 @@ public class DataFrame implements Cloneable {
     if ( field != null ) {
       modified = true;
       fields.add( field );
+      indexAppended();
       return fields.size() - 1;
     } else {
       return -1;
@@ -915,22 +1008,19 @@ public class DataFrame implements Cloneable {
   public int put( final String name, final Object obj ) {
     if ( ( obj != null ) || ( name != null ) ) {
       if ( name != null ) {
-        for ( int i = 0; i < fields.size(); i++ ) {
-          final DataField field = fields.get( i );
-
-          if ( ( field.name != null ) && field.name.equals( name ) ) {
-            if ( obj != null ) {
-              field.type = DataField.getType( obj );
-              field.value = DataField.encode( obj );
-            } else {
-              // Null object implies remove the named field
-              fields.remove( i );
-            }
+        final int i = indexOf( name );
+        if ( i > -1 ) {
+          if ( obj != null ) {
+            fields.get( i ).assign( obj );
+          } else {
+            // Null object implies remove the named field
+            fields.remove( i );
+            index = null;
+          }
 
-            modified = true;
+          modified = true;
 
-            return i;
-          }
+          return i;
         }
 
         return add( name, obj );
@@ -960,6 +1050,7 @@ public class DataFrame implements Cloneable {
 
         if ( ( field.name != null ) && field.name.equals( name ) ) {
           retval = fields.remove( i );
+          index = null;
 
           modified = true;
         }
@@ -1043,6 +1134,7 @@ public class DataFrame implements Cloneable {
 
         if ( ( field.name != null ) && field.name.equals( name ) ) {
           fields.remove( i-- );
+          index = null;
         }
       }
     }
@@ -1135,26 +1227,56 @@ public class DataFrame implements Cloneable {
    * @return this frame represented in its wire format.
    */
   public byte[] getBytes() {
-    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    final DataOutputStream dos = new DataOutputStream( baos );
-    byte[] bytes = null;
+    final byte[] retval = new byte[getEncodedSize()];
+    write( ByteBuffer.wrap( retval ) );
 
-    try {
-      for ( int i = 0; i < fields.size(); i++ ) {
-        bytes = fields.get( i ).getBytes();
-        if ( CHECK ) {
-          String error = check( bytes );
-          if ( error != null )
-            throw new DecodeException( error, bytes );
-        }
+    if ( CHECK ) {
+      String error = check( retval );
+      if ( error != null )
+        throw new DecodeException( error, retval );
+    }
 
-        dos.write( bytes );
-      }
-    } catch ( final IOException e ) {
-      throw new DecodeException( "IO Error", e );
+    return retval;
+  }
+
+
+
+
+  /**
+   * Write the frame in its wire format to the given buffer.
+   * 
+   * <p>The frame is written at the current position of the buffer, which may
+   * be a direct buffer, and the position is advanced past the frame. No 
+   * intermediate buffers are created. Use {@link #getEncodedSize()} to size 
+   * the buffer or to check it has enough space remaining. The wire format is 
+   * big-endian; the byte order of the buffer is ignored and left unchanged.</p>
+   *
+   * @param buffer the buffer to which the frame is to be written.
+   *
+   * @throws java.nio.BufferOverflowException if the buffer does not have 
+   *         enough space remaining for the frame.
+   */
+  public void write( final ByteBuffer buffer ) {
+    for ( int i = 0; i < fields.size(); i++ ) {
+      fields.get( i ).write( buffer );
     }
+  }
 
-    return baos.toByteArray();
+
+
+
+  /**
+   * Calculate the exact number of octets this frame occupies in its wire 
+   * format.
+   *
+   * @return the number of octets written by {@link #write(ByteBuffer)}.
+   */
+  public int getEncodedSize() {
+    int retval = 0;
+    for ( int i = 0; i < fields.size(); i++ ) {
+      retval += fields.get( i ).getEncodedSize();
+    }
+    return retval;
   }
 
 
@@ -1275,6 +1397,7 @@ public class DataFrame implements Cloneable {
    */
   public void clear() {
     fields.clear();
+    index = null;
   }
 
 
@@ -1570,24 +1693,22 @@ public class DataFrame implements Cloneable {
       if ( key instanceof String ) {
         String name = (String)key;
 
-        for ( int i = 0; i < fields.size(); i++ ) {
+        final int i = indexOf( name );
+        if ( i > -1 ) {
           final DataField field = fields.get( i );
 
-          if ( ( field.name != null ) && field.name.equals( name ) ) {
-
-            if ( value != null ) {
-              retval = field.getObjectValue();
-              field.type = DataField.getType( value );
-              field.value = DataField.encode( value );
-            } else {
-              // Null object implies remove the named field
-              retval = fields.remove( i );
-            }
-            modified = true;
+          if ( value != null ) {
+            retval = field.getObjectValue();
+            field.assign( value );
+          } else {
+            // Null object implies remove the named field
+            retval = fields.remove( i );
+            index = null;
+          }
+          modified = true;
 
-            return retval;
-          } // found
-        } // for
+          return retval;
+        } // found
 
         // not found, add the value 
         return add( name, value );
@@ -1723,4 +1844,69 @@ public class DataFrame implements Cloneable {
    */
   //public Set entrySet() { return null; }
 
+
+
+
+  /**
+   * The position of the first field with each name in the fields of a frame.
+   * 
+   * <p>Each indexed field refers back to the frame so renaming it discards 
+   * only that frame's index. A field held by more than one frame reports to 
+   * the frame which indexed it last, and the frame it was taken from drops its 
+   * index as it will no longer hear of the renames.</p>
+   */
+  private static final class NameIndex {
+    final HashMap<String, Integer> positions;
+    final DataFrame frame;
+    final List<DataField> list;
+    int size;
+
+
+
+
+    NameIndex( final DataFrame owner ) {
+      frame = owner;
+      list = owner.fields;
+      size = list.size();
+      positions = new HashMap<String, Integer>( size * 2 );
+      for ( int i = 0; i < size; i++ ) {
+        final String name = claim( list.get( i ) );
+        if ( name != null && !positions.containsKey( name ) ) {
+          positions.put( name, i );
+        }
+      }
+    }
+
+
+
+
+    /**
+     * Have the given field report its renames to the frame of this index.
+     * 
+     * @param field the field being indexed
+     * 
+     * @return the name of the field, read after the field has been claimed
+     */
+    String claim( final DataField field ) {
+      final DataFrame previous = field.indexedBy;
+      if ( previous != frame ) {
+        field.indexedBy = frame;
+        if ( previous != null ) {
+          previous.fieldRenamed();
+        }
+      }
+      return field.name;
+    }
+
+
+
+
+    /**
+     * @return true if this index is current for the given list of fields
+     */
+    boolean covers( final List<DataField> fields ) {
+      return list == fields && size == fields.size();
+    }
+  }
+
 }
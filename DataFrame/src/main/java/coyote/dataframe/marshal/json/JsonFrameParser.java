@@ -4,8 +4,10 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
 
+import coyote.commons.SegmentFilter;
 import coyote.dataframe.DataField;
 import coyote.dataframe.DataFrame;
 import coyote.dataframe.marshal.ParseException;
@@ -13,6 +15,10 @@ import coyote.dataframe.marshal.ParseException;
 
 /**
  * Parse JSON text into DataFrames.
+ * 
+ * <p>The entire text can be parsed at once with {@link #parse()} or frames 
+ * can be pulled from the reader one at a time with {@link #next()}, which 
+ * only holds the frame being returned in memory.</p>
  */
 public class JsonFrameParser {
 
@@ -39,6 +45,18 @@ public class JsonFrameParser {
   // index into the current buffer where we start capturing our value
   private int captureStart;
 
+  // the objects and arrays we are currently streaming through
+  private final List<Container> containers = new ArrayList<Container>();
+
+  // frames selected from within the last returned frame
+  private final LinkedList<DataFrame> pending = new LinkedList<DataFrame>();
+
+  // the filter selecting which frames are returned from next()
+  private SegmentFilter selector = null;
+
+  // whether next() has read the first character
+  private boolean started = false;
+
 
 
 
@@ -177,6 +195,152 @@ public class JsonFrameParser {
 
 
 
+  /**
+   * Set the expression selecting which frames are returned by 
+   * {@link #next()}.
+   * 
+   * <p>The expression is the same one used by the 
+   * {@link coyote.dataframe.selector.FrameSelector} where the names of the 
+   * nested objects are separated by dots and array elements are named by 
+   * their position (e.g. "[0]"). For example "CVE_Items.*.cve" returns the 
+   * "cve" object of each element in the "CVE_Items" array.</p>
+   * 
+   * @param expression the selector expression, null returns the root object 
+   *        or each element of the root array.
+   */
+  public void setSelector( final String expression ) {
+    selector = ( expression != null ) ? new SegmentFilter( expression ) : null;
+  }
+
+
+
+
+  /**
+   * Read the next frame from the reader.
+   * 
+   * <p>Without a selector, each element of a root array is returned as a 
+   * frame, as is each root object. With a selector, each object or array 
+   * whose path matches the selector is returned as it is reached, including 
+   * those nested within other matches, in the same order as the 
+   * {@link coyote.dataframe.selector.FrameSelector} would return them. Only 
+   * the returned frame is held in memory, so arbitrarily large documents can 
+   * be read.</p>
+   * 
+   * <p>This method should not be mixed with calls to {@link #parse()}.</p>
+   * 
+   * @return the next frame or null if there is no more data
+   * 
+   * @throws IOException if there were problems reading the data
+   * @throws ParseException if the data is not valid JSON
+   */
+  public DataFrame next() throws IOException {
+    if ( !pending.isEmpty() ) {
+      return pending.removeFirst();
+    }
+
+    if ( !started ) {
+      started = true;
+      read();
+    }
+
+    while ( true ) {
+      skipWhiteSpace();
+
+      if ( containers.isEmpty() ) {
+        if ( isEndOfText() ) {
+          return null;
+        }
+        if ( current == '{' && selector == null ) {
+          return readObject();
+        }
+        if ( ( current != '{' ) && ( current != '[' ) ) {
+          throw error( "Unexpected character" );
+        }
+        containers.add( new Container( null, current == '[' ) );
+        read();
+        continue;
+      }
+
+      final Container container = containers.get( containers.size() - 1 );
+      final char close = container.array ? ']' : '}';
+      if ( readChar( close ) ) {
+        containers.remove( containers.size() - 1 );
+        continue;
+      }
+      if ( container.count > 0 && !readChar( ',' ) ) {
+        throw expected( "',' or '" + close + "'" );
+      }
+      skipWhiteSpace();
+
+      String name = null;
+      if ( !container.array ) {
+        name = readName();
+        skipWhiteSpace();
+        if ( !readChar( ':' ) ) {
+          throw expected( "':'" );
+        }
+        skipWhiteSpace();
+      }
+
+      final String token = ( name != null ) ? name : "[" + container.count + "]";
+      final String path = ( container.path != null ) ? container.path + "." + token : token;
+      container.count++;
+
+      if ( selector == null ) {
+        // the root is an array, return each of its elements
+        if ( current == '{' ) {
+          return readObject();
+        } else if ( current == '[' ) {
+          return readArray();
+        } else {
+          return new DataFrame( readFieldValue( null ) );
+        }
+      }
+
+      if ( ( current == '{' ) || ( current == '[' ) ) {
+        if ( selector.matches( path ) ) {
+          final DataFrame retval = ( current == '{' ) ? readObject() : readArray();
+          selectNested( retval, path );
+          return retval;
+        }
+        // stream through the contents looking for matches
+        containers.add( new Container( path, current == '[' ) );
+        read();
+      } else {
+        // skip over values which can never match
+        readFieldValue( name );
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Queue any frames within the given selected frame which also match the 
+   * selector.
+   * 
+   * @param frame the frame just selected
+   * @param token the path to the frame
+   */
+  private void selectNested( final DataFrame frame, final String token ) {
+    for ( int x = 0; x < frame.getFieldCount(); x++ ) {
+      final DataField field = frame.getField( x );
+      if ( field.isFrame() ) {
+        final String fname = token + "." + ( ( field.getName() != null ) ? field.getName() : "[" + x + "]" );
+        // empty frames are decoded as null
+        final DataFrame child = ( field.getObjectValue() != null ) ? (DataFrame)field.getObjectValue() : new DataFrame();
+        if ( selector.matches( fname ) ) {
+          pending.add( child );
+        }
+        selectNested( child, fname );
+      }
+    }
+  }
+
+
+
+
   private void pauseCapture() {
     final int end = current == -1 ? index : index - 1;
     captureBuffer.append( buffer, captureStart, end - captureStart );
@@ -584,4 +748,24 @@ public class JsonFrameParser {
     captureStart = index - 1;
   }
 
+
+
+
+  /**
+   * An object or array being streamed through by {@link #next()}.
+   */
+  private static class Container {
+    final String path;
+    final boolean array;
+    int count = 0;
+
+
+
+
+    Container( final String path, final boolean array ) {
+      this.path = path;
+      this.array = array;
+    }
+  }
+
 }
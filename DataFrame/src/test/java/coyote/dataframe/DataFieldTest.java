@@ -204,4 +204,34 @@ public class DataFieldTest {
     assertTrue( text.length() < 170 );
   }
 
+
+
+
+  /**
+   * Natively held values must behave exactly as their encoded form.
+   */
+  @Test
+  public void testNativeValue() {
+    Object[] values = { "Value", 17345, 4294967296L, 3.14D, 2.5F, true };
+    for ( Object value : values ) {
+      DataField subject = new DataField( "Test", value );
+      assertTrue( value.equals( subject.getObjectValue() ) );
+      assertTrue( value.toString().equals( subject.getStringValue() ) );
+      assertFalse( subject.isNull() );
+
+      DataField decoded = new DataField( "Test", subject.getType(), subject.getValue() );
+      assertTrue( value.equals( decoded.getObjectValue() ) );
+      assertTrue( subject.getStringValue().equals( decoded.getStringValue() ) );
+
+      DataField copy = (DataField)subject.clone();
+      assertTrue( value.equals( copy.getObjectValue() ) );
+      assertTrue( subject.getLength() == copy.getLength() );
+    }
+
+    // empty strings are null values
+    DataField subject = new DataField( "Test", "" );
+    assertTrue( subject.isNull() );
+    assertTrue( subject.getObjectValue() == null );
+  }
+
 }
@@ -9,6 +9,10 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
 import org.junit.Test;
 
 
@@ -269,4 +273,142 @@ public class DataFrameTest {
 
   }
 
+
+
+
+  /**
+   * Test method for {@link coyote.dataframe.DataFrame#indexOf(String)}.
+   */
+  @Test
+  public void testIndexOf() {
+    DataFrame frame = new DataFrame();
+    for ( int x = 0; x < 20; x++ ) {
+      frame.add( "field" + x, x );
+    }
+    // duplicate names resolve to the first occurrence
+    frame.add( "field5", "duplicate" );
+
+    assertTrue( frame.indexOf( "field0" ) == 0 );
+    assertTrue( frame.indexOf( "field19" ) == 19 );
+    assertTrue( frame.indexOf( "field5" ) == 5 );
+    assertTrue( frame.indexOf( "nothere" ) == -1 );
+    assertTrue( frame.indexOf( null ) == -1 );
+
+    // fields added after the index was built
+    frame.add( "field20", 20 );
+    assertTrue( frame.indexOf( "field20" ) == 21 );
+
+    // removal shifts the positions
+    frame.remove( "field0" );
+    assertFalse( frame.contains( "field0" ) );
+    assertTrue( frame.indexOf( "field1" ) == 0 );
+
+    // renaming a field in place
+    frame.getField( "field1" ).setName( "renamed" );
+    assertFalse( frame.contains( "field1" ) );
+    assertTrue( frame.indexOf( "renamed" ) == 0 );
+
+    // replacing the value keeps the position
+    frame.put( "field10", "ten" );
+    assertTrue( frame.indexOf( "field10" ) == 9 );
+    assertTrue( "ten".equals( frame.getAsString( "field10" ) ) );
+  }
+
+
+
+
+  /**
+   * Renaming a field held by more than one indexed frame.
+   */
+  @Test
+  public void renameSharedField() {
+    DataFrame first = new DataFrame();
+    DataFrame second = new DataFrame();
+    for ( int x = 0; x < 10; x++ ) {
+      first.add( "field" + x, x );
+    }
+    DataField shared = first.getField( "field7" );
+    for ( int x = 0; x < 10; x++ ) {
+      second.add( "other" + x, x );
+    }
+    second.add( shared );
+
+    assertTrue( first.indexOf( "field7" ) == 7 );
+    assertTrue( second.indexOf( "field7" ) == 10 );
+
+    shared.setName( "moved" );
+    assertTrue( first.indexOf( "moved" ) == 7 );
+    assertTrue( second.indexOf( "moved" ) == 10 );
+    assertTrue( first.indexOf( "field7" ) == -1 );
+    assertTrue( second.indexOf( "field7" ) == -1 );
+
+    // renaming to a name held earlier in the frame
+    shared.setName( "field2" );
+    assertTrue( first.indexOf( "field2" ) == 2 );
+    assertTrue( second.indexOf( "field2" ) == 10 );
+    assertTrue( second.indexOf( "moved" ) == -1 );
+  }
+
+
+
+
+  /**
+   * Test method for {@link coyote.dataframe.DataFrame#write(java.nio.ByteBuffer)}.
+   */
+  @Test
+  public void testByteBuffer() throws Exception {
+    DataFrame child = new DataFrame().set( "id", 42 ).set( "tag", "nested" );
+    DataFrame frame = new DataFrame();
+    frame.add( "alpha", 1L );
+    frame.add( "beta", "two" );
+    frame.add( "gamma", 3.0D );
+    frame.add( "delta", true );
+    frame.add( "child", child );
+    frame.add( new byte[] { 1, 2, 3 } );
+
+    byte[] bytes = frame.getBytes();
+    assertTrue( bytes.length == frame.getEncodedSize() );
+
+    // two frames back to back in a direct buffer
+    ByteBuffer buffer = ByteBuffer.allocateDirect( bytes.length * 2 );
+    frame.write( buffer );
+    frame.write( buffer );
+    assertFalse( buffer.hasRemaining() );
+    buffer.flip();
+
+    for ( int x = 0; x < 2; x++ ) {
+      ByteBuffer slice = buffer.slice();
+      slice.limit( bytes.length );
+      DataFrame copy = new DataFrame( slice );
+      buffer.position( buffer.position() + bytes.length );
+
+      assertTrue( copy.getFieldCount() == 6 );
+      assertTrue( copy.getAsLong( "alpha" ) == 1L );
+      assertTrue( "two".equals( copy.getAsString( "beta" ) ) );
+      assertTrue( copy.getAsDouble( "gamma" ) == 3.0D );
+      assertTrue( copy.getAsBoolean( "delta" ) );
+      assertTrue( copy.getAsFrame( "child" ).getAsInt( "id" ) == 42 );
+      assertTrue( Arrays.equals( bytes, copy.getBytes() ) );
+    }
+
+    // the wire format matches the stream encoding
+    assertTrue( Arrays.equals( bytes, new DataFrame( bytes ).getBytes() ) );
+
+    // the byte order of the buffer does not change the wire format
+    ByteBuffer little = ByteBuffer.allocate( bytes.length ).order( ByteOrder.LITTLE_ENDIAN );
+    frame.write( little );
+    assertTrue( little.order() == ByteOrder.LITTLE_ENDIAN );
+    assertTrue( Arrays.equals( bytes, little.array() ) );
+    little.flip();
+    assertTrue( Arrays.equals( bytes, new DataFrame( little ).getBytes() ) );
+    assertTrue( little.order() == ByteOrder.LITTLE_ENDIAN );
+
+    try {
+      new DataFrame( ByteBuffer.wrap( bytes, 0, bytes.length - 1 ) );
+      fail( "Should not decode a truncated frame" );
+    } catch ( DecodeException e ) {
+      // expected
+    }
+  }
+
 }
@@ -20,6 +20,9 @@ import static org.junit.Assert.assertTrue;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.List;
 
 import org.junit.Test;
@@ -27,6 +30,8 @@ import org.junit.Test;
 import coyote.dataframe.DataField;
 import coyote.dataframe.DataFrame;
 import coyote.dataframe.DataFrameException;
+import coyote.dataframe.marshal.json.JsonFrameParser;
+import coyote.dataframe.selector.FrameSelector;
 
 
 /**
@@ -266,4 +271,49 @@ public class JSONMarshalTest {
     System.out.println( JSONMarshaler.toFormattedString( frame ) );
   }
 
+
+
+
+  @Test
+  public void streamArrayElements() throws Exception {
+    JsonFrameParser parser = new JsonFrameParser( new StringReader( "[ {\"a\":1}, [2,3], \"four\", {} ] {\"b\":5}" ) );
+    assertEquals( 1, parser.next().getAsInt( "a" ) );
+    assertEquals( 2, parser.next().size() );
+    assertEquals( "four", parser.next().getField( 0 ).getStringValue() );
+    assertEquals( 0, parser.next().size() );
+    assertEquals( 5, parser.next().getAsInt( "b" ) );
+    assertNull( parser.next() );
+    assertNull( parser.next() );
+  }
+
+
+
+
+  @Test
+  public void streamSelectedFrames() throws Exception {
+    ClassLoader classLoader = getClass().getClassLoader();
+    File file = new File( classLoader.getResource( "nvdcve.json" ).getFile() );
+    List<DataFrame> expected;
+    try (Reader reader = new InputStreamReader( new FileInputStream( file ) )) {
+      expected = new FrameSelector( "CVE_Items.*.cve" ).select( new JsonFrameParser( reader ).parse().get( 0 ) );
+    }
+    assertTrue( expected.size() > 0 );
+
+    try (Reader reader = new InputStreamReader( new FileInputStream( file ) )) {
+      JsonFrameParser parser = new JsonFrameParser( reader );
+      parser.setSelector( "CVE_Items.*.cve" );
+      for ( DataFrame frame : expected ) {
+        assertEquals( frame.toString(), parser.next().toString() );
+      }
+      assertNull( parser.next() );
+    }
+
+    // nested matches are returned after the frame containing them
+    JsonFrameParser parser = new JsonFrameParser( "{\"a\":{\"b\":{\"c\":{\"x\":1}}},\"d\":{}}" );
+    parser.setSelector( "a.>" );
+    assertEquals( 1, parser.next().getAsFrame( "c" ).getAsInt( "x" ) );
+    assertEquals( 1, parser.next().getAsInt( "x" ) );
+    assertNull( parser.next() );
+  }
+
 }
@@ -184,6 +184,9 @@ public class WebServer extends AbstractLoader {
         // Configure Denial of Service frequency tables
         server.configDosTables( cfg.getSection( ConfigTag.FREQUENCY ) );
 
+        // Run requests on a bounded pool of threads
+        server.configExecutor( cfg.getSection( ConfigTag.EXECUTOR ) );
+
         // Add the default routes to ensure basic operation
         server.addDefaultRoutes();
 
@@ -17,6 +17,7 @@ import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.util.logging.Level;
 
+import coyote.commons.network.MimeType;
 import coyote.loader.log.Log;
 
 
@@ -57,6 +58,31 @@ public class ClientHandler implements Runnable {
 
 
 
+  /**
+   * Refuse the connection with a 503 (Service Unavailable) response because
+   * the server is too busy to handle it.
+   */
+  public void reject() {
+    OutputStream outputStream = null;
+    try {
+      outputStream = clientSocket.getOutputStream();
+      final Response response = Response.createFixedLengthResponse( Status.SERVICE_UNAVAILABLE, MimeType.TEXT.getType(), "Server busy" );
+      response.addHeader( HTTP.HDR_RETRY_AFTER, "1" );
+      response.setKeepAlive( false );
+      response.send( outputStream );
+    } catch ( final Exception e ) {
+      Log.append( HTTPD.EVENT, "Could not send busy response to " + clientSocket.getInetAddress() + ": " + e.getMessage() );
+    }
+    finally {
+      HTTPD.safeClose( outputStream );
+      HTTPD.safeClose( inputStream );
+      HTTPD.safeClose( clientSocket );
+    }
+  }
+
+
+
+
   @Override
   public void run() {
     OutputStream outputStream = null;
@@ -34,6 +34,7 @@ import coyote.commons.network.http.auth.AuthProvider;
 import coyote.commons.network.http.auth.DefaultAuthProvider;
 import coyote.commons.security.OperationFrequency;
 import coyote.dataframe.DataField;
+import coyote.loader.ConfigTag;
 import coyote.loader.cfg.Config;
 import coyote.loader.log.Log;
 
@@ -108,6 +109,9 @@ public abstract class HTTPD {
 
   protected Executor asyncRunner;
 
+  /** The number of connections the OS may queue before they are accepted, 0 for its default */
+  private int backlog = 0;
+
   CacheManagerFactory cacheManagerFactory;
 
 
@@ -539,6 +543,96 @@ public abstract class HTTPD {
 
 
 
+  /**
+   * @return the number of connections the operating system may queue before
+   *         they are accepted, 0 for the default of the platform
+   */
+  public int getBacklog() {
+    return backlog;
+  }
+
+
+
+
+  /**
+   * Set the number of connections the operating system may queue before 
+   * they are accepted.
+   * 
+   * <p>This only takes effect when the server is started.</p>
+   * 
+   * @param size the length of the accept queue, 0 for the default of the 
+   *        platform
+   */
+  public void setBacklog( final int size ) {
+    backlog = ( size > 0 ) ? size : 0;
+  }
+
+
+
+
+  /**
+   * Configure how requests are executed.
+   * 
+   * <p>Requests are run on a bounded pool of threads. Connections arriving 
+   * when all the threads are busy wait in a queue and once that is full, 
+   * they are refused with a 503 (Service Unavailable) response.<pre>
+   * "Executor":{
+   *   "Threads": 64,
+   *   "Queue": 256,
+   *   "Backlog": 100,
+   *   "Virtual": false
+   * },</pre>
+   * "Threads" is the most requests handled at once, "Queue" the most 
+   * connections waiting for a thread and "Backlog" the most connections the 
+   * operating system queues before they are accepted. Setting "Virtual" to 
+   * true runs each request on a virtual thread where the runtime supports 
+   * them. A null configuration uses the defaults.
+   * 
+   * @param cfg The configuration to parse, may be null
+   */
+  public void configExecutor( final Config cfg ) {
+    int threads = PooledExecutor.DEFAULT_THREADS;
+    int queue = PooledExecutor.DEFAULT_QUEUE_LIMIT;
+    boolean virtual = false;
+
+    if ( cfg != null ) {
+      try {
+        if ( cfg.containsIgnoreCase( ConfigTag.THREADS ) ) {
+          threads = cfg.getInt( ConfigTag.THREADS );
+        }
+        if ( cfg.containsIgnoreCase( ConfigTag.QUEUE ) ) {
+          queue = cfg.getInt( ConfigTag.QUEUE );
+        }
+        if ( cfg.containsIgnoreCase( ConfigTag.BACKLOG ) ) {
+          setBacklog( cfg.getInt( ConfigTag.BACKLOG ) );
+        }
+        if ( cfg.containsIgnoreCase( ConfigTag.VIRTUAL ) ) {
+          virtual = cfg.getBoolean( ConfigTag.VIRTUAL );
+        }
+      } catch ( final NumberFormatException e ) {
+        Log.error( "Invalid executor configuration, using defaults - " + e.getMessage() );
+        threads = PooledExecutor.DEFAULT_THREADS;
+        queue = PooledExecutor.DEFAULT_QUEUE_LIMIT;
+      }
+    }
+
+    if ( threads < 1 || queue < 0 ) {
+      Log.error( "Executor requires at least one thread and a queue limit of zero or more, using defaults" );
+      threads = PooledExecutor.DEFAULT_THREADS;
+      queue = PooledExecutor.DEFAULT_QUEUE_LIMIT;
+    }
+
+    // let the threads of a pool we are replacing die off
+    if ( asyncRunner instanceof PooledExecutor ) {
+      ( (PooledExecutor)asyncRunner ).shutdown();
+    }
+
+    setAsyncRunner( new PooledExecutor( threads, queue, virtual ) );
+  }
+
+
+
+
   public void setServerSocketFactory( final ServerSocketFactory serverSocketFactory ) {
     this.serverSocketFactory = serverSocketFactory;
   }
@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2003 Stephan D. Cote' - All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under the 
+ * terms of the MIT License which accompanies this distribution, and is 
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote 
+ */
+package coyote.commons.network.http;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import coyote.i13n.StatBoard;
+import coyote.loader.log.Log;
+
+
+/**
+ * Threading strategy for HTTPD which runs requests on a bounded pool of 
+ * threads.
+ * 
+ * <p>At most {@code threads} connections are handled at once and at most 
+ * {@code queueLimit} more wait for a thread. Connections arriving when the 
+ * pool and its queue are full are shed with a 503 (Service Unavailable) 
+ * response so bursts of load cannot exhaust the threads of the process.</p>
+ * 
+ * <p>When the runtime supports virtual threads and they are requested, each 
+ * connection runs on its own virtual thread instead and {@code threads} plus
+ * {@code queueLimit} limits the number of connections handled at once.</p>
+ * 
+ * <p>If a StatBoard is set, the number of active, queued and rejected 
+ * connections are tracked in the counters named by {@link #ACTIVE}, 
+ * {@link #QUEUED} and {@link #REJECTED}.</p>
+ */
+public class PooledExecutor implements Executor {
+
+  /** Name of the counter tracking the connections being handled */
+  public static final String ACTIVE = "HTTPD.Connections.Active";
+
+  /** Name of the counter tracking the connections waiting for a thread */
+  public static final String QUEUED = "HTTPD.Connections.Queued";
+
+  /** Name of the counter tracking the connections shed because the pool was full */
+  public static final String REJECTED = "HTTPD.Connections.Rejected";
+
+  /** The default number of threads handling connections */
+  public static final int DEFAULT_THREADS = 64;
+
+  /** The default number of connections which may wait for a thread */
+  public static final int DEFAULT_QUEUE_LIMIT = 256;
+
+  /** How long idle pool threads are kept */
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  /** The requests currently queued or running */
+  private final Set<ClientHandler> running = Collections.newSetFromMap( new ConcurrentHashMap<ClientHandler, Boolean>() );
+
+  private final ExecutorService pool;
+
+  /** Limits connections when running on virtual threads, null otherwise */
+  private final Semaphore permits;
+
+  private final AtomicLong active = new AtomicLong();
+  private final AtomicLong queued = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+
+  private volatile StatBoard stats = null;
+
+
+
+
+  /**
+   * Create an executor with the default number of threads and queue limit.
+   */
+  public PooledExecutor() {
+    this( DEFAULT_THREADS, DEFAULT_QUEUE_LIMIT, false );
+  }
+
+
+
+
+  /**
+   * Create an executor.
+   * 
+   * @param threads the most connections handled at once, must be greater 
+   *        than zero
+   * @param queueLimit the most connections waiting for a thread, 0 to shed 
+   *        any connection which cannot be handled immediately
+   * @param virtual true to use virtual threads if the runtime supports them
+   */
+  public PooledExecutor( final int threads, final int queueLimit, final boolean virtual ) {
+    if ( threads < 1 ) {
+      throw new IllegalArgumentException( "Executor thread count must be greater than zero" );
+    }
+    if ( queueLimit < 0 ) {
+      throw new IllegalArgumentException( "Executor queue limit cannot be negative" );
+    }
+
+    final ExecutorService virtualPool = virtual ? createVirtualPool() : null;
+    if ( virtualPool != null ) {
+      pool = virtualPool;
+      permits = new Semaphore( threads + queueLimit );
+      Log.append( HTTPD.EVENT, "Handling up to " + ( threads + queueLimit ) + " connections on virtual threads" );
+    } else {
+      final BlockingQueue<Runnable> queue = ( queueLimit > 0 ) ? new ArrayBlockingQueue<Runnable>( queueLimit ) : new SynchronousQueue<Runnable>();
+      final ThreadPoolExecutor executor = new ThreadPoolExecutor( threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, queue, new WorkerFactory() );
+      executor.allowCoreThreadTimeOut( true );
+      pool = executor;
+      permits = null;
+      Log.append( HTTPD.EVENT, "Handling up to " + threads + " connections with " + queueLimit + " waiting" );
+    }
+  }
+
+
+
+
+  /**
+   * @return an executor running each task on a new virtual thread or null if
+   *         the runtime does not support virtual threads
+   */
+  private static ExecutorService createVirtualPool() {
+    try {
+      final Method factory = Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" );
+      return (ExecutorService)factory.invoke( null );
+    } catch ( final Exception e ) {
+      Log.append( HTTPD.EVENT, "Virtual threads are not available, using a thread pool" );
+      return null;
+    }
+  }
+
+
+
+
+  /**
+   * @param statboard the board tracking connection counts, may be null
+   */
+  public void setStatBoard( final StatBoard statboard ) {
+    stats = statboard;
+  }
+
+
+
+
+  /**
+   * @see coyote.commons.network.http.Executor#closeAll()
+   */
+  @Override
+  public void closeAll() {
+    // copy of the set for concurrency
+    for ( final ClientHandler clientHandler : new ArrayList<ClientHandler>( running ) ) {
+      clientHandler.close();
+    }
+  }
+
+
+
+
+  /**
+   * @see coyote.commons.network.http.Executor#closed(coyote.commons.network.http.ClientHandler)
+   */
+  @Override
+  public void closed( final ClientHandler clientHandler ) {
+    running.remove( clientHandler );
+  }
+
+
+
+
+  /**
+   * Run the handler on the pool or shed it with a 503 response if the pool 
+   * is full.
+   * 
+   * @see coyote.commons.network.http.Executor#exec(coyote.commons.network.http.ClientHandler)
+   */
+  @Override
+  public void exec( final ClientHandler clientHandler ) {
+    if ( permits != null && !permits.tryAcquire() ) {
+      reject( clientHandler );
+      return;
+    }
+
+    running.add( clientHandler );
+    count( QUEUED, queued, 1 );
+    try {
+      pool.execute( new Task( clientHandler ) );
+    } catch ( final RejectedExecutionException e ) {
+      running.remove( clientHandler );
+      count( QUEUED, queued, -1 );
+      if ( permits != null ) {
+        permits.release();
+      }
+      reject( clientHandler );
+    }
+  }
+
+
+
+
+  private void reject( final ClientHandler clientHandler ) {
+    count( REJECTED, rejected, 1 );
+    clientHandler.reject();
+  }
+
+
+
+
+  private void count( final String name, final AtomicLong counter, final int delta ) {
+    counter.addAndGet( delta );
+    final StatBoard board = stats;
+    if ( board != null ) {
+      if ( delta > 0 ) {
+        board.increase( name, delta );
+      } else {
+        board.decrease( name, -delta );
+      }
+    }
+  }
+
+
+
+
+  /**
+   * @return the number of connections currently being handled
+   */
+  public long getActiveCount() {
+    return active.get();
+  }
+
+
+
+
+  /**
+   * @return the number of connections waiting for a thread
+   */
+  public long getQueuedCount() {
+    return queued.get();
+  }
+
+
+
+
+  /**
+   * @return the number of connections shed because the pool was full
+   */
+  public long getRejectedCount() {
+    return rejected.get();
+  }
+
+
+
+
+  /**
+   * Stop the pool threads once their current connections are closed.
+   * 
+   * <p>The executor cannot be used after it is shut down.</p>
+   */
+  public void shutdown() {
+    pool.shutdown();
+  }
+
+
+
+
+  /**
+   * Runs a client handler, keeping the counters current.
+   */
+  private class Task implements Runnable {
+    private final ClientHandler handler;
+
+
+
+
+    Task( final ClientHandler handler ) {
+      this.handler = handler;
+    }
+
+
+
+
+    @Override
+    public void run() {
+      count( QUEUED, queued, -1 );
+      count( ACTIVE, active, 1 );
+      try {
+        handler.run();
+      }
+      finally {
+        count( ACTIVE, active, -1 );
+        if ( permits != null ) {
+          permits.release();
+        }
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Creates daemon threads named for the requests they handle.
+   */
+  private static class WorkerFactory implements ThreadFactory {
+    private final AtomicLong workerCount = new AtomicLong();
+
+
+
+
+    @Override
+    public Thread newThread( final Runnable runnable ) {
+      final Thread thread = new Thread( runnable, "HTTPD Worker(" + workerCount.incrementAndGet() + ")" );
+      thread.setDaemon( true );
+      return thread;
+    }
+  }
+
+}
@@ -51,7 +51,7 @@ public class ServerRunnable implements Runnable {
   public void run() {
     boolean secured;
     try {
-      httpd.myServerSocket.bind( httpd.hostname != null ? new InetSocketAddress( httpd.hostname, httpd.myPort ) : new InetSocketAddress( httpd.myPort ) );
+      httpd.myServerSocket.bind( httpd.hostname != null ? new InetSocketAddress( httpd.hostname, httpd.myPort ) : new InetSocketAddress( httpd.myPort ), httpd.getBacklog() );
       hasBinded = true;
     } catch ( final IOException e ) {
       bindException = e;
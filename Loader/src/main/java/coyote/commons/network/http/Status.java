@@ -33,9 +33,12 @@ public enum Status implements IStatus {
   NOT_ACCEPTABLE( 406, "Not Acceptable"), 
   REQUEST_TIMEOUT( 408, "Request Timeout"), 
   CONFLICT( 409, "Conflict"), 
+  PAYLOAD_TOO_LARGE( 413, "Payload Too Large"), 
   RANGE_NOT_SATISFIABLE( 416, "Requested Range Not Satisfiable"), 
+  TOO_MANY_REQUESTS( 429, "Too Many Requests"), 
   INTERNAL_ERROR( 500, "Internal Server Error"), 
   NOT_IMPLEMENTED( 501, "Not Implemented"), 
+  SERVICE_UNAVAILABLE( 503, "Service Unavailable"), 
   UNSUPPORTED_HTTP_VERSION( 505, "HTTP Version Not Supported");
 
   private final int requestStatus;
@@ -2,8 +2,10 @@ package coyote.commons.network.http.responder;
 
 import java.util.List;
 
+import coyote.commons.network.http.Executor;
 import coyote.commons.network.http.HTTPD;
 import coyote.commons.network.http.IHTTPSession;
+import coyote.commons.network.http.PooledExecutor;
 import coyote.commons.network.http.Response;
 import coyote.commons.network.http.SecurityResponseException;
 import coyote.i13n.ArmTransaction;
@@ -81,6 +83,26 @@ public class HTTPDRouter extends HTTPD {
   public void setStatBoard( StatBoard instance ) {
     if ( instance != null ) {
       stats = instance;
+      if ( asyncRunner instanceof PooledExecutor ) {
+        ( (PooledExecutor)asyncRunner ).setStatBoard( stats );
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Track connection counts on our statistics board when the executor is 
+   * able to.
+   * 
+   * @see coyote.commons.network.http.HTTPD#setAsyncRunner(coyote.commons.network.http.Executor)
+   */
+  @Override
+  public void setAsyncRunner( final Executor runner ) {
+    super.setAsyncRunner( runner );
+    if ( runner instanceof PooledExecutor ) {
+      ( (PooledExecutor)runner ).setStatBoard( stats );
     }
   }
 
@@ -13,7 +13,12 @@ package coyote.commons.template;
 
 import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import coyote.commons.StringParser;
 import coyote.commons.StringUtil;
@@ -56,6 +61,12 @@ import coyote.commons.StringUtil;
  * allows templates to call into generic, sharable facilities such as Data
  * Access Objects (DAO), data repositories, and any other specialized object
  * that is designed to present data in a string format.</p>
+ * 
+ * <p>The template text is parsed once into a list of literal text and tag 
+ * segments which is then rendered each time the template is converted to a 
+ * string. The static {@code resolve} and {@code preProcess} methods keep the 
+ * parsed form of the text they are given so templates used repeatedly (e.g. 
+ * configuration values resolved for each frame) are not parsed again.</p>
  */
 public class Template extends StringParser {
   private static SymbolTable symbols = new SymbolTable();
@@ -71,6 +82,22 @@ public class Template extends StringParser {
   private static final char VAR = '$';
   private static final char PIPE = '|';
   private static final String VAR_PREFIX = String.valueOf( VAR );
+  private static final Segment[] NO_SEGMENTS = new Segment[0];
+
+  /** The most parsed templates kept before the cache is cleared */
+  private static final int MAX_COMPILED = 1024;
+
+  /** Templates already parsed by the static utility methods keyed by text */
+  private static final Map<String, Segment[]> compiled = new ConcurrentHashMap<String, Segment[]>();
+
+  /** Render buffer for each thread, null while it is in use */
+  private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>();
+
+  /** Largest render buffer kept for reuse */
+  private static final int MAX_BUFFER = 8192;
+
+  private final String text;
+  private volatile Segment[] segments = null;
 
 
 
@@ -82,6 +109,7 @@ public class Template extends StringParser {
    */
   public Template( String string ) {
     super( string );
+    text = string;
   }
 
 
@@ -95,6 +123,7 @@ public class Template extends StringParser {
    */
   public Template( String string, SymbolTable symbols ) {
     super( string );
+    text = string;
 
     Template.symbols = symbols;
   }
@@ -161,172 +190,8 @@ public class Template extends StringParser {
    * @return a string representing the data behind the given tag.
    */
   public static String resolve( String tag, SymbolTable symbols, Hashtable cache, boolean preprocess ) {
-    StringBuffer retval = new StringBuffer();
-
-    StringParser parser = new StringParser( tag );
-
-    try {
-      while ( !parser.eof() ) {
-        String token = parser.readToken();
-
-        if ( ( token == null ) || ( token.length() < 1 ) ) {
-          break;
-        }
-
-        if ( token.startsWith( VAR_PREFIX ) ) {
-          // if the token contains a vertical pipe character, split the token into the variable key and the format string.
-          int boundry = token.indexOf( PIPE );
-          if ( boundry > 0 ) {
-            String key = token.substring( 1, boundry );
-            String format = token.substring( boundry + 1 );
-            if ( preprocess ) {
-              if ( symbols.containsKey( key ) ) {
-                retval.append( symbols.getString( key, format ) );
-              } else {
-                retval.append( OPEN );
-                retval.append( VAR );
-                retval.append( key );
-                retval.append( PIPE );
-                retval.append( format );
-                retval.append( CLOSE );
-              }
-            } else {
-              retval.append( symbols.getString( key, format ) );
-            }
-          } else {
-            if ( preprocess ) {
-              String key = token.substring( 1 );
-              if ( symbols.containsKey( key ) ) {
-                retval.append( symbols.getString( key ) );
-              } else if ( symbols.containsLiteral( key ) ) {
-                retval.append( symbols.getString( key ) );
-              } else {
-                retval.append( OPEN );
-                retval.append( VAR );
-                retval.append( key );
-                retval.append( CLOSE );
-              }
-            } else {
-              retval.append( symbols.getString( token.substring( 1 ) ) );
-            }
-          }
-        } else {
-          // Must be a class; use the entire tag when parsing
-
-          // the last dotted token is always assumed to be a method name
-          int indx = tag.lastIndexOf( DOT );
-          if ( indx != -1 ) {
-            // we have an object key and a method
-            String objectKey = tag.substring( 0, indx );
-            String methodToken = tag.substring( indx + 1 );
-            String methodName = null;
-            String[] arguments = EMPTY_ARGS;
-
-            // get the object by the key
-            Object obj = Template.get( objectKey );
-
-            if ( obj != null ) {
-              // parse out the method to call - It should be within parentheses
-              indx = methodToken.indexOf( OP );
-              if ( indx != -1 ) {
-                methodName = methodToken.substring( 0, indx );
-                String args = methodToken.substring( indx + 1 );
-
-                // parse to the closing parentheses
-                indx = args.indexOf( CP );
-                if ( indx != -1 ) {
-                  args = args.substring( 0, indx );
-                }
-
-                if ( StringUtil.isNotBlank( args ) ) {
-                  // split the argument portion into separate strings by commas
-                  // ignoring any spaces
-                  arguments = args.split( ",\\s*" );
-                }
-              }
-
-              // if the arguments start with a $, resolve them to their values
-              for ( int x = 0; x < arguments.length; x++ ) {
-                if ( StringUtil.isNotBlank( arguments[x] ) && arguments[x].charAt( 0 ) == VAR ) {
-                  arguments[x] = symbols.getString( arguments[x].substring( 1 ) );
-                }
-
-                // Handle quoted values especially empty string arguments: ""
-                if ( arguments[x].length() > 1 && arguments[x].indexOf( '"' ) > -1 ) {
-                  String qval = StringUtil.getQuotedValue( arguments[x] );
-                  if ( qval != null ) {
-                    arguments[x] = qval;
-                  }
-                }
-
-              }
-              if ( StringUtil.isNotBlank( methodName ) ) {
-                // reflect into the object to see if there is the named method 
-                // with the correct number of string arguments
-
-                Method method = null;
-                Object returned = null;
-
-                // setup the argument signature
-                Class<?>[] cArg = new Class[arguments.length];
-                for ( int x = 0; x < arguments.length; x++ ) {
-                  cArg[x] = arguments[x].getClass();;
-                }
-
-                // find the method with the argument signature
-                try {
-                  method = obj.getClass().getMethod( methodName, cArg );
-                } catch ( Exception e1 ) {
-                  // silently ignore e1.printStackTrace();
-                }
-
-                // if we found a method matching the signature
-                if ( method != null ) {
-                  // invoke the method
-                  try {
-                    returned = method.invoke( obj, (Object[])arguments );
-
-                    // If we received a return value, append it
-                    if ( returned != null ) {
-                      retval.append( returned.toString() );
-                    }
-                  } catch ( Exception e ) {
-                    System.out.println( "Template Class Error:" + e.getClass().getSimpleName() + ":" + e.getMessage() );
-                    //e.printStackTrace();
-                  }
-
-                } // if we found a method with the signature
-
-              } // if we have a method name to call
-
-            } else {
-              if ( preprocess ) {
-                retval.append( OPEN );
-                retval.append( token );
-                retval.append( CLOSE );
-              }
-            } // if object with the name is found
-
-          } else {
-            // we just have an object
-
-            // get the object by the key
-            Object obj = Template.get( token );
-
-            // If we have an object with that name call its toString method
-            if ( obj != null ) {
-              retval.append( obj.toString() );
-            }
-
-          } // object key 
-
-        } // variable or object token?
-
-      } // while parser not EOF
-    } catch ( Exception ex ) {
-
-    }
-
+    StringBuilder retval = new StringBuilder();
+    new Tag( tag ).render( retval, symbols, preprocess );
     return retval.toString();
   }
 
@@ -373,55 +238,159 @@ public class Template extends StringParser {
       if ( symbols == null ) {
         symbols = new SymbolTable();
       }
+      return render( template.getSegments(), symbols, preprocess );
+    }
 
-      StringBuffer buffer = new StringBuffer();
+    return null;
+  }
 
-      try {
-        // Keep looping
-        while ( !template.eof() ) {
-          String userText = template.readToPattern( OPEN );
 
-          if ( userText != null ) {
-            buffer.append( userText );
-          }
 
-          // if we are at the End Of the File, then we are done
-          if ( template.eof() ) {
-            break;
-          } else {
-            // Skip past the opening tag delimiter
-            template.skip( OPEN.length() );
 
-            // Start reading the contents of the tag
-            String tag = template.readToPattern( CLOSE );
+  /**
+   * @return the parsed segments of this template, parsing the text the first 
+   *         time this is called.
+   * 
+   * @throws TemplateException if the text could not be parsed
+   */
+  private Segment[] getSegments() throws TemplateException {
+    Segment[] retval = segments;
+    if ( retval == null ) {
+      retval = parse( text );
+      segments = retval;
+    }
+    return retval;
+  }
 
-            // If we are at EOF then the read terminated before the closing tag
-            // was encountered. This means the template is not complete.
-            if ( template.eof() ) {
-              buffer.append( "TEMPLATE ERROR: reached EOF before finding closing delimiter '" + CLOSE + "' at " + template.getPosition() );
 
-              return buffer.toString();
-            }
 
-            // read past the closing delimiter
-            template.skip( CLOSE.length() );
 
-            // OK, now perform our replacement magik
-            if ( ( tag != null ) && ( tag.length() > 0 ) ) {
-              // resolve the tag using the given symbol table and class cache
-              buffer.append( resolve( tag, symbols, cache, preprocess ) );
-            }
+  /**
+   * Return the parsed form of the given text, parsing it only if it has not 
+   * been parsed before.
+   * 
+   * @param text the template text
+   * 
+   * @return the segments of the template
+   * 
+   * @throws TemplateException if the text could not be parsed
+   */
+  private static Segment[] compile( String text ) throws TemplateException {
+    Segment[] retval = compiled.get( text );
+    if ( retval == null ) {
+      retval = parse( text );
+      if ( compiled.size() >= MAX_COMPILED ) {
+        // the text is probably being generated, don't hoard it
+        compiled.clear();
+      }
+      compiled.put( text, retval );
+    }
+    return retval;
+  }
+
+
+
+
+  /**
+   * Break the template text into literal text and tag segments.
+   * 
+   * @param text the template text
+   * 
+   * @return the segments of the template in the order they appear
+   * 
+   * @throws TemplateException if the text could not be read
+   */
+  private static Segment[] parse( String text ) throws TemplateException {
+    if ( text == null || text.length() == 0 ) {
+      return NO_SEGMENTS;
+    }
+
+    List<Segment> retval = new ArrayList<Segment>();
+    StringParser parser = new StringParser( text );
+
+    try {
+      // Keep looping
+      while ( !parser.eof() ) {
+        String userText = parser.readToPattern( OPEN );
+
+        if ( userText != null ) {
+          retval.add( new Text( userText ) );
+        }
 
+        // if we are at the End Of the File, then we are done
+        if ( parser.eof() ) {
+          break;
+        } else {
+          // Skip past the opening tag delimiter
+          parser.skip( OPEN.length() );
+
+          // Start reading the contents of the tag
+          String tag = parser.readToPattern( CLOSE );
+
+          // If we are at EOF then the read terminated before the closing tag
+          // was encountered. This means the template is not complete.
+          if ( parser.eof() ) {
+            retval.add( new Text( "TEMPLATE ERROR: reached EOF before finding closing delimiter '" + CLOSE + "' at " + parser.getPosition() ) );
+            break;
           }
+
+          // read past the closing delimiter
+          parser.skip( CLOSE.length() );
+
+          if ( ( tag != null ) && ( tag.length() > 0 ) ) {
+            retval.add( new Tag( tag ) );
+          }
+
         }
-      } catch ( IOException ioe ) {
-        throw new TemplateException( "IOE", ioe );
       }
+    } catch ( IOException ioe ) {
+      throw new TemplateException( "IOE", ioe );
+    }
 
-      return buffer.toString();
+    return retval.toArray( new Segment[retval.size()] );
+  }
+
+
+
+
+  /**
+   * Render the segments of a template into a string.
+   * 
+   * <p>Each thread reuses its own buffer unless it is already rendering a 
+   * template, as happens when a method called from a tag resolves another 
+   * template.</p>
+   * 
+   * @param segments the parsed template
+   * @param symbols the SymbolTable to us when resolving tokens
+   * @param preprocess true to leave unresolved variables in place
+   * 
+   * @return the resolved template
+   */
+  private static String render( Segment[] segments, SymbolTable symbols, boolean preprocess ) {
+    if ( segments.length == 0 ) {
+      return "";
+    } else if ( segments.length == 1 && segments[0] instanceof Text ) {
+      return ( (Text)segments[0] ).text;
     }
 
-    return null;
+    StringBuilder buffer = BUFFER.get();
+    if ( buffer == null ) {
+      buffer = new StringBuilder();
+    } else {
+      BUFFER.set( null );
+      buffer.setLength( 0 );
+    }
+    try {
+      for ( int x = 0; x < segments.length; x++ ) {
+        segments[x].render( buffer, symbols, preprocess );
+      }
+      return buffer.toString();
+    }
+    finally {
+      if ( buffer.capacity() <= MAX_BUFFER ) {
+        BUFFER.set( buffer );
+      }
+    }
   }
 
 
@@ -495,7 +464,14 @@ public class Template extends StringParser {
    */
   public static String resolve( String text, SymbolTable symbols ) {
     if ( symbols != null && text != null ) {
-      return new Template( text, symbols ).toString();
+      try {
+        return render( compile( text ), symbols, false );
+      } catch ( TemplateException te ) {
+        System.err.println( te.getMessage() );
+        System.err.println( te.getContext() );
+
+        throw new IllegalArgumentException( "Parser error" );
+      }
     } else {
       return text;
     }
@@ -521,7 +497,14 @@ public class Template extends StringParser {
    */
   public static String preProcess( String text, SymbolTable symbols ) {
     if ( symbols != null && text != null ) {
-      return new Template( text, symbols ).preProcess();
+      try {
+        return render( compile( text ), symbols, true );
+      } catch ( TemplateException te ) {
+        System.err.println( te.getMessage() );
+        System.err.println( te.getContext() );
+
+        throw new IllegalArgumentException( "Parser error" );
+      }
     } else {
       return text;
     }
@@ -531,22 +514,361 @@ public class Template extends StringParser {
 
 
   /**
-   * Resolve this template with the given symbol table leaving the unresolved 
-   * variables in the template.
+   * A part of a parsed template.
+   */
+  private interface Segment {
+
+    /**
+     * @param buffer where the result is appended
+     * @param symbols the symbols used to resolve variables
+     * @param preprocess true to leave unresolved variables in place
+     */
+    void render( StringBuilder buffer, SymbolTable symbols, boolean preprocess );
+  }
+
+
+
+
+  /**
+   * Text outside of any tag which is copied as-is.
+   */
+  private static final class Text implements Segment {
+    final String text;
+
+
+
+
+    Text( String text ) {
+      this.text = text;
+    }
+
+
+
+
+    @Override
+    public void render( StringBuilder buffer, SymbolTable symbols, boolean preprocess ) {
+      buffer.append( text );
+    }
+  }
+
+
+
+
+  /**
+   * The contents of a tag split into its whitespace separated tokens.
    * 
-   * @return the resulting string with only the variables existing in the 
-   *         given table resolved and the rest left unchanged.
+   * <p>Any error while resolving the tag stops the resolution of its 
+   * remaining tokens, leaving what was resolved so far.</p>
    */
-  private String preProcess() {
-    try {
-      // call our static method with our instance attributes
-      return toString( this, symbols, classCache, true );
-    } catch ( TemplateException te ) {
-      System.err.println( te.getMessage() );
-      System.err.println( te.getContext() );
+  private static final class Tag implements Segment {
+    private final Segment[] tokens;
 
-      throw new IllegalArgumentException( "Parser error" );
+
+
+
+    Tag( String tag ) {
+      List<Segment> list = new ArrayList<Segment>();
+      Call call = null;
+      StringParser parser = new StringParser( tag );
+      try {
+        while ( !parser.eof() ) {
+          String token = parser.readToken();
+          if ( ( token == null ) || ( token.length() < 1 ) ) {
+            break;
+          }
+
+          if ( token.startsWith( VAR_PREFIX ) ) {
+            list.add( new Variable( token ) );
+          } else if ( tag.lastIndexOf( DOT ) != -1 ) {
+            // Must be a class; the entire tag is the call
+            if ( call == null ) {
+              call = new Call( tag );
+            }
+            list.add( new CallToken( call, token ) );
+          } else {
+            list.add( new Reference( token ) );
+          }
+        }
+      } catch ( Exception ex ) {
+        // no more tokens
+      }
+      tokens = list.toArray( new Segment[list.size()] );
+    }
+
+
+
+
+    @Override
+    public void render( StringBuilder buffer, SymbolTable symbols, boolean preprocess ) {
+      try {
+        for ( int x = 0; x < tokens.length; x++ ) {
+          tokens[x].render( buffer, symbols, preprocess );
+        }
+      } catch ( Exception ex ) {
+
+      }
+    }
+  }
+
+
+
+
+  /**
+   * A symbol table lookup, optionally with a format: {@code $key|format}.
+   */
+  private static final class Variable implements Segment {
+    private final String key;
+    private final String format;
+
+
+
+
+    Variable( String token ) {
+      // if the token contains a vertical pipe character, split the token into the variable key and the format string.
+      int boundry = token.indexOf( PIPE );
+      if ( boundry > 0 ) {
+        key = token.substring( 1, boundry );
+        format = token.substring( boundry + 1 );
+      } else {
+        key = token.substring( 1 );
+        format = null;
+      }
+    }
+
+
+
+
+    @Override
+    public void render( StringBuilder buffer, SymbolTable symbols, boolean preprocess ) {
+      if ( format != null ) {
+        if ( preprocess && !symbols.containsKey( key ) ) {
+          buffer.append( OPEN );
+          buffer.append( VAR );
+          buffer.append( key );
+          buffer.append( PIPE );
+          buffer.append( format );
+          buffer.append( CLOSE );
+        } else {
+          buffer.append( symbols.getString( key, format ) );
+        }
+      } else {
+        if ( preprocess && !symbols.containsKey( key ) && !symbols.containsLiteral( key ) ) {
+          buffer.append( OPEN );
+          buffer.append( VAR );
+          buffer.append( key );
+          buffer.append( CLOSE );
+        } else {
+          buffer.append( symbols.getString( key ) );
+        }
+      }
+    }
+  }
+
+
+
+
+  /**
+   * An object in the static cache whose {@code toString()} is used.
+   */
+  private static final class Reference implements Segment {
+    private final String name;
+
+
+
+
+    Reference( String name ) {
+      this.name = name;
+    }
+
+
+
+
+    @Override
+    public void render( StringBuilder buffer, SymbolTable symbols, boolean preprocess ) {
+      // If we have an object with that name call its toString method
+      Object obj = Template.get( name );
+      if ( obj != null ) {
+        buffer.append( obj.toString() );
+      }
+    }
+  }
+
+
+
+
+  /**
+   * A token of a tag which calls a method; every such token in the tag makes 
+   * the same call.
+   */
+  private static final class CallToken implements Segment {
+    private final Call call;
+    private final String token;
+
+
+
+
+    CallToken( Call call, String token ) {
+      this.call = call;
+      this.token = token;
+    }
+
+
+
+
+    @Override
+    public void render( StringBuilder buffer, SymbolTable symbols, boolean preprocess ) {
+      if ( !call.invoke( buffer, symbols ) && preprocess ) {
+        buffer.append( OPEN );
+        buffer.append( token );
+        buffer.append( CLOSE );
+      }
+    }
+  }
+
+
+
+
+  /**
+   * A method call on an object in the static cache: 
+   * {@code Object.method(arg, $var)}.
+   * 
+   * <p>The last dotted token is always assumed to be the method name. The 
+   * method found for the class of the object is remembered so reflection is 
+   * only used when the object changes class.</p>
+   */
+  private static final class Call {
+    private final String objectKey;
+    private final String methodName;
+    private final String[] arguments;
+    private volatile Binding binding = null;
+
+
+
+
+    Call( String tag ) {
+      int indx = tag.lastIndexOf( DOT );
+      objectKey = tag.substring( 0, indx );
+      String methodToken = tag.substring( indx + 1 );
+      String name = null;
+      String[] args = EMPTY_ARGS;
+
+      // parse out the method to call - It should be within parentheses
+      indx = methodToken.indexOf( OP );
+      if ( indx != -1 ) {
+        name = methodToken.substring( 0, indx );
+        String argtext = methodToken.substring( indx + 1 );
+
+        // parse to the closing parentheses
+        indx = argtext.indexOf( CP );
+        if ( indx != -1 ) {
+          argtext = argtext.substring( 0, indx );
+        }
+
+        if ( StringUtil.isNotBlank( argtext ) ) {
+          // split the argument portion into separate strings by commas
+          // ignoring any spaces
+          args = argtext.split( ",\\s*" );
+        }
+      }
+      methodName = name;
+      arguments = args;
+    }
+
+
+
+
+    /**
+     * Call the method on the named object.
+     * 
+     * @param buffer where the returned value is appended
+     * @param symbols the symbols used to resolve variable arguments
+     * 
+     * @return false if the object was not found, true otherwise
+     */
+    boolean invoke( StringBuilder buffer, SymbolTable symbols ) {
+      // get the object by the key
+      Object obj = Template.get( objectKey );
+      if ( obj == null ) {
+        return false;
+      }
+
+      String[] args = ( arguments.length > 0 ) ? Arrays.copyOf( arguments, arguments.length ) : arguments;
+
+      // if the arguments start with a $, resolve them to their values
+      for ( int x = 0; x < args.length; x++ ) {
+        if ( StringUtil.isNotBlank( args[x] ) && args[x].charAt( 0 ) == VAR ) {
+          args[x] = symbols.getString( args[x].substring( 1 ) );
+        }
+
+        // Handle quoted values especially empty string arguments: ""
+        if ( args[x].length() > 1 && args[x].indexOf( '"' ) > -1 ) {
+          String qval = StringUtil.getQuotedValue( args[x] );
+          if ( qval != null ) {
+            args[x] = qval;
+          }
+        }
+      }
+
+      if ( StringUtil.isNotBlank( methodName ) ) {
+        // find the method with the correct number of string arguments
+        Method mthd = getMethod( obj.getClass(), args.length );
+
+        // if we found a method matching the signature
+        if ( mthd != null ) {
+          try {
+            Object returned = mthd.invoke( obj, (Object[])args );
+
+            // If we received a return value, append it
+            if ( returned != null ) {
+              buffer.append( returned.toString() );
+            }
+          } catch ( Exception e ) {
+            System.out.println( "Template Class Error:" + e.getClass().getSimpleName() + ":" + e.getMessage() );
+          }
+        }
+      }
+      return true;
+    }
+
+
+
+
+    private Method getMethod( Class<?> type, int count ) {
+      Binding retval = binding;
+      if ( retval == null || retval.type != type ) {
+        // setup the argument signature
+        Class<?>[] cArg = new Class[count];
+        Arrays.fill( cArg, String.class );
+        Method mthd = null;
+        try {
+          mthd = type.getMethod( methodName, cArg );
+        } catch ( Exception e1 ) {
+          // silently ignore
+        }
+        retval = new Binding( type, mthd );
+        binding = retval;
+      }
+      return retval.method;
+    }
+  }
+
+
+
+
+  /**
+   * The method found for a class, null if it has no such method.
+   */
+  private static final class Binding {
+    final Class<?> type;
+    final Method method;
+
+
+
+
+    Binding( Class<?> type, Method method ) {
+      this.type = type;
+      this.method = method;
     }
   }
 
-}
\ No newline at end of file
+}
@@ -37,6 +37,7 @@ import coyote.loader.log.Log;
 import coyote.loader.log.LogMsg;
 import coyote.loader.log.LogMsg.BundleBaseName;
 import coyote.loader.log.Logger;
+import coyote.loader.log.OverflowPolicy;
 import coyote.loader.thread.ScheduledJob;
 import coyote.loader.thread.Scheduler;
 import coyote.loader.thread.ThreadJob;
@@ -386,6 +387,23 @@ public abstract class AbstractLoader extends ThreadJob implements Loader, Runnab
 
       } // for each logger 
 
+      // the section may ask for events to be written on a separate thread
+      if ( StringUtil.isNotBlank( cfg.getString( ConfigTag.ASYNC ) ) && cfg.getBoolean( ConfigTag.ASYNC ) ) {
+        int capacity = 0;
+        if ( StringUtil.isNotBlank( cfg.getString( ConfigTag.CAPACITY ) ) ) {
+          try {
+            capacity = cfg.getInt( ConfigTag.CAPACITY );
+          } catch ( NumberFormatException e ) {
+            System.err.println( LogMsg.createMsg( MSG, "Loader.Invalid asynchronous logging capacity '{}'", cfg.getString( ConfigTag.CAPACITY ) ) );
+          }
+        }
+        OverflowPolicy policy = OverflowPolicy.getPolicyByName( cfg.getString( ConfigTag.OVERFLOW ) );
+        if ( policy == null && StringUtil.isNotBlank( cfg.getString( ConfigTag.OVERFLOW ) ) ) {
+          System.err.println( LogMsg.createMsg( MSG, "Loader.Unknown logging overflow policy '{}', blocking instead", cfg.getString( ConfigTag.OVERFLOW ) ) );
+        }
+        Log.startAsync( capacity, policy );
+      }
+
     } // for each logger section
 
     Log.debug( LogMsg.createMsg( MSG, "Loader.logging_initiated", new Date() ) );
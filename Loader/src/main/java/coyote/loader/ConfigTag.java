@@ -35,9 +35,33 @@ public class ConfigTag {
   /** Name ({@value}) of the categories of events a logger should log. */
   public static final String CATEGORIES = "categories";
 
+  /** Name ({@value}) of the HTTP server request executor section. */
+  public static final String EXECUTOR = "Executor";
+
+  /** Name ({@value}) of the number of threads handling requests. */
+  public static final String THREADS = "Threads";
+
+  /** Name ({@value}) of the number of requests which may wait for a thread. */
+  public static final String QUEUE = "Queue";
+
+  /** Name ({@value}) of the number of connections the OS queues before they are accepted. */
+  public static final String BACKLOG = "Backlog";
+
+  /** Name ({@value}) of the flag requesting virtual threads where supported. */
+  public static final String VIRTUAL = "Virtual";
+
   /** Name ({@value}) of the tag specifying the logging target. */
   public static final String TARGET = "target";
 
+  /** Name ({@value}) of the Logging attribute delivering events on a separate thread. */
+  public static final String ASYNC = "Async";
+
+  /** Name ({@value}) of the number of events which may wait for asynchronous delivery. */
+  public static final String CAPACITY = "Capacity";
+
+  /** Name ({@value}) of the policy for events logged when the asynchronous queue is full. */
+  public static final String OVERFLOW = "Overflow";
+
   /** Name ({@value}) of the configuration attribute specifying a class. */
   public static final String CLASS = "Class";
 
@@ -341,6 +341,18 @@ public abstract class AbstractLogger implements Logger {
 
 
 
+  /**
+   * Write out any buffered events.
+   * 
+   * <p>Loggers writing to buffered output skip flushing after each event when
+   * events are delivered asynchronously; this is called after each batch. 
+   * This implementation does nothing.</p>
+   */
+  public void flush() {}
+
+
+
+
   /**
    * If enabled, log an event of the specified category.
    *
@@ -100,7 +100,9 @@ public class ConsoleAppender extends AbstractLogger {
   public void append( final String category, final Object event, final Throwable cause ) {
     try {
       log_writer.write( formatter.format( event, category, cause ) );
-      log_writer.flush();
+      if ( !LogKernel.isBatching() ) {
+        log_writer.flush();
+      }
     } catch ( final IOException ioe ) {
       // normal during shutdown sequences - but what about other times?
       // maybe we should consider refactoring this
@@ -112,6 +114,23 @@ public class ConsoleAppender extends AbstractLogger {
 
 
 
+  /**
+   * @see coyote.loader.log.AbstractLogger#flush()
+   */
+  @Override
+  public void flush() {
+    if ( log_writer != null ) {
+      try {
+        log_writer.flush();
+      } catch ( final IOException ignore ) {
+        // normal during shutdown sequences
+      }
+    }
+  }
+
+
+
+
   /**
    * @return  the writer.
    */
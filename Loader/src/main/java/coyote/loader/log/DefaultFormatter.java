@@ -69,7 +69,9 @@ public class DefaultFormatter implements Formatter {
    * @return a string representing the line to place in the log
    */
   public String format( final Object event, final String category, final Throwable cause ) {
-    final long now = System.currentTimeMillis();
+    // events delivered asynchronously carry the details of where they were logged
+    final LogDispatcher.Event dispatched = LogKernel.getDispatchedEvent();
+    final long now = ( dispatched != null ) ? dispatched.time : System.currentTimeMillis();
 
     if ( lastevent == 0 ) {
       lastevent = now;
@@ -79,20 +81,24 @@ public class DefaultFormatter implements Formatter {
 
     buffer.append( DefaultFormatter.DATE_FORMATTER.format( new Date( now ) ) );
     buffer.append( " | " );
-    buffer.append( Thread.currentThread().getName() );
+    buffer.append( ( dispatched != null ) ? dispatched.thread : Thread.currentThread().getName() );
     buffer.append( " | " );
     buffer.append( category );
     buffer.append( " | " );
-    buffer.append( Log.getInterval() );
+    buffer.append( now - LogKernel.started );
     buffer.append( ":" );
     buffer.append( ( now - lastevent ) );
     buffer.append( " | " );
 
     // The trace category get additional location information
     if ( Log.TRACE.equals( category ) || Log.DEBUG.equals( category ) ) {
-      final StackTraceElement[] stack = new Exception().fillInStackTrace().getStackTrace();
-
-      final StackTraceElement elem = stack[( stack.length <= stackDepth ) ? stack.length - 1 : stackDepth];
+      final StackTraceElement elem;
+      if ( dispatched != null && dispatched.location != null ) {
+        elem = dispatched.location;
+      } else {
+        final StackTraceElement[] stack = new Exception().fillInStackTrace().getStackTrace();
+        elem = stack[( stack.length <= stackDepth ) ? stack.length - 1 : stackDepth];
+      }
 
       buffer.append( ExceptionUtil.getAbbreviatedClassname( elem.getClassName() ) );
       buffer.append( "." );
@@ -122,6 +122,37 @@ public class FileAppender extends AbstractLogger {
    * @param cause The exception that caused the log entry. Can be null.
    */
   public void append( final String category, final Object event, final Throwable cause ) {
+    // when delivering a batch, the target is checked once when it is flushed
+    if ( !LogKernel.isBatching() ) {
+      checkTarget();
+    }
+
+    if ( log_writer == null ) {
+      return;
+    }
+
+    try {
+      synchronized( formatter ) {
+        log_writer.write( formatter.format( event, category, cause ) );
+        if ( !LogKernel.isBatching() ) {
+          log_writer.flush();
+        }
+      }
+    } catch ( final IOException ioe ) {
+      // normal during shutdown sequences - but what about other times?
+      // maybe we should consider refactoring this
+    } catch ( final Exception e ) {
+      System.err.println( this.getClass().getName() + " formatting error: " + e + ":" + e.getMessage() + StringUtil.LINE_FEED + ExceptionUtil.stackTrace( e ) );
+    }
+  }
+
+
+
+
+  /**
+   * Recreate the log file if it has been removed since it was opened.
+   */
+  private void checkTarget() {
     if ( !targetFile.exists() ) {
       try {
         log_writer = new OutputStreamWriter( new FileOutputStream( targetFile.toString(), append ) );
@@ -142,21 +173,25 @@ public class FileAppender extends AbstractLogger {
         log_writer = null;
       }
     }
+  }
 
-    if ( log_writer == null ) {
-      return;
-    }
 
-    try {
-      synchronized( formatter ) {
-        log_writer.write( formatter.format( event, category, cause ) );
+
+
+  /**
+   * @see coyote.loader.log.AbstractLogger#flush()
+   */
+  @Override
+  public void flush() {
+    if ( log_writer != null ) {
+      try {
         log_writer.flush();
+      } catch ( final IOException ignore ) {
+        // normal during shutdown sequences
       }
-    } catch ( final IOException ioe ) {
-      // normal during shutdown sequences - but what about other times?
-      // maybe we should consider refactoring this
-    } catch ( final Exception e ) {
-      System.err.println( this.getClass().getName() + " formatting error: " + e + ":" + e.getMessage() + StringUtil.LINE_FEED + ExceptionUtil.stackTrace( e ) );
+    }
+    if ( targetFile != null ) {
+      checkTarget();
     }
   }
 
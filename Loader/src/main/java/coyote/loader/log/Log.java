@@ -158,7 +158,7 @@ public final class Log {
    * @param event The event to log.
    * @param cause The cause of the event.
    */
-  public synchronized static void append( final long code, final Object event, final Throwable cause ) {
+  public static void append( final long code, final Object event, final Throwable cause ) {
     LogKernel.append( code, event, cause );
   }
 
@@ -184,7 +184,7 @@ public final class Log {
    * @param category The category of the desired log operation 
    * @param event The event to log.
    */
-  public synchronized static void append( final String category, final Object event ) {
+  public static void append( final String category, final Object event ) {
     LogKernel.append( category, event, null );
   }
 
@@ -199,8 +199,8 @@ public final class Log {
    * @param event The event to log.
    * @param cause The exception that caused the log entry. Can be null.
    */
-  public synchronized static void append( final String category, final Object event, final Throwable cause ) {
-    LogKernel.append( Log.getCode( category ), event, null );
+  public static void append( final String category, final Object event, final Throwable cause ) {
+    LogKernel.append( Log.getCode( category ), event, cause );
   }
 
 
@@ -654,6 +654,69 @@ public final class Log {
 
 
 
+  /**
+   * Start delivering events to the loggers asynchronously.
+   * 
+   * <p>Logging threads only place events in a bounded queue; a single thread 
+   * formats and writes them in batches. Loggers are then only ever called 
+   * from that thread.</p>
+   * 
+   * @param capacity the number of events which may wait to be delivered, 0 
+   *        or less for the default
+   * @param policy what to do with events when the queue is full, null to 
+   *        block until there is room
+   */
+  public static void startAsync( final int capacity, final OverflowPolicy policy ) {
+    LogKernel.startAsync( capacity, policy );
+  }
+
+
+
+
+  /**
+   * Deliver any queued events and return to delivering events on the thread
+   * logging them.
+   */
+  public static void stopAsync() {
+    LogKernel.stopAsync();
+  }
+
+
+
+
+  /**
+   * @return true if events are being delivered asynchronously
+   */
+  public static boolean isAsync() {
+    return LogKernel.isAsync();
+  }
+
+
+
+
+  /**
+   * @return the number of events discarded because the asynchronous queue 
+   *         was full
+   */
+  public static long getDroppedEvents() {
+    return LogKernel.getDroppedEvents();
+  }
+
+
+
+
+  /**
+   * Wait for all the events logged before this call to be written.
+   * 
+   * <p>This returns immediately when logging synchronously.</p>
+   */
+  public static void flush() {
+    LogKernel.flush();
+  }
+
+
+
+
   /**
    * Log the event with category "TRACE".
    *
@@ -0,0 +1,398 @@
+/*
+ * Copyright (c) 2007 Stephan D. Cote' - All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under the 
+ * terms of the MIT License which accompanies this distribution, and is 
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote 
+ *      - Initial concept and implementation
+ */
+package coyote.loader.log;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Delivers log events to the loggers on a dedicated thread.
+ * 
+ * <p>Threads logging an event place it in a bounded ring buffer without 
+ * taking any locks; a single dispatch thread removes events in batches and 
+ * passes them to the loggers, flushing the loggers once per batch instead of 
+ * once per event. What happens when the buffer is full is determined by the 
+ * {@link OverflowPolicy}.</p>
+ * 
+ * <p>The time, thread and (for TRACE and DEBUG events) calling location of 
+ * each event are captured when it is logged so formatters can report them as
+ * if the event was formatted on the logging thread.</p>
+ */
+final class LogDispatcher implements Runnable {
+
+  /** The default number of events which may be waiting for the dispatcher */
+  static final int DEFAULT_CAPACITY = 8192;
+
+  /** The most events delivered between flushes of the loggers */
+  private static final int BATCH_SIZE = 512;
+
+  /** How long the dispatcher sleeps when there is nothing to do */
+  private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos( 10 );
+
+  /** How long a blocked producer waits before trying again */
+  private static final long RETRY_NANOS = TimeUnit.MICROSECONDS.toNanos( 50 );
+
+  private final Event[] events;
+
+  /** Per slot sequence numbers coordinating producers with the dispatcher */
+  private final AtomicLongArray sequences;
+
+  private final int mask;
+
+  /** The next position a producer will claim */
+  private final AtomicLong tail = new AtomicLong();
+
+  /** The next position the dispatcher will read, only changed by the dispatcher */
+  private long head = 0;
+
+  /** The number of events delivered (or discarded) by the dispatcher */
+  private volatile long processed = 0;
+
+  private final AtomicLong dropped = new AtomicLong();
+
+  private final OverflowPolicy policy;
+
+  private final Thread thread;
+
+  private volatile boolean running = true;
+
+  private volatile boolean sleeping = false;
+
+  /** The event currently being delivered by the dispatch thread */
+  private volatile Event current = null;
+
+
+
+
+  /**
+   * Create a dispatcher.
+   * 
+   * @param capacity the number of events which may be waiting to be 
+   *        delivered, rounded up to a power of two
+   * @param policy what to do when the queue is full
+   */
+  LogDispatcher( final int capacity, final OverflowPolicy policy ) {
+    int size = 2;
+    while ( size < capacity ) {
+      size <<= 1;
+    }
+    events = new Event[size];
+    sequences = new AtomicLongArray( size );
+    for ( int x = 0; x < size; x++ ) {
+      sequences.set( x, x );
+    }
+    mask = size - 1;
+    this.policy = ( policy != null ) ? policy : OverflowPolicy.BLOCK;
+
+    thread = new Thread( this, "LogDispatcher" );
+    thread.setDaemon( true );
+  }
+
+
+
+
+  /**
+   * Start the dispatch thread.
+   */
+  void start() {
+    thread.start();
+  }
+
+
+
+
+  /**
+   * Stop the dispatch thread after it has delivered all the events in the 
+   * queue.
+   * 
+   * @param timeout the number of milliseconds to wait for the thread to 
+   *        finish
+   */
+  void stop( final long timeout ) {
+    running = false;
+    LockSupport.unpark( thread );
+    if ( Thread.currentThread() != thread ) {
+      try {
+        thread.join( timeout );
+      } catch ( final InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+
+
+
+  /**
+   * @return true if the calling thread is the one delivering events
+   */
+  boolean isDispatchThread() {
+    return Thread.currentThread() == thread;
+  }
+
+
+
+
+  /**
+   * @return the event being delivered if called from the dispatch thread, 
+   *         null otherwise
+   */
+  Event getCurrentEvent() {
+    return ( Thread.currentThread() == thread ) ? current : null;
+  }
+
+
+
+
+  /**
+   * @return the number of events discarded because the queue was full
+   */
+  long getDropped() {
+    return dropped.get();
+  }
+
+
+
+
+  /**
+   * @return the policy applied when the queue is full
+   */
+  OverflowPolicy getPolicy() {
+    return policy;
+  }
+
+
+
+
+  /**
+   * @return the number of events which can wait to be delivered
+   */
+  int getCapacity() {
+    return events.length;
+  }
+
+
+
+
+  /**
+   * Queue the event for delivery, applying the overflow policy if the queue 
+   * is full.
+   * 
+   * @param event the event to deliver
+   */
+  void publish( final Event event ) {
+    if ( !offer( event ) ) {
+      if ( policy == OverflowPolicy.DROP || ( policy == OverflowPolicy.DROP_DEBUG && event.debug ) ) {
+        dropped.incrementAndGet();
+        return;
+      }
+
+      do {
+        if ( !running ) {
+          // nobody left to make room
+          dropped.incrementAndGet();
+          return;
+        }
+        LockSupport.unpark( thread );
+        LockSupport.parkNanos( this, RETRY_NANOS );
+      }
+      while ( !offer( event ) );
+    }
+
+    if ( sleeping ) {
+      LockSupport.unpark( thread );
+    }
+  }
+
+
+
+
+  /**
+   * Place the event in the ring buffer.
+   * 
+   * @param event the event to place
+   * 
+   * @return true if the event was placed, false if the buffer was full
+   */
+  private boolean offer( final Event event ) {
+    long position = tail.get();
+    while ( true ) {
+      final int index = (int)( position & mask );
+      final long difference = sequences.get( index ) - position;
+      if ( difference == 0 ) {
+        if ( tail.compareAndSet( position, position + 1 ) ) {
+          events[index] = event;
+          // publishes the event to the dispatcher
+          sequences.lazySet( index, position + 1 );
+          return true;
+        }
+        position = tail.get();
+      } else if ( difference < 0 ) {
+        return false;
+      } else {
+        position = tail.get();
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Remove the next event from the ring buffer; only called by the dispatch 
+   * thread.
+   * 
+   * @return the next event or null if the buffer is empty
+   */
+  private Event poll() {
+    final int index = (int)( head & mask );
+    if ( sequences.get( index ) != head + 1 ) {
+      return null;
+    }
+    final Event event = events[index];
+    events[index] = null;
+    // releases the slot to the producers
+    sequences.lazySet( index, head + events.length );
+    head++;
+    return event;
+  }
+
+
+
+
+  /**
+   * Wait for the dispatcher to deliver all the events queued before this 
+   * call.
+   * 
+   * @param timeout the most milliseconds to wait
+   */
+  void flush( final long timeout ) {
+    if ( Thread.currentThread() == thread ) {
+      return;
+    }
+    final long target = tail.get();
+    final long deadline = System.currentTimeMillis() + timeout;
+    while ( processed < target && thread.isAlive() && System.currentTimeMillis() < deadline ) {
+      LockSupport.unpark( thread );
+      LockSupport.parkNanos( this, RETRY_NANOS );
+    }
+  }
+
+
+
+
+  /**
+   * Deliver events until stopped and the queue is empty.
+   * 
+   * @see java.lang.Runnable#run()
+   */
+  @Override
+  public void run() {
+    while ( true ) {
+      if ( drain() == 0 ) {
+        if ( !running ) {
+          break;
+        }
+        sleeping = true;
+        if ( sequences.get( (int)( head & mask ) ) != head + 1 ) {
+          LockSupport.parkNanos( this, IDLE_NANOS );
+        }
+        sleeping = false;
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Deliver a batch of events to the loggers and flush them.
+   * 
+   * @return the number of events delivered
+   */
+  private int drain() {
+    Event event = poll();
+    if ( event == null ) {
+      return 0;
+    }
+
+    int count = 0;
+    synchronized( LogKernel.class ) {
+      do {
+        current = event;
+        try {
+          LogKernel.deliver( event.code, event.category, event.event, event.cause );
+        } catch ( final RuntimeException e ) {
+          System.err.println( "Could not deliver log event: " + e.getMessage() );
+        }
+        count++;
+      }
+      while ( count < BATCH_SIZE && ( event = poll() ) != null );
+      current = null;
+      LogKernel.flushLoggers();
+    }
+    processed = head;
+    return count;
+  }
+
+
+
+
+  /**
+   * A log event and the details of where it was logged.
+   */
+  static final class Event {
+    final long code;
+    final String category;
+    final Object event;
+    final Throwable cause;
+    final long time;
+    final String thread;
+    final boolean debug;
+    final StackTraceElement location;
+
+
+
+
+    Event( final long code, final String category, final Object event, final Throwable cause ) {
+      this.code = code;
+      this.category = category;
+      this.event = event;
+      this.cause = cause;
+      time = System.currentTimeMillis();
+      thread = Thread.currentThread().getName();
+      debug = Log.TRACE.equals( category ) || Log.DEBUG.equals( category );
+      location = debug ? findCaller() : null;
+    }
+
+
+
+
+    /**
+     * @return the first stack frame outside of the logging subsystem
+     */
+    private static StackTraceElement findCaller() {
+      final StackTraceElement[] stack = new Exception().getStackTrace();
+      for ( final StackTraceElement element : stack ) {
+        final String name = element.getClassName();
+        if ( !name.equals( Log.class.getName() ) && !name.equals( LogKernel.class.getName() ) && !name.equals( Event.class.getName() ) ) {
+          return element;
+        }
+      }
+      return ( stack.length > 0 ) ? stack[stack.length - 1] : null;
+    }
+  }
+
+}
@@ -31,6 +31,11 @@ import java.util.Vector;
  * <p>The collection is initialized to a single default logger that logs INFO,
  * WARN, ERROR and FATAL events to System.out through the ConsoleAppender
  * logging class.</p>
+ * 
+ * <p>Events are normally delivered to the loggers on the thread logging them,
+ * one thread at a time. After {@link #startAsync(int, OverflowPolicy)} events
+ * are queued without locking and delivered in batches by a single dispatch 
+ * thread until {@link #stopAsync()} is called.</p>
  */
 final class LogKernel {
 
@@ -43,7 +48,7 @@ final class LogKernel {
   /** Map of all the loggers in the fixture keyed by their name. */
   static final Hashtable<String, Logger> nameToLogger = new Hashtable<String, Logger>();
 
-  static long masks; // union of masks of all loggers
+  static volatile long masks; // union of masks of all loggers
   static final long started = System.currentTimeMillis();
 
   /** 
@@ -58,11 +63,18 @@ final class LogKernel {
    */
   private static final HashSet<String> permanentLoggers = new HashSet<String>();
 
+  /** Delivers events on its own thread when logging asynchronously, null otherwise */
+  private static volatile LogDispatcher dispatcher = null;
+
+  /** How long to wait for queued events to be delivered when stopping */
+  private static final long STOP_TIMEOUT = 5000;
+
   static {
     // Setup a shutdown hook to clean-up the loggers
     try {
       Runtime.getRuntime().addShutdownHook( new Thread( "LogShutdown" ) {
         public void run() {
+          LogKernel.stopAsync();
           for ( final Enumeration<Logger> en = LogKernel.nameToLogger.elements(); en.hasMoreElements(); ) {
             en.nextElement().terminate();
           }
@@ -139,9 +151,38 @@ final class LogKernel {
    * @param event The event to log.
    * @param cause The cause of the event.
    */
-  public synchronized static void append( final long code, final Object event, final Throwable cause ) {
+  public static void append( final long code, final Object event, final Throwable cause ) {
+    if ( ( LogKernel.masks & code ) == 0 ) {
+      return;
+    }
+
     final String category = LogKernel.getCategory( code );
+    final LogDispatcher async = LogKernel.dispatcher;
+
+    // events logged while delivering events are delivered immediately
+    if ( async != null && !async.isDispatchThread() ) {
+      async.publish( new LogDispatcher.Event( code, category, event, cause ) );
+    } else {
+      synchronized( LogKernel.class ) {
+        LogKernel.deliver( code, category, event, cause );
+      }
+    }
+  }
+
+
 
+
+  /**
+   * Send the event to each logger that is logging the specified category.
+   * 
+   * <p>The caller must hold the lock on this class.</p>
+   *
+   * @param code The category code.
+   * @param category The name of the category.
+   * @param event The event to log.
+   * @param cause The cause of the event.
+   */
+  static void deliver( final long code, final String category, final Object event, final Throwable cause ) {
     for ( final Enumeration<Logger> en = LogKernel.nameToLogger.elements(); en.hasMoreElements(); ) {
       final Logger logger = en.nextElement();
 
@@ -154,6 +195,139 @@ final class LogKernel {
 
 
 
+  /**
+   * Flush any output buffered by the loggers.
+   * 
+   * <p>The caller must hold the lock on this class.</p>
+   */
+  static void flushLoggers() {
+    for ( final Enumeration<Logger> en = LogKernel.nameToLogger.elements(); en.hasMoreElements(); ) {
+      final Logger logger = en.nextElement();
+
+      if ( logger instanceof AbstractLogger ) {
+        ( (AbstractLogger)logger ).flush();
+      }
+    }
+  }
+
+
+
+
+  /**
+   * Determine if the calling thread is delivering a batch of events, in which
+   * case loggers should leave flushing their output until the batch is done.
+   * 
+   * @return true if the calling thread is the asynchronous dispatch thread
+   */
+  static boolean isBatching() {
+    final LogDispatcher async = LogKernel.dispatcher;
+    return async != null && async.isDispatchThread();
+  }
+
+
+
+
+  /**
+   * Access the event being delivered by the asynchronous dispatch thread.
+   * 
+   * <p>Formatters use this to report the time, thread and location the event 
+   * was logged rather than those of the dispatch thread.</p>
+   * 
+   * @return the event being delivered if called from the dispatch thread, 
+   *         null otherwise
+   */
+  static LogDispatcher.Event getDispatchedEvent() {
+    final LogDispatcher async = LogKernel.dispatcher;
+    return ( async != null ) ? async.getCurrentEvent() : null;
+  }
+
+
+
+
+  /**
+   * Start delivering events asynchronously.
+   * 
+   * <p>Threads logging events place them in a bounded queue and return 
+   * immediately; a single thread delivers the queued events to the loggers.
+   * If asynchronous logging is already active, the current dispatcher is 
+   * stopped after delivering its events and replaced.</p>
+   * 
+   * @param capacity the number of events which may wait to be delivered, 0 
+   *        or less for the default
+   * @param policy what to do with events when the queue is full, null to 
+   *        block until there is room
+   */
+  public static void startAsync( final int capacity, final OverflowPolicy policy ) {
+    LogKernel.stopAsync();
+    synchronized( LogKernel.class ) {
+      final LogDispatcher async = new LogDispatcher( ( capacity > 0 ) ? capacity : LogDispatcher.DEFAULT_CAPACITY, policy );
+      async.start();
+      LogKernel.dispatcher = async;
+    }
+  }
+
+
+
+
+  /**
+   * Stop delivering events asynchronously.
+   * 
+   * <p>Events already queued are delivered before this method returns and 
+   * later events are delivered on the thread logging them.</p>
+   */
+  public static void stopAsync() {
+    final LogDispatcher async;
+    synchronized( LogKernel.class ) {
+      async = LogKernel.dispatcher;
+      LogKernel.dispatcher = null;
+    }
+    if ( async != null ) {
+      async.stop( STOP_TIMEOUT );
+    }
+  }
+
+
+
+
+  /**
+   * @return true if events are being delivered asynchronously
+   */
+  public static boolean isAsync() {
+    return LogKernel.dispatcher != null;
+  }
+
+
+
+
+  /**
+   * Access the number of events discarded by the current asynchronous 
+   * dispatcher because its queue was full.
+   * 
+   * @return the number of dropped events, 0 when logging synchronously
+   */
+  public static long getDroppedEvents() {
+    final LogDispatcher async = LogKernel.dispatcher;
+    return ( async != null ) ? async.getDropped() : 0;
+  }
+
+
+
+
+  /**
+   * Wait for all the events logged before this call to be delivered.
+   * 
+   * <p>This returns immediately when logging synchronously.</p>
+   */
+  public static void flush() {
+    final LogDispatcher async = LogKernel.dispatcher;
+    if ( async != null ) {
+      async.flush( STOP_TIMEOUT );
+    }
+  }
+
+
+
+
   /**
    * Send append( category, message ) to each logger that is logging the
    * specified category.
@@ -161,7 +335,7 @@ final class LogKernel {
    * @param category The category of the desired log operation 
    * @param event The event to log.
    */
-  public synchronized static void append( final String category, final Object event ) {
+  public static void append( final String category, final Object event ) {
     LogKernel.append( category, event, null );
   }
 
@@ -176,8 +350,8 @@ final class LogKernel {
    * @param event The event to log.
    * @param cause The exception that caused the log entry. Can be null.
    */
-  public synchronized static void append( final String category, final Object event, final Throwable cause ) {
-    LogKernel.append( LogKernel.getCode( category ), event, null );
+  public static void append( final String category, final Object event, final Throwable cause ) {
+    LogKernel.append( LogKernel.getCode( category ), event, cause );
   }
 
 
@@ -233,7 +407,7 @@ final class LogKernel {
    * 
    * @return The category associated with the specified code.
    */
-  public synchronized static String getCategory( final long code ) {
+  public static String getCategory( final long code ) {
     return LogKernel.codeToString.get( new Long( code ) );
   }
 
@@ -0,0 +1,70 @@
+
+/*
+ * Copyright (c) 2007 Stephan D. Cote' - All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under the 
+ * terms of the MIT License which accompanies this distribution, and is 
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote 
+ *      - Initial concept and implementation
+ */
+package coyote.loader.log;
+
+
+/**
+ * What the logging subsystem does with an event when it is logging 
+ * asynchronously and its queue of pending events is full.
+ */
+public enum OverflowPolicy {
+  /** Wait for room in the queue; no events are lost */
+  BLOCK( "block"),
+  /** Discard the event and count it as dropped */
+  DROP( "drop"),
+  /** Discard TRACE and DEBUG events, wait for room for all others */
+  DROP_DEBUG( "drop-debug");
+
+  /**
+   * Find the policy with the given name.
+   * 
+   * @param name the name of the policy (e.g. "drop-debug"), case insensitive
+   * 
+   * @return the policy with that name or null if there is no such policy
+   */
+  public static OverflowPolicy getPolicyByName( final String name ) {
+    if ( name != null ) {
+      for ( final OverflowPolicy policy : OverflowPolicy.values() ) {
+        if ( name.equalsIgnoreCase( policy.name ) || name.equalsIgnoreCase( policy.name() ) ) {
+          return policy;
+        }
+      }
+    }
+    return null;
+  }
+
+  private String name;
+
+
+
+
+  private OverflowPolicy( final String n ) {
+    name = n;
+  }
+
+
+
+
+  public String getName() {
+    return name;
+  }
+
+
+
+
+  @Override
+  public String toString() {
+    return name;
+  }
+
+}
@@ -56,6 +56,12 @@ public class ScheduledJob extends ThreadJob implements Namable, Describable {
   /** Used to implement a doubly-linked list in the Scheduler */
   protected volatile ScheduledJob previousJob = null;
 
+  /** The execution time by which the Scheduler orders this job */
+  volatile long scheduledTime = 0;
+
+  /** The order in which this job was scheduled, used to break ties */
+  volatile long sequence = 0;
+
   /** Indicates this job has been cancelled */
   protected volatile boolean cancelled = false;
 
@@ -13,9 +13,13 @@ package coyote.loader.thread;
 
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 import coyote.commons.ExceptionUtil;
+import coyote.i13n.SimpleMetric;
 import coyote.loader.log.Log;
 
 
@@ -32,13 +36,34 @@ import coyote.loader.log.Log;
  * 
  * <p>The best way to use this is to create an instance of it and call the 
  * {@link #daemonize()} method to start it running in the background.</p>
+ * 
+ * <p>Jobs are kept in a sorted set so placing and removing a job takes 
+ * logarithmic time regardless of how many jobs are scheduled. The jobs are 
+ * also linked to each other in execution order so the list can still be 
+ * walked from {@link #getNextJob()}.</p>
  */
 public class Scheduler extends ThreadJob {
   /** Tag used in various class identifying locations */
   public static final String CLASS = "Scheduler";
 
+  /** Orders jobs by execution time, then by the order they were scheduled */
+  private static final Comparator<ScheduledJob> EXECUTION_ORDER = new Comparator<ScheduledJob>() {
+    @Override
+    public int compare( ScheduledJob job1, ScheduledJob job2 ) {
+      if ( job1.scheduledTime != job2.scheduledTime ) {
+        return ( job1.scheduledTime < job2.scheduledTime ) ? -1 : 1;
+      }
+      return ( job1.sequence < job2.sequence ) ? -1 : ( ( job1.sequence == job2.sequence ) ? 0 : 1 );
+    }
+  };
+
+  /** Shared by all schedulers so a job is never confused with another */
+  private static final AtomicLong SEQUENCE = new AtomicLong();
+
   private ScheduledJob nextJob = null;
   private ScheduledJob lastJob = null;
+  private final TreeSet<ScheduledJob> jobs = new TreeSet<ScheduledJob>( EXECUTION_ORDER );
+  private final SimpleMetric dispatchLatency = new SimpleMetric( "DispatchLatency", "ms" );
   private final Object mutex = new Object();
   private ThreadPool threadpool = null;
   private long WAIT_TIME = 50;
@@ -66,23 +91,24 @@ public class Scheduler extends ThreadJob {
    * @return the number of jobs currently in the scheduler
    */
   public int getJobCount() {
-    int count = 0;
-
     synchronized( mutex ) {
-      if ( this.nextJob != null ) {
-        ScheduledJob job = nextJob;
+      return jobs.size();
+    }
+  }
+
 
-        for ( count = 0; job != null; count++ ) {
-          if ( job == job.getNextJob() ) {
-            break;
-          }
 
-          job = job.getNextJob();
-        }
-      }
-    }
 
-    return count;
+  /**
+   * Return the metric tracking how late jobs are handed to the thread pool.
+   * 
+   * <p>Each sample is the number of milliseconds between the time a job was 
+   * to run and the time the scheduler handed it to the thread pool.</p>
+   * 
+   * @return the dispatch latency metric for this scheduler
+   */
+  public SimpleMetric getDispatchLatency() {
+    return dispatchLatency;
   }
 
 
@@ -119,20 +145,16 @@ public class Scheduler extends ThreadJob {
   public void doWork() {
     synchronized( mutex ) {
       if ( nextJob != null ) {
-        long executionTime = System.currentTimeMillis();
-        long jobTime = nextJob.getExecutionTime();
-
-        // Check to see if it is time to run this job. If it is really close, 
-        // wait around
-        long millis = jobTime - executionTime;
-        //Log.append( SCHED, nextJob + " to run at " + new Date( jobTime ) + " (" + jobTime + ")  diff:" + millis );
+        final ScheduledJob head = nextJob;
+        final long jobTime = head.getExecutionTime();
 
         // if the time we have to wait is less than or equal to the time we 
         // wait between calls to the doWork() method, wait for the time to 
         // elapse
-        if ( millis <= WAIT_TIME ) {
+        if ( jobTime - System.currentTimeMillis() <= WAIT_TIME ) {
           // If it is in the future, wait around for it, otherwise run it
-          while ( jobTime > System.currentTimeMillis() ) {
+          long millis;
+          while ( ( millis = jobTime - System.currentTimeMillis() ) > 0 ) {
             try {
               mutex.wait( millis );
             } catch ( Exception ex ) {
@@ -140,32 +162,40 @@ public class Scheduler extends ThreadJob {
               // job list and process the possibly new nextJob reference
               return;
             }
+
+            // a job scheduled ahead of this one while we waited runs first
+            if ( nextJob != head ) {
+              return;
+            }
           }
 
-          // If we got here, it is time (or past the time) to execute the next
-          // ScheduledJob referenced by nextJob
+          // If we got here, it is time (or past the time) to execute the job
           try {
-            executionTime = System.currentTimeMillis();
-            Log.append( SCHED, "Execution Time: " + executionTime + " (" + new Date( executionTime ) + "):\r\n" + dump() );
+            final long executionTime = System.currentTimeMillis();
 
             // Remove the job from the list and only work with the job which was removed
-            ScheduledJob target = remove( nextJob );
+            ScheduledJob target = remove( head );
 
             if ( Log.isLogging( SCHED ) ) {
               if ( nextJob != null ) {
-                Log.append( SCHED, "Handling '" + target + "' now - next job '" + nextJob + "' to run at " + new Date( nextJob.getExecutionTime() ) + "\r\n" + dump() );
+                Log.append( SCHED, "Handling '" + target + "' at " + executionTime + " - next job '" + nextJob + "' to run at " + new Date( nextJob.getExecutionTime() ) + "\r\n" + dump() );
               } else {
-                Log.append( SCHED, "Handling '" + target + "' now - there is no other job to run\r\n" + dump() );
+                Log.append( SCHED, "Handling '" + target + "' at " + executionTime + " - there is no other job to run" );
               }
+              Log.append( SCHED, target + " enabled=" + target.isEnabled() + " cancelled=" + target.isCancelled() + " limit=" + target.getExecutionLimit() + " count=" + target.getExecutionCount() + " repeat=" + target.isRepeatable() );
             }
 
-            Log.append( SCHED, target + " enabled=" + target.isEnabled() + " cancelled=" + target.isCancelled() + " limit=" + target.getExecutionLimit() + " count=" + target.getExecutionCount() + " repeat=" + target.isRepeatable() );
             if ( !target.isCancelled() && ( ( target.getExecutionLimit() < 1 ) || ( target.getExecutionLimit() > 0 ) && ( target.getExecutionCount() < target.getExecutionLimit() ) ) ) {
 
               // Only run jobs which are enabled, otherwise reschedule them if 
               // necessary
               if ( target.isEnabled() ) {
-                Log.append( SCHED, "Running " + target + " in threadpool" );
+                if ( Log.isLogging( SCHED ) ) {
+                  Log.append( SCHED, "Running " + target + " in threadpool" );
+                }
+
+                // Record the delay before the job is handed off and can run
+                dispatchLatency.sample( System.currentTimeMillis() - jobTime );
 
                 // Run the Scheduled Job in the thread pool
                 threadpool.handle( (ThreadJob)target );
@@ -177,23 +207,23 @@ public class Scheduler extends ThreadJob {
 
                 // Increment the execution counter
                 target.incrementExecutionCount();
-              } else {
+              } else if ( Log.isLogging( SCHED ) ) {
                 Log.append( SCHED, "Did not run disabled job " + target + " in threadpool" );
               }
 
               // If the ScheduledJob is set for repetition
               if ( target.isRepeatable() ) {
-                Log.append( SCHED, "Repeating job " + target + " execution time = " + executionTime + ",  target interval = " + target.getExecutionInterval() );
 
                 // If we have no limit or have not exceeded our limit...
                 if ( ( target.getExecutionLimit() == 0 ) || ( target.getExecutionLimit() > 0 ) && ( target.getExecutionCount() < target.getExecutionLimit() ) ) {
                   // ...reschedule the job
                   target.setExecutionTime( target.getExecutionInterval() + System.currentTimeMillis() );
-                  Log.append( SCHED, "Set execution time to " + new Date( target.getExecutionTime() ) + " execution time = " + executionTime + ",  target interval = " + target.getExecutionInterval() );
                   schedule( target );
-                  Log.append( SCHED, "Scheduled repeating job " + target + " (runs=" + target.getExecutionCount() + " interval=" + target.getExecutionInterval() + ") will run again at " + new Date( target.getExecutionTime() ) + "\r\n" + dump() );
+                  if ( Log.isLogging( SCHED ) ) {
+                    Log.append( SCHED, "Scheduled repeating job " + target + " (runs=" + target.getExecutionCount() + " interval=" + target.getExecutionInterval() + ") will run again at " + new Date( target.getExecutionTime() ) );
+                  }
                 }
-              } else {
+              } else if ( Log.isLogging( SCHED ) ) {
                 Log.append( SCHED, "Job " + target + " is not flagged to be repeated, removed from execution list" );
               }
             }
@@ -202,8 +232,6 @@ public class Scheduler extends ThreadJob {
             Log.warn( ex.getClass().getName() + " thrown in scheduler loop\r\n" + ExceptionUtil.stackTrace( ex ) );
           }
 
-          Log.append( SCHED, "Next job '" + nextJob + "' to run at " + nextJob.getExecutionTime() + " (" + new Date( nextJob.getExecutionTime() ) + ")" );
-
         } // 
 
         // It is not time to execute the the next job yet, so exit the method
@@ -244,10 +272,8 @@ public class Scheduler extends ThreadJob {
     ScheduledJob target = remove( job );
 
     if ( target != null ) {
-      Log.append( SCHED, "Rescheduling job " + target + " on request - was to run at " + new Date( target.getExecutionTime() ) );
       target.setExecutionTime( System.currentTimeMillis() + target.getExecutionInterval() );
       schedule( target );
-      Log.append( SCHED, "Rescheduled job " + target + " - will now run at " + new Date( target.getExecutionTime() ) );
     }
   }
 
@@ -348,54 +374,48 @@ public class Scheduler extends ThreadJob {
    * list, it will be placed behind the job in the list with the matching time.
    * This results in jobs being executed in the order in which they were placed
    * in the job list if all the execution times match.</p>
+   * 
+   * <p>A job which is already in the list is moved to the position matching 
+   * its current execution time.</p>
    *
    * @param job The ScheduledJob to place in the scheduler's job list
    */
   public void schedule( ScheduledJob job ) {
     if ( job != null ) {
 
-      Log.append( SCHED, "Scheduling job " + job + " to run at " + new Date( job.getExecutionTime() ) );
-
       synchronized( mutex ) {
-        // Start at the beginning
-        ScheduledJob current = nextJob;
-        ScheduledJob previous = null;
-
-        // Loop through all the job references and find where the job belongs
-        while ( current != null ) {
-          if ( current.getExecutionTime() > job.getExecutionTime() ) {
-            break;
-          }
+        unlink( job );
 
-          previous = current;
-          current = current.getNextJob();
-        }
+        // the sort key is fixed while the job is in the list
+        job.scheduledTime = job.getExecutionTime();
+        job.sequence = SEQUENCE.incrementAndGet();
+        jobs.add( job );
 
-        // link current and previous jobs to this job
-        if ( ( job != current ) && ( job != previous ) ) {
-          job.setPreviousJob( previous );
-          job.setNextJob( current );
+        // link the jobs on either side of this one to this job
+        final ScheduledJob previous = jobs.lower( job );
+        final ScheduledJob current = jobs.higher( job );
+        job.setPreviousJob( previous );
+        job.setNextJob( current );
 
-          if ( current != null ) {
-            current.setPreviousJob( job );
-          } else {
-            lastJob = job;
-          }
+        if ( current != null ) {
+          current.setPreviousJob( job );
+        } else {
+          lastJob = job;
+        }
 
-          if ( previous != null ) {
-            previous.setNextJob( job );
-          } else {
-            nextJob = job;
-          }
+        if ( previous != null ) {
+          previous.setNextJob( job );
         } else {
-          Log.append( SCHED, "Aaaakkk! Circular Job reference" );
+          nextJob = job;
         }
 
         // Let everyone know there is a new Job in the scheduler
         mutex.notifyAll();
-      }
 
-      Log.append( SCHED, "Job scheduled in list of " + getJobCount() + " jobs; next job '" + nextJob + "' to run at " + new Date( nextJob.getExecutionTime() ) );
+        if ( Log.isLogging( SCHED ) ) {
+          Log.append( SCHED, "Scheduled job " + job + " to run at " + new Date( job.getExecutionTime() ) + " in list of " + jobs.size() + " jobs; next job '" + nextJob + "' to run at " + new Date( nextJob.getExecutionTime() ) );
+        }
+      }
     }
   }
 
@@ -415,36 +435,39 @@ public class Scheduler extends ThreadJob {
     }
 
     synchronized( mutex ) {
-      if ( this.nextJob != null ) {
-        // start at the top of the queue of jobs
-        ScheduledJob test = nextJob;
+      unlink( job );
+    }
 
-        while ( test != null ) {
+    return job;
+  }
 
-          // if the current job matches the job for which er are looking
-          if ( job == test ) {
 
-            if ( test.getPreviousJob() != null ) {
-              test.getPreviousJob().setNextJob( test.getNextJob() );
-            } else {
-              nextJob = test.getNextJob();
-            }
 
-            if ( test.getNextJob() != null ) {
-              test.getNextJob().setPreviousJob( test.getPreviousJob() );
-            } else {
-              lastJob = test.getPreviousJob();
-            }
 
-            break; // We found a match, we can exit
-          }
+  /**
+   * Remove the job from the sorted set and the linked list if it is in them.
+   * 
+   * <p>Must be called while holding the mutex.</p>
+   *
+   * @param job the job to remove
+   */
+  private void unlink( ScheduledJob job ) {
+    if ( jobs.remove( job ) ) {
+      if ( job.getPreviousJob() != null ) {
+        job.getPreviousJob().setNextJob( job.getNextJob() );
+      } else {
+        nextJob = job.getNextJob();
+      }
 
-          test = test.getNextJob();
-        }
+      if ( job.getNextJob() != null ) {
+        job.getNextJob().setPreviousJob( job.getPreviousJob() );
+      } else {
+        lastJob = job.getPreviousJob();
       }
-    }
 
-    return job;
+      job.setPreviousJob( null );
+      job.setNextJob( null );
+    }
   }
 
 
@@ -0,0 +1,106 @@
+package coyote.commons.network.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import coyote.dataframe.DataFrame;
+import coyote.loader.cfg.Config;
+
+
+public class PooledExecutorTest {
+
+  private class TestServer extends HTTPD {
+    final CountDownLatch entered = new CountDownLatch( 1 );
+    final CountDownLatch release = new CountDownLatch( 1 );
+
+
+
+
+    public TestServer() {
+      super( 0 );
+    }
+
+
+
+
+    @Override
+    public Response serve( final IHTTPSession session ) {
+      if ( session.getUri().startsWith( "/slow" ) ) {
+        entered.countDown();
+        try {
+          release.await( 10, TimeUnit.SECONDS );
+        } catch ( final InterruptedException e ) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return Response.createFixedLengthResponse( "Whatever" );
+    }
+  }
+
+
+
+
+  @Test
+  public void shedsConnectionsWhenFull() throws Exception {
+    final TestServer server = new TestServer();
+    server.configExecutor( new Config( new DataFrame().set( "Threads", 1 ).set( "Queue", 0 ).set( "Backlog", 10 ) ) );
+    assertEquals( 10, server.getBacklog() );
+    server.start();
+    try {
+      final int port = server.getListeningPort();
+      final int[] slowStatus = new int[1];
+      final Thread slow = new Thread( new Runnable() {
+        @Override
+        public void run() {
+          try {
+            slowStatus[0] = makeRequest( port, "/slow" );
+          } catch ( final IOException e ) {
+            slowStatus[0] = -1;
+          }
+        }
+      } );
+      slow.start();
+      assertTrue( server.entered.await( 10, TimeUnit.SECONDS ) );
+
+      // the only thread is busy and nothing may wait for it
+      assertEquals( 503, makeRequest( port, "/" ) );
+
+      final PooledExecutor executor = (PooledExecutor)server.asyncRunner;
+      assertEquals( 1, executor.getRejectedCount() );
+      assertEquals( 1, executor.getActiveCount() );
+
+      server.release.countDown();
+      slow.join( 10000 );
+      assertEquals( 200, slowStatus[0] );
+    }
+    finally {
+      server.release.countDown();
+      server.stop();
+    }
+  }
+
+
+
+
+  private static int makeRequest( final int port, final String path ) throws IOException {
+    final HttpURLConnection connection = (HttpURLConnection)new URL( "http://localhost:" + port + path ).openConnection();
+    connection.setReadTimeout( 10000 );
+    final int status = connection.getResponseCode();
+    final InputStream in = ( status < 400 ) ? connection.getInputStream() : connection.getErrorStream();
+    if ( in != null ) {
+      while ( in.read() != -1 ) {}
+      in.close();
+    }
+    return status;
+  }
+
+}
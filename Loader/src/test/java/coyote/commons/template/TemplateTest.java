@@ -189,6 +189,34 @@ public class TemplateTest {
     assertEquals( text, preProcessedText );
   }
 
+  @Test
+  public void reuse() throws Exception {
+    SymbolTable table = new SymbolTable();
+    Template template = new Template( "[#$Greeting#] is number [#$count#][#$count#]" );
+    for ( int x = 0; x < 3; x++ ) {
+      table.put( "Greeting", "Hello" );
+      table.put( "count", x );
+      assertEquals( "Hello is number " + x + x, Template.toString( template, table, null, false ) );
+    }
+
+    String text = "Row [#$count#] of [#$total#]";
+    table.put( "total", 10 );
+    for ( int x = 0; x < 3; x++ ) {
+      table.put( "count", x );
+      assertEquals( "Row " + x + " of 10", Template.resolve( text, table ) );
+    }
+    table.remove( "total" );
+    assertEquals( "Row 2 of [#$total#]", Template.preProcess( text, table ) );
+
+    // text without tags comes back unchanged
+    assertEquals( "no tags here", Template.resolve( "no tags here", table ) );
+    assertEquals( "", Template.resolve( "", table ) );
+    assertTrue( Template.resolve( "[#$count", table ).startsWith( "TEMPLATE ERROR" ) );
+  }
+
+
+
+
   /**
    * The objects which can be placed in templates have few limitations. 
    * Only methods which take strings as arguments are called.
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2015 Stephan D. Cote' - All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under the 
+ * terms of the MIT License which accompanies this distribution, and is 
+ * available at http://creativecommons.org/licenses/MIT/
+ *
+ * Contributors:
+ *   Stephan D. Cote 
+ *      - Initial concept and implementation
+ */
+package coyote.loader.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+
+/**
+ * 
+ */
+public class AsyncLogTest {
+
+  private static final String LOGGER_NAME = "AsyncLogTest";
+
+
+
+
+  @After
+  public void cleanup() {
+    Log.stopAsync();
+    Log.removeLogger( LOGGER_NAME );
+  }
+
+
+
+
+  @Test
+  public void deliversAllEvents() throws Exception {
+    final StringWriter output = new StringWriter();
+    Log.addLogger( LOGGER_NAME, new ConsoleAppender( output, Log.NOTICE_EVENTS ) );
+    Log.startAsync( 64, OverflowPolicy.BLOCK );
+    assertTrue( Log.isAsync() );
+
+    final int threads = 4;
+    final int events = 1000;
+    Thread[] workers = new Thread[threads];
+    for ( int t = 0; t < threads; t++ ) {
+      final int id = t;
+      workers[t] = new Thread( new Runnable() {
+        @Override
+        public void run() {
+          for ( int x = 0; x < events; x++ ) {
+            Log.notice( id + ":" + x );
+          }
+        }
+      } );
+      workers[t].start();
+    }
+    for ( Thread worker : workers ) {
+      worker.join();
+    }
+    Log.flush();
+
+    // every event is written and each thread's events stay in order
+    int[] next = new int[threads];
+    int lines = 0;
+    for ( String line : output.toString().split( "\n" ) ) {
+      if ( line.trim().length() == 0 ) {
+        continue;
+      }
+      String entry = line.substring( line.trim().lastIndexOf( ' ' ) + 1 ).trim();
+      int thread = Integer.parseInt( entry.substring( 0, entry.indexOf( ':' ) ) );
+      assertEquals( next[thread]++, Integer.parseInt( entry.substring( entry.indexOf( ':' ) + 1 ) ) );
+      lines++;
+    }
+    assertEquals( threads * events, lines );
+    assertEquals( 0, Log.getDroppedEvents() );
+
+    Log.stopAsync();
+    assertFalse( Log.isAsync() );
+  }
+
+
+
+
+  @Test
+  public void dropsWhenFull() throws Exception {
+    final BlockingLogger logger = new BlockingLogger( Log.NOTICE_EVENTS | Log.DEBUG_EVENTS );
+    Log.addLogger( LOGGER_NAME, logger );
+    Log.startAsync( 4, OverflowPolicy.DROP );
+
+    // hold the dispatcher in the logger so the queue fills
+    Log.notice( "first" );
+    assertTrue( logger.entered.await( 5, TimeUnit.SECONDS ) );
+    for ( int x = 0; x < 100; x++ ) {
+      Log.notice( "event" );
+    }
+    assertEquals( 96, Log.getDroppedEvents() );
+
+    logger.release.countDown();
+    Log.flush();
+    assertEquals( 5, logger.count );
+  }
+
+
+
+
+  @Test
+  public void dropsOnlyDebugWhenFull() throws Exception {
+    final BlockingLogger logger = new BlockingLogger( Log.NOTICE_EVENTS | Log.DEBUG_EVENTS );
+    Log.addLogger( LOGGER_NAME, logger );
+    Log.startAsync( 4, OverflowPolicy.DROP_DEBUG );
+
+    Log.notice( "first" );
+    assertTrue( logger.entered.await( 5, TimeUnit.SECONDS ) );
+    for ( int x = 0; x < 4; x++ ) {
+      Log.notice( "event" );
+    }
+    for ( int x = 0; x < 10; x++ ) {
+      Log.debug( "detail" );
+    }
+    assertEquals( 10, Log.getDroppedEvents() );
+
+    // notices wait for room rather than being dropped
+    Thread producer = new Thread( new Runnable() {
+      @Override
+      public void run() {
+        Log.notice( "last" );
+      }
+    } );
+    producer.start();
+    logger.release.countDown();
+    producer.join( 5000 );
+    Log.flush();
+    assertEquals( 6, logger.count );
+    assertEquals( 10, Log.getDroppedEvents() );
+  }
+
+
+
+
+  /**
+   * A logger which blocks delivery until released.
+   */
+  private static class BlockingLogger extends AbstractLogger {
+    final CountDownLatch entered = new CountDownLatch( 1 );
+    final CountDownLatch release = new CountDownLatch( 1 );
+    volatile int count = 0;
+
+
+
+
+    BlockingLogger( long mask ) {
+      super( mask );
+    }
+
+
+
+
+    @Override
+    public void append( String category, Object event, Throwable cause ) {
+      entered.countDown();
+      try {
+        release.await( 5, TimeUnit.SECONDS );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      }
+      count++;
+    }
+
+
+
+
+    @Override
+    public void terminate() {}
+
+  }
+
+}
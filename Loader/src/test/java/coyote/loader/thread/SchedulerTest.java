@@ -14,8 +14,15 @@ package coyote.loader.thread;
 //import static org.junit.Assert.*;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -133,6 +140,119 @@ public class SchedulerTest {
 
 
 
+  /**
+   * Many jobs should stay in execution order, with ties in the order they 
+   * were scheduled, as jobs are added and removed.
+   */
+  @Test
+  public void testManyJobs() {
+    long startTime = System.currentTimeMillis();
+    Random random = new Random( 42 );
+    List<ScheduledJob> tasks = new ArrayList<ScheduledJob>();
+    for ( int x = 0; x < 5000; x++ ) {
+      ScheduledJob task = new ScheduledTest( Integer.toString( x ) );
+      task.setExecutionTime( startTime + random.nextInt( 100 ) );
+      tasks.add( task );
+      scheduler.schedule( task );
+    }
+    assertEquals( 5000, scheduler.getJobCount() );
+    assertOrdered( 5000 );
+
+    for ( int x = 0; x < tasks.size(); x += 2 ) {
+      scheduler.remove( tasks.get( x ) );
+    }
+    assertEquals( 2500, scheduler.getJobCount() );
+    assertOrdered( 2500 );
+
+    // removing a job not in the scheduler changes nothing
+    scheduler.remove( tasks.get( 0 ) );
+    scheduler.remove( new ScheduledTest( "Stranger" ) );
+    assertEquals( 2500, scheduler.getJobCount() );
+    assertOrdered( 2500 );
+  }
+
+
+
+
+  /**
+   * Walk the job list checking the execution times never decrease and jobs 
+   * with the same time are in the order they were scheduled.
+   */
+  private void assertOrdered( int expected ) {
+    int count = 0;
+    ScheduledJob previous = null;
+    for ( ScheduledJob job = scheduler.getNextJob(); job != null; job = job.getNextJob() ) {
+      if ( previous != null ) {
+        assertSame( previous, job.getPreviousJob() );
+        assertTrue( previous.getExecutionTime() <= job.getExecutionTime() );
+        if ( previous.getExecutionTime() == job.getExecutionTime() ) {
+          assertTrue( Integer.parseInt( previous.getName() ) < Integer.parseInt( job.getName() ) );
+        }
+      }
+      previous = job;
+      count++;
+    }
+    assertEquals( expected, count );
+  }
+
+
+
+
+  /**
+   * Scheduling a job already in the scheduler should move it, not add it 
+   * again.
+   */
+  @Test
+  public void testScheduleTwice() {
+    long startTime = System.currentTimeMillis();
+
+    ScheduledJob task0 = new ScheduledTest( "Task0" );
+    task0.setExecutionTime( startTime );
+    ScheduledJob task1 = new ScheduledTest( "Task1" );
+    task1.setExecutionTime( startTime + 10 );
+    scheduler.schedule( task0 );
+    scheduler.schedule( task1 );
+
+    task0.setExecutionTime( startTime + 20 );
+    scheduler.schedule( task0 );
+
+    assertEquals( 2, scheduler.getJobCount() );
+    assertEquals( task1, scheduler.getNextJob() );
+    assertEquals( task0, task1.getNextJob() );
+    assertNull( task0.getNextJob() );
+  }
+
+
+
+
+  /**
+   * Jobs should be dispatched when their time arrives and the delay recorded.
+   */
+  @Test
+  public void testDispatchLatency() throws Exception {
+    final CountDownLatch latch = new CountDownLatch( 3 );
+    Runnable task = new Runnable() {
+      @Override
+      public void run() {
+        latch.countDown();
+      }
+    };
+
+    scheduler.daemonize();
+    long startTime = System.currentTimeMillis();
+    scheduler.schedule( task, startTime + 200 );
+    scheduler.schedule( task, startTime + 100 );
+    scheduler.schedule( task );
+
+    assertTrue( latch.await( 5, TimeUnit.SECONDS ) );
+    assertEquals( 0, scheduler.getJobCount() );
+    assertEquals( 3, scheduler.getDispatchLatency().getSamplesCount() );
+    assertTrue( scheduler.getDispatchLatency().getMaxValue() < 1000 );
+  }
+
+
+
+
   //@Test
   public void testOne() {
     long startTime = System.currentTimeMillis() + 3000;